@@ -0,0 +1,149 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+package org.apache.qpid.proton.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.codec.AMQPDefinedTypes;
+import org.apache.qpid.proton.codec.Data;
+import org.apache.qpid.proton.codec.DataImpl;
+import org.apache.qpid.proton.codec.DecoderImpl;
+import org.apache.qpid.proton.codec.EncoderImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares building, encoding and reading an application-properties style map through a reused
+ * {@link DataImpl} against the object graph route of {@link EncoderImpl} and
+ * {@link DecoderImpl#readObject()}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataBenchmark
+{
+    private static final int ENTRIES = 16;
+
+    private DataImpl _data;
+    private DecoderImpl _decoder;
+    private EncoderImpl _encoder;
+    private ByteBuffer _buffer;
+    private byte[] _encoded;
+    private int _encodedLength;
+
+    @Setup
+    public void setup()
+    {
+        _data = new DataImpl();
+        _decoder = new DecoderImpl();
+        _encoder = new EncoderImpl(_decoder);
+        AMQPDefinedTypes.registerAllTypes(_decoder, _encoder);
+        _buffer = ByteBuffer.allocate(64 * 1024);
+        _encoded = new byte[64 * 1024];
+        ByteBuffer encoded = ByteBuffer.wrap(_encoded);
+        _encoder.setByteBuffer(encoded);
+        _encoder.writeObject(createMap());
+        _encodedLength = encoded.position();
+    }
+
+    private static Map<Object, Object> createMap()
+    {
+        Map<Object, Object> map = new HashMap<Object, Object>();
+        for(int i = 0; i < ENTRIES; i++)
+        {
+            map.put(Symbol.valueOf("key-" + i), UnsignedInteger.valueOf(i * 1000));
+        }
+        return map;
+    }
+
+    @Benchmark
+    public int encodeData()
+    {
+        _data.clear();
+        _data.putMap();
+        _data.enter();
+        for(int i = 0; i < ENTRIES; i++)
+        {
+            _data.putSymbol("key-" + i);
+            _data.putUint(i * 1000);
+        }
+        _data.exit();
+        _buffer.clear();
+        return _data.encode(_buffer);
+    }
+
+    @Benchmark
+    public int encodeObjects()
+    {
+        _buffer.clear();
+        _encoder.setByteBuffer(_buffer);
+        _encoder.writeObject(createMap());
+        return _buffer.position();
+    }
+
+    @Benchmark
+    public long decodeData()
+    {
+        _data.clear();
+        _data.decode(ByteBuffer.wrap(_encoded, 0, _encodedLength));
+        _data.rewind();
+        _data.next();
+        _data.enter();
+        long sum = 0;
+        while(_data.next() != null)
+        {
+            if(_data.type() == Data.UINT)
+            {
+                sum += _data.getUint();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long decodeObjects()
+    {
+        _decoder.setByteBuffer(ByteBuffer.wrap(_encoded, 0, _encodedLength));
+        Map<?, ?> map = (Map<?, ?>) _decoder.readObject();
+        long sum = 0;
+        for(Object value : map.values())
+        {
+            sum += ((UnsignedInteger) value).longValue();
+        }
+        return sum;
+    }
+}
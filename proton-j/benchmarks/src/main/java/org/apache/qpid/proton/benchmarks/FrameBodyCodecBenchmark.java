@@ -0,0 +1,213 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+package org.apache.qpid.proton.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.amqp.UnsignedShort;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Source;
+import org.apache.qpid.proton.amqp.messaging.Target;
+import org.apache.qpid.proton.amqp.transport.AmqpError;
+import org.apache.qpid.proton.amqp.transport.Attach;
+import org.apache.qpid.proton.amqp.transport.Begin;
+import org.apache.qpid.proton.amqp.transport.Close;
+import org.apache.qpid.proton.amqp.transport.Detach;
+import org.apache.qpid.proton.amqp.transport.Disposition;
+import org.apache.qpid.proton.amqp.transport.End;
+import org.apache.qpid.proton.amqp.transport.ErrorCondition;
+import org.apache.qpid.proton.amqp.transport.Flow;
+import org.apache.qpid.proton.amqp.transport.FrameBody;
+import org.apache.qpid.proton.amqp.transport.Open;
+import org.apache.qpid.proton.amqp.transport.ReceiverSettleMode;
+import org.apache.qpid.proton.amqp.transport.Role;
+import org.apache.qpid.proton.amqp.transport.SenderSettleMode;
+import org.apache.qpid.proton.amqp.transport.Transfer;
+import org.apache.qpid.proton.codec.AMQPDefinedTypes;
+import org.apache.qpid.proton.codec.DecoderImpl;
+import org.apache.qpid.proton.codec.EncoderImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link EncoderImpl#writeObject(Object)} and {@link DecoderImpl#readObject()} for each of the
+ * transport frame bodies, populated the way the engine populates them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameBodyCodecBenchmark
+{
+    @Param({"open", "begin", "attach", "flow", "transfer", "disposition", "detach", "end", "close"})
+    public String frameBody;
+
+    private FrameBody _body;
+    private DecoderImpl _decoder;
+    private EncoderImpl _encoder;
+    private ByteBuffer _buffer;
+    private ByteBuffer _encoded;
+
+    @Setup
+    public void setup()
+    {
+        _body = createFrameBody(frameBody);
+        _decoder = new DecoderImpl();
+        _encoder = new EncoderImpl(_decoder);
+        AMQPDefinedTypes.registerAllTypes(_decoder, _encoder);
+
+        _buffer = ByteBuffer.allocate(4096);
+        _encoder.setByteBuffer(_buffer);
+        _encoder.writeObject(_body);
+        _buffer.flip();
+        _encoded = ByteBuffer.allocate(_buffer.remaining());
+        _encoded.put(_buffer);
+        _encoded.flip();
+    }
+
+    @Benchmark
+    public int encode()
+    {
+        _buffer.clear();
+        _encoder.setByteBuffer(_buffer);
+        _encoder.writeObject(_body);
+        return _buffer.position();
+    }
+
+    @Benchmark
+    public Object decode()
+    {
+        _decoder.setByteBuffer(_encoded.duplicate());
+        return _decoder.readObject();
+    }
+
+    static FrameBody createFrameBody(String name)
+    {
+        if("open".equals(name))
+        {
+            Open open = new Open();
+            open.setContainerId("a6b5a1b2-7c2d-4e3f-9a8b-0c1d2e3f4a5b");
+            open.setHostname("broker.example.com");
+            open.setMaxFrameSize(UnsignedInteger.valueOf(16 * 1024));
+            open.setChannelMax(UnsignedShort.valueOf((short) 255));
+            open.setIdleTimeOut(UnsignedInteger.valueOf(30000));
+            open.setOfferedCapabilities(Symbol.valueOf("ANONYMOUS-RELAY"));
+            return open;
+        }
+        else if("begin".equals(name))
+        {
+            Begin begin = new Begin();
+            begin.setRemoteChannel(UnsignedShort.valueOf((short) 0));
+            begin.setNextOutgoingId(UnsignedInteger.ONE);
+            begin.setIncomingWindow(UnsignedInteger.valueOf(2048));
+            begin.setOutgoingWindow(UnsignedInteger.valueOf(2048));
+            begin.setHandleMax(UnsignedInteger.valueOf(1024));
+            return begin;
+        }
+        else if("attach".equals(name))
+        {
+            Source source = new Source();
+            source.setAddress("queue://orders.incoming");
+            source.setOutcomes(Symbol.valueOf("amqp:accepted:list"), Symbol.valueOf("amqp:rejected:list"));
+            Target target = new Target();
+            target.setAddress("queue://orders.incoming");
+
+            Attach attach = new Attach();
+            attach.setName("sender-link-1");
+            attach.setHandle(UnsignedInteger.ZERO);
+            attach.setRole(Role.SENDER);
+            attach.setSndSettleMode(SenderSettleMode.UNSETTLED);
+            attach.setRcvSettleMode(ReceiverSettleMode.FIRST);
+            attach.setSource(source);
+            attach.setTarget(target);
+            attach.setInitialDeliveryCount(UnsignedInteger.ZERO);
+            return attach;
+        }
+        else if("flow".equals(name))
+        {
+            Flow flow = new Flow();
+            flow.setNextIncomingId(UnsignedInteger.valueOf(1000));
+            flow.setIncomingWindow(UnsignedInteger.valueOf(2048));
+            flow.setNextOutgoingId(UnsignedInteger.valueOf(1));
+            flow.setOutgoingWindow(UnsignedInteger.valueOf(2048));
+            flow.setHandle(UnsignedInteger.ZERO);
+            flow.setDeliveryCount(UnsignedInteger.valueOf(1000));
+            flow.setLinkCredit(UnsignedInteger.valueOf(100));
+            return flow;
+        }
+        else if("transfer".equals(name))
+        {
+            Transfer transfer = new Transfer();
+            transfer.setHandle(UnsignedInteger.ZERO);
+            transfer.setDeliveryId(UnsignedInteger.valueOf(1000));
+            transfer.setDeliveryTag(new Binary(new byte[] { 0, 0, 3, (byte) 0xe8 }));
+            transfer.setMessageFormat(UnsignedInteger.ZERO);
+            transfer.setSettled(Boolean.FALSE);
+            return transfer;
+        }
+        else if("disposition".equals(name))
+        {
+            Disposition disposition = new Disposition();
+            disposition.setRole(Role.RECEIVER);
+            disposition.setFirst(UnsignedInteger.valueOf(1000));
+            disposition.setLast(UnsignedInteger.valueOf(1000));
+            disposition.setSettled(true);
+            disposition.setState(Accepted.getInstance());
+            return disposition;
+        }
+        else if("detach".equals(name))
+        {
+            Detach detach = new Detach();
+            detach.setHandle(UnsignedInteger.ZERO);
+            detach.setClosed(true);
+            return detach;
+        }
+        else if("end".equals(name))
+        {
+            return new End();
+        }
+        else if("close".equals(name))
+        {
+            ErrorCondition error = new ErrorCondition();
+            error.setCondition(AmqpError.RESOURCE_LIMIT_EXCEEDED);
+            error.setDescription("connection limit reached");
+            Close close = new Close();
+            close.setError(error);
+            return close;
+        }
+        throw new IllegalArgumentException("Unknown frame body: " + name);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+package org.apache.qpid.proton.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.codec.WritableBuffer;
+import org.apache.qpid.proton.message.impl.MessageImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link MessageImpl} encode/decode for the section mixes in {@link Messages}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessageBenchmark
+{
+    @Param({Messages.BODY_ONLY, Messages.TYPICAL, Messages.ALL_SECTIONS, Messages.LARGE})
+    public String mix;
+
+    private MessageImpl _message;
+    private ByteBuffer _buffer;
+    private WritableBuffer _writable;
+    private byte[] _encoded;
+    private int _encodedLength;
+
+    @Setup
+    public void setup()
+    {
+        _message = Messages.create(mix);
+        _buffer = ByteBuffer.allocate(64 * 1024);
+        _writable = new WritableBuffer.ByteBufferWrapper(_buffer);
+        _encoded = new byte[64 * 1024];
+        _encodedLength = _message.encode(_encoded, 0, _encoded.length);
+    }
+
+    @Benchmark
+    public int encode()
+    {
+        _buffer.clear();
+        return _message.encode(_writable);
+    }
+
+    @Benchmark
+    public MessageImpl decode()
+    {
+        MessageImpl message = new MessageImpl();
+        message.decode(_encoded, 0, _encodedLength);
+        return message;
+    }
+
+    @Benchmark
+    public Object decodeAndReadBody()
+    {
+        MessageImpl message = new MessageImpl();
+        message.decode(_encoded, 0, _encodedLength);
+        return message.getBody();
+    }
+
+    @Benchmark
+    public String decodeLazilyAndReadAddress()
+    {
+        MessageImpl message = new MessageImpl();
+        message.decodeLazily(_encoded, 0, _encodedLength);
+        return message.getAddress();
+    }
+
+    @Benchmark
+    public int routeEager()
+    {
+        MessageImpl message = new MessageImpl();
+        message.decode(_encoded, 0, _encodedLength);
+        message.getAddress();
+        _buffer.clear();
+        return message.encode(_writable);
+    }
+
+    @Benchmark
+    public int routeLazily()
+    {
+        MessageImpl message = new MessageImpl();
+        message.decodeLazily(_encoded, 0, _encodedLength);
+        message.getAddress();
+        _buffer.clear();
+        return message.encode(_writable);
+    }
+
+    @Benchmark
+    public byte[] patchDeliveryCount()
+    {
+        MessageImpl message = new MessageImpl();
+        message.decodeLazily(_encoded, 0, _encodedLength);
+        message.setDeliveryCount(message.getDeliveryCount() + 1);
+        return message.encodeToArray();
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+package org.apache.qpid.proton.benchmarks;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.UnsignedByte;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.DeliveryAnnotations;
+import org.apache.qpid.proton.amqp.messaging.Footer;
+import org.apache.qpid.proton.amqp.messaging.Header;
+import org.apache.qpid.proton.amqp.messaging.MessageAnnotations;
+import org.apache.qpid.proton.amqp.messaging.Properties;
+import org.apache.qpid.proton.message.impl.MessageImpl;
+
+/**
+ * Builds the messages used by the benchmarks, by name, so the different suites measure the same
+ * section mixes.
+ */
+final class Messages
+{
+    /** An AMQP value body and nothing else. */
+    static final String BODY_ONLY = "body-only";
+    /** Header, message annotations, properties, a few application properties and a 256 byte body. */
+    static final String TYPICAL = "typical";
+    /** As {@link #TYPICAL} plus delivery annotations and a footer, so every section is present. */
+    static final String ALL_SECTIONS = "all-sections";
+    /** Many application properties and a 16K body. */
+    static final String LARGE = "large";
+
+    private Messages()
+    {
+    }
+
+    static MessageImpl create(String mix)
+    {
+        if(BODY_ONLY.equals(mix))
+        {
+            return new MessageImpl(null, null, null, null, null, new AmqpValue("Hello World!"), null);
+        }
+        else if(TYPICAL.equals(mix))
+        {
+            return new MessageImpl(createHeader(), null, createMessageAnnotations(), createProperties(),
+                                   createApplicationProperties(0), createBody(256), null);
+        }
+        else if(ALL_SECTIONS.equals(mix))
+        {
+            Map<Symbol, Object> deliveryAnnotations = new HashMap<Symbol, Object>();
+            deliveryAnnotations.put(Symbol.valueOf("x-opt-trace"), "hop-1");
+
+            Map<Symbol, Object> footer = new HashMap<Symbol, Object>();
+            footer.put(Symbol.valueOf("x-opt-checksum"), 0x5ca1ab1eL);
+
+            return new MessageImpl(createHeader(), new DeliveryAnnotations(deliveryAnnotations),
+                                   createMessageAnnotations(), createProperties(),
+                                   createApplicationProperties(0), createBody(256), new Footer(footer));
+        }
+        else if(LARGE.equals(mix))
+        {
+            return new MessageImpl(createHeader(), null, createMessageAnnotations(), createProperties(),
+                                   createApplicationProperties(50), createBody(16 * 1024), null);
+        }
+        throw new IllegalArgumentException("Unknown message mix: " + mix);
+    }
+
+    private static Header createHeader()
+    {
+        Header header = new Header();
+        header.setDurable(true);
+        header.setPriority(UnsignedByte.valueOf((byte) 4));
+        header.setDeliveryCount(UnsignedInteger.valueOf(1));
+        return header;
+    }
+
+    private static MessageAnnotations createMessageAnnotations()
+    {
+        Map<Symbol, Object> annotations = new HashMap<Symbol, Object>();
+        annotations.put(Symbol.valueOf("x-opt-jms-msg-type"), (byte) 1);
+        annotations.put(Symbol.valueOf("x-opt-to-type"), "queue");
+        return new MessageAnnotations(annotations);
+    }
+
+    private static Properties createProperties()
+    {
+        Properties properties = new Properties();
+        properties.setMessageId("ID:4b9e2a8c-3ea1-4c1b-a0d3-1d2b3c4d5e6f:1:1:1:1");
+        properties.setTo("queue://orders.incoming");
+        properties.setReplyTo("queue://orders.replies");
+        properties.setSubject("order");
+        properties.setContentType(Symbol.valueOf("application/octet-stream"));
+        properties.setCreationTime(new Date(1357000000000L));
+        return properties;
+    }
+
+    private static ApplicationProperties createApplicationProperties(int extra)
+    {
+        Map<String, Object> applicationProperties = new HashMap<String, Object>();
+        applicationProperties.put("customerId", 1234567L);
+        applicationProperties.put("region", "emea");
+        applicationProperties.put("priority", 3);
+        applicationProperties.put("express", Boolean.TRUE);
+        applicationProperties.put("amount", 99.95d);
+        for(int i = 0; i < extra; i++)
+        {
+            applicationProperties.put("attribute" + i, i % 2 == 0 ? (Object) ("value" + i) : (Object) i);
+        }
+        return new ApplicationProperties(applicationProperties);
+    }
+
+    private static Data createBody(int size)
+    {
+        byte[] body = new byte[size];
+        for(int i = 0; i < body.length; i++)
+        {
+            body[i] = (byte) i;
+        }
+        return new Data(new Binary(body));
+    }
+}
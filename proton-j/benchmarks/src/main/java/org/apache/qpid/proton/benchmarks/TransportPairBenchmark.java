@@ -0,0 +1,160 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+package org.apache.qpid.proton.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.engine.Transport;
+import org.apache.qpid.proton.engine.impl.ConnectionImpl;
+import org.apache.qpid.proton.engine.impl.TransportImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * A sender and a receiver on two {@link TransportImpl}s wired back to back through
+ * {@link Transport#head()} and {@link Transport#tail()}, with no sockets involved. Each operation
+ * is one unsettled delivery: transfer, receive, accept, settle on both sides.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TransportPairBenchmark
+{
+    @Param({"16", "1024", "8192", "65536"})
+    public int payloadSize;
+
+    private Transport _senderTransport;
+    private Transport _receiverTransport;
+    private Sender _sender;
+    private Receiver _receiver;
+    private byte[] _payload;
+    private byte[] _receiveBuffer;
+    private int _tag;
+
+    @Setup
+    public void setup()
+    {
+        Connection senderConnection = new ConnectionImpl();
+        Connection receiverConnection = new ConnectionImpl();
+        _senderTransport = new TransportImpl();
+        _receiverTransport = new TransportImpl();
+        _senderTransport.bind(senderConnection);
+        _receiverTransport.bind(receiverConnection);
+
+        senderConnection.open();
+        Session senderSession = senderConnection.session();
+        senderSession.open();
+        _sender = senderSession.sender("benchmark");
+        _sender.open();
+        pump();
+
+        receiverConnection.open();
+        Session receiverSession = receiverConnection.sessionHead(EnumSet.of(EndpointState.UNINITIALIZED),
+                                                                 EnumSet.of(EndpointState.ACTIVE));
+        receiverSession.open();
+        _receiver = (Receiver) receiverConnection.linkHead(EnumSet.of(EndpointState.UNINITIALIZED),
+                                                            EnumSet.of(EndpointState.ACTIVE));
+        _receiver.open();
+        _receiver.flow(100);
+        pump();
+
+        _payload = new byte[payloadSize];
+        _receiveBuffer = new byte[payloadSize];
+    }
+
+    @Benchmark
+    public int delivery()
+    {
+        Delivery sent = _sender.delivery(String.valueOf(_tag++).getBytes());
+        _sender.send(_payload, 0, _payload.length);
+        _sender.advance();
+        pump();
+
+        Delivery received = _receiver.current();
+        int total = 0;
+        int read;
+        while(total < _receiveBuffer.length
+              && (read = _receiver.recv(_receiveBuffer, total, _receiveBuffer.length - total)) > 0)
+        {
+            total += read;
+        }
+        if(total != payloadSize)
+        {
+            throw new IllegalStateException("Received " + total + " bytes, expected " + payloadSize);
+        }
+        _receiver.advance();
+        received.disposition(Accepted.getInstance());
+        received.settle();
+        _receiver.flow(1);
+        pump();
+
+        sent.settle();
+        return total;
+    }
+
+    private void pump()
+    {
+        boolean moved;
+        do
+        {
+            moved = move(_senderTransport, _receiverTransport);
+            moved |= move(_receiverTransport, _senderTransport);
+        }
+        while(moved);
+    }
+
+    private static boolean move(Transport from, Transport to)
+    {
+        if(from.pending() == 0)
+        {
+            return false;
+        }
+        ByteBuffer head = from.head();
+        ByteBuffer tail = to.tail();
+        int count = Math.min(head.remaining(), tail.remaining());
+        head.limit(head.position() + count);
+        tail.put(head);
+        from.pop(count);
+        to.process();
+        return count > 0;
+    }
+}
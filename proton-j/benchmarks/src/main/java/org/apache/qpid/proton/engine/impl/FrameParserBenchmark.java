@@ -0,0 +1,144 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+package org.apache.qpid.proton.engine.impl;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.amqp.transport.Transfer;
+import org.apache.qpid.proton.codec.AMQPDefinedTypes;
+import org.apache.qpid.proton.codec.DecoderImpl;
+import org.apache.qpid.proton.codec.EncoderImpl;
+import org.apache.qpid.proton.framing.TransportFrame;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link FrameParser#input(ByteBuffer)} over a stream of transfer frames, delivered in reads of
+ * varying size so that frames are split across reads to a greater or lesser extent.
+ *
+ * This lives in the engine's package because FrameParser is package-private.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameParserBenchmark
+{
+    private static final int FRAMES = 1000;
+
+    @Param({"64", "1024", "16384", "65536"})
+    public int readSize;
+
+    @Param({"256"})
+    public int payloadSize;
+
+    private FrameParser _parser;
+    private ByteBuffer _frames;
+    private int _received;
+
+    @Setup
+    public void setup()
+    {
+        _parser = new FrameParser(new FrameTransport()
+        {
+            public boolean input(TransportFrame frame)
+            {
+                _received++;
+                return true;
+            }
+        });
+        _parser.input(ByteBuffer.wrap(FrameParser.HEADER));
+        _frames = createTransferFrames(FRAMES, payloadSize);
+    }
+
+    /**
+     * Feeds the whole stream through the parser; the parser is left between frames afterwards,
+     * so the same stream can be fed again on the next invocation.
+     */
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public int input()
+    {
+        _received = 0;
+        ByteBuffer frames = _frames.duplicate();
+        final int limit = frames.limit();
+        while(frames.hasRemaining())
+        {
+            frames.limit(Math.min(limit, frames.position() + readSize));
+            _parser.input(frames);
+            frames.limit(limit);
+        }
+        if(_received != FRAMES)
+        {
+            throw new IllegalStateException("Parsed " + _received + " frames, expected " + FRAMES);
+        }
+        return _received;
+    }
+
+    private static ByteBuffer createTransferFrames(int count, int payloadSize)
+    {
+        DecoderImpl decoder = new DecoderImpl();
+        EncoderImpl encoder = new EncoderImpl(decoder);
+        AMQPDefinedTypes.registerAllTypes(decoder, encoder);
+
+        byte[] payload = new byte[payloadSize];
+        ByteBuffer buffer = ByteBuffer.allocate(count * (payloadSize + 64));
+        encoder.setByteBuffer(buffer);
+        for(int i = 0; i < count; i++)
+        {
+            Transfer transfer = new Transfer();
+            transfer.setHandle(UnsignedInteger.ZERO);
+            transfer.setDeliveryId(UnsignedInteger.valueOf(i));
+            transfer.setDeliveryTag(new Binary(String.valueOf(i).getBytes()));
+            transfer.setMessageFormat(UnsignedInteger.ZERO);
+
+            int frameStart = buffer.position();
+            buffer.position(frameStart + 8);
+            encoder.writeObject(transfer);
+            buffer.put(payload);
+            int frameEnd = buffer.position();
+
+            buffer.position(frameStart);
+            buffer.putInt(frameEnd - frameStart);
+            buffer.put((byte) 2);
+            buffer.put((byte) 0);
+            buffer.putShort((short) 0);
+            buffer.position(frameEnd);
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
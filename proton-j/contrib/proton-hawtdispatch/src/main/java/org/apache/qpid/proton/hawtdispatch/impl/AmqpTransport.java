@@ -353,13 +353,15 @@ public class AmqpTransport extends WatchBase {
                 return;
         }
 
-        int size = hawtdispatchTransport.getProtocolCodec().getWriteBufferSize();
-        byte data[] = new byte[size];
         boolean done = false;
         int pumped = 0;
         while( !done && !hawtdispatchTransport.full() ) {
-            int count = protonTransport.output(data, 0, size);
+            int count = protonTransport.pending();
             if( count > 0 ) {
+                // the buffer is queued by hawtdispatch, so it can't share the transport's output buffer
+                byte data[] = new byte[count];
+                protonTransport.head().get(data);
+                protonTransport.pop(count);
                 pumped += count;
                 boolean accepted = hawtdispatchTransport.offer(new Buffer(data, 0, count));
                 assert accepted: "Should be accepted since the transport was not full";
@@ -16,16 +16,10 @@
  */
 package org.apache.qpid.proton.jms;
 
-import org.apache.qpid.proton.codec.CompositeWritableBuffer;
-import org.apache.qpid.proton.codec.DroppingWritableBuffer;
-import org.apache.qpid.proton.codec.WritableBuffer;
-import org.apache.qpid.proton.amqp.UnsignedInteger;
-
 import javax.jms.BytesMessage;
 import javax.jms.JMSException;
 import javax.jms.Message;
 import javax.jms.MessageFormatException;
-import java.nio.ByteBuffer;
 import org.apache.qpid.proton.message.impl.MessageImpl;
 
 /**
@@ -69,30 +63,17 @@ public class AMQPNativeOutboundTransformer extends OutboundTransformer {
             int count = msg.getIntProperty("JMSXDeliveryCount");
             if( count > 1 ) {
 
-                // decode...
+                // decode lazily so that only the header gets decoded and re-encoded,
+                // the rest of the message is copied through as it is.
                 MessageImpl amqp = new MessageImpl();
-                int offset = 0;
-                int len = data.length;
-                while( len > 0 ) {
-                    final int decoded = amqp.decode(data, offset, len);
-                    assert decoded > 0: "Make progress decoding the message";
-                    offset += decoded;
-                    len -= decoded;
-                }
+                amqp.decodeLazily(data, 0, data.length);
 
                 // Update the DeliveryCount header...
-                amqp.getHeader().setDeliveryCount(new UnsignedInteger(count));
+                amqp.setDeliveryCount(count);
 
                 // Re-encode...
-                ByteBuffer buffer = ByteBuffer.wrap(new byte[1024*4]);
-                final DroppingWritableBuffer overflow = new DroppingWritableBuffer();
-                int c = amqp.encode(new CompositeWritableBuffer(new WritableBuffer.ByteBufferWrapper(buffer), overflow));
-                if( overflow.position() > 0 ) {
-                    buffer = ByteBuffer.wrap(new byte[1024*4+overflow.position()]);
-                    c = amqp.encode(new WritableBuffer.ByteBufferWrapper(buffer));
-                }
-                data = buffer.array();
-                dataSize = c;
+                data = amqp.encodeToArray();
+                dataSize = data.length;
             }
         } catch (JMSException e) {
         }
@@ -0,0 +1,489 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.nio2;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.logging.Level;
+
+import org.apache.qpid.proton.driver.Connector;
+import org.apache.qpid.proton.driver.Listener;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Sasl;
+import org.apache.qpid.proton.engine.Transport;
+import org.apache.qpid.proton.engine.impl.ConnectionImpl;
+import org.apache.qpid.proton.engine.impl.TransportFactory;
+
+/**
+ * Reads into the transport's tail and writes from its head, one operation of each kind at a
+ * time. The completion handlers only record how many bytes were moved; the transport is
+ * consumed and popped by {@link #process()}, so it is never used by two threads at once.
+ */
+class AsyncConnector<C> implements Connector<C>
+{
+    // no write has completed since the last process()
+    private static final int NONE = -2;
+
+    private final AsyncDriver _driver;
+    private final Listener<C> _listener;
+    private final AsynchronousSocketChannel _channel;
+    private C _context;
+    private Connection _connection;
+    private Transport _transport;
+    private volatile boolean _closed;
+
+    // guarded by this
+    private boolean _connected;
+    private boolean _reading;
+    private boolean _writing;
+    private int _bytesRead;
+    private boolean _endOfStream;
+    private int _written = NONE;
+    private Throwable _failure;
+    private boolean _pending;
+    private boolean _queued;
+    // handed out since the last process(), so the application deals with what the next one reads
+    private boolean _handedOut;
+    private boolean _opened;
+    private boolean _closeRequested;
+
+    private final CompletionHandler<Void, Void> _connectHandler = new CompletionHandler<Void, Void>()
+    {
+        public void completed(Void result, Void attachment)
+        {
+            connected();
+        }
+
+        public void failed(Throwable e, Void attachment)
+        {
+            completedWith(e);
+        }
+    };
+
+    private final CompletionHandler<Integer, Void> _readHandler = new CompletionHandler<Integer, Void>()
+    {
+        public void completed(Integer bytesRead, Void attachment)
+        {
+            synchronized(AsyncConnector.this)
+            {
+                _reading = false;
+                if(bytesRead < 0)
+                {
+                    _endOfStream = true;
+                }
+                else
+                {
+                    _bytesRead += bytesRead;
+                }
+            }
+            signal();
+        }
+
+        public void failed(Throwable e, Void attachment)
+        {
+            synchronized(AsyncConnector.this)
+            {
+                _reading = false;
+            }
+            completedWith(e);
+        }
+    };
+
+    private final CompletionHandler<Integer, Void> _writeHandler = new CompletionHandler<Integer, Void>()
+    {
+        public void completed(Integer bytesWritten, Void attachment)
+        {
+            boolean closing;
+            boolean flushing = false;
+            synchronized(AsyncConnector.this)
+            {
+                _writing = false;
+                _written = bytesWritten;
+                closing = _closed;
+                if(closing)
+                {
+                    // the rest of the output is written before the channel is closed
+                    flushing = flush();
+                }
+            }
+            if(!closing)
+            {
+                signal();
+            }
+            else if(!flushing)
+            {
+                closeChannel();
+            }
+        }
+
+        public void failed(Throwable e, Void attachment)
+        {
+            synchronized(AsyncConnector.this)
+            {
+                _writing = false;
+            }
+            completedWith(e);
+        }
+    };
+
+    AsyncConnector(AsyncDriver driver, Listener<C> listener, AsynchronousSocketChannel channel, C context)
+    {
+        _driver = driver;
+        _listener = listener;
+        _channel = channel;
+        _context = context;
+    }
+
+    void connect(SocketAddress address)
+    {
+        _channel.connect(address, null, _connectHandler);
+    }
+
+    /**
+     * Marks the channel connected. The connector is only processed once it has a connection,
+     * unless the driver has a handler to give it one.
+     */
+    void connected()
+    {
+        boolean signal;
+        synchronized(this)
+        {
+            _connected = true;
+            signal = _transport != null || _driver.servicesConnectors();
+        }
+        if(signal)
+        {
+            signal();
+        }
+    }
+
+    private void completedWith(Throwable e)
+    {
+        if(_closed)
+        {
+            // operations in flight fail once the channel is closed, and a failed final write
+            // leaves it to be closed here
+            closeChannel();
+            return;
+        }
+        synchronized(this)
+        {
+            _failure = e;
+        }
+        signal();
+    }
+
+    /**
+     * Notes that the connector has something to process, and hands it to the driver unless it
+     * is already waiting to be processed.
+     */
+    private void signal()
+    {
+        boolean ready;
+        synchronized(this)
+        {
+            _pending = true;
+            ready = !_queued;
+            _queued = true;
+        }
+        if(ready)
+        {
+            _driver.ready(this);
+        }
+    }
+
+    /**
+     * @return whether the connector still has anything to process, now that it has been taken
+     *         off the driver's queue
+     */
+    synchronized boolean dequeued()
+    {
+        _queued = false;
+        _handedOut = _pending;
+        return _pending;
+    }
+
+    /**
+     * Has the handler process the connector for as long as it keeps being signalled. Only the
+     * thread that queued the connector gets here, so the handler is never run concurrently.
+     */
+    void service(AsyncDriver.Handler handler)
+    {
+        try
+        {
+            boolean opened;
+            synchronized(this)
+            {
+                opened = _opened;
+                _opened = true;
+            }
+            if(!opened)
+            {
+                handler.opened(this);
+            }
+            while(true)
+            {
+                boolean closing;
+                synchronized(this)
+                {
+                    if(!_pending)
+                    {
+                        _queued = false;
+                        return;
+                    }
+                    _pending = false;
+                    _handedOut = true;
+                    closing = _closeRequested;
+                }
+                if(closing)
+                {
+                    close();
+                }
+                handler.process(this);
+            }
+        }
+        catch (IOException e)
+        {
+            _driver.getLogger().log(Level.SEVERE, "Exception when processing connector", e);
+            destroy();
+        }
+        catch (RuntimeException e)
+        {
+            _driver.getLogger().log(Level.SEVERE, "Exception when processing connector", e);
+            destroy();
+        }
+        synchronized(this)
+        {
+            _queued = false;
+        }
+    }
+
+    /**
+     * Has the connector closed by the thread that services it, before the handler next processes
+     * it, as closing writes the transport's remaining output. If no thread is servicing the
+     * connector, the caller services it instead.
+     */
+    void closeWhenServiced()
+    {
+        synchronized(this)
+        {
+            _closeRequested = true;
+        }
+        signal();
+    }
+
+    public void process() throws IOException
+    {
+        int bytesRead = 0;
+        boolean endOfStream = false;
+        int written;
+        Throwable failure;
+        boolean connected;
+        boolean handedOut;
+        synchronized(this)
+        {
+            _pending = false;
+            handedOut = _handedOut;
+            _handedOut = false;
+            // input is only consumed while no read is in flight, as it shares the buffer
+            if(!_reading)
+            {
+                bytesRead = _bytesRead;
+                _bytesRead = 0;
+                endOfStream = _endOfStream;
+            }
+            written = _written;
+            _written = NONE;
+            failure = _failure;
+            _failure = null;
+            connected = _connected;
+        }
+        if(failure != null)
+        {
+            close();
+            throw failure instanceof IOException ? (IOException) failure : new IOException(failure);
+        }
+        if(_closed || !connected || _transport == null)
+        {
+            return;
+        }
+        if(written != NONE)
+        {
+            _transport.pop(written);
+        }
+        if(bytesRead > 0)
+        {
+            _transport.process();
+            if(!handedOut)
+            {
+                // the input arrived after the application looked at the connection, so it is
+                // handed the connector again to deal with the events
+                signal();
+            }
+        }
+        if(endOfStream)
+        {
+            close();
+            return;
+        }
+        synchronized(this)
+        {
+            // a read that completed since the top of this method leaves its input for the next
+            // process(), which it has signalled for, rather than waiting behind another
+            if(!_reading && _bytesRead == 0 && !_endOfStream && _transport.capacity() > 0)
+            {
+                _reading = true;
+                _channel.read(_transport.tail(), null, _readHandler);
+            }
+            flush();
+        }
+    }
+
+    public Listener<C> listener()
+    {
+        return _listener;
+    }
+
+    public Sasl sasl()
+    {
+        if(_transport != null)
+        {
+            return _transport.sasl();
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+    public Connection getConnection()
+    {
+        return _connection;
+    }
+
+    /**
+     * Sets the connection and has the connector processed. Unless the driver services its
+     * connectors itself, the connector is also queued again whenever the connection is given
+     * something to send.
+     */
+    public void setConnection(Connection connection)
+    {
+        _connection = connection;
+        _transport = TransportFactory.getDefaultTransportFactory().transport(_connection);
+        if(connection instanceof ConnectionImpl && !_driver.servicesConnectors())
+        {
+            ((ConnectionImpl) connection).setTransportWorkListener(new Runnable()
+            {
+                public void run()
+                {
+                    signal();
+                }
+            });
+        }
+        signal();
+    }
+
+    public C getContext()
+    {
+        return _context;
+    }
+
+    public void setContext(C context)
+    {
+        _context = context;
+    }
+
+    /**
+     * Closes the channel once all the output already produced has been written, including what
+     * was waiting behind a write in flight.
+     */
+    public void close()
+    {
+        if(_closed)
+        {
+            return;
+        }
+        _closed = true;
+        synchronized(this)
+        {
+            if(flush())
+            {
+                return;
+            }
+        }
+        closeChannel();
+    }
+
+    /**
+     * Starts writing the transport's output unless a write is already in flight. The bytes of a
+     * write that completed since the last {@link #process()} are popped first, as they are still
+     * at the head and would otherwise be sent again. Called holding the lock.
+     *
+     * @return whether a write is now in flight
+     */
+    private boolean flush()
+    {
+        if(_writing)
+        {
+            return true;
+        }
+        if(!_connected || _transport == null || !_channel.isOpen())
+        {
+            return false;
+        }
+        if(_written != NONE)
+        {
+            _transport.pop(_written);
+            _written = NONE;
+        }
+        if(_transport.pending() > 0)
+        {
+            _writing = true;
+            _channel.write(_transport.head(), null, _writeHandler);
+        }
+        return _writing;
+    }
+
+    private void closeChannel()
+    {
+        try
+        {
+            _channel.close();
+        }
+        catch (IOException e)
+        {
+            _driver.getLogger().log(Level.SEVERE, "Exception when closing connection", e);
+        }
+    }
+
+    public boolean isClosed()
+    {
+        return _closed || !_channel.isOpen();
+    }
+
+    public void destroy()
+    {
+        close();
+        _driver.removeConnector(this);
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.nio2;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.AsynchronousChannelGroup;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.qpid.proton.driver.Connector;
+import org.apache.qpid.proton.driver.Driver;
+import org.apache.qpid.proton.driver.Listener;
+
+/**
+ * A driver on asynchronous channels, whose reads and writes complete on the threads of an
+ * {@link AsynchronousChannelGroup} rather than being found by a selector.
+ *
+ * Reads go straight into the transport's input buffer and writes straight from its output
+ * buffer. A connector has at most one read and one write in flight, which is all a channel
+ * allows; output produced while a write is in flight waits in the transport's output buffer.
+ *
+ * The driver can be used like any other, with the application calling {@link #doWait(long)},
+ * {@link #listener()} and {@link #connector()} and then processing what they return. A driver
+ * given a {@link Handler} instead services each connector on whichever group thread completed
+ * its I/O, so no thread of the application's needs to wait on it. The transport is only ever
+ * used by the thread processing the connector: completions just note what was read or written.
+ *
+ * Asynchronous channels cannot be made from selectable ones, so
+ * {@link #createListener(ServerSocketChannel, Object)} and
+ * {@link #createConnector(SelectableChannel, Object)} are not supported.
+ */
+public class AsyncDriver implements Driver
+{
+    /**
+     * The application's side of a driver that services its connectors on completion threads.
+     * Neither method is called concurrently for the same connector, and the connector's
+     * connection must not be used from any other thread.
+     */
+    public interface Handler
+    {
+        /**
+         * Called once for each new connector before it is first processed, which is where its
+         * connection should be set.
+         */
+        void opened(Connector connector);
+
+        /**
+         * Called when the connector has completed I/O. The handler should deal with the events
+         * on its connection and then call {@link Connector#process()}.
+         */
+        void process(Connector connector) throws IOException;
+    }
+
+    private final AsynchronousChannelGroup _group;
+    private final Handler _handler;
+    private final Queue<Listener> _readyListeners = new ConcurrentLinkedQueue<Listener>();
+    private final Queue<AsyncConnector> _readyConnectors = new ConcurrentLinkedQueue<AsyncConnector>();
+    private final Set<Listener> _listeners = Collections.newSetFromMap(new ConcurrentHashMap<Listener, Boolean>());
+    private final Set<Connector> _connectors = Collections.newSetFromMap(new ConcurrentHashMap<Connector, Boolean>());
+    private final Logger _logger = Logger.getLogger("proton.driver");
+    private boolean _woken;
+
+    /**
+     * Creates a driver on the default channel group, whose connectors are handed out by
+     * {@link #connector()}.
+     */
+    public AsyncDriver()
+    {
+        this(null, null);
+    }
+
+    /**
+     * @param group the group whose threads complete the driver's I/O, or null for the default
+     *        group
+     * @param handler the handler to service connectors on those threads, or null to have them
+     *        handed out by {@link #connector()} instead
+     */
+    public AsyncDriver(AsynchronousChannelGroup group, Handler handler)
+    {
+        _group = group;
+        _handler = handler;
+    }
+
+    public void wakeup()
+    {
+        synchronized(this)
+        {
+            _woken = true;
+            notifyAll();
+        }
+    }
+
+    public synchronized void doWait(long timeout)
+    {
+        final long deadline = System.currentTimeMillis() + timeout;
+        try
+        {
+            while(!_woken && _readyListeners.isEmpty() && _readyConnectors.isEmpty())
+            {
+                long remaining = timeout == 0 ? 0 : deadline - System.currentTimeMillis();
+                if(timeout != 0 && remaining <= 0)
+                {
+                    break;
+                }
+                wait(remaining);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        _woken = false;
+    }
+
+    @SuppressWarnings("rawtypes")
+    public Listener listener()
+    {
+        return _readyListeners.poll();
+    }
+
+    @SuppressWarnings("rawtypes")
+    public Connector connector()
+    {
+        AsyncConnector connector;
+        while((connector = _readyConnectors.poll()) != null)
+        {
+            if(connector.dequeued())
+            {
+                return connector;
+            }
+        }
+        return null;
+    }
+
+    public void destroy()
+    {
+        for(Listener l : _listeners)
+        {
+            try
+            {
+                l.close();
+            }
+            catch (IOException e)
+            {
+                _logger.log(Level.SEVERE, "Exception when closing listener", e);
+            }
+        }
+        _listeners.clear();
+        for(Connector c : _connectors)
+        {
+            if(_handler == null)
+            {
+                c.close();
+            }
+            else
+            {
+                // a completion thread may be in the handler with the connector
+                ((AsyncConnector) c).closeWhenServiced();
+            }
+        }
+        _connectors.clear();
+        _readyListeners.clear();
+        _readyConnectors.clear();
+    }
+
+    public <C> Listener<C> createListener(String host, int port, C context)
+    {
+        try
+        {
+            AsynchronousServerSocketChannel channel = AsynchronousServerSocketChannel.open(_group);
+            channel.bind(new InetSocketAddress(host, port));
+            AsyncListener<C> listener = new AsyncListener<C>(this, channel, context);
+            _listeners.add(listener);
+            listener.start();
+            return listener;
+        }
+        catch (IOException e)
+        {
+            _logger.log(Level.SEVERE, "Exception when creating listener", e);
+        }
+        return null;
+    }
+
+    public <C> Listener<C> createListener(ServerSocketChannel c, C context)
+    {
+        throw new UnsupportedOperationException("An asynchronous driver cannot listen on a selectable channel");
+    }
+
+    public <C> Connector<C> createConnector(String host, int port, C context)
+    {
+        try
+        {
+            AsynchronousSocketChannel channel = AsynchronousSocketChannel.open(_group);
+            AsyncConnector<C> connector = new AsyncConnector<C>(this, null, channel, context);
+            _connectors.add(connector);
+            connector.connect(new InetSocketAddress(host, port));
+            return connector;
+        }
+        catch (IOException e)
+        {
+            _logger.log(Level.SEVERE, "Exception when creating connector", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    public <C> Connector<C> createConnector(SelectableChannel fd, C context)
+    {
+        throw new UnsupportedOperationException("An asynchronous driver cannot use a selectable channel");
+    }
+
+    public Iterable<Listener> listeners()
+    {
+        return _listeners;
+    }
+
+    public Iterable<Connector> connectors()
+    {
+        return _connectors;
+    }
+
+    boolean servicesConnectors()
+    {
+        return _handler != null;
+    }
+
+    /**
+     * Called on a completion thread when the listener has accepted a connection.
+     */
+    <C> void accepted(AsyncListener<C> listener)
+    {
+        if(_handler == null)
+        {
+            _readyListeners.add(listener);
+            wakeup();
+        }
+        else
+        {
+            while(listener.accept() != null)
+            {
+                // each connector is serviced as its I/O completes
+            }
+        }
+    }
+
+    <C> Connector<C> createServerConnector(AsynchronousSocketChannel channel, C context, Listener<C> listener)
+    {
+        AsyncConnector<C> connector = new AsyncConnector<C>(this, listener, channel, context);
+        _connectors.add(connector);
+        connector.connected();
+        return connector;
+    }
+
+    /**
+     * Called when the connector has something to process and is not already waiting to be.
+     */
+    void ready(AsyncConnector connector)
+    {
+        if(_handler == null)
+        {
+            _readyConnectors.add(connector);
+            wakeup();
+        }
+        else
+        {
+            connector.service(_handler);
+        }
+    }
+
+    void removeListener(Listener listener)
+    {
+        _listeners.remove(listener);
+    }
+
+    void removeConnector(Connector connector)
+    {
+        _connectors.remove(connector);
+    }
+
+    Logger getLogger()
+    {
+        return _logger;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.nio2;
+
+import java.io.IOException;
+import java.nio.channels.AsynchronousServerSocketChannel;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.CompletionHandler;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+
+import org.apache.qpid.proton.driver.Connector;
+import org.apache.qpid.proton.driver.Listener;
+
+/**
+ * Keeps one accept in flight, queueing each accepted channel until {@link #accept()} takes it.
+ */
+class AsyncListener<C> implements Listener<C>, CompletionHandler<AsynchronousSocketChannel, Void>
+{
+    private final AsyncDriver _driver;
+    private final AsynchronousServerSocketChannel _channel;
+    private final C _context;
+    private final Queue<AsynchronousSocketChannel> _accepted = new ConcurrentLinkedQueue<AsynchronousSocketChannel>();
+
+    AsyncListener(AsyncDriver driver, AsynchronousServerSocketChannel channel, C context)
+    {
+        _driver = driver;
+        _channel = channel;
+        _context = context;
+    }
+
+    void start()
+    {
+        _channel.accept(null, this);
+    }
+
+    public void completed(AsynchronousSocketChannel channel, Void attachment)
+    {
+        _accepted.add(channel);
+        if(_channel.isOpen())
+        {
+            _channel.accept(null, this);
+        }
+        _driver.accepted(this);
+    }
+
+    public void failed(Throwable e, Void attachment)
+    {
+        if(_channel.isOpen())
+        {
+            _driver.getLogger().log(Level.SEVERE, "Exception when accepting connection", e);
+            _channel.accept(null, this);
+        }
+    }
+
+    /**
+     * @return a connector for the next accepted connection, or null if there is none
+     */
+    public Connector<C> accept()
+    {
+        AsynchronousSocketChannel channel = _accepted.poll();
+        if(channel == null)
+        {
+            return null;
+        }
+        return _driver.createServerConnector(channel, _context, this);
+    }
+
+    public C getContext()
+    {
+        return _context;
+    }
+
+    public void close() throws IOException
+    {
+        _driver.removeListener(this);
+        _channel.close();
+        AsynchronousSocketChannel channel;
+        while((channel = _accepted.poll()) != null)
+        {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.nio2;
+
+import static org.apache.qpid.proton.driver.impl.LoopbackPeer.HOST;
+import static org.apache.qpid.proton.driver.impl.LoopbackPeer.MESSAGE;
+import static org.apache.qpid.proton.driver.impl.LoopbackPeer.TIMEOUT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.qpid.proton.driver.Connector;
+import org.apache.qpid.proton.driver.impl.LoopbackPeer;
+import org.junit.After;
+import org.junit.Test;
+
+public class AsyncDriverTest
+{
+    private static AsyncDriver.Handler handler(final LoopbackPeer peer)
+    {
+        return new AsyncDriver.Handler()
+        {
+            public void opened(Connector connector)
+            {
+                peer.opened(connector);
+            }
+
+            public void process(Connector connector) throws IOException
+            {
+                peer.process(connector);
+            }
+        };
+    }
+
+    private final LoopbackPeer.Server _server = new LoopbackPeer.Server();
+    private AsyncDriver _serverDriver;
+    private LoopbackPeer.Loop _serverLoop;
+    private AsyncDriver _clientDriver;
+    private LoopbackPeer.Loop _clientLoop;
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if(_clientLoop != null)
+        {
+            assertNull(_clientLoop.stopLoop());
+        }
+        if(_serverLoop != null)
+        {
+            assertNull(_serverLoop.stopLoop());
+        }
+        _clientDriver.destroy();
+        _serverDriver.destroy();
+    }
+
+    @Test
+    public void testHandedOutConnectorsExchangeATransfer() throws Exception
+    {
+        int port = LoopbackPeer.freePort();
+        _serverDriver = new AsyncDriver();
+        _serverDriver.createListener(HOST, port, null);
+        _serverLoop = new LoopbackPeer.Loop(_serverDriver, _server);
+        _serverLoop.start();
+
+        LoopbackPeer.Client client = new LoopbackPeer.Client(true);
+        _clientDriver = new AsyncDriver();
+        client.opened(_clientDriver.createConnector(HOST, port, null));
+        _clientLoop = new LoopbackPeer.Loop(_clientDriver, client);
+        _clientLoop.start();
+
+        client.awaitSettled();
+        client.awaitClosed();
+        _server.awaitClosed();
+        assertEquals(Collections.singletonList(MESSAGE), _server.received());
+    }
+
+    @Test
+    public void testHandlersExchangeATransfer() throws Exception
+    {
+        int port = LoopbackPeer.freePort();
+        _serverDriver = new AsyncDriver(null, handler(_server));
+        _serverDriver.createListener(HOST, port, null);
+
+        LoopbackPeer.Client client = new LoopbackPeer.Client(true);
+        _clientDriver = new AsyncDriver(null, handler(client));
+        _clientDriver.createConnector(HOST, port, null);
+
+        client.awaitSettled();
+        client.awaitClosed();
+        _server.awaitClosed();
+        assertEquals(Collections.singletonList(MESSAGE), _server.received());
+    }
+
+    @Test
+    public void testDestroyLeavesTheCloseToTheServicingThread() throws Exception
+    {
+        final CountDownLatch processing = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        final AtomicReference<Connector> serverConnector = new AtomicReference<Connector>();
+        int port = LoopbackPeer.freePort();
+        _serverDriver = new AsyncDriver(null, new AsyncDriver.Handler()
+        {
+            public void opened(Connector connector)
+            {
+                serverConnector.set(connector);
+                _server.opened(connector);
+            }
+
+            public void process(Connector connector) throws IOException
+            {
+                _server.process(connector);
+                if(connector.isClosed())
+                {
+                    closed.countDown();
+                }
+                else if(!_server.received().isEmpty() && processing.getCount() > 0)
+                {
+                    // holds the completion thread in the handler
+                    processing.countDown();
+                    try
+                    {
+                        resume.await(TIMEOUT, TimeUnit.SECONDS);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        _serverDriver.createListener(HOST, port, null);
+
+        LoopbackPeer.Client client = new LoopbackPeer.Client(true);
+        _clientDriver = new AsyncDriver(null, handler(client));
+        _clientDriver.createConnector(HOST, port, null);
+        assertTrue("message was not received", processing.await(TIMEOUT, TimeUnit.SECONDS));
+
+        _serverDriver.destroy();
+        assertFalse("connector was closed while its handler was processing it",
+                    serverConnector.get().isClosed());
+        resume.countDown();
+        assertTrue("connector was not closed", closed.await(TIMEOUT, TimeUnit.SECONDS));
+    }
+}
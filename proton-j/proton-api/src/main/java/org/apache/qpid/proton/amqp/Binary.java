@@ -115,7 +115,7 @@ public final class Binary
         StringBuilder str = new StringBuilder();
 
 
-        for (int i = _offset; i < _length; i++)
+        for (int i = _offset; i < _offset + _length; i++)
         {
             byte c = _data[i];
 
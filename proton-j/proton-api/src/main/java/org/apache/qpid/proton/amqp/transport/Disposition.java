@@ -29,12 +29,27 @@ import org.apache.qpid.proton.amqp.UnsignedInteger;
 public final class Disposition implements FrameBody
 {
     private Role _role = Role.SENDER;
-    private UnsignedInteger _first;
-    private UnsignedInteger _last;
+    // unsigned ints are held as longs, -1 when not set, as in Transfer
+    private long _first = -1;
+    private long _last = -1;
     private boolean _settled;
     private DeliveryState _state;
     private boolean _batchable;
 
+    public Disposition()
+    {
+    }
+
+    public Disposition(Disposition disposition)
+    {
+        _role = disposition._role;
+        _first = disposition._first;
+        _last = disposition._last;
+        _settled = disposition._settled;
+        _state = disposition._state;
+        _batchable = disposition._batchable;
+    }
+
     public Role getRole()
     {
         return _role;
@@ -51,7 +66,7 @@ public final class Disposition implements FrameBody
 
     public UnsignedInteger getFirst()
     {
-        return _first;
+        return _first < 0 ? null : UnsignedInteger.valueOf((int) _first);
     }
 
     public void setFirst(UnsignedInteger first)
@@ -61,17 +76,37 @@ public final class Disposition implements FrameBody
             throw new NullPointerException("the first field is mandatory");
         }
 
-        _first = first;
+        _first = first.longValue();
+    }
+
+    public long getFirstValue()
+    {
+        return _first;
+    }
+
+    public void setFirstValue(long first)
+    {
+        _first = UnsignedInts.checkMandatory(first, "first");
     }
 
     public UnsignedInteger getLast()
     {
-        return _last;
+        return _last < 0 ? null : UnsignedInteger.valueOf((int) _last);
     }
 
     public void setLast(UnsignedInteger last)
     {
-        _last = last;
+        _last = last == null ? -1 : last.longValue();
+    }
+
+    public long getLastValue()
+    {
+        return _last;
+    }
+
+    public void setLastValue(long last)
+    {
+        _last = UnsignedInts.checkUnsigned(last);
     }
 
     public boolean getSettled()
@@ -114,8 +149,8 @@ public final class Disposition implements FrameBody
     {
         return "Disposition{" +
                "role=" + _role +
-               ", first=" + _first +
-               ", last=" + _last +
+               ", first=" + getFirst() +
+               ", last=" + getLast() +
                ", settled=" + _settled +
                ", state=" + _state +
                ", batchable=" + _batchable +
@@ -30,31 +30,61 @@ import org.apache.qpid.proton.amqp.UnsignedInteger;
 
 public final class Flow implements FrameBody
 {
-    private UnsignedInteger _nextIncomingId;
-    private UnsignedInteger _incomingWindow;
-    private UnsignedInteger _nextOutgoingId;
-    private UnsignedInteger _outgoingWindow;
-    private UnsignedInteger _handle;
-    private UnsignedInteger _deliveryCount;
-    private UnsignedInteger _linkCredit;
-    private UnsignedInteger _available;
+    // unsigned ints are held as longs, -1 when not set, as in Transfer
+    private long _nextIncomingId = -1;
+    private long _incomingWindow = -1;
+    private long _nextOutgoingId = -1;
+    private long _outgoingWindow = -1;
+    private long _handle = -1;
+    private long _deliveryCount = -1;
+    private long _linkCredit = -1;
+    private long _available = -1;
     private boolean _drain;
     private boolean _echo;
     private Map _properties;
 
+    public Flow()
+    {
+    }
+
+    public Flow(Flow flow)
+    {
+        _nextIncomingId = flow._nextIncomingId;
+        _incomingWindow = flow._incomingWindow;
+        _nextOutgoingId = flow._nextOutgoingId;
+        _outgoingWindow = flow._outgoingWindow;
+        _handle = flow._handle;
+        _deliveryCount = flow._deliveryCount;
+        _linkCredit = flow._linkCredit;
+        _available = flow._available;
+        _drain = flow._drain;
+        _echo = flow._echo;
+        _properties = flow._properties;
+    }
+
     public UnsignedInteger getNextIncomingId()
     {
-        return _nextIncomingId;
+        return _nextIncomingId < 0 ? null : UnsignedInteger.valueOf((int) _nextIncomingId);
     }
 
     public void setNextIncomingId(UnsignedInteger nextIncomingId)
     {
-        _nextIncomingId = nextIncomingId;
+        _nextIncomingId = nextIncomingId == null ? -1 : nextIncomingId.longValue();
+    }
+
+    public long getNextIncomingIdValue()
+    {
+        return _nextIncomingId;
+    }
+
+    public void setNextIncomingIdValue(long nextIncomingId)
+    {
+        _nextIncomingId = UnsignedInts.checkUnsigned(nextIncomingId);
     }
 
     public UnsignedInteger getIncomingWindow()
     {
-        return _incomingWindow;
+        return _incomingWindow < 0 ? null : UnsignedInteger.valueOf((int) _incomingWindow);
     }
 
     public void setIncomingWindow(UnsignedInteger incomingWindow)
@@ -64,12 +94,22 @@ public final class Flow implements FrameBody
             throw new NullPointerException("the incoming-window field is mandatory");
         }
 
-        _incomingWindow = incomingWindow;
+        _incomingWindow = incomingWindow.longValue();
+    }
+
+    public long getIncomingWindowValue()
+    {
+        return _incomingWindow;
+    }
+
+    public void setIncomingWindowValue(long incomingWindow)
+    {
+        _incomingWindow = UnsignedInts.checkMandatory(incomingWindow, "incoming-window");
     }
 
     public UnsignedInteger getNextOutgoingId()
     {
-        return _nextOutgoingId;
+        return _nextOutgoingId < 0 ? null : UnsignedInteger.valueOf((int) _nextOutgoingId);
     }
 
     public void setNextOutgoingId(UnsignedInteger nextOutgoingId)
@@ -79,12 +119,22 @@ public final class Flow implements FrameBody
             throw new NullPointerException("the next-outgoing-id field is mandatory");
         }
 
-        _nextOutgoingId = nextOutgoingId;
+        _nextOutgoingId = nextOutgoingId.longValue();
+    }
+
+    public long getNextOutgoingIdValue()
+    {
+        return _nextOutgoingId;
+    }
+
+    public void setNextOutgoingIdValue(long nextOutgoingId)
+    {
+        _nextOutgoingId = UnsignedInts.checkMandatory(nextOutgoingId, "next-outgoing-id");
     }
 
     public UnsignedInteger getOutgoingWindow()
     {
-        return _outgoingWindow;
+        return _outgoingWindow < 0 ? null : UnsignedInteger.valueOf((int) _outgoingWindow);
     }
 
     public void setOutgoingWindow(UnsignedInteger outgoingWindow)
@@ -94,47 +144,97 @@ public final class Flow implements FrameBody
             throw new NullPointerException("the outgoing-window field is mandatory");
         }
 
-        _outgoingWindow = outgoingWindow;
+        _outgoingWindow = outgoingWindow.longValue();
+    }
+
+    public long getOutgoingWindowValue()
+    {
+        return _outgoingWindow;
+    }
+
+    public void setOutgoingWindowValue(long outgoingWindow)
+    {
+        _outgoingWindow = UnsignedInts.checkMandatory(outgoingWindow, "outgoing-window");
     }
 
     public UnsignedInteger getHandle()
     {
-        return _handle;
+        return _handle < 0 ? null : UnsignedInteger.valueOf((int) _handle);
     }
 
     public void setHandle(UnsignedInteger handle)
     {
-        _handle = handle;
+        _handle = handle == null ? -1 : handle.longValue();
+    }
+
+    public long getHandleValue()
+    {
+        return _handle;
+    }
+
+    public void setHandleValue(long handle)
+    {
+        _handle = UnsignedInts.checkUnsigned(handle);
     }
 
     public UnsignedInteger getDeliveryCount()
     {
-        return _deliveryCount;
+        return _deliveryCount < 0 ? null : UnsignedInteger.valueOf((int) _deliveryCount);
     }
 
     public void setDeliveryCount(UnsignedInteger deliveryCount)
     {
-        _deliveryCount = deliveryCount;
+        _deliveryCount = deliveryCount == null ? -1 : deliveryCount.longValue();
+    }
+
+    public long getDeliveryCountValue()
+    {
+        return _deliveryCount;
+    }
+
+    public void setDeliveryCountValue(long deliveryCount)
+    {
+        _deliveryCount = UnsignedInts.checkUnsigned(deliveryCount);
     }
 
     public UnsignedInteger getLinkCredit()
     {
-        return _linkCredit;
+        return _linkCredit < 0 ? null : UnsignedInteger.valueOf((int) _linkCredit);
     }
 
     public void setLinkCredit(UnsignedInteger linkCredit)
     {
-        _linkCredit = linkCredit;
+        _linkCredit = linkCredit == null ? -1 : linkCredit.longValue();
+    }
+
+    public long getLinkCreditValue()
+    {
+        return _linkCredit;
+    }
+
+    public void setLinkCreditValue(long linkCredit)
+    {
+        _linkCredit = UnsignedInts.checkUnsigned(linkCredit);
     }
 
     public UnsignedInteger getAvailable()
     {
-        return _available;
+        return _available < 0 ? null : UnsignedInteger.valueOf((int) _available);
     }
 
     public void setAvailable(UnsignedInteger available)
     {
-        _available = available;
+        _available = available == null ? -1 : available.longValue();
+    }
+
+    public long getAvailableValue()
+    {
+        return _available;
+    }
+
+    public void setAvailableValue(long available)
+    {
+        _available = UnsignedInts.checkUnsigned(available);
     }
 
     public boolean getDrain()
@@ -176,14 +276,14 @@ public final class Flow implements FrameBody
     public String toString()
     {
         return "Flow{" +
-               "nextIncomingId=" + _nextIncomingId +
-               ", incomingWindow=" + _incomingWindow +
-               ", nextOutgoingId=" + _nextOutgoingId +
-               ", outgoingWindow=" + _outgoingWindow +
-               ", handle=" + _handle +
-               ", deliveryCount=" + _deliveryCount +
-               ", linkCredit=" + _linkCredit +
-               ", available=" + _available +
+               "nextIncomingId=" + getNextIncomingId() +
+               ", incomingWindow=" + getIncomingWindow() +
+               ", nextOutgoingId=" + getNextOutgoingId() +
+               ", outgoingWindow=" + getOutgoingWindow() +
+               ", handle=" + getHandle() +
+               ", deliveryCount=" + getDeliveryCount() +
+               ", linkCredit=" + getLinkCredit() +
+               ", available=" + getAvailable() +
                ", drain=" + _drain +
                ", echo=" + _echo +
                ", properties=" + _properties +
@@ -28,10 +28,12 @@ import org.apache.qpid.proton.amqp.UnsignedInteger;
 
 public final class Transfer implements FrameBody
 {
-    private UnsignedInteger _handle;
-    private UnsignedInteger _deliveryId;
+    // the unsigned int fields are held as longs, with -1 for a field that is not set, and have
+    // primitive accessors alongside the UnsignedInteger ones so the transport need not box them
+    private long _handle = -1;
+    private long _deliveryId = -1;
     private Binary _deliveryTag;
-    private UnsignedInteger _messageFormat;
+    private long _messageFormat = -1;
     private Boolean _settled;
     private boolean _more;
     private ReceiverSettleMode _rcvSettleMode;
@@ -40,9 +42,28 @@ public final class Transfer implements FrameBody
     private boolean _aborted;
     private boolean _batchable;
 
+    public Transfer()
+    {
+    }
+
+    public Transfer(Transfer transfer)
+    {
+        _handle = transfer._handle;
+        _deliveryId = transfer._deliveryId;
+        _deliveryTag = transfer._deliveryTag;
+        _messageFormat = transfer._messageFormat;
+        _settled = transfer._settled;
+        _more = transfer._more;
+        _rcvSettleMode = transfer._rcvSettleMode;
+        _state = transfer._state;
+        _resume = transfer._resume;
+        _aborted = transfer._aborted;
+        _batchable = transfer._batchable;
+    }
+
     public UnsignedInteger getHandle()
     {
-        return _handle;
+        return _handle < 0 ? null : UnsignedInteger.valueOf((int) _handle);
     }
 
     public void setHandle(UnsignedInteger handle)
@@ -52,17 +73,37 @@ public final class Transfer implements FrameBody
             throw new NullPointerException("the handle field is mandatory");
         }
 
-        _handle = handle;
+        _handle = handle.longValue();
+    }
+
+    public long getHandleValue()
+    {
+        return _handle;
+    }
+
+    public void setHandleValue(long handle)
+    {
+        _handle = UnsignedInts.checkMandatory(handle, "handle");
     }
 
     public UnsignedInteger getDeliveryId()
     {
-        return _deliveryId;
+        return _deliveryId < 0 ? null : UnsignedInteger.valueOf((int) _deliveryId);
     }
 
     public void setDeliveryId(UnsignedInteger deliveryId)
     {
-        _deliveryId = deliveryId;
+        _deliveryId = deliveryId == null ? -1 : deliveryId.longValue();
+    }
+
+    public long getDeliveryIdValue()
+    {
+        return _deliveryId;
+    }
+
+    public void setDeliveryIdValue(long deliveryId)
+    {
+        _deliveryId = UnsignedInts.checkUnsigned(deliveryId);
     }
 
     public Binary getDeliveryTag()
@@ -77,12 +118,22 @@ public final class Transfer implements FrameBody
 
     public UnsignedInteger getMessageFormat()
     {
-        return _messageFormat;
+        return _messageFormat < 0 ? null : UnsignedInteger.valueOf((int) _messageFormat);
     }
 
     public void setMessageFormat(UnsignedInteger messageFormat)
     {
-        _messageFormat = messageFormat;
+        _messageFormat = messageFormat == null ? -1 : messageFormat.longValue();
+    }
+
+    public long getMessageFormatValue()
+    {
+        return _messageFormat;
+    }
+
+    public void setMessageFormatValue(long messageFormat)
+    {
+        _messageFormat = UnsignedInts.checkUnsigned(messageFormat);
     }
 
     public Boolean getSettled()
@@ -164,10 +215,10 @@ public final class Transfer implements FrameBody
     public String toString()
     {
         return "Transfer{" +
-               "handle=" + _handle +
-               ", deliveryId=" + _deliveryId +
+               "handle=" + getHandle() +
+               ", deliveryId=" + getDeliveryId() +
                ", deliveryTag=" + _deliveryTag +
-               ", messageFormat=" + _messageFormat +
+               ", messageFormat=" + getMessageFormat() +
                ", settled=" + _settled +
                ", more=" + _more +
                ", rcvSettleMode=" + _rcvSettleMode +
@@ -0,0 +1,51 @@
+
+/*
+*
+* Licensed to the Apache Software Foundation (ASF) under one
+* or more contributor license agreements.  See the NOTICE file
+* distributed with this work for additional information
+* regarding copyright ownership.  The ASF licenses this file
+* to you under the Apache License, Version 2.0 (the
+* "License"); you may not use this file except in compliance
+* with the License.  You may obtain a copy of the License at
+*
+*   http://www.apache.org/licenses/LICENSE-2.0
+*
+* Unless required by applicable law or agreed to in writing,
+* software distributed under the License is distributed on an
+* "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+* KIND, either express or implied.  See the License for the
+* specific language governing permissions and limitations
+* under the License.
+*
+*/
+
+package org.apache.qpid.proton.amqp.transport;
+
+/**
+ * Checks for the unsigned int fields that performatives hold as longs, with -1 for none.
+ */
+final class UnsignedInts
+{
+    private UnsignedInts()
+    {
+    }
+
+    static long checkUnsigned(long value)
+    {
+        if(value < -1 || value > 0xFFFFFFFFL)
+        {
+            throw new IllegalArgumentException("Value " + value + " is not an unsigned int, or -1 for none");
+        }
+        return value;
+    }
+
+    static long checkMandatory(long value, String field)
+    {
+        if(value == -1)
+        {
+            throw new IllegalArgumentException("the " + field + " field is mandatory");
+        }
+        return checkUnsigned(value);
+    }
+}
@@ -20,6 +20,8 @@
  */
 package org.apache.qpid.proton.engine;
 
+import java.nio.ByteBuffer;
+
 
 /**
  * Transport
@@ -56,6 +58,58 @@ public interface Transport extends Endpoint
      */
     public int output(byte[] dest, int offset, int size);
 
+    /**
+     * @return the number of bytes that may currently be written into {@link #tail()},
+     * or {@link #END_OF_STREAM} if the tail has been closed
+     */
+    public int capacity();
+
+    /**
+     * Returns the transport's own input buffer, positioned at the first free byte.
+     *
+     * Callers may read directly into this buffer (e.g. from a channel) and must then
+     * call {@link #process()} to have the transport consume what was written. The buffer
+     * must not be retained across calls to {@link #process()}.
+     *
+     * @return the input buffer, with {@link ByteBuffer#remaining()} equal to {@link #capacity()}
+     */
+    public ByteBuffer tail();
+
+    /**
+     * Consumes the bytes written into {@link #tail()} since the last call.
+     */
+    public void process();
+
+    /**
+     * Signals that no further input will arrive, processing any bytes still held in {@link #tail()}.
+     *
+     * @throws TransportException if the connection has not been closed by the remote peer
+     */
+    public void closeTail();
+
+    /**
+     * Has the transport produce as much output as its output buffer allows.
+     *
+     * @return the number of bytes available from {@link #head()}
+     */
+    public int pending();
+
+    /**
+     * Returns a read-only view of the output produced by the last call to {@link #pending()}.
+     *
+     * The returned buffer is positioned at the first pending byte. Callers write from it
+     * (e.g. to a channel) and then report what was consumed through {@link #pop(int)}.
+     * Its position is not tracked by the transport, and it is only valid until the next
+     * call to {@link #pending()} or {@link #pop(int)}.
+     */
+    public ByteBuffer head();
+
+    /**
+     * Removes the given number of bytes from the front of {@link #head()}.
+     *
+     * @param bytes the number of output bytes consumed by the caller
+     */
+    public void pop(int bytes);
 
     Sasl sasl();
 
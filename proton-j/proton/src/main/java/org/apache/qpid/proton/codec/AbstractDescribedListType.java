@@ -0,0 +1,100 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.codec;
+
+import java.util.List;
+
+/**
+ * A described type encoded as a list of fields, such as a performative, which writes its fields
+ * straight to the encoder rather than through a {@link List} view of them.
+ *
+ * The list is first written with a one byte size, which is filled in once the fields have been
+ * written. In the rare case that they do not fit, they are written again with a four byte size,
+ * so the bytes are the same as writing the list view.
+ */
+public abstract class AbstractDescribedListType<T> extends AbstractDescribedType<T, List>
+{
+    protected AbstractDescribedListType(EncoderImpl encoder)
+    {
+        super(encoder);
+    }
+
+    /**
+     * @return the number of fields to write, leaving off any trailing fields that are not set
+     */
+    protected abstract int getFieldCount(T val);
+
+    /**
+     * Writes the first count fields of the value, in order.
+     */
+    protected abstract void writeFields(T val, int count, EncoderImpl encoder);
+
+    /**
+     * Writes a uint field held as a long, or null if it is -1.
+     */
+    protected static void writeUnsignedInteger(final EncoderImpl encoder, final long value)
+    {
+        if(value < 0)
+        {
+            encoder.writeNull();
+        }
+        else
+        {
+            encoder.writeUnsignedInteger((int) value);
+        }
+    }
+
+    @Override
+    public void write(final T val)
+    {
+        final EncoderImpl encoder = getEncoder();
+        encoder.writeRaw(EncodingCodes.DESCRIBED_TYPE_INDICATOR);
+        encoder.writeUnsignedLong(getDescriptor());
+
+        final int count = getFieldCount(val);
+        if(count == 0)
+        {
+            encoder.writeRaw(EncodingCodes.LIST0);
+            return;
+        }
+
+        final int start = encoder.getPosition();
+        encoder.writeRaw(EncodingCodes.LIST8);
+        encoder.writeRaw((byte) 0);
+        encoder.writeRaw((byte) count);
+        writeFields(val, count, encoder);
+        final int size = encoder.getPosition() - start - 2;
+        if(size < 255)
+        {
+            encoder.writeRawAt(start + 1, (byte) size);
+        }
+        else
+        {
+            encoder.setPosition(start);
+            encoder.writeRaw(EncodingCodes.LIST32);
+            final int sizePosition = encoder.getPosition();
+            encoder.writeRaw(0);
+            encoder.writeRaw(count);
+            writeFields(val, count, encoder);
+            encoder.writeRawAt(sizePosition, encoder.getPosition() - sizePosition - 4);
+        }
+    }
+}
@@ -39,6 +39,11 @@ abstract public class AbstractDescribedType<T,M> implements AMQPType<T>
 
     abstract protected UnsignedLong getDescriptor();
 
+    protected EncoderImpl getEncoder()
+    {
+        return _encoder;
+    }
+
 
     public TypeEncoding<T> getEncoding(final T val)
     {
@@ -70,9 +75,17 @@ abstract public class AbstractDescribedType<T,M> implements AMQPType<T>
 
     public void write(final T val)
     {
-        TypeEncoding<T> encoding = getEncoding(val);
-        encoding.writeConstructor();
-        encoding.writeValue(val);
+        _encoder.writeRaw(EncodingCodes.DESCRIBED_TYPE_INDICATOR);
+        _encoder.writeUnsignedLong(getDescriptor());
+        M asUnderlying = wrap(val);
+        _encoder.getType(asUnderlying).write(asUnderlying);
+    }
+
+    int getEncodedSizeUpTo(final T val, final int limit)
+    {
+        TypeEncoding<UnsignedLong> descriptorEncoding = _encoder.getType(getDescriptor()).getEncoding(getDescriptor());
+        int descriptorSize = 1 + descriptorEncoding.getConstructorSize() + descriptorEncoding.getValueSize(getDescriptor());
+        return descriptorSize + _encoder.getEncodedSizeUpTo(wrap(val), limit - descriptorSize);
     }
 
     private class DynamicDescribedTypeEncoding implements TypeEncoding<T>
@@ -47,7 +47,11 @@ public class ArrayType implements PrimitiveType<Object[]>
         void writeValue(double[] a);
         void writeValue(char[] a);
 
-        void setValue(Object[] val, TypeEncoding encoder, int size);
+        /**
+         * Writes the size, count and elements of an array whose element encoding and encoded
+         * size (excluding size and count) have already been calculated.
+         */
+        void writeValue(Object[] val, TypeEncoding underlyingEncoder, int size);
 
         int getSizeBytes();
 
@@ -93,11 +97,14 @@ public class ArrayType implements PrimitiveType<Object[]>
     {
         TypeEncoding encoder = calculateEncoder(val,_encoder);
         int size = calculateSize(val, encoder);
-        ArrayEncoding arrayEncoding = (val.length > 255 || size > 254)
-                                      ? _arrayEncoding
-                                      : _shortArrayEncoding;
-        arrayEncoding.setValue(val, encoder, size);
-        return arrayEncoding;
+        return getEncoding(val, size);
+    }
+
+    private ArrayEncoding getEncoding(final Object[] val, final int size)
+    {
+        return (val.length > 255 || size > 254)
+                   ? _arrayEncoding
+                   : _shortArrayEncoding;
     }
 
     private static TypeEncoding calculateEncoder(final Object[] val, final EncoderImpl encoder)
@@ -295,9 +302,11 @@ public class ArrayType implements PrimitiveType<Object[]>
 
     public void write(final Object[] val)
     {
-        ArrayEncoding encoding = getEncoding(val);
+        TypeEncoding underlyingEncoder = calculateEncoder(val, _encoder);
+        int size = calculateSize(val, underlyingEncoder);
+        ArrayEncoding encoding = getEncoding(val, size);
         encoding.writeConstructor();
-        encoding.writeValue(val);
+        encoding.writeValue(val, underlyingEncoder, size);
     }
 
     public void write(boolean[] a)
@@ -438,10 +447,6 @@ public class ArrayType implements PrimitiveType<Object[]>
             implements ArrayEncoding
     {
 
-        private Object[] _val;
-        private TypeEncoding _underlyingEncoder;
-        private int _size;
-
         AllArrayEncoding(final EncoderImpl encoder, final DecoderImpl decoder)
         {
             super(encoder, decoder);
@@ -468,10 +473,7 @@ public class ArrayType implements PrimitiveType<Object[]>
                                   + a.length*underlyingEncoder.getValueSize(null));
             getEncoder().writeRaw(a.length);
             underlyingEncoder.writeConstructor();
-            for(byte b : a)
-            {
-                underlyingEncoder.writeValue(b);
-            }
+            getEncoder().writeRaw(a, 0, a.length);
         }
 
         public void writeValue(final short[] a)
@@ -481,10 +483,7 @@ public class ArrayType implements PrimitiveType<Object[]>
                                   + a.length*underlyingEncoder.getValueSize(null));
             getEncoder().writeRaw(a.length);
             underlyingEncoder.writeConstructor();
-            for(short b : a)
-            {
-                underlyingEncoder.writeValue(b);
-            }
+            getEncoder().writeRaw(a);
         }
 
         public void writeValue(final int[] a)
@@ -495,10 +494,7 @@ public class ArrayType implements PrimitiveType<Object[]>
                                   + a.length*underlyingEncoder.getValueSize(null));
             getEncoder().writeRaw(a.length);
             underlyingEncoder.writeConstructor();
-            for(int b : a)
-            {
-                underlyingEncoder.writeValue(b);
-            }
+            writeValues(a, underlyingEncoder);
         }
 
         public void writeValue(final long[] a)
@@ -509,10 +505,7 @@ public class ArrayType implements PrimitiveType<Object[]>
                                   + a.length*underlyingEncoder.getValueSize(null));
             getEncoder().writeRaw(a.length);
             underlyingEncoder.writeConstructor();
-            for(long b : a)
-            {
-                underlyingEncoder.writeValue(b);
-            }
+            writeValues(a, underlyingEncoder);
         }
 
         public void writeValue(final float[] a)
@@ -523,10 +516,7 @@ public class ArrayType implements PrimitiveType<Object[]>
                                   + a.length*underlyingEncoder.getValueSize(null));
             getEncoder().writeRaw(a.length);
             underlyingEncoder.writeConstructor();
-            for(float b : a)
-            {
-                underlyingEncoder.writeValue(b);
-            }
+            getEncoder().writeRaw(a);
         }
 
         public void writeValue(final double[] a)
@@ -537,10 +527,7 @@ public class ArrayType implements PrimitiveType<Object[]>
                                   + a.length*underlyingEncoder.getValueSize(null));
             getEncoder().writeRaw(a.length);
             underlyingEncoder.writeConstructor();
-            for(double b : a)
-            {
-                underlyingEncoder.writeValue(b);
-            }
+            getEncoder().writeRaw(a);
         }
 
         public void writeValue(final char[] a)
@@ -557,28 +544,20 @@ public class ArrayType implements PrimitiveType<Object[]>
             }
         }
 
-        public void setValue(final Object[] val, final TypeEncoding encoder, final int size)
+        public void writeValue(final Object[] val, final TypeEncoding underlyingEncoder, final int size)
         {
-            _val = val;
-            _underlyingEncoder = encoder;
-            _size = size;
+            getEncoder().writeRaw(4 + size);
+            writeElements(val, underlyingEncoder);
         }
 
         @Override
         protected void writeEncodedValue(final Object[] val)
         {
-            TypeEncoding underlyingEncoder;
+            writeElements(val, calculateEncoder(val, getEncoder()));
+        }
 
-            if(_val != val)
-            {
-                _val = val;
-                _underlyingEncoder = underlyingEncoder = calculateEncoder(val, getEncoder());
-                _size =  calculateSize(val, underlyingEncoder);
-            }
-            else
-            {
-                underlyingEncoder = _underlyingEncoder;
-            }
+        private void writeElements(final Object[] val, final TypeEncoding underlyingEncoder)
+        {
             getEncoder().writeRaw(val.length);
             underlyingEncoder.writeConstructor();
             for(Object o : val)
@@ -590,13 +569,7 @@ public class ArrayType implements PrimitiveType<Object[]>
         @Override
         protected int getEncodedValueSize(final Object[] val)
         {
-            if(_val != val)
-            {
-                _val = val;
-                _underlyingEncoder = calculateEncoder(val, getEncoder());
-                _size = calculateSize(val, _underlyingEncoder);
-            }
-            return 4 + _size;
+            return 4 + calculateSize(val, calculateEncoder(val, getEncoder()));
         }
 
         @Override
@@ -642,10 +615,6 @@ public class ArrayType implements PrimitiveType<Object[]>
             implements ArrayEncoding
     {
 
-        private Object[] _val;
-        private TypeEncoding _underlyingEncoder;
-        private int _size;
-
         ShortArrayEncoding(final EncoderImpl encoder, final DecoderImpl decoder)
         {
             super(encoder, decoder);
@@ -672,10 +641,7 @@ public class ArrayType implements PrimitiveType<Object[]>
                                   + a.length*underlyingEncoder.getValueSize(null)));
             getEncoder().writeRaw((byte)a.length);
             underlyingEncoder.writeConstructor();
-            for(byte b : a)
-            {
-                underlyingEncoder.writeValue(b);
-            }
+            getEncoder().writeRaw(a, 0, a.length);
         }
 
         public void writeValue(final short[] a)
@@ -685,10 +651,7 @@ public class ArrayType implements PrimitiveType<Object[]>
                                   + a.length*underlyingEncoder.getValueSize(null)));
             getEncoder().writeRaw((byte)a.length);
             underlyingEncoder.writeConstructor();
-            for(short b : a)
-            {
-                underlyingEncoder.writeValue(b);
-            }
+            getEncoder().writeRaw(a);
         }
 
         public void writeValue(final int[] a)
@@ -699,10 +662,7 @@ public class ArrayType implements PrimitiveType<Object[]>
                                   + a.length*underlyingEncoder.getValueSize(null)));
             getEncoder().writeRaw((byte)a.length);
             underlyingEncoder.writeConstructor();
-            for(int b : a)
-            {
-                underlyingEncoder.writeValue(b);
-            }
+            writeValues(a, underlyingEncoder);
         }
 
         public void writeValue(final long[] a)
@@ -713,10 +673,7 @@ public class ArrayType implements PrimitiveType<Object[]>
                                   + a.length*underlyingEncoder.getValueSize(null)));
             getEncoder().writeRaw((byte)a.length);
             underlyingEncoder.writeConstructor();
-            for(long b : a)
-            {
-                underlyingEncoder.writeValue(b);
-            }
+            writeValues(a, underlyingEncoder);
         }
 
         public void writeValue(final float[] a)
@@ -727,10 +684,7 @@ public class ArrayType implements PrimitiveType<Object[]>
                                   + a.length*underlyingEncoder.getValueSize(null)));
             getEncoder().writeRaw((byte)a.length);
             underlyingEncoder.writeConstructor();
-            for(float b : a)
-            {
-                underlyingEncoder.writeValue(b);
-            }
+            getEncoder().writeRaw(a);
         }
 
         public void writeValue(final double[] a)
@@ -741,10 +695,7 @@ public class ArrayType implements PrimitiveType<Object[]>
                                   + a.length*underlyingEncoder.getValueSize(null)));
             getEncoder().writeRaw((byte)a.length);
             underlyingEncoder.writeConstructor();
-            for(double b : a)
-            {
-                underlyingEncoder.writeValue(b);
-            }
+            getEncoder().writeRaw(a);
         }
 
         public void writeValue(final char[] a)
@@ -761,28 +712,20 @@ public class ArrayType implements PrimitiveType<Object[]>
             }
         }
 
-        public void setValue(final Object[] val, final TypeEncoding encoder, final int size)
+        public void writeValue(final Object[] val, final TypeEncoding underlyingEncoder, final int size)
         {
-            _val = val;
-            _underlyingEncoder = encoder;
-            _size = size;
+            getEncoder().writeRaw((byte)(1 + size));
+            writeElements(val, underlyingEncoder);
         }
 
         @Override
         protected void writeEncodedValue(final Object[] val)
         {
-            TypeEncoding underlyingEncoder;
+            writeElements(val, calculateEncoder(val, getEncoder()));
+        }
 
-            if(_val != val)
-            {
-                _val = val;
-                _underlyingEncoder = underlyingEncoder = calculateEncoder(val, getEncoder());
-                _size =  calculateSize(val, underlyingEncoder);
-            }
-            else
-            {
-                underlyingEncoder = _underlyingEncoder;
-            }
+        private void writeElements(final Object[] val, final TypeEncoding underlyingEncoder)
+        {
             getEncoder().writeRaw((byte)val.length);
             underlyingEncoder.writeConstructor();
             for(Object o : val)
@@ -850,13 +793,7 @@ public class ArrayType implements PrimitiveType<Object[]>
         @Override
         protected int getEncodedValueSize(final Object[] val)
         {
-            if(_val != val)
-            {
-                _val = val;
-                _underlyingEncoder = calculateEncoder(val, getEncoder());
-                _size = calculateSize(val, _underlyingEncoder);
-            }
-            return 1 + _size;
+            return 1 + calculateSize(val, calculateEncoder(val, getEncoder()));
         }
 
         @Override
@@ -967,6 +904,39 @@ public class ArrayType implements PrimitiveType<Object[]>
         return _characterType.getCanonicalEncoding();
     }
 
+    // ints and longs are copied in bulk when written at their full width, and one at a time in
+    // the compact encodings of small values
+
+    private void writeValues(final int[] a, final IntegerType.IntegerEncoding underlyingEncoder)
+    {
+        if(underlyingEncoder.getEncodingCode() == EncodingCodes.INT)
+        {
+            _encoder.writeRaw(a);
+        }
+        else
+        {
+            for(int b : a)
+            {
+                underlyingEncoder.writeValue(b);
+            }
+        }
+    }
+
+    private void writeValues(final long[] a, final LongType.LongEncoding underlyingEncoder)
+    {
+        if(underlyingEncoder.getEncodingCode() == EncodingCodes.LONG)
+        {
+            _encoder.writeRaw(a);
+        }
+        else
+        {
+            for(long b : a)
+            {
+                underlyingEncoder.writeValue(b);
+            }
+        }
+    }
+
     private static Object[] decodeArray(final DecoderImpl decoder, final int count)
     {
         TypeConstructor constructor = decoder.readConstructor();
@@ -1012,27 +982,31 @@ public class ArrayType implements PrimitiveType<Object[]>
             }
             else if(constructor instanceof ByteType.ByteEncoding)
             {
-                return decodeByteArray((ByteType.ByteEncoding)constructor, count);
+                return decodeByteArray(decoder, count);
             }
             else if(constructor instanceof ShortType.ShortEncoding)
             {
-                return decodeShortArray((ShortType.ShortEncoding)constructor, count);
+                return decodeShortArray(decoder, count);
             }
             else if(constructor instanceof IntegerType.IntegerEncoding)
             {
-                return decodeIntArray((IntegerType.IntegerEncoding)constructor, count);
+                return decodeIntArray(decoder, (IntegerType.IntegerEncoding)constructor, count);
             }
             else if(constructor instanceof LongType.LongEncoding)
             {
-                return decodeLongArray((LongType.LongEncoding) constructor, count);
+                return decodeLongArray(decoder, (LongType.LongEncoding) constructor, count);
             }
             else if(constructor instanceof FloatType.FloatEncoding)
             {
-                return decodeFloatArray((FloatType.FloatEncoding) constructor, count);
+                return decodeFloatArray(decoder, count);
             }
             else if(constructor instanceof DoubleType.DoubleEncoding)
             {
-                return decodeDoubleArray((DoubleType.DoubleEncoding)constructor, count);
+                return decodeDoubleArray(decoder, count);
+            }
+            else if(constructor instanceof CharacterType.CharacterEncoding)
+            {
+                return decodeCharArray((CharacterType.CharacterEncoding) constructor, count);
             }
             else
             {
@@ -1059,32 +1033,47 @@ public class ArrayType implements PrimitiveType<Object[]>
         return array;
     }
 
-    private static byte[] decodeByteArray(ByteType.ByteEncoding constructor , final int count)
+    /**
+     * Checks that the buffer holds count elements of the given width before an array is made for
+     * them, so that a corrupt count fails rather than allocating a huge array.
+     */
+    private static void checkRemaining(final DecoderImpl decoder, final int count, final int width)
     {
-        byte[] array = new byte[count];
-
-        for(int i = 0; i < count; i++)
+        if(count < 0 || (long) count * width > decoder.getByteBuffer().remaining())
         {
-            array[i] = constructor.readPrimitiveValue();
+            throw new DecodeException("Array of " + count + " elements exceeds the bytes remaining");
         }
+    }
 
+    private static byte[] decodeByteArray(final DecoderImpl decoder, final int count)
+    {
+        checkRemaining(decoder, count, 1);
+        byte[] array = new byte[count];
+        decoder.readRaw(array, 0, count);
         return array;
     }
 
-    private static short[] decodeShortArray(ShortType.ShortEncoding constructor, final int count)
+    private static short[] decodeShortArray(final DecoderImpl decoder, final int count)
     {
+        checkRemaining(decoder, count, 2);
         short[] array = new short[count];
-
-        for(int i = 0; i < count; i++)
-        {
-            array[i] = constructor.readPrimitiveValue();
-        }
-
+        decoder.readRaw(array);
         return array;
     }
 
-    private static int[] decodeIntArray(IntegerType.IntegerEncoding constructor, final int count)
+    private static int[] decodeIntArray(final DecoderImpl decoder,
+                                        final IntegerType.IntegerEncoding constructor,
+                                        final int count)
     {
+        if(constructor.getEncodingCode() == EncodingCodes.INT)
+        {
+            checkRemaining(decoder, count, 4);
+            int[] array = new int[count];
+            decoder.readRaw(array);
+            return array;
+        }
+
+        checkRemaining(decoder, count, 1);
         int[] array = new int[count];
 
         for(int i = 0; i < count; i++)
@@ -1096,8 +1085,19 @@ public class ArrayType implements PrimitiveType<Object[]>
     }
 
 
-    private static long[] decodeLongArray(LongType.LongEncoding constructor, final int count)
+    private static long[] decodeLongArray(final DecoderImpl decoder,
+                                          final LongType.LongEncoding constructor,
+                                          final int count)
     {
+        if(constructor.getEncodingCode() == EncodingCodes.LONG)
+        {
+            checkRemaining(decoder, count, 8);
+            long[] array = new long[count];
+            decoder.readRaw(array);
+            return array;
+        }
+
+        checkRemaining(decoder, count, 1);
         long[] array = new long[count];
 
         for(int i = 0; i < count; i++)
@@ -1108,21 +1108,25 @@ public class ArrayType implements PrimitiveType<Object[]>
         return array;
     }
 
-    private static float[] decodeFloatArray(FloatType.FloatEncoding constructor, final int count)
+    private static float[] decodeFloatArray(final DecoderImpl decoder, final int count)
     {
+        checkRemaining(decoder, count, 4);
         float[] array = new float[count];
-
-        for(int i = 0; i < count; i++)
-        {
-            array[i] = constructor.readPrimitiveValue();
-        }
-
+        decoder.readRaw(array);
         return array;
     }
 
-    private static double[] decodeDoubleArray(DoubleType.DoubleEncoding constructor, final int count)
+    private static double[] decodeDoubleArray(final DecoderImpl decoder, final int count)
     {
+        checkRemaining(decoder, count, 8);
         double[] array = new double[count];
+        decoder.readRaw(array);
+        return array;
+    }
+
+    private static char[] decodeCharArray(final CharacterType.CharacterEncoding constructor, final int count)
+    {
+        char[] array = new char[count];
 
         for(int i = 0; i < count; i++)
         {
@@ -1131,9 +1135,5 @@ public class ArrayType implements PrimitiveType<Object[]>
 
         return array;
     }
-
-
-
-
 }
 
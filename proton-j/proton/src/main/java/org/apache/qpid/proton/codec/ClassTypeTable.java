@@ -0,0 +1,134 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.codec;
+
+/**
+ * The encoder's map from a value's class to its type, which is consulted for every value
+ * written.
+ *
+ * Classes are compared by identity in an open addressed table, so a lookup is a probe or two
+ * with no hashCode or equals calls. A class may be mapped to no type, so that the work of
+ * finding out that it has none is not repeated. Like the encoder that owns it, the table must
+ * only be used by one thread at a time.
+ */
+final class ClassTypeTable
+{
+    private static final Object NO_TYPE = new Object();
+
+    private Class[] _classes = new Class[64];
+    private Object[] _types = new Object[64];
+    private int _count;
+
+    private int indexOf(final Class clazz)
+    {
+        final int mask = _classes.length - 1;
+        int index = System.identityHashCode(clazz) & mask;
+        Class entry;
+        while((entry = _classes[index]) != clazz && entry != null)
+        {
+            index = (index + 1) & mask;
+        }
+        return index;
+    }
+
+    /**
+     * @return the type, or null if the class has none or has not been added
+     */
+    AMQPType get(final Class clazz)
+    {
+        final Object type = _types[indexOf(clazz)];
+        return type == NO_TYPE ? null : (AMQPType) type;
+    }
+
+    /**
+     * @return whether the class has been added, with or without a type
+     */
+    boolean contains(final Class clazz)
+    {
+        return _classes[indexOf(clazz)] != null;
+    }
+
+    /**
+     * Maps the class to the type, replacing any previous mapping.
+     *
+     * @param type the type, or null to record that the class has none
+     */
+    void put(final Class clazz, final AMQPType type)
+    {
+        int index = indexOf(clazz);
+        if(_classes[index] == null)
+        {
+            if((_count + 1) * 2 > _classes.length)
+            {
+                resize(_classes.length * 2);
+                index = indexOf(clazz);
+            }
+            _classes[index] = clazz;
+            _count++;
+        }
+        _types[index] = type == null ? NO_TYPE : type;
+    }
+
+    /**
+     * Forgets the class, so that its type is worked out again when next asked for.
+     */
+    void remove(final Class clazz)
+    {
+        int index = indexOf(clazz);
+        if(_classes[index] == null)
+        {
+            return;
+        }
+        _classes[index] = null;
+        _types[index] = null;
+        _count--;
+        // the entries after it in the same run are put back, so none is cut off from the slot
+        // its probe starts at
+        final int mask = _classes.length - 1;
+        for(index = (index + 1) & mask; _classes[index] != null; index = (index + 1) & mask)
+        {
+            final Class moved = _classes[index];
+            final Object type = _types[index];
+            _classes[index] = null;
+            _types[index] = null;
+            final int movedIndex = indexOf(moved);
+            _classes[movedIndex] = moved;
+            _types[movedIndex] = type;
+        }
+    }
+
+    private void resize(final int capacity)
+    {
+        final Class[] classes = _classes;
+        final Object[] types = _types;
+        _classes = new Class[capacity];
+        _types = new Object[capacity];
+        for(int i = 0; i < classes.length; i++)
+        {
+            if(classes[i] != null)
+            {
+                final int index = indexOf(classes[i]);
+                _classes[index] = classes[i];
+                _types[index] = types[i];
+            }
+        }
+    }
+}
@@ -20,13 +20,32 @@
  */
 package org.apache.qpid.proton.codec;
 
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.UUID;
+
 import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Decimal128;
+import org.apache.qpid.proton.amqp.Decimal32;
+import org.apache.qpid.proton.amqp.Decimal64;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.UnsignedByte;
 import org.apache.qpid.proton.amqp.UnsignedInteger;
 import org.apache.qpid.proton.amqp.UnsignedLong;
 import org.apache.qpid.proton.amqp.UnsignedShort;
 
+/**
+ * A tree of AMQP values with a cursor, equivalent to proton-c's pn_data_t.
+ *
+ * Values are put after the current node, and the put value becomes current. {@link #enter()}
+ * moves into the current compound value (list, map, array or described value) so its children
+ * can be put or read, and {@link #exit()} moves back out to it. {@link #next()} and
+ * {@link #prev()} move between siblings, and the get methods read the current node. A get of
+ * the wrong type returns zero, false or null, as with pn_data_t.
+ *
+ * Described values have two children, the descriptor and the value. A described array has
+ * its descriptor as its first child, which is not counted in {@link #getArray()}.
+ */
 public interface Data
 {
     enum Type
@@ -50,7 +69,18 @@ public interface Data
         ARRAY,
         LIST,
         MAP,
-        TYPE
+        /**
+         * @deprecated no value has this type; the element type of an array is given to
+         * {@link Data#putArray(boolean, Type)}
+         */
+        @Deprecated
+        TYPE,
+        CHAR,
+        TIMESTAMP,
+        DECIMAL32,
+        DECIMAL64,
+        DECIMAL128,
+        UUID
     }
     
     Type NULL = Type.NULL;
@@ -72,8 +102,16 @@ public interface Data
     Type ARRAY = Type.ARRAY;
     Type LIST = Type.LIST;
     Type MAP = Type.MAP;
+    @Deprecated
     Type TYPE = Type.TYPE;
+    Type CHAR = Type.CHAR;
+    Type TIMESTAMP = Type.TIMESTAMP;
+    Type DECIMAL32 = Type.DECIMAL32;
+    Type DECIMAL64 = Type.DECIMAL64;
+    Type DECIMAL128 = Type.DECIMAL128;
+    Type UUID = Type.UUID;
 
+    void putNull();
     void putBool(boolean b);
     void putByte(byte b);
     void putUbyte(UnsignedByte b);
@@ -84,18 +122,194 @@ public interface Data
     void putInt(int i);
     void putUint(UnsignedInteger i);
     void putUint(long l);
+    void putChar(int codePoint);
     void putLong(long l);
     void putUlong(UnsignedLong l);
     void putUlong(long l);
+    void putTimestamp(Date t);
+    void putTimestamp(long t);
     void putFloat(float f);
     void putDouble(double d);
+    void putDecimal32(Decimal32 d);
+    void putDecimal64(Decimal64 d);
+    void putDecimal128(Decimal128 d);
+    void putUUID(UUID u);
     void putBinary(Binary b);
     void putBinary(byte[] b);
     void putString(String s);
     void putSymbol(Symbol s);
     void putSymbol(String s);
+
+    /**
+     * Puts a described value, whose two children are the descriptor and the value.
+     */
     void putDescriptor();
+
+    /**
+     * Puts an undescribed array whose element type is that of the first element put into it.
+     */
     void putArray();
+
+    /**
+     * @param described whether the first child put into the array will be its descriptor
+     * @param type the type of the elements
+     */
+    void putArray(boolean described, Type type);
     void putList();
+    void putMap();
+
+    /**
+     * @deprecated there is no value of type {@link Type#TYPE}; use {@link #putArray(boolean, Type)}
+     * @throws UnsupportedOperationException always
+     */
+    @Deprecated
     void putType();
+
+    /**
+     * Removes all values and resets the cursor.
+     */
+    void clear();
+
+    /**
+     * Moves the cursor back to before the first top level value.
+     */
+    void rewind();
+
+    /**
+     * Moves to the next sibling.
+     *
+     * @return its type, or null (without moving) if there is none
+     */
+    Type next();
+
+    /**
+     * Moves to the previous sibling.
+     *
+     * @return its type, or null (without moving) if there is none
+     */
+    Type prev();
+
+    /**
+     * Moves into the current value, before its first child.
+     *
+     * @return false if there is no current value
+     */
+    boolean enter();
+
+    /**
+     * Moves out to the value that was last entered, making it current.
+     *
+     * @return false if already at the top level
+     */
+    boolean exit();
+
+    /**
+     * @return the type of the current value, or null if there is none
+     */
+    Type type();
+
+    /**
+     * @return the number of bytes {@link #encode(ByteBuffer)} would write
+     */
+    int encodedSize();
+
+    /**
+     * Encodes all the top level values into the buffer.
+     *
+     * @return the number of bytes written
+     * @throws java.nio.BufferOverflowException if the buffer does not have {@link #encodedSize()} bytes remaining
+     */
+    int encode(ByteBuffer buffer);
+
+    /**
+     * @return all the top level values, encoded
+     */
+    Binary encode();
+
+    /**
+     * Decodes one value from the buffer and puts it after the current value.
+     *
+     * @return the number of bytes consumed
+     * @throws DecodeException if the buffer does not hold a complete, valid value
+     */
+    int decode(ByteBuffer buffer);
+
+    /**
+     * Replaces the contents with a copy of all the values in src.
+     */
+    void copy(Data src);
+
+    /**
+     * Puts a copy of all the top level values in src after the current value.
+     */
+    void append(Data src);
+
+    /**
+     * @return a human readable rendering of all the values
+     */
+    String format();
+
+    /**
+     * @return the number of elements in the current list, or zero if it is not a list
+     */
+    int getList();
+
+    /**
+     * @return the number of keys and values in the current map, or zero if it is not a map
+     */
+    int getMap();
+
+    /**
+     * @return the number of elements in the current array, or zero if it is not an array
+     */
+    int getArray();
+    boolean isArrayDescribed();
+
+    /**
+     * @return the element type of the current array, or null if it is not an array
+     */
+    Type getArrayType();
+    boolean isDescribed();
+    boolean isNull();
+    boolean getBool();
+
+    /**
+     * @return the unsigned value of the current ubyte
+     */
+    short getUbyte();
+    byte getByte();
+
+    /**
+     * @return the unsigned value of the current ushort
+     */
+    int getUshort();
+    short getShort();
+
+    /**
+     * @return the unsigned value of the current uint
+     */
+    long getUint();
+    int getInt();
+    int getChar();
+
+    /**
+     * @return the bits of the current ulong, which is negative above Long.MAX_VALUE
+     */
+    long getUlong();
+    long getLong();
+    long getTimestamp();
+    float getFloat();
+    double getDouble();
+    Decimal32 getDecimal32();
+    Decimal64 getDecimal64();
+    Decimal128 getDecimal128();
+    UUID getUUID();
+
+    /**
+     * @return the current binary, sharing the underlying storage; it remains valid until the
+     * next {@link #clear()}
+     */
+    Binary getBinary();
+    String getString();
+    Symbol getSymbol();
 }
@@ -0,0 +1,1757 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.codec;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Decimal128;
+import org.apache.qpid.proton.amqp.Decimal32;
+import org.apache.qpid.proton.amqp.Decimal64;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.UnsignedByte;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.amqp.UnsignedLong;
+import org.apache.qpid.proton.amqp.UnsignedShort;
+
+/**
+ * A {@link Data} held in flat, parallel arrays indexed by node number, in the manner of
+ * proton-c's pn_data_t.
+ *
+ * Scalar values live in a long per node. Binary, string, symbol, uuid and decimal128 values are
+ * copied into a single byte heap, strings as UTF-8, and the node keeps the offset and length.
+ * Putting and getting scalars therefore allocates nothing, and {@link #clear()} keeps all the
+ * storage for reuse.
+ */
+public class DataImpl implements Data
+{
+    private static final Type[] TYPES = Type.values();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private static final int ROOT = 0;
+    private static final int NONE = -1;
+
+    private byte[] _types;
+    private long[] _values;
+    private int[] _sizes;
+    private int[] _parents;
+    private int[] _nexts;
+    private int[] _prevs;
+    private int[] _firsts;
+    private int[] _children;
+    private int[] _encodedSizes;
+    private int _count;
+
+    private byte[] _heap;
+    private int _heapUsed;
+
+    private int _parent = ROOT;
+    private int _current = NONE;
+
+    public DataImpl()
+    {
+        this(16);
+    }
+
+    public DataImpl(int capacity)
+    {
+        int nodes = Math.max(capacity, 1) + 1;
+        _types = new byte[nodes];
+        _values = new long[nodes];
+        _sizes = new int[nodes];
+        _parents = new int[nodes];
+        _nexts = new int[nodes];
+        _prevs = new int[nodes];
+        _firsts = new int[nodes];
+        _children = new int[nodes];
+        _encodedSizes = new int[nodes];
+        _heap = new byte[64];
+        clear();
+    }
+
+    public void clear()
+    {
+        _count = 1;
+        _heapUsed = 0;
+        _types[ROOT] = -1;
+        _parents[ROOT] = NONE;
+        _nexts[ROOT] = NONE;
+        _prevs[ROOT] = NONE;
+        _firsts[ROOT] = NONE;
+        _children[ROOT] = 0;
+        rewind();
+    }
+
+    public void rewind()
+    {
+        _parent = ROOT;
+        _current = NONE;
+    }
+
+    public Type next()
+    {
+        int node = _current == NONE ? _firsts[_parent] : _nexts[_current];
+        if(node == NONE)
+        {
+            return null;
+        }
+        _current = node;
+        return TYPES[_types[node]];
+    }
+
+    public Type prev()
+    {
+        if(_current == NONE || _prevs[_current] == NONE)
+        {
+            return null;
+        }
+        _current = _prevs[_current];
+        return TYPES[_types[_current]];
+    }
+
+    public boolean enter()
+    {
+        if(_current == NONE)
+        {
+            return false;
+        }
+        _parent = _current;
+        _current = NONE;
+        return true;
+    }
+
+    public boolean exit()
+    {
+        if(_parent == ROOT)
+        {
+            return false;
+        }
+        _current = _parent;
+        _parent = _parents[_parent];
+        return true;
+    }
+
+    public Type type()
+    {
+        return _current == NONE ? null : TYPES[_types[_current]];
+    }
+
+    public int encodedSize()
+    {
+        int size = 0;
+        for(int node = _firsts[ROOT]; node != NONE; node = _nexts[node])
+        {
+            size += sizeOf(node);
+        }
+        return size;
+    }
+
+    public int encode(ByteBuffer buffer)
+    {
+        int size = encodedSize();
+        if(buffer.remaining() < size)
+        {
+            throw new BufferOverflowException();
+        }
+        for(int node = _firsts[ROOT]; node != NONE; node = _nexts[node])
+        {
+            writeValue(node, buffer);
+        }
+        return size;
+    }
+
+    public Binary encode()
+    {
+        byte[] bytes = new byte[encodedSize()];
+        encode(ByteBuffer.wrap(bytes));
+        return new Binary(bytes);
+    }
+
+    public int decode(ByteBuffer buffer)
+    {
+        final int start = buffer.position();
+        final int count = _count;
+        final int heapUsed = _heapUsed;
+        final int parent = _parent;
+        final int current = _current;
+        try
+        {
+            decodeValue(buffer.get(), buffer);
+            return buffer.position() - start;
+        }
+        catch(BufferUnderflowException e)
+        {
+            rollback(count, heapUsed, parent, current);
+            buffer.position(start);
+            throw new DecodeException("Truncated value", e);
+        }
+        catch(DecodeException e)
+        {
+            rollback(count, heapUsed, parent, current);
+            buffer.position(start);
+            throw e;
+        }
+    }
+
+    public void copy(Data src)
+    {
+        clear();
+        append(src);
+    }
+
+    public void append(Data src)
+    {
+        if(src instanceof DataImpl && src != this)
+        {
+            DataImpl data = (DataImpl) src;
+            for(int node = data._firsts[ROOT]; node != NONE; node = data._nexts[node])
+            {
+                copyNode(data, node);
+            }
+        }
+        else
+        {
+            ByteBuffer buffer = src.encode().asByteBuffer();
+            while(buffer.hasRemaining())
+            {
+                decode(buffer);
+            }
+        }
+    }
+
+    public String format()
+    {
+        StringBuilder builder = new StringBuilder();
+        formatSiblings(_firsts[ROOT], builder);
+        return builder.toString();
+    }
+
+    @Override
+    public String toString()
+    {
+        return format();
+    }
+
+    public void putList()
+    {
+        addNode(Type.LIST);
+    }
+
+    public void putMap()
+    {
+        addNode(Type.MAP);
+    }
+
+    public void putArray()
+    {
+        int node = addNode(Type.ARRAY);
+        _values[node] = NONE;
+    }
+
+    public void putArray(boolean described, Type type)
+    {
+        int node = addNode(Type.ARRAY);
+        _values[node] = type.ordinal();
+        _sizes[node] = described ? 1 : 0;
+    }
+
+    public void putDescriptor()
+    {
+        addNode(Type.DESCRIPTOR);
+    }
+
+    @Deprecated
+    public void putType()
+    {
+        throw new UnsupportedOperationException("Use putArray(boolean, Type) to give the element type of an array");
+    }
+
+    public void putNull()
+    {
+        addNode(Type.NULL);
+    }
+
+    public void putBool(boolean b)
+    {
+        putScalar(Type.BOOL, b ? 1 : 0);
+    }
+
+    public void putUbyte(UnsignedByte b)
+    {
+        putUbyte(b.shortValue());
+    }
+
+    public void putUbyte(short s)
+    {
+        putScalar(Type.UBYTE, s & 0xff);
+    }
+
+    public void putByte(byte b)
+    {
+        putScalar(Type.BYTE, b);
+    }
+
+    public void putUshort(UnsignedShort s)
+    {
+        putUshort(s.intValue());
+    }
+
+    public void putUshort(int i)
+    {
+        putScalar(Type.USHORT, i & 0xffff);
+    }
+
+    public void putShort(short s)
+    {
+        putScalar(Type.SHORT, s);
+    }
+
+    public void putUint(UnsignedInteger i)
+    {
+        putUint(i.longValue());
+    }
+
+    public void putUint(long l)
+    {
+        putScalar(Type.UINT, l & 0xffffffffL);
+    }
+
+    public void putInt(int i)
+    {
+        putScalar(Type.INT, i);
+    }
+
+    public void putChar(int codePoint)
+    {
+        putScalar(Type.CHAR, codePoint);
+    }
+
+    public void putUlong(UnsignedLong l)
+    {
+        putUlong(l.longValue());
+    }
+
+    public void putUlong(long l)
+    {
+        putScalar(Type.ULONG, l);
+    }
+
+    public void putLong(long l)
+    {
+        putScalar(Type.LONG, l);
+    }
+
+    public void putTimestamp(Date t)
+    {
+        putTimestamp(t.getTime());
+    }
+
+    public void putTimestamp(long t)
+    {
+        putScalar(Type.TIMESTAMP, t);
+    }
+
+    public void putFloat(float f)
+    {
+        putScalar(Type.FLOAT, Float.floatToRawIntBits(f));
+    }
+
+    public void putDouble(double d)
+    {
+        putScalar(Type.DOUBLE, Double.doubleToRawLongBits(d));
+    }
+
+    public void putDecimal32(Decimal32 d)
+    {
+        putScalar(Type.DECIMAL32, d.getBits());
+    }
+
+    public void putDecimal64(Decimal64 d)
+    {
+        putScalar(Type.DECIMAL64, d.getBits());
+    }
+
+    public void putDecimal128(Decimal128 d)
+    {
+        putLongPair(Type.DECIMAL128, d.getMostSignificantBits(), d.getLeastSignificantBits());
+    }
+
+    public void putUUID(UUID u)
+    {
+        putLongPair(Type.UUID, u.getMostSignificantBits(), u.getLeastSignificantBits());
+    }
+
+    public void putBinary(Binary b)
+    {
+        putBytes(Type.BINARY, b.getArray(), b.getArrayOffset(), b.getLength());
+    }
+
+    public void putBinary(byte[] b)
+    {
+        putBytes(Type.BINARY, b, 0, b.length);
+    }
+
+    public void putString(String s)
+    {
+        int node = addNode(Type.STRING);
+        int length = s.length();
+        ensureHeap(length * 3);
+        int start = _heapUsed;
+        int position = start;
+        byte[] heap = _heap;
+        for(int i = 0; i < length; i++)
+        {
+            int c = s.charAt(i);
+            if(c < 0x80)
+            {
+                heap[position++] = (byte) c;
+            }
+            else if(c < 0x800)
+            {
+                heap[position++] = (byte) (0xc0 | (c >> 6));
+                heap[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+            else if(Character.isHighSurrogate((char) c) && i + 1 < length
+                    && Character.isLowSurrogate(s.charAt(i + 1)))
+            {
+                // a surrogate pair takes 4 bytes for 2 chars, within the 3 per char reserved
+                int codePoint = Character.toCodePoint((char) c, s.charAt(++i));
+                heap[position++] = (byte) (0xf0 | (codePoint >> 18));
+                heap[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                heap[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                heap[position++] = (byte) (0x80 | (codePoint & 0x3f));
+            }
+            else
+            {
+                heap[position++] = (byte) (0xe0 | (c >> 12));
+                heap[position++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                heap[position++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        _values[node] = start;
+        _sizes[node] = position - start;
+        _heapUsed = position;
+    }
+
+    public void putSymbol(Symbol s)
+    {
+        putSymbol(s.toString());
+    }
+
+    public void putSymbol(String s)
+    {
+        int node = addNode(Type.SYMBOL);
+        int length = s.length();
+        ensureHeap(length);
+        for(int i = 0; i < length; i++)
+        {
+            _heap[_heapUsed + i] = (byte) s.charAt(i);
+        }
+        _values[node] = _heapUsed;
+        _sizes[node] = length;
+        _heapUsed += length;
+    }
+
+    public int getList()
+    {
+        return is(Type.LIST) ? _children[_current] : 0;
+    }
+
+    public int getMap()
+    {
+        return is(Type.MAP) ? _children[_current] : 0;
+    }
+
+    public int getArray()
+    {
+        return is(Type.ARRAY) ? _children[_current] - _sizes[_current] : 0;
+    }
+
+    public boolean isArrayDescribed()
+    {
+        return is(Type.ARRAY) && _sizes[_current] != 0;
+    }
+
+    public Type getArrayType()
+    {
+        return is(Type.ARRAY) ? TYPES[arrayElementType(_current)] : null;
+    }
+
+    public boolean isDescribed()
+    {
+        return is(Type.DESCRIPTOR);
+    }
+
+    public boolean isNull()
+    {
+        return is(Type.NULL);
+    }
+
+    public boolean getBool()
+    {
+        return is(Type.BOOL) && _values[_current] != 0;
+    }
+
+    public short getUbyte()
+    {
+        return is(Type.UBYTE) ? (short) _values[_current] : 0;
+    }
+
+    public byte getByte()
+    {
+        return is(Type.BYTE) ? (byte) _values[_current] : 0;
+    }
+
+    public int getUshort()
+    {
+        return is(Type.USHORT) ? (int) _values[_current] : 0;
+    }
+
+    public short getShort()
+    {
+        return is(Type.SHORT) ? (short) _values[_current] : 0;
+    }
+
+    public long getUint()
+    {
+        return is(Type.UINT) ? _values[_current] : 0L;
+    }
+
+    public int getInt()
+    {
+        return is(Type.INT) ? (int) _values[_current] : 0;
+    }
+
+    public int getChar()
+    {
+        return is(Type.CHAR) ? (int) _values[_current] : 0;
+    }
+
+    public long getUlong()
+    {
+        return is(Type.ULONG) ? _values[_current] : 0L;
+    }
+
+    public long getLong()
+    {
+        return is(Type.LONG) ? _values[_current] : 0L;
+    }
+
+    public long getTimestamp()
+    {
+        return is(Type.TIMESTAMP) ? _values[_current] : 0L;
+    }
+
+    public float getFloat()
+    {
+        return is(Type.FLOAT) ? Float.intBitsToFloat((int) _values[_current]) : 0f;
+    }
+
+    public double getDouble()
+    {
+        return is(Type.DOUBLE) ? Double.longBitsToDouble(_values[_current]) : 0d;
+    }
+
+    public Decimal32 getDecimal32()
+    {
+        return is(Type.DECIMAL32) ? new Decimal32((int) _values[_current]) : null;
+    }
+
+    public Decimal64 getDecimal64()
+    {
+        return is(Type.DECIMAL64) ? new Decimal64(_values[_current]) : null;
+    }
+
+    public Decimal128 getDecimal128()
+    {
+        if(!is(Type.DECIMAL128))
+        {
+            return null;
+        }
+        int offset = (int) _values[_current];
+        return new Decimal128(readLong(_heap, offset), readLong(_heap, offset + 8));
+    }
+
+    public UUID getUUID()
+    {
+        if(!is(Type.UUID))
+        {
+            return null;
+        }
+        int offset = (int) _values[_current];
+        return new UUID(readLong(_heap, offset), readLong(_heap, offset + 8));
+    }
+
+    public Binary getBinary()
+    {
+        return is(Type.BINARY) ? new Binary(_heap, (int) _values[_current], _sizes[_current]) : null;
+    }
+
+    public String getString()
+    {
+        return is(Type.STRING) ? new String(_heap, (int) _values[_current], _sizes[_current], UTF_8) : null;
+    }
+
+    public Symbol getSymbol()
+    {
+        return is(Type.SYMBOL)
+               ? Symbol.valueOf(new String(_heap, (int) _values[_current], _sizes[_current], US_ASCII))
+               : null;
+    }
+
+    private boolean is(Type type)
+    {
+        return _current != NONE && _types[_current] == type.ordinal();
+    }
+
+    private int addNode(Type type)
+    {
+        if(_count == _types.length)
+        {
+            growNodes();
+        }
+        final int node = _count++;
+        final int parent = _parent;
+        _types[node] = (byte) type.ordinal();
+        _values[node] = 0L;
+        _sizes[node] = 0;
+        _parents[node] = parent;
+        _firsts[node] = NONE;
+        _children[node] = 0;
+        if(_current == NONE)
+        {
+            int first = _firsts[parent];
+            _prevs[node] = NONE;
+            _nexts[node] = first;
+            if(first != NONE)
+            {
+                _prevs[first] = node;
+            }
+            _firsts[parent] = node;
+        }
+        else
+        {
+            int next = _nexts[_current];
+            _prevs[node] = _current;
+            _nexts[node] = next;
+            if(next != NONE)
+            {
+                _prevs[next] = node;
+            }
+            _nexts[_current] = node;
+        }
+        _children[parent]++;
+        _current = node;
+        return node;
+    }
+
+    private void growNodes()
+    {
+        int capacity = _types.length * 2;
+        _types = Arrays.copyOf(_types, capacity);
+        _values = Arrays.copyOf(_values, capacity);
+        _sizes = Arrays.copyOf(_sizes, capacity);
+        _parents = Arrays.copyOf(_parents, capacity);
+        _nexts = Arrays.copyOf(_nexts, capacity);
+        _prevs = Arrays.copyOf(_prevs, capacity);
+        _firsts = Arrays.copyOf(_firsts, capacity);
+        _children = Arrays.copyOf(_children, capacity);
+        _encodedSizes = Arrays.copyOf(_encodedSizes, capacity);
+    }
+
+    private void ensureHeap(int length)
+    {
+        if(_heap.length - _heapUsed < length)
+        {
+            _heap = Arrays.copyOf(_heap, Math.max(_heap.length * 2, _heapUsed + length));
+        }
+    }
+
+    private void putScalar(Type type, long value)
+    {
+        int node = addNode(type);
+        _values[node] = value;
+    }
+
+    private void putLongPair(Type type, long msb, long lsb)
+    {
+        int node = addNode(type);
+        ensureHeap(16);
+        writeLong(_heap, _heapUsed, msb);
+        writeLong(_heap, _heapUsed + 8, lsb);
+        _values[node] = _heapUsed;
+        _sizes[node] = 16;
+        _heapUsed += 16;
+    }
+
+    private void putBytes(Type type, byte[] bytes, int offset, int length)
+    {
+        int node = addNode(type);
+        ensureHeap(length);
+        System.arraycopy(bytes, offset, _heap, _heapUsed, length);
+        _values[node] = _heapUsed;
+        _sizes[node] = length;
+        _heapUsed += length;
+    }
+
+    private void putBytes(Type type, ByteBuffer buffer, int length)
+    {
+        if(length < 0 || length > buffer.remaining())
+        {
+            throw new DecodeException("Invalid " + type + " length: " + length);
+        }
+        int node = addNode(type);
+        ensureHeap(length);
+        buffer.get(_heap, _heapUsed, length);
+        _values[node] = _heapUsed;
+        _sizes[node] = length;
+        _heapUsed += length;
+    }
+
+    private static boolean isHeapType(int type)
+    {
+        switch(TYPES[type])
+        {
+            case DECIMAL128:
+            case UUID:
+            case BINARY:
+            case STRING:
+            case SYMBOL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static boolean isScalarType(int type)
+    {
+        switch(TYPES[type])
+        {
+            case DESCRIPTOR:
+            case ARRAY:
+            case LIST:
+            case MAP:
+                return false;
+            default:
+                return !isHeapType(type);
+        }
+    }
+
+    /**
+     * @return the element type given to {@link #putArray(boolean, Type)}, or for an array put
+     * by {@link #putArray()} the type of its first element
+     */
+    private int arrayElementType(int node)
+    {
+        int type = (int) _values[node];
+        if(type == NONE)
+        {
+            int element = _firsts[node];
+            if(_sizes[node] != 0 && element != NONE)
+            {
+                element = _nexts[element];
+            }
+            type = element == NONE ? Type.NULL.ordinal() : _types[element];
+        }
+        return type;
+    }
+
+    private static long readLong(byte[] bytes, int offset)
+    {
+        long value = 0L;
+        for(int i = 0; i < 8; i++)
+        {
+            value = (value << 8) | (bytes[offset + i] & 0xff);
+        }
+        return value;
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value)
+    {
+        for(int i = 7; i >= 0; i--)
+        {
+            bytes[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private void copyNode(DataImpl src, int srcNode)
+    {
+        int type = src._types[srcNode];
+        int node = addNode(TYPES[type]);
+        _values[node] = src._values[srcNode];
+        _sizes[node] = src._sizes[srcNode];
+        if(isHeapType(type))
+        {
+            int length = src._sizes[srcNode];
+            ensureHeap(length);
+            System.arraycopy(src._heap, (int) src._values[srcNode], _heap, _heapUsed, length);
+            _values[node] = _heapUsed;
+            _heapUsed += length;
+        }
+        else if(src._firsts[srcNode] != NONE)
+        {
+            enter();
+            for(int child = src._firsts[srcNode]; child != NONE; child = src._nexts[child])
+            {
+                copyNode(src, child);
+            }
+            exit();
+        }
+    }
+
+    private void rollback(int count, int heapUsed, int parent, int current)
+    {
+        if(_count > count)
+        {
+            // the first node added is the top of everything added, so unlinking it is enough
+            int node = count;
+            int prev = _prevs[node];
+            int next = _nexts[node];
+            if(prev != NONE)
+            {
+                _nexts[prev] = next;
+            }
+            else
+            {
+                _firsts[parent] = next;
+            }
+            if(next != NONE)
+            {
+                _prevs[next] = prev;
+            }
+            _children[parent]--;
+        }
+        _count = count;
+        _heapUsed = heapUsed;
+        _parent = parent;
+        _current = current;
+    }
+
+    // encoding
+
+    private static boolean isSmall(int content, int count)
+    {
+        return content < 255 && count < 256;
+    }
+
+    private static boolean isSmallUnsigned(long value)
+    {
+        return value >= 0L && value < 256L;
+    }
+
+    private static boolean isSmallSigned(long value)
+    {
+        return value >= -128L && value <= 127L;
+    }
+
+    private int sizeOf(int node)
+    {
+        final long value = _values[node];
+        switch(TYPES[_types[node]])
+        {
+            case NULL:
+            case BOOL:
+                return 1;
+            case UBYTE:
+            case BYTE:
+                return 2;
+            case USHORT:
+            case SHORT:
+                return 3;
+            case UINT:
+                return value == 0L ? 1 : isSmallUnsigned(value) ? 2 : 5;
+            case INT:
+                return isSmallSigned(value) ? 2 : 5;
+            case CHAR:
+            case FLOAT:
+            case DECIMAL32:
+                return 5;
+            case ULONG:
+                return value == 0L ? 1 : isSmallUnsigned(value) ? 2 : 9;
+            case LONG:
+                return isSmallSigned(value) ? 2 : 9;
+            case TIMESTAMP:
+            case DOUBLE:
+            case DECIMAL64:
+                return 9;
+            case DECIMAL128:
+            case UUID:
+                return 17;
+            case BINARY:
+            case STRING:
+            case SYMBOL:
+                return _sizes[node] < 256 ? 2 + _sizes[node] : 5 + _sizes[node];
+            case DESCRIPTOR:
+                int descriptor = _firsts[node];
+                if(descriptor == NONE || _nexts[descriptor] == NONE)
+                {
+                    throw new IllegalStateException("Described value needs a descriptor and a value");
+                }
+                return 1 + sizeOf(descriptor) + sizeOf(_nexts[descriptor]);
+            case LIST:
+                if(_children[node] == 0)
+                {
+                    return 1;
+                }
+                return compoundSize(node);
+            case MAP:
+                return compoundSize(node);
+            case ARRAY:
+                int arrayContent = arrayContentSize(node);
+                return (isSmall(arrayContent, _children[node]) ? 3 : 9) + arrayContent;
+            default:
+                throw new IllegalStateException("Unknown type " + TYPES[_types[node]]);
+        }
+    }
+
+    private int compoundSize(int node)
+    {
+        int content = childrenSize(node);
+        return (isSmall(content, _children[node]) ? 3 : 9) + content;
+    }
+
+    private int childrenSize(int node)
+    {
+        int content = 0;
+        for(int child = _firsts[node]; child != NONE; child = _nexts[child])
+        {
+            content += sizeOf(child);
+        }
+        _encodedSizes[node] = content;
+        return content;
+    }
+
+    private int arrayContentSize(int node)
+    {
+        final int elementType = arrayElementType(node);
+        int content = 1;
+        int child = _firsts[node];
+        if(_sizes[node] != 0)
+        {
+            if(child == NONE)
+            {
+                throw new IllegalStateException("Described array has no descriptor");
+            }
+            content += 1 + sizeOf(child);
+            child = _nexts[child];
+        }
+        for(; child != NONE; child = _nexts[child])
+        {
+            content += elementSize(child, elementType);
+        }
+        _encodedSizes[node] = content;
+        return content;
+    }
+
+    private int elementSize(int node, int elementType)
+    {
+        final int type = _types[node];
+        if(type != elementType && !(isScalarType(type) && isScalarType(elementType)))
+        {
+            throw new IllegalStateException("Cannot put " + TYPES[type] + " in an array of "
+                                            + TYPES[elementType]);
+        }
+        switch(TYPES[elementType])
+        {
+            case NULL:
+                return 0;
+            case BOOL:
+            case UBYTE:
+            case BYTE:
+                return 1;
+            case USHORT:
+            case SHORT:
+                return 2;
+            case UINT:
+            case INT:
+            case CHAR:
+            case FLOAT:
+            case DECIMAL32:
+                return 4;
+            case ULONG:
+            case LONG:
+            case TIMESTAMP:
+            case DOUBLE:
+            case DECIMAL64:
+                return 8;
+            case DECIMAL128:
+            case UUID:
+                return 16;
+            case BINARY:
+            case STRING:
+            case SYMBOL:
+                return 4 + _sizes[node];
+            case LIST:
+            case MAP:
+                return 8 + childrenSize(node);
+            case ARRAY:
+                return 8 + arrayContentSize(node);
+            default:
+                throw new IllegalStateException("Arrays of " + TYPES[elementType] + " are not supported");
+        }
+    }
+
+    private static byte elementConstructor(int elementType)
+    {
+        switch(TYPES[elementType])
+        {
+            case NULL:
+                return EncodingCodes.NULL;
+            case BOOL:
+                return EncodingCodes.BOOLEAN;
+            case UBYTE:
+                return EncodingCodes.UBYTE;
+            case BYTE:
+                return EncodingCodes.BYTE;
+            case USHORT:
+                return EncodingCodes.USHORT;
+            case SHORT:
+                return EncodingCodes.SHORT;
+            case UINT:
+                return EncodingCodes.UINT;
+            case INT:
+                return EncodingCodes.INT;
+            case CHAR:
+                return EncodingCodes.CHAR;
+            case ULONG:
+                return EncodingCodes.ULONG;
+            case LONG:
+                return EncodingCodes.LONG;
+            case TIMESTAMP:
+                return EncodingCodes.TIMESTAMP;
+            case FLOAT:
+                return EncodingCodes.FLOAT;
+            case DOUBLE:
+                return EncodingCodes.DOUBLE;
+            case DECIMAL32:
+                return EncodingCodes.DECIMAL32;
+            case DECIMAL64:
+                return EncodingCodes.DECIMAL64;
+            case DECIMAL128:
+                return EncodingCodes.DECIMAL128;
+            case UUID:
+                return EncodingCodes.UUID;
+            case BINARY:
+                return EncodingCodes.VBIN32;
+            case STRING:
+                return EncodingCodes.STR32;
+            case SYMBOL:
+                return EncodingCodes.SYM32;
+            case LIST:
+                return EncodingCodes.LIST32;
+            case MAP:
+                return EncodingCodes.MAP32;
+            case ARRAY:
+                return EncodingCodes.ARRAY32;
+            default:
+                throw new IllegalStateException("Arrays of " + TYPES[elementType] + " are not supported");
+        }
+    }
+
+    private void writeValue(int node, ByteBuffer buffer)
+    {
+        final long value = _values[node];
+        switch(TYPES[_types[node]])
+        {
+            case NULL:
+                buffer.put(EncodingCodes.NULL);
+                break;
+            case BOOL:
+                buffer.put(value != 0L ? EncodingCodes.BOOLEAN_TRUE : EncodingCodes.BOOLEAN_FALSE);
+                break;
+            case UBYTE:
+                buffer.put(EncodingCodes.UBYTE);
+                buffer.put((byte) value);
+                break;
+            case BYTE:
+                buffer.put(EncodingCodes.BYTE);
+                buffer.put((byte) value);
+                break;
+            case USHORT:
+                buffer.put(EncodingCodes.USHORT);
+                buffer.putShort((short) value);
+                break;
+            case SHORT:
+                buffer.put(EncodingCodes.SHORT);
+                buffer.putShort((short) value);
+                break;
+            case UINT:
+                if(value == 0L)
+                {
+                    buffer.put(EncodingCodes.UINT0);
+                }
+                else if(isSmallUnsigned(value))
+                {
+                    buffer.put(EncodingCodes.SMALLUINT);
+                    buffer.put((byte) value);
+                }
+                else
+                {
+                    buffer.put(EncodingCodes.UINT);
+                    buffer.putInt((int) value);
+                }
+                break;
+            case INT:
+                if(isSmallSigned(value))
+                {
+                    buffer.put(EncodingCodes.SMALLINT);
+                    buffer.put((byte) value);
+                }
+                else
+                {
+                    buffer.put(EncodingCodes.INT);
+                    buffer.putInt((int) value);
+                }
+                break;
+            case CHAR:
+                buffer.put(EncodingCodes.CHAR);
+                buffer.putInt((int) value);
+                break;
+            case FLOAT:
+                buffer.put(EncodingCodes.FLOAT);
+                buffer.putInt((int) value);
+                break;
+            case DECIMAL32:
+                buffer.put(EncodingCodes.DECIMAL32);
+                buffer.putInt((int) value);
+                break;
+            case ULONG:
+                if(value == 0L)
+                {
+                    buffer.put(EncodingCodes.ULONG0);
+                }
+                else if(isSmallUnsigned(value))
+                {
+                    buffer.put(EncodingCodes.SMALLULONG);
+                    buffer.put((byte) value);
+                }
+                else
+                {
+                    buffer.put(EncodingCodes.ULONG);
+                    buffer.putLong(value);
+                }
+                break;
+            case LONG:
+                if(isSmallSigned(value))
+                {
+                    buffer.put(EncodingCodes.SMALLLONG);
+                    buffer.put((byte) value);
+                }
+                else
+                {
+                    buffer.put(EncodingCodes.LONG);
+                    buffer.putLong(value);
+                }
+                break;
+            case TIMESTAMP:
+                buffer.put(EncodingCodes.TIMESTAMP);
+                buffer.putLong(value);
+                break;
+            case DOUBLE:
+                buffer.put(EncodingCodes.DOUBLE);
+                buffer.putLong(value);
+                break;
+            case DECIMAL64:
+                buffer.put(EncodingCodes.DECIMAL64);
+                buffer.putLong(value);
+                break;
+            case DECIMAL128:
+                buffer.put(EncodingCodes.DECIMAL128);
+                buffer.put(_heap, (int) value, 16);
+                break;
+            case UUID:
+                buffer.put(EncodingCodes.UUID);
+                buffer.put(_heap, (int) value, 16);
+                break;
+            case BINARY:
+                writeVariable(node, EncodingCodes.VBIN8, EncodingCodes.VBIN32, buffer);
+                break;
+            case STRING:
+                writeVariable(node, EncodingCodes.STR8, EncodingCodes.STR32, buffer);
+                break;
+            case SYMBOL:
+                writeVariable(node, EncodingCodes.SYM8, EncodingCodes.SYM32, buffer);
+                break;
+            case DESCRIPTOR:
+                buffer.put(EncodingCodes.DESCRIBED_TYPE_INDICATOR);
+                writeValue(_firsts[node], buffer);
+                writeValue(_nexts[_firsts[node]], buffer);
+                break;
+            case LIST:
+                if(_children[node] == 0)
+                {
+                    buffer.put(EncodingCodes.LIST0);
+                }
+                else
+                {
+                    writeCompound(node, EncodingCodes.LIST8, EncodingCodes.LIST32, buffer);
+                }
+                break;
+            case MAP:
+                writeCompound(node, EncodingCodes.MAP8, EncodingCodes.MAP32, buffer);
+                break;
+            case ARRAY:
+                int content = _encodedSizes[node];
+                int count = _children[node] - _sizes[node];
+                if(isSmall(content, _children[node]))
+                {
+                    buffer.put(EncodingCodes.ARRAY8);
+                    buffer.put((byte) (content + 1));
+                    buffer.put((byte) count);
+                }
+                else
+                {
+                    buffer.put(EncodingCodes.ARRAY32);
+                    buffer.putInt(content + 4);
+                    buffer.putInt(count);
+                }
+                writeArrayContent(node, buffer);
+                break;
+        }
+    }
+
+    private void writeVariable(int node, byte smallCode, byte largeCode, ByteBuffer buffer)
+    {
+        int length = _sizes[node];
+        if(length < 256)
+        {
+            buffer.put(smallCode);
+            buffer.put((byte) length);
+        }
+        else
+        {
+            buffer.put(largeCode);
+            buffer.putInt(length);
+        }
+        buffer.put(_heap, (int) _values[node], length);
+    }
+
+    private void writeCompound(int node, byte smallCode, byte largeCode, ByteBuffer buffer)
+    {
+        int content = _encodedSizes[node];
+        if(isSmall(content, _children[node]))
+        {
+            buffer.put(smallCode);
+            buffer.put((byte) (content + 1));
+            buffer.put((byte) _children[node]);
+        }
+        else
+        {
+            buffer.put(largeCode);
+            buffer.putInt(content + 4);
+            buffer.putInt(_children[node]);
+        }
+        for(int child = _firsts[node]; child != NONE; child = _nexts[child])
+        {
+            writeValue(child, buffer);
+        }
+    }
+
+    private void writeArrayContent(int node, ByteBuffer buffer)
+    {
+        final int elementType = arrayElementType(node);
+        int child = _firsts[node];
+        if(_sizes[node] != 0)
+        {
+            buffer.put(EncodingCodes.DESCRIBED_TYPE_INDICATOR);
+            writeValue(child, buffer);
+            child = _nexts[child];
+        }
+        buffer.put(elementConstructor(elementType));
+        for(; child != NONE; child = _nexts[child])
+        {
+            writeElement(child, elementType, buffer);
+        }
+    }
+
+    private void writeElement(int node, int elementType, ByteBuffer buffer)
+    {
+        final long value = _values[node];
+        switch(TYPES[elementType])
+        {
+            case NULL:
+                break;
+            case BOOL:
+                buffer.put(value != 0L ? (byte) 1 : (byte) 0);
+                break;
+            case UBYTE:
+            case BYTE:
+                buffer.put((byte) value);
+                break;
+            case USHORT:
+            case SHORT:
+                buffer.putShort((short) value);
+                break;
+            case UINT:
+            case INT:
+            case CHAR:
+            case FLOAT:
+            case DECIMAL32:
+                buffer.putInt((int) value);
+                break;
+            case ULONG:
+            case LONG:
+            case TIMESTAMP:
+            case DOUBLE:
+            case DECIMAL64:
+                buffer.putLong(value);
+                break;
+            case DECIMAL128:
+            case UUID:
+                buffer.put(_heap, (int) value, 16);
+                break;
+            case BINARY:
+            case STRING:
+            case SYMBOL:
+                buffer.putInt(_sizes[node]);
+                buffer.put(_heap, (int) value, _sizes[node]);
+                break;
+            case LIST:
+            case MAP:
+                buffer.putInt(_encodedSizes[node] + 4);
+                buffer.putInt(_children[node]);
+                for(int child = _firsts[node]; child != NONE; child = _nexts[child])
+                {
+                    writeValue(child, buffer);
+                }
+                break;
+            case ARRAY:
+                buffer.putInt(_encodedSizes[node] + 4);
+                buffer.putInt(_children[node] - _sizes[node]);
+                writeArrayContent(node, buffer);
+                break;
+        }
+    }
+
+    // decoding
+
+    private void decodeValue(byte code, ByteBuffer buffer)
+    {
+        switch(code)
+        {
+            case EncodingCodes.DESCRIBED_TYPE_INDICATOR:
+                putDescriptor();
+                enter();
+                decodeValue(buffer.get(), buffer);
+                decodeValue(buffer.get(), buffer);
+                exit();
+                break;
+            case EncodingCodes.NULL:
+                putNull();
+                break;
+            case EncodingCodes.BOOLEAN:
+                putBool(buffer.get() != 0);
+                break;
+            case EncodingCodes.BOOLEAN_TRUE:
+                putBool(true);
+                break;
+            case EncodingCodes.BOOLEAN_FALSE:
+                putBool(false);
+                break;
+            case EncodingCodes.UBYTE:
+                putUbyte(buffer.get());
+                break;
+            case EncodingCodes.BYTE:
+                putByte(buffer.get());
+                break;
+            case EncodingCodes.USHORT:
+                putUshort(buffer.getShort());
+                break;
+            case EncodingCodes.SHORT:
+                putShort(buffer.getShort());
+                break;
+            case EncodingCodes.UINT:
+                putUint(buffer.getInt());
+                break;
+            case EncodingCodes.SMALLUINT:
+                putUint(buffer.get() & 0xff);
+                break;
+            case EncodingCodes.UINT0:
+                putUint(0L);
+                break;
+            case EncodingCodes.INT:
+                putInt(buffer.getInt());
+                break;
+            case EncodingCodes.SMALLINT:
+                putInt(buffer.get());
+                break;
+            case EncodingCodes.CHAR:
+                putChar(buffer.getInt());
+                break;
+            case EncodingCodes.ULONG:
+                putUlong(buffer.getLong());
+                break;
+            case EncodingCodes.SMALLULONG:
+                putUlong(buffer.get() & 0xff);
+                break;
+            case EncodingCodes.ULONG0:
+                putUlong(0L);
+                break;
+            case EncodingCodes.LONG:
+                putLong(buffer.getLong());
+                break;
+            case EncodingCodes.SMALLLONG:
+                putLong(buffer.get());
+                break;
+            case EncodingCodes.TIMESTAMP:
+                putTimestamp(buffer.getLong());
+                break;
+            case EncodingCodes.FLOAT:
+                putScalar(Type.FLOAT, buffer.getInt());
+                break;
+            case EncodingCodes.DOUBLE:
+                putScalar(Type.DOUBLE, buffer.getLong());
+                break;
+            case EncodingCodes.DECIMAL32:
+                putScalar(Type.DECIMAL32, buffer.getInt());
+                break;
+            case EncodingCodes.DECIMAL64:
+                putScalar(Type.DECIMAL64, buffer.getLong());
+                break;
+            case EncodingCodes.DECIMAL128:
+                putBytes(Type.DECIMAL128, buffer, 16);
+                break;
+            case EncodingCodes.UUID:
+                putBytes(Type.UUID, buffer, 16);
+                break;
+            case EncodingCodes.VBIN8:
+                putBytes(Type.BINARY, buffer, buffer.get() & 0xff);
+                break;
+            case EncodingCodes.VBIN32:
+                putBytes(Type.BINARY, buffer, buffer.getInt());
+                break;
+            case EncodingCodes.STR8:
+                putBytes(Type.STRING, buffer, buffer.get() & 0xff);
+                break;
+            case EncodingCodes.STR32:
+                putBytes(Type.STRING, buffer, buffer.getInt());
+                break;
+            case EncodingCodes.SYM8:
+                putBytes(Type.SYMBOL, buffer, buffer.get() & 0xff);
+                break;
+            case EncodingCodes.SYM32:
+                putBytes(Type.SYMBOL, buffer, buffer.getInt());
+                break;
+            case EncodingCodes.LIST0:
+                putList();
+                break;
+            case EncodingCodes.LIST8:
+                putList();
+                decodeChildren(buffer.get() & 0xff, buffer.get() & 0xff, 1, buffer);
+                break;
+            case EncodingCodes.LIST32:
+                putList();
+                decodeChildren(buffer.getInt(), buffer.getInt(), 4, buffer);
+                break;
+            case EncodingCodes.MAP8:
+                putMap();
+                decodeChildren(buffer.get() & 0xff, buffer.get() & 0xff, 1, buffer);
+                break;
+            case EncodingCodes.MAP32:
+                putMap();
+                decodeChildren(buffer.getInt(), buffer.getInt(), 4, buffer);
+                break;
+            case EncodingCodes.ARRAY8:
+                decodeArray(buffer.get() & 0xff, buffer.get() & 0xff, 1, buffer);
+                break;
+            case EncodingCodes.ARRAY32:
+                decodeArray(buffer.getInt(), buffer.getInt(), 4, buffer);
+                break;
+            default:
+                throw new DecodeException("Unknown constructor: 0x" + Integer.toHexString(code & 0xff));
+        }
+    }
+
+    private int checkCompound(int size, int count, int countWidth, ByteBuffer buffer)
+    {
+        if(size < countWidth || size - countWidth > buffer.remaining() || count < 0)
+        {
+            throw new DecodeException("Invalid compound size " + size + " for " + count + " elements");
+        }
+        return buffer.position() + size - countWidth;
+    }
+
+    private void checkEnd(int end, ByteBuffer buffer)
+    {
+        if(buffer.position() != end)
+        {
+            throw new DecodeException("Compound value size does not match its contents");
+        }
+    }
+
+    private void decodeChildren(int size, int count, int countWidth, ByteBuffer buffer)
+    {
+        int end = checkCompound(size, count, countWidth, buffer);
+        if(count > size)
+        {
+            throw new DecodeException("Invalid compound size " + size + " for " + count + " elements");
+        }
+        enter();
+        for(int i = 0; i < count; i++)
+        {
+            decodeValue(buffer.get(), buffer);
+        }
+        exit();
+        checkEnd(end, buffer);
+    }
+
+    private void decodeArray(int size, int count, int countWidth, ByteBuffer buffer)
+    {
+        int end = checkCompound(size, count, countWidth, buffer);
+        int node = addNode(Type.ARRAY);
+        enter();
+        byte constructor = buffer.get();
+        if(constructor == EncodingCodes.DESCRIBED_TYPE_INDICATOR)
+        {
+            decodeValue(buffer.get(), buffer);
+            _sizes[node] = 1;
+            constructor = buffer.get();
+        }
+        _values[node] = elementType(constructor).ordinal();
+        for(int i = 0; i < count; i++)
+        {
+            decodeValue(constructor, buffer);
+        }
+        exit();
+        checkEnd(end, buffer);
+    }
+
+    private static Type elementType(byte constructor)
+    {
+        switch(constructor)
+        {
+            case EncodingCodes.NULL:
+                return Type.NULL;
+            case EncodingCodes.BOOLEAN:
+            case EncodingCodes.BOOLEAN_TRUE:
+            case EncodingCodes.BOOLEAN_FALSE:
+                return Type.BOOL;
+            case EncodingCodes.UBYTE:
+                return Type.UBYTE;
+            case EncodingCodes.BYTE:
+                return Type.BYTE;
+            case EncodingCodes.USHORT:
+                return Type.USHORT;
+            case EncodingCodes.SHORT:
+                return Type.SHORT;
+            case EncodingCodes.UINT:
+            case EncodingCodes.SMALLUINT:
+            case EncodingCodes.UINT0:
+                return Type.UINT;
+            case EncodingCodes.INT:
+            case EncodingCodes.SMALLINT:
+                return Type.INT;
+            case EncodingCodes.CHAR:
+                return Type.CHAR;
+            case EncodingCodes.ULONG:
+            case EncodingCodes.SMALLULONG:
+            case EncodingCodes.ULONG0:
+                return Type.ULONG;
+            case EncodingCodes.LONG:
+            case EncodingCodes.SMALLLONG:
+                return Type.LONG;
+            case EncodingCodes.TIMESTAMP:
+                return Type.TIMESTAMP;
+            case EncodingCodes.FLOAT:
+                return Type.FLOAT;
+            case EncodingCodes.DOUBLE:
+                return Type.DOUBLE;
+            case EncodingCodes.DECIMAL32:
+                return Type.DECIMAL32;
+            case EncodingCodes.DECIMAL64:
+                return Type.DECIMAL64;
+            case EncodingCodes.DECIMAL128:
+                return Type.DECIMAL128;
+            case EncodingCodes.UUID:
+                return Type.UUID;
+            case EncodingCodes.VBIN8:
+            case EncodingCodes.VBIN32:
+                return Type.BINARY;
+            case EncodingCodes.STR8:
+            case EncodingCodes.STR32:
+                return Type.STRING;
+            case EncodingCodes.SYM8:
+            case EncodingCodes.SYM32:
+                return Type.SYMBOL;
+            case EncodingCodes.LIST0:
+            case EncodingCodes.LIST8:
+            case EncodingCodes.LIST32:
+                return Type.LIST;
+            case EncodingCodes.MAP8:
+            case EncodingCodes.MAP32:
+                return Type.MAP;
+            case EncodingCodes.ARRAY8:
+            case EncodingCodes.ARRAY32:
+                return Type.ARRAY;
+            default:
+                throw new DecodeException("Invalid array element constructor: 0x"
+                                          + Integer.toHexString(constructor & 0xff));
+        }
+    }
+
+    // formatting
+
+    private void formatSiblings(int node, StringBuilder builder)
+    {
+        for(; node != NONE; node = _nexts[node])
+        {
+            formatNode(node, builder);
+            if(_nexts[node] != NONE)
+            {
+                builder.append(", ");
+            }
+        }
+    }
+
+    private void formatNode(int node, StringBuilder builder)
+    {
+        final long value = _values[node];
+        switch(TYPES[_types[node]])
+        {
+            case NULL:
+                builder.append("null");
+                break;
+            case BOOL:
+                builder.append(value != 0L);
+                break;
+            case FLOAT:
+                builder.append(Float.intBitsToFloat((int) value));
+                break;
+            case DOUBLE:
+                builder.append(Double.longBitsToDouble(value));
+                break;
+            case ULONG:
+                builder.append(UnsignedLong.valueOf(value));
+                break;
+            case CHAR:
+                builder.append('\'').appendCodePoint((int) value).append('\'');
+                break;
+            case DECIMAL32:
+            case DECIMAL64:
+                builder.append("D").append(value);
+                break;
+            case DECIMAL128:
+                builder.append("D128(").append(readLong(_heap, (int) value)).append(", ")
+                       .append(readLong(_heap, (int) value + 8)).append(')');
+                break;
+            case UUID:
+                builder.append(new UUID(readLong(_heap, (int) value), readLong(_heap, (int) value + 8)));
+                break;
+            case BINARY:
+                builder.append("b\"");
+                for(int i = 0; i < _sizes[node]; i++)
+                {
+                    int b = _heap[(int) value + i] & 0xff;
+                    if(b >= 0x20 && b < 0x7f && b != '"' && b != '\\')
+                    {
+                        builder.append((char) b);
+                    }
+                    else
+                    {
+                        builder.append("\\x").append(Character.forDigit(b >> 4, 16))
+                               .append(Character.forDigit(b & 0xf, 16));
+                    }
+                }
+                builder.append('"');
+                break;
+            case STRING:
+                builder.append('"');
+                String string = new String(_heap, (int) value, _sizes[node], UTF_8);
+                for(int i = 0; i < string.length(); i++)
+                {
+                    char c = string.charAt(i);
+                    if(c == '"' || c == '\\')
+                    {
+                        builder.append('\\');
+                    }
+                    builder.append(c);
+                }
+                builder.append('"');
+                break;
+            case SYMBOL:
+                builder.append(':').append(new String(_heap, (int) value, _sizes[node], US_ASCII));
+                break;
+            case DESCRIPTOR:
+                int descriptor = _firsts[node];
+                builder.append('@');
+                if(descriptor != NONE)
+                {
+                    formatNode(descriptor, builder);
+                    if(_nexts[descriptor] != NONE)
+                    {
+                        builder.append(' ');
+                        formatNode(_nexts[descriptor], builder);
+                    }
+                }
+                break;
+            case LIST:
+                builder.append('[');
+                formatSiblings(_firsts[node], builder);
+                builder.append(']');
+                break;
+            case MAP:
+                builder.append('{');
+                int key = _firsts[node];
+                while(key != NONE)
+                {
+                    formatNode(key, builder);
+                    int entry = _nexts[key];
+                    if(entry != NONE)
+                    {
+                        builder.append('=');
+                        formatNode(entry, builder);
+                        entry = _nexts[entry];
+                    }
+                    if(entry != NONE)
+                    {
+                        builder.append(", ");
+                    }
+                    key = entry;
+                }
+                builder.append('}');
+                break;
+            case ARRAY:
+                int element = _firsts[node];
+                if(_sizes[node] != 0 && element != NONE)
+                {
+                    builder.append('@');
+                    formatNode(element, builder);
+                    builder.append(' ');
+                    element = _nexts[element];
+                }
+                builder.append(TYPES[arrayElementType(node)].name().toLowerCase()).append('[');
+                formatSiblings(element, builder);
+                builder.append(']');
+                break;
+            default:
+                builder.append(value);
+                break;
+        }
+    }
+}
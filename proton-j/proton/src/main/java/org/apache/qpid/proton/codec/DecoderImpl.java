@@ -42,6 +42,7 @@ public class DecoderImpl implements ByteBufferDecoder
     private PrimitiveTypeEncoding[] _constructors = new PrimitiveTypeEncoding[256];
     private Map<Object, DescribedTypeConstructor> _dynamicTypeConstructors =
             new HashMap<Object, DescribedTypeConstructor>();
+    private boolean _reuseInstances;
 
 
     public DecoderImpl()
@@ -60,8 +61,16 @@ public class DecoderImpl implements ByteBufferDecoder
         if(code == EncodingCodes.DESCRIBED_TYPE_INDICATOR)
         {
             final Object descriptor = readObject();
-            TypeConstructor nestedEncoding = readConstructor();
             DescribedTypeConstructor dtc = _dynamicTypeConstructors.get(descriptor);
+            if(dtc instanceof FieldListConstructors)
+            {
+                TypeConstructor fieldListConstructor = readFieldListConstructor((FieldListConstructors) dtc);
+                if(fieldListConstructor != null)
+                {
+                    return fieldListConstructor;
+                }
+            }
+            TypeConstructor nestedEncoding = readConstructor();
             if(dtc == null)
             {
                 dtc = new DescribedTypeConstructor()
@@ -87,9 +96,42 @@ public class DecoderImpl implements ByteBufferDecoder
         }
     }
 
+    /**
+     * Reads the list constructor of a value whose fields can be read directly, if it has one.
+     *
+     * @return a constructor reading the list's fields, or null if the value is not a list, in
+     * which case nothing has been read
+     */
+    private TypeConstructor readFieldListConstructor(final FieldListConstructors constructors)
+    {
+        if(_buffer.hasRemaining())
+        {
+            switch(_buffer.get(_buffer.position()))
+            {
+                case EncodingCodes.LIST0:
+                    _buffer.get();
+                    return constructors._list0;
+                case EncodingCodes.LIST8:
+                    _buffer.get();
+                    return constructors._list8;
+                case EncodingCodes.LIST32:
+                    _buffer.get();
+                    return constructors._list32;
+            }
+        }
+        return null;
+    }
+
     public void register(final Object descriptor, final DescribedTypeConstructor dtc)
     {
-        _dynamicTypeConstructors.put(descriptor, dtc);
+        if(dtc instanceof FieldListConstructor)
+        {
+            _dynamicTypeConstructors.put(descriptor, new FieldListConstructors(this, (FieldListConstructor) dtc));
+        }
+        else
+        {
+            _dynamicTypeConstructors.put(descriptor, dtc);
+        }
     }
 
     private ClassCastException unexpectedType(final Object val, Class clazz)
@@ -379,6 +421,32 @@ public class DecoderImpl implements ByteBufferDecoder
 
     }
 
+    /**
+     * Reads a uint without boxing it.
+     *
+     * @return the value, from 0 to 2^32-1, or defaultVal if it is null
+     */
+    public long readUnsignedInteger(final long defaultVal)
+    {
+        TypeConstructor constructor = readConstructor();
+        if(constructor instanceof UnsignedIntegerType.UnsignedIntegerEncoding)
+        {
+            return ((long) ((UnsignedIntegerType.UnsignedIntegerEncoding)constructor).readPrimitiveValue()) & 0xFFFFFFFFL;
+        }
+        else
+        {
+            Object val = constructor.readValue();
+            if(val == null)
+            {
+                return defaultVal;
+            }
+            else
+            {
+                throw unexpectedType(val, UnsignedInteger.class);
+            }
+        }
+    }
+
     public UnsignedLong readUnsignedLong()
     {
         return readUnsignedLong(null);
@@ -661,6 +729,53 @@ public class DecoderImpl implements ByteBufferDecoder
         throw unexpectedType(val, Binary.class);
     }
 
+    /**
+     * Reads a binary, returning the given one rather than a new copy if the encoded bytes are the
+     * same, as they are for the delivery tag sent on each frame of a multi-frame delivery.
+     */
+    public Binary readBinaryMatching(final Binary previous)
+    {
+        if(previous != null && _buffer.remaining() > 1)
+        {
+            final int position = _buffer.position();
+            int size = -1;
+            int offset = position + 2;
+            switch(_buffer.get(position))
+            {
+                case EncodingCodes.VBIN8:
+                    size = _buffer.get(position + 1) & 0xff;
+                    break;
+                case EncodingCodes.VBIN32:
+                    if(_buffer.remaining() > 4)
+                    {
+                        size = _buffer.getInt(position + 1);
+                        offset = position + 5;
+                    }
+                    break;
+            }
+            if(size == previous.getLength() && _buffer.limit() - offset >= size && matches(offset, previous))
+            {
+                _buffer.position(offset + size);
+                return previous;
+            }
+        }
+        return readBinary();
+    }
+
+    private boolean matches(final int offset, final Binary binary)
+    {
+        final byte[] array = binary.getArray();
+        final int arrayOffset = binary.getArrayOffset();
+        for(int i = binary.getLength() - 1; i >= 0; i--)
+        {
+            if(_buffer.get(offset + i) != array[arrayOffset + i])
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public Symbol readSymbol()
     {
         return readSymbol(null);
@@ -893,6 +1008,93 @@ public class DecoderImpl implements ByteBufferDecoder
         return val == null ? defaultValue : val;
     }
 
+    /**
+     * Moves past the next value without decoding it. Only the constructor and any size prefix
+     * are read, so a list, map, array, binary or string is stepped over in one jump however large
+     * it is, as is a described value such as a message section.
+     *
+     * @throws DecodeException if the value runs past the end of the buffer
+     */
+    public void skipValue()
+    {
+        _buffer.position(skipValue(_buffer, _buffer.position(), _buffer.limit()));
+    }
+
+    /**
+     * Finds the end of an encoded value without decoding it or moving the buffer's position.
+     *
+     * Sizes are worked out from the subcategory of the constructor, as the specification
+     * allows, so values of types this decoder does not know can be stepped over as well.
+     *
+     * @return the position just after the value starting at position
+     * @throws DecodeException if the value runs past limit
+     */
+    public static int skipValue(final ByteBuffer buffer, final int position, final int limit)
+    {
+        checkAvailable(position, 1, limit);
+        return valueEnd(buffer, buffer.get(position) & 0xFF, position + 1, limit);
+    }
+
+    /**
+     * @return the position just after the value with the given constructor, whose encoding
+     * after the constructor starts at position
+     */
+    static int valueEnd(final ByteBuffer buffer, final int code, int position, final int limit)
+    {
+        if(code == EncodingCodes.DESCRIBED_TYPE_INDICATOR)
+        {
+            position = skipValue(buffer, position, limit);
+            return skipValue(buffer, position, limit);
+        }
+
+        final int size;
+        switch(code >> 4)
+        {
+            case 0x4:
+                size = 0;
+                break;
+            case 0x5:
+                size = 1;
+                break;
+            case 0x6:
+                size = 2;
+                break;
+            case 0x7:
+                size = 4;
+                break;
+            case 0x8:
+                size = 8;
+                break;
+            case 0x9:
+                size = 16;
+                break;
+            case 0xa:
+            case 0xc:
+            case 0xe:
+                checkAvailable(position, 1, limit);
+                size = 1 + (buffer.get(position) & 0xFF);
+                break;
+            case 0xb:
+            case 0xd:
+            case 0xf:
+                checkAvailable(position, 4, limit);
+                size = 4 + buffer.getInt(position);
+                break;
+            default:
+                throw new DecodeException("Unknown constructor 0x" + Integer.toHexString(code));
+        }
+        checkAvailable(position, size, limit);
+        return position + size;
+    }
+
+    private static void checkAvailable(final int position, final int size, final int limit)
+    {
+        if(size < 0 || size > limit - position)
+        {
+            throw new DecodeException("Encoded value is truncated");
+        }
+    }
+
     <V> void register(PrimitiveType<V> type)
     {
         Collection<? extends PrimitiveTypeEncoding<V>> encodings = type.getAllEncodings();
@@ -939,12 +1141,46 @@ public class DecoderImpl implements ByteBufferDecoder
         _buffer.get(data, offset, length);
     }
 
+    // primitive arrays are copied out through a view buffer, which reads in the buffer's order
+
+    void readRaw(final short[] data)
+    {
+        _buffer.asShortBuffer().get(data);
+        _buffer.position(_buffer.position() + 2 * data.length);
+    }
+
+    void readRaw(final int[] data)
+    {
+        _buffer.asIntBuffer().get(data);
+        _buffer.position(_buffer.position() + 4 * data.length);
+    }
+
+    void readRaw(final long[] data)
+    {
+        _buffer.asLongBuffer().get(data);
+        _buffer.position(_buffer.position() + 8 * data.length);
+    }
+
+    void readRaw(final float[] data)
+    {
+        _buffer.asFloatBuffer().get(data);
+        _buffer.position(_buffer.position() + 4 * data.length);
+    }
+
+    void readRaw(final double[] data)
+    {
+        _buffer.asDoubleBuffer().get(data);
+        _buffer.position(_buffer.position() + 8 * data.length);
+    }
+
 
-    <V> V readRaw(TypeDecoder<V> decoder, int size)
+    /**
+     * @return the buffer being read, for a type that decodes its bytes in place; the type must
+     * move the position past the bytes it reads
+     */
+    ByteBuffer getByteBuffer()
     {
-        V decode = decoder.decode((ByteBuffer) _buffer.slice().limit(size));
-        _buffer.position(_buffer.position()+size);
-        return decode;
+        return _buffer;
     }
 
     public void setByteBuffer(final ByteBuffer buffer)
@@ -952,9 +1188,109 @@ public class DecoderImpl implements ByteBufferDecoder
         _buffer = buffer;
     }
 
-    interface TypeDecoder<V>
+    /**
+     * Sets whether the types that support it return the same instance from every read, with its
+     * fields overwritten by each value decoded. A value read this way is only valid until the
+     * next value of its type is read, and must be copied if it is to be kept for longer.
+     */
+    public void setReuseInstances(final boolean reuseInstances)
     {
-        V decode(ByteBuffer buf);
+        _reuseInstances = reuseInstances;
+    }
+
+    public boolean isReusingInstances()
+    {
+        return _reuseInstances;
+    }
+
+    /**
+     * Reads a described list of fields with its {@link FieldListConstructor}, after the list
+     * constructor of the given size width has been read.
+     */
+    private static final class FieldListTypeConstructor implements TypeConstructor
+    {
+        private final DecoderImpl _decoder;
+        private final FieldListConstructor _constructor;
+        private final int _width;
+
+        private FieldListTypeConstructor(final DecoderImpl decoder,
+                                         final FieldListConstructor constructor,
+                                         final int width)
+        {
+            _decoder = decoder;
+            _constructor = constructor;
+            _width = width;
+        }
+
+        public Object readValue()
+        {
+            int count;
+            switch(_width)
+            {
+                case 0:
+                    count = 0;
+                    break;
+                case 1:
+                    _decoder.readRawByte();
+                    count = ((int)_decoder.readRawByte()) & 0xff;
+                    break;
+                default:
+                    _decoder.readRawInt();
+                    count = _decoder.readRawInt();
+            }
+            try
+            {
+                return _constructor.readFields(_decoder, count);
+            }
+            catch (NullPointerException npe)
+            {
+                throw new DecodeException("Unexpected null value - mandatory field not set? ("+npe.getMessage()+")", npe);
+            }
+            catch (ClassCastException cce)
+            {
+                throw new DecodeException("Incorrect type used", cce);
+            }
+        }
+
+        public boolean encodesJavaPrimitive()
+        {
+            return false;
+        }
+
+        public Class getTypeClass()
+        {
+            return _constructor.getTypeClass();
+        }
+    }
+
+    /**
+     * The registry entry for a {@link FieldListConstructor}, holding a constructor for each
+     * form of list so that reading one allocates nothing beyond the value itself.
+     */
+    private static final class FieldListConstructors implements DescribedTypeConstructor
+    {
+        private final FieldListConstructor _constructor;
+        private final TypeConstructor _list0;
+        private final TypeConstructor _list8;
+        private final TypeConstructor _list32;
+
+        private FieldListConstructors(final DecoderImpl decoder, final FieldListConstructor constructor)
+        {
+            _constructor = constructor;
+            _list0 = new FieldListTypeConstructor(decoder, constructor, 0);
+            _list8 = new FieldListTypeConstructor(decoder, constructor, 1);
+            _list32 = new FieldListTypeConstructor(decoder, constructor, 4);
+        }
+
+        public Object newInstance(final Object described)
+        {
+            return _constructor.newInstance(described);
+        }
+
+        public Class getTypeClass()
+        {
+            return _constructor.getTypeClass();
+        }
     }
 
     private static class UnknownDescribedType implements DescribedType
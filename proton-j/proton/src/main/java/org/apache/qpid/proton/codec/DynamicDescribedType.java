@@ -73,9 +73,15 @@ public class DynamicDescribedType implements AMQPType<DescribedType>
 
     public void write(final DescribedType val)
     {
-        TypeEncoding<DescribedType> encoding = getEncoding(val);
-        encoding.writeConstructor();
-        encoding.writeValue(val);
+        _encoder.writeRaw(EncodingCodes.DESCRIBED_TYPE_INDICATOR);
+        _encoder.writeObject(_descriptor);
+        _encoder.writeObject(val.getDescribed());
+    }
+
+    int getEncodedSizeUpTo(final DescribedType val, final int limit)
+    {
+        int descriptorSize = 1 + _encoder.getEncodedSizeUpTo(_descriptor, limit);
+        return descriptorSize + _encoder.getEncodedSizeUpTo(val.getDescribed(), limit - descriptorSize);
     }
 
     private class DynamicDescribedTypeEncoding implements TypeEncoding
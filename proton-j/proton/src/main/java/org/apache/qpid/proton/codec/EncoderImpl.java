@@ -34,18 +34,26 @@ import org.apache.qpid.proton.amqp.UnsignedInteger;
 import org.apache.qpid.proton.amqp.UnsignedLong;
 import org.apache.qpid.proton.amqp.UnsignedShort;
 
+/**
+ * Encodes values into a buffer set with {@link #setByteBuffer(WritableBuffer)}.
+ *
+ * The registered types and their encodings hold no per-write state, but an encoder writes to
+ * the one buffer last set, so it must only be used by one thread at a time. The types also hold
+ * the encoder they were registered with, so a registry cannot be shared between encoders either.
+ * Threads that encode concurrently each use their own encoder and registry, as
+ * {@code MessageCodec} does.
+ */
 public final class EncoderImpl implements ByteBufferEncoder
 {
 
 
     private static final byte DESCRIBED_TYPE_OP = (byte)0;
 
-
     private WritableBuffer _buffer;
 
-    private final Map<Class, AMQPType> _typeRegistry = new HashMap<Class, AMQPType>();
-    private Map<Object, AMQPType> _describedDescriptorRegistry = new HashMap<Object, AMQPType>();
-    private Map<Class, AMQPType>  _describedTypesClassRegistry = new HashMap<Class, AMQPType>();
+    private final ClassTypeTable _typeRegistry = new ClassTypeTable();
+    private final Map<Object, AMQPType> _describedDescriptorRegistry = new HashMap<Object, AMQPType>();
+    private final Map<Class, AMQPType>  _describedTypesClassRegistry = new HashMap<Class, AMQPType>();
 
     private final NullType              _nullType;
     private final BooleanType           _booleanType;
@@ -131,7 +139,7 @@ public final class EncoderImpl implements ByteBufferEncoder
 
     public void setByteBuffer(final ByteBuffer buf)
     {
-        _buffer = new WritableBuffer.ByteBufferWrapper(buf);
+        setByteBuffer(new WritableBuffer.ByteBufferWrapper(buf));
     }
 
     public void setByteBuffer(final WritableBuffer buf)
@@ -163,10 +171,44 @@ public final class EncoderImpl implements ByteBufferEncoder
         }
     }
 
+    /**
+     * Returns the encoded size of the value, constructor included, giving up as soon as it is
+     * known to be more than limit. Lists and maps use this to choose between their one and four
+     * byte size forms without sizing everything they contain.
+     *
+     * @return the encoded size, or some value greater than limit
+     */
+    int getEncodedSizeUpTo(final Object o, final int limit)
+    {
+        AMQPType type = getType(o);
+        if(type instanceof ListType)
+        {
+            return ((ListType)type).getEncodedSizeUpTo((List) o, limit);
+        }
+        else if(type instanceof MapType)
+        {
+            return ((MapType)type).getEncodedSizeUpTo((Map) o, limit);
+        }
+        else if(type instanceof AbstractDescribedType)
+        {
+            return ((AbstractDescribedType)type).getEncodedSizeUpTo(o, limit);
+        }
+        else if(type instanceof DynamicDescribedType)
+        {
+            return ((DynamicDescribedType)type).getEncodedSizeUpTo((DescribedType) o, limit);
+        }
+        else if(type == null)
+        {
+            throw new IllegalArgumentException("No encoding defined for type: " + o.getClass());
+        }
+        TypeEncoding encoding = type.getEncoding(o);
+        return encoding.getConstructorSize() + encoding.getValueSize(o);
+    }
+
     public AMQPType getTypeFromClass(final Class clazz)
     {
         AMQPType amqpType = _typeRegistry.get(clazz);
-        if(amqpType == null)
+        if(amqpType == null && !_typeRegistry.contains(clazz))
         {
 
             if(clazz.isArray())
@@ -213,6 +255,8 @@ public final class EncoderImpl implements ByteBufferEncoder
             _describedDescriptorRegistry.put(descriptor, type);
         }
         _describedTypesClassRegistry.put(clazz, type);
+        // the class may already have been looked up and found to have no type
+        _typeRegistry.remove(clazz);
     }
 
     public void writeNull()
@@ -261,6 +305,11 @@ public final class EncoderImpl implements ByteBufferEncoder
         }
     }
 
+    public void writeUnsignedInteger(final int uint)
+    {
+        _unsignedIntegerType.write(uint);
+    }
+
     public void writeUnsignedInteger(final UnsignedInteger uint)
     {
         if(uint == null)
@@ -658,7 +707,12 @@ public final class EncoderImpl implements ByteBufferEncoder
 
     public void writeObject(final Object o)
     {
-        AMQPType type = _typeRegistry.get(o == null ? Void.class : o.getClass());
+        AMQPType type = o == null ? _nullType : _typeRegistry.get(o.getClass());
+
+        if(type == null && !o.getClass().isArray())
+        {
+            type = getTypeFromClass(o.getClass());
+        }
 
         if(type == null)
         {
@@ -739,6 +793,44 @@ public final class EncoderImpl implements ByteBufferEncoder
         _buffer.put(b);
     }
 
+    int getPosition()
+    {
+        return _buffer.position();
+    }
+
+    /**
+     * Moves the write position back to where an earlier {@link #getPosition()} was taken, so that
+     * what was written since can be written again in another form.
+     */
+    void setPosition(final int position)
+    {
+        _buffer.position(position);
+    }
+
+    /**
+     * Overwrites a byte already written at the given position, leaving the position unchanged.
+     */
+    void writeRawAt(final int position, final byte b)
+    {
+        final WritableBuffer buffer = _buffer;
+        final int current = buffer.position();
+        buffer.position(position);
+        buffer.put(b);
+        buffer.position(current);
+    }
+
+    /**
+     * Overwrites four bytes already written at the given position, leaving the position unchanged.
+     */
+    void writeRawAt(final int position, final int i)
+    {
+        final WritableBuffer buffer = _buffer;
+        final int current = buffer.position();
+        buffer.position(position);
+        buffer.putInt(i);
+        buffer.position(current);
+    }
+
     void writeRaw(final short s)
     {
         _buffer.putShort(s);
@@ -769,32 +861,161 @@ public final class EncoderImpl implements ByteBufferEncoder
         _buffer.put(src, offset, length);
     }
 
+    /**
+     * @return the ByteBuffer under the buffer being written, if there is one with at least size
+     * bytes remaining, so that a primitive array can be copied into it through a view buffer
+     */
+    private static ByteBuffer bulkBuffer(final WritableBuffer buffer, final int size)
+    {
+        if(buffer instanceof WritableBuffer.ByteBufferWrapper)
+        {
+            final ByteBuffer byteBuffer = ((WritableBuffer.ByteBufferWrapper) buffer).byteBuffer();
+            if(byteBuffer.remaining() >= size)
+            {
+                return byteBuffer;
+            }
+        }
+        return null;
+    }
+
+    void writeRaw(final short[] a)
+    {
+        final WritableBuffer buffer = _buffer;
+        final ByteBuffer bulk = bulkBuffer(buffer, 2 * a.length);
+        if(bulk != null)
+        {
+            bulk.asShortBuffer().put(a);
+            bulk.position(bulk.position() + 2 * a.length);
+        }
+        else
+        {
+            for(short value : a)
+            {
+                buffer.putShort(value);
+            }
+        }
+    }
+
+    void writeRaw(final int[] a)
+    {
+        final WritableBuffer buffer = _buffer;
+        final ByteBuffer bulk = bulkBuffer(buffer, 4 * a.length);
+        if(bulk != null)
+        {
+            bulk.asIntBuffer().put(a);
+            bulk.position(bulk.position() + 4 * a.length);
+        }
+        else
+        {
+            for(int value : a)
+            {
+                buffer.putInt(value);
+            }
+        }
+    }
+
+    void writeRaw(final long[] a)
+    {
+        final WritableBuffer buffer = _buffer;
+        final ByteBuffer bulk = bulkBuffer(buffer, 8 * a.length);
+        if(bulk != null)
+        {
+            bulk.asLongBuffer().put(a);
+            bulk.position(bulk.position() + 8 * a.length);
+        }
+        else
+        {
+            for(long value : a)
+            {
+                buffer.putLong(value);
+            }
+        }
+    }
+
+    void writeRaw(final float[] a)
+    {
+        final WritableBuffer buffer = _buffer;
+        final ByteBuffer bulk = bulkBuffer(buffer, 4 * a.length);
+        if(bulk != null)
+        {
+            bulk.asFloatBuffer().put(a);
+            bulk.position(bulk.position() + 4 * a.length);
+        }
+        else
+        {
+            for(float value : a)
+            {
+                buffer.putFloat(value);
+            }
+        }
+    }
+
+    void writeRaw(final double[] a)
+    {
+        final WritableBuffer buffer = _buffer;
+        final ByteBuffer bulk = bulkBuffer(buffer, 8 * a.length);
+        if(bulk != null)
+        {
+            bulk.asDoubleBuffer().put(a);
+            bulk.position(bulk.position() + 8 * a.length);
+        }
+        else
+        {
+            for(double value : a)
+            {
+                buffer.putDouble(value);
+            }
+        }
+    }
+
+    /**
+     * Writes the string as UTF-8, with any unpaired surrogate written as '?' as String.getBytes
+     * does. The number of bytes written is given by {@link StringType#calculateUTF8Length(String)}.
+     */
     void writeRaw(String string)
     {
+        final WritableBuffer buffer = _buffer;
         final int length = string.length();
+        int i = 0;
         char c;
 
-        for (int i = 0; i < length; i++)
+        while(i < length && (c = string.charAt(i)) < 0x80)
+        {
+            buffer.put((byte) c);
+            i++;
+        }
+
+        for (; i < length; i++)
         {
             c = string.charAt(i);
-            if ((c >= 0x0001) && (c <= 0x007F))
+            if (c < 0x80)
             {
-                _buffer.put((byte) c);
-
+                buffer.put((byte) c);
+            }
+            else if (c < 0x800)
+            {
+                buffer.put((byte) (0xC0 | (c >> 6)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
             }
-            else if (c > 0x07FF)
+            else if (c < 0xD800 || c > 0xDFFF)
             {
-                _buffer.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
-                _buffer.put((byte) (0x80 | ((c >>  6) & 0x3F)));
-                _buffer.put((byte) (0x80 | (c & 0x3F)));
+                buffer.put((byte) (0xE0 | (c >> 12)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+            else if (c <= 0xDBFF && i + 1 < length && Character.isLowSurrogate(string.charAt(i + 1)))
+            {
+                final int codePoint = Character.toCodePoint(c, string.charAt(++i));
+                buffer.put((byte) (0xF0 | (codePoint >> 18)));
+                buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+                buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (codePoint & 0x3F)));
             }
             else
             {
-                _buffer.put((byte) (0xC0 | ((c >>  6) & 0x1F)));
-                _buffer.put((byte) (0x80 | (c & 0x3F)));
+                buffer.put((byte) '?');
             }
         }
-
     }
 
 
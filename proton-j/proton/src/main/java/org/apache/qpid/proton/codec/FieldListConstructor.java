@@ -0,0 +1,35 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.codec;
+
+/**
+ * A constructor for a described type encoded as a list of fields, which reads the fields
+ * straight from the decoder rather than from a List of the decoded values.
+ */
+public interface FieldListConstructor<V> extends DescribedTypeConstructor<V>
+{
+    /**
+     * Reads the value from the next count values in the decoder. Fields beyond those the type
+     * defines must still be read. If the decoder is reusing instances, the instance returned by
+     * the previous read may be returned again, with every field overwritten.
+     */
+    V readFields(DecoderImpl decoder, int count);
+}
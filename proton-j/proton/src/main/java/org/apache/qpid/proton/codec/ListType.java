@@ -31,11 +31,10 @@ public class ListType extends AbstractPrimitiveType<List>
     private final ListEncoding _listEncoding;
     private final ListEncoding _shortListEncoding;
     private final ListEncoding _zeroListEncoding;
-    private EncoderImpl _encoder;
+    private final EncoderImpl _encoder;
 
     private static interface ListEncoding extends PrimitiveTypeEncoding<List>
     {
-        void setValue(List value, int length);
     }
 
     ListType(final EncoderImpl encoder, final DecoderImpl decoder)
@@ -56,36 +55,81 @@ public class ListType extends AbstractPrimitiveType<List>
     public ListEncoding getEncoding(final List val)
     {
 
-        int calculatedSize = calculateSize(val, _encoder);
+        int calculatedSize = calculateSize(val, _encoder, Integer.MAX_VALUE);
         ListEncoding encoding = val.isEmpty() 
                                     ? _zeroListEncoding 
                                     : (val.size() > 255 || calculatedSize >= 254)
                                         ? _listEncoding
                                         : _shortListEncoding;
 
-        encoding.setValue(val, calculatedSize);
         return encoding;
     }
 
-    private static int calculateSize(final List val, EncoderImpl encoder)
+    /**
+     * Writes the list in a single pass over its elements. Only a list known to fit the one byte
+     * size form is sized up front, and that sizing stops as soon as the limit is passed; a larger
+     * list has its size written in after its elements.
+     */
+    @Override
+    public void write(final List val)
+    {
+        final int count = val.size();
+        if(count == 0)
+        {
+            _encoder.writeRaw(EncodingCodes.LIST0);
+            return;
+        }
+        int calculatedSize = count > 255 ? 254 : calculateSize(val, _encoder, 253);
+        if(calculatedSize < 254)
+        {
+            _encoder.writeRaw(EncodingCodes.LIST8);
+            _encoder.writeRaw((byte) (calculatedSize + 1));
+            _encoder.writeRaw((byte) count);
+            writeElements(val, _encoder);
+        }
+        else
+        {
+            _encoder.writeRaw(EncodingCodes.LIST32);
+            int sizePosition = _encoder.getPosition();
+            _encoder.writeRaw(0);
+            _encoder.writeRaw(count);
+            writeElements(val, _encoder);
+            _encoder.writeRawAt(sizePosition, _encoder.getPosition() - sizePosition - 4);
+        }
+    }
+
+    int getEncodedSizeUpTo(final List val, final int limit)
+    {
+        if(val.isEmpty())
+        {
+            return 1;
+        }
+        int calculatedSize = calculateSize(val, _encoder, limit);
+        return (val.size() > 255 || calculatedSize >= 254) ? 9 + calculatedSize : 3 + calculatedSize;
+    }
+
+    private static int calculateSize(final List val, EncoderImpl encoder, final int limit)
     {
         int len = 0;
         final int count = val.size();
 
-        for(int i = 0; i < count; i++)
+        for(int i = 0; i < count && len <= limit; i++)
         {
-            Object element = val.get(i);
-            AMQPType type = encoder.getType(element);
-            if(type == null)
-            {
-                throw new IllegalArgumentException("No encoding defined for type: " + element.getClass());
-            }
-            TypeEncoding elementEncoding = type.getEncoding(element);
-            len += elementEncoding.getConstructorSize()+elementEncoding.getValueSize(element);
+            len += encoder.getEncodedSizeUpTo(val.get(i), limit - len);
         }
         return len;
     }
 
+    private static void writeElements(final List val, EncoderImpl encoder)
+    {
+        final int count = val.size();
+
+        for(int i = 0; i < count; i++)
+        {
+            encoder.writeObject(val.get(i));
+        }
+    }
+
 
     public ListEncoding getCanonicalEncoding()
     {
@@ -102,9 +146,6 @@ public class ListType extends AbstractPrimitiveType<List>
             implements ListEncoding
     {
 
-        private List _value;
-        private int _length;
-
         public AllListEncoding(final EncoderImpl encoder, final DecoderImpl decoder)
         {
             super(encoder, decoder);
@@ -114,22 +155,13 @@ public class ListType extends AbstractPrimitiveType<List>
         protected void writeEncodedValue(final List val)
         {
             getEncoder().writeRaw(val.size());
-
-            final int count = val.size();
-
-            for(int i = 0; i < count; i++)
-            {
-                Object element = val.get(i);
-                TypeEncoding elementEncoding = getEncoder().getType(element).getEncoding(element);
-                elementEncoding.writeConstructor();
-                elementEncoding.writeValue(element);
-            }
+            writeElements(val, getEncoder());
         }
 
         @Override
         protected int getEncodedValueSize(final List val)
         {
-            return 4 + ((val == _value) ? _length : calculateSize(val, getEncoder()));
+            return 4 + calculateSize(val, getEncoder(), Integer.MAX_VALUE);
         }
 
 
@@ -162,12 +194,6 @@ public class ListType extends AbstractPrimitiveType<List>
             }
             return list;
         }
-
-        public void setValue(final List value, final int length)
-        {
-            _value = value;
-            _length = length;
-        }
     }
 
     private class ShortListEncoding
@@ -175,9 +201,6 @@ public class ListType extends AbstractPrimitiveType<List>
             implements ListEncoding
     {
 
-        private List _value;
-        private int _length;
-
         public ShortListEncoding(final EncoderImpl encoder, final DecoderImpl decoder)
         {
             super(encoder, decoder);
@@ -187,21 +210,13 @@ public class ListType extends AbstractPrimitiveType<List>
         protected void writeEncodedValue(final List val)
         {
             getEncoder().writeRaw((byte)val.size());
-
-            final int count = val.size();
-
-            for(int i = 0; i < count; i++)
-            {
-                Object element = val.get(i);    TypeEncoding elementEncoding = getEncoder().getType(element).getEncoding(element);
-                elementEncoding.writeConstructor();
-                elementEncoding.writeValue(element);
-            }
+            writeElements(val, getEncoder());
         }
 
         @Override
         protected int getEncodedValueSize(final List val)
         {
-            return 1 + ((val == _value) ? _length : calculateSize(val, getEncoder()));
+            return 1 + calculateSize(val, getEncoder(), Integer.MAX_VALUE);
         }
 
 
@@ -235,12 +250,6 @@ public class ListType extends AbstractPrimitiveType<List>
             }
             return list;
         }
-
-        public void setValue(final List value, final int length)
-        {
-            _value = value;
-            _length = length;
-        }
     }
 
     
@@ -271,10 +280,6 @@ public class ListType extends AbstractPrimitiveType<List>
            return ListType.this;
         }
 
-        public void setValue(List value, int length)
-        {
-        }
-
         public void writeValue(final List val)
         {
         }
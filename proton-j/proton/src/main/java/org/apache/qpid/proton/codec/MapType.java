@@ -26,11 +26,10 @@ public class MapType extends AbstractPrimitiveType<Map>
 {
     private final MapEncoding _mapEncoding;
     private final MapEncoding _shortMapEncoding;
-    private EncoderImpl _encoder;
+    private final EncoderImpl _encoder;
 
     private static interface MapEncoding extends PrimitiveTypeEncoding<Map>
     {
-        void setValue(Map value, int length);
     }
 
     MapType(final EncoderImpl encoder, final DecoderImpl decoder)
@@ -50,32 +49,75 @@ public class MapType extends AbstractPrimitiveType<Map>
     public MapEncoding getEncoding(final Map val)
     {
 
-        int calculatedSize = calculateSize(val, _encoder);
+        int calculatedSize = calculateSize(val, _encoder, Integer.MAX_VALUE);
         MapEncoding encoding = (val.size() > 127 || calculatedSize >= 254)
                                     ? _mapEncoding
                                     : _shortMapEncoding;
 
-        encoding.setValue(val, calculatedSize);
         return encoding;
     }
 
-    private static int calculateSize(final Map val, EncoderImpl encoder)
+    /**
+     * Writes the map in a single pass over its entries, as {@link ListType#write(List)} does.
+     */
+    @Override
+    public void write(final Map val)
+    {
+        final int count = 2 * val.size();
+        int calculatedSize = count > 255 ? 254 : calculateSize(val, _encoder, 253);
+        if(calculatedSize < 254)
+        {
+            _encoder.writeRaw(EncodingCodes.MAP8);
+            _encoder.writeRaw((byte) (calculatedSize + 1));
+            _encoder.writeRaw((byte) count);
+            writeEntries(val, _encoder);
+        }
+        else
+        {
+            _encoder.writeRaw(EncodingCodes.MAP32);
+            int sizePosition = _encoder.getPosition();
+            _encoder.writeRaw(0);
+            _encoder.writeRaw(count);
+            writeEntries(val, _encoder);
+            _encoder.writeRawAt(sizePosition, _encoder.getPosition() - sizePosition - 4);
+        }
+    }
+
+    int getEncodedSizeUpTo(final Map val, final int limit)
+    {
+        int calculatedSize = calculateSize(val, _encoder, limit);
+        return (val.size() > 127 || calculatedSize >= 254) ? 9 + calculatedSize : 3 + calculatedSize;
+    }
+
+    private static int calculateSize(final Map val, EncoderImpl encoder, final int limit)
     {
         int len = 0;
         Iterator<Map.Entry> iter = val.entrySet().iterator();
 
-        while(iter.hasNext())
+        while(iter.hasNext() && len <= limit)
         {
             Map.Entry element = iter.next();
-            TypeEncoding elementEncoding = encoder.getType(element.getKey()).getEncoding(element.getKey());
-            len += elementEncoding.getConstructorSize()+elementEncoding.getValueSize(element.getKey());
-            elementEncoding = encoder.getType(element.getValue()).getEncoding(element.getValue());
-            len += elementEncoding.getConstructorSize()+elementEncoding.getValueSize(element.getValue());
-
+            len += encoder.getEncodedSizeUpTo(element.getKey(), limit - len);
+            if(len <= limit)
+            {
+                len += encoder.getEncodedSizeUpTo(element.getValue(), limit - len);
+            }
         }
         return len;
     }
 
+    private static void writeEntries(final Map val, EncoderImpl encoder)
+    {
+        Iterator<Map.Entry> iter = val.entrySet().iterator();
+
+        while(iter.hasNext())
+        {
+            Map.Entry element = iter.next();
+            encoder.writeObject(element.getKey());
+            encoder.writeObject(element.getValue());
+        }
+    }
+
 
     public MapEncoding getCanonicalEncoding()
     {
@@ -92,9 +134,6 @@ public class MapType extends AbstractPrimitiveType<Map>
             implements MapEncoding
     {
 
-        private Map _value;
-        private int _length;
-
         public AllMapEncoding(final EncoderImpl encoder, final DecoderImpl decoder)
         {
             super(encoder, decoder);
@@ -104,26 +143,13 @@ public class MapType extends AbstractPrimitiveType<Map>
         protected void writeEncodedValue(final Map val)
         {
             getEncoder().writeRaw(2 * val.size());
-            
-
-            Iterator<Map.Entry> iter = val.entrySet().iterator();
-
-            while(iter.hasNext())
-            {
-                Map.Entry element = iter.next();
-                TypeEncoding elementEncoding = getEncoder().getType(element.getKey()).getEncoding(element.getKey());
-                elementEncoding.writeConstructor();
-                elementEncoding.writeValue(element.getKey());
-                elementEncoding = getEncoder().getType(element.getValue()).getEncoding(element.getValue());
-                elementEncoding.writeConstructor();
-                elementEncoding.writeValue(element.getValue());
-            }
+            writeEntries(val, getEncoder());
         }
 
         @Override
         protected int getEncodedValueSize(final Map val)
         {
-            return 4 + ((val == _value) ? _length : calculateSize(val, getEncoder()));
+            return 4 + calculateSize(val, getEncoder(), Integer.MAX_VALUE);
         }
 
 
@@ -160,12 +186,6 @@ public class MapType extends AbstractPrimitiveType<Map>
             }
             return map;
         }
-
-        public void setValue(final Map value, final int length)
-        {
-            _value = value;
-            _length = length;
-        }
     }
 
     private class ShortMapEncoding
@@ -173,9 +193,6 @@ public class MapType extends AbstractPrimitiveType<Map>
             implements MapEncoding
     {
 
-        private Map _value;
-        private int _length;
-
         public ShortMapEncoding(final EncoderImpl encoder, final DecoderImpl decoder)
         {
             super(encoder, decoder);
@@ -185,26 +202,13 @@ public class MapType extends AbstractPrimitiveType<Map>
         protected void writeEncodedValue(final Map val)
         {
             getEncoder().writeRaw((byte)(2*val.size()));
-                
-
-            Iterator<Map.Entry> iter = val.entrySet().iterator();
-
-            while(iter.hasNext())
-            {
-                Map.Entry element = iter.next();
-                TypeEncoding elementEncoding = getEncoder().getType(element.getKey()).getEncoding(element.getKey());
-                elementEncoding.writeConstructor();
-                elementEncoding.writeValue(element.getKey());
-                elementEncoding = getEncoder().getType(element.getValue()).getEncoding(element.getValue());
-                elementEncoding.writeConstructor();
-                elementEncoding.writeValue(element.getValue());
-            }
+            writeEntries(val, getEncoder());
         }
 
         @Override
         protected int getEncodedValueSize(final Map val)
         {
-            return 1 + ((val == _value) ? _length : calculateSize(val, getEncoder()));
+            return 1 + calculateSize(val, getEncoder(), Integer.MAX_VALUE);
         }
 
 
@@ -241,11 +245,5 @@ public class MapType extends AbstractPrimitiveType<Map>
             }
             return map;
         }
-
-        public void setValue(final Map value, final int length)
-        {
-            _value = value;
-            _length = length;
-        }
     }
 }
@@ -0,0 +1,647 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.codec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.UUID;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Decimal128;
+import org.apache.qpid.proton.amqp.Decimal32;
+import org.apache.qpid.proton.amqp.Decimal64;
+import org.apache.qpid.proton.amqp.Symbol;
+
+/**
+ * A cursor over encoded AMQP values, which reads them where they lie in a buffer rather than
+ * building them.
+ *
+ * The cursor moves as with {@link Data}: {@link #next()} steps over the current value to the
+ * next sibling, {@link #enter()} moves into the current list, map, array or described value,
+ * and {@link #exit()} steps over whatever of it is left and makes it current again. Stepping
+ * over a value only reads its constructor and size, so the fields wanted from a large map or
+ * list can be picked out without decoding the rest. A get of the wrong type returns zero,
+ * false or null; only the getters that return objects allocate.
+ *
+ * Described values have two children, the descriptor and the value. A described array has
+ * its descriptor as its first child, which is not counted in {@link #getArray()}.
+ *
+ * The buffer's position and limit are not changed, and an instance may be reused for another
+ * buffer through {@link #setByteBuffer(ByteBuffer)}.
+ */
+public final class PullDecoder
+{
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private static final Data.Type[] TYPES = new Data.Type[256];
+
+    static
+    {
+        setType(Data.Type.NULL, EncodingCodes.NULL);
+        setType(Data.Type.BOOL, EncodingCodes.BOOLEAN, EncodingCodes.BOOLEAN_TRUE, EncodingCodes.BOOLEAN_FALSE);
+        setType(Data.Type.UBYTE, EncodingCodes.UBYTE);
+        setType(Data.Type.BYTE, EncodingCodes.BYTE);
+        setType(Data.Type.USHORT, EncodingCodes.USHORT);
+        setType(Data.Type.SHORT, EncodingCodes.SHORT);
+        setType(Data.Type.UINT, EncodingCodes.UINT, EncodingCodes.SMALLUINT, EncodingCodes.UINT0);
+        setType(Data.Type.INT, EncodingCodes.INT, EncodingCodes.SMALLINT);
+        setType(Data.Type.CHAR, EncodingCodes.CHAR);
+        setType(Data.Type.ULONG, EncodingCodes.ULONG, EncodingCodes.SMALLULONG, EncodingCodes.ULONG0);
+        setType(Data.Type.LONG, EncodingCodes.LONG, EncodingCodes.SMALLLONG);
+        setType(Data.Type.TIMESTAMP, EncodingCodes.TIMESTAMP);
+        setType(Data.Type.FLOAT, EncodingCodes.FLOAT);
+        setType(Data.Type.DOUBLE, EncodingCodes.DOUBLE);
+        setType(Data.Type.DECIMAL32, EncodingCodes.DECIMAL32);
+        setType(Data.Type.DECIMAL64, EncodingCodes.DECIMAL64);
+        setType(Data.Type.DECIMAL128, EncodingCodes.DECIMAL128);
+        setType(Data.Type.UUID, EncodingCodes.UUID);
+        setType(Data.Type.BINARY, EncodingCodes.VBIN8, EncodingCodes.VBIN32);
+        setType(Data.Type.STRING, EncodingCodes.STR8, EncodingCodes.STR32);
+        setType(Data.Type.SYMBOL, EncodingCodes.SYM8, EncodingCodes.SYM32);
+        setType(Data.Type.DESCRIPTOR, EncodingCodes.DESCRIBED_TYPE_INDICATOR);
+        setType(Data.Type.LIST, EncodingCodes.LIST0, EncodingCodes.LIST8, EncodingCodes.LIST32);
+        setType(Data.Type.MAP, EncodingCodes.MAP8, EncodingCodes.MAP32);
+        setType(Data.Type.ARRAY, EncodingCodes.ARRAY8, EncodingCodes.ARRAY32);
+    }
+
+    private static void setType(Data.Type type, byte... codes)
+    {
+        for(byte code : codes)
+        {
+            TYPES[code & 0xFF] = type;
+        }
+    }
+
+    /** Element code of a level that is not an array. */
+    private static final int NOT_ARRAY = -1;
+    /** Element code of an array level whose descriptor has yet to be read. */
+    private static final int DESCRIPTOR_PENDING = -2;
+
+    private ByteBuffer _buffer;
+
+    // per level, with level 0 being the top level of the buffer
+    private int[] _ends = new int[8];
+    private int[] _remaining = new int[8];
+    private int[] _elementCodes = new int[8];
+    // per level, the container entered and the position in its parent to carry on from
+    private Data.Type[] _containerTypes = new Data.Type[8];
+    private int[] _containerCodes = new int[8];
+    private int[] _containerStarts = new int[8];
+    private int[] _parentNexts = new int[8];
+    private int _depth;
+
+    private Data.Type _type;
+    private int _code;
+    private int _valueStart;
+    private int _valueEnd;
+    private int _next;
+
+    public PullDecoder()
+    {
+    }
+
+    public PullDecoder(ByteBuffer buffer)
+    {
+        setByteBuffer(buffer);
+    }
+
+    /**
+     * Starts reading the values between the position and limit of the buffer, with the cursor
+     * before the first of them.
+     */
+    public void setByteBuffer(ByteBuffer buffer)
+    {
+        _buffer = buffer;
+        _depth = 0;
+        _ends[0] = buffer.limit();
+        _remaining[0] = Integer.MAX_VALUE;
+        _elementCodes[0] = NOT_ARRAY;
+        _next = buffer.position();
+        _type = null;
+    }
+
+    /**
+     * Moves to the next sibling, stepping over the current value without decoding it.
+     *
+     * @return its type, or null (without moving) if there is none
+     * @throws DecodeException if the value is malformed or runs past its container
+     */
+    public Data.Type next()
+    {
+        final int level = _depth;
+        final int end = _ends[level];
+        final boolean descriptor = _elementCodes[level] == DESCRIPTOR_PENDING;
+        if(!descriptor && _remaining[level] == 0)
+        {
+            return null;
+        }
+        if(_next >= end)
+        {
+            if(level == 0)
+            {
+                return null;
+            }
+            throw new DecodeException("Encoded value is truncated");
+        }
+
+        int position = _next;
+        int code = descriptor ? NOT_ARRAY : _elementCodes[level];
+        if(code == NOT_ARRAY)
+        {
+            code = _buffer.get(position++) & 0xFF;
+        }
+        final int valueEnd = valueEnd(code, position, end);
+        _type = TYPES[code];
+        _code = code;
+        _valueStart = position;
+        _valueEnd = valueEnd;
+
+        if(descriptor)
+        {
+            checkAvailable(valueEnd, 1, end);
+            _elementCodes[level] = _buffer.get(valueEnd) & 0xFF;
+            _next = valueEnd + 1;
+        }
+        else
+        {
+            if(level != 0)
+            {
+                _remaining[level]--;
+            }
+            _next = valueEnd;
+        }
+        return _type;
+    }
+
+    /**
+     * Moves into the current list, map, array or described value, before its first child.
+     *
+     * @return false (without moving) if the current value has no children to move into
+     */
+    public boolean enter()
+    {
+        if(_type == null)
+        {
+            return false;
+        }
+
+        final int end = _valueEnd;
+        int start;
+        int count;
+        int elementCode = NOT_ARRAY;
+        switch(_type)
+        {
+            case DESCRIPTOR:
+                start = _valueStart;
+                count = 2;
+                break;
+            case LIST:
+            case MAP:
+            case ARRAY:
+                if(_code == (EncodingCodes.LIST0 & 0xFF))
+                {
+                    start = _valueStart;
+                    count = 0;
+                }
+                else if(isSmallCompound(_code))
+                {
+                    checkAvailable(_valueStart, 2, end);
+                    count = _buffer.get(_valueStart + 1) & 0xFF;
+                    start = _valueStart + 2;
+                }
+                else
+                {
+                    checkAvailable(_valueStart, 8, end);
+                    count = _buffer.getInt(_valueStart + 4);
+                    start = _valueStart + 8;
+                    if(count < 0)
+                    {
+                        throw new DecodeException("Invalid element count " + count);
+                    }
+                }
+                if(_type == Data.Type.ARRAY)
+                {
+                    checkAvailable(start, 1, end);
+                    final int constructor = _buffer.get(start++) & 0xFF;
+                    elementCode = constructor == EncodingCodes.DESCRIBED_TYPE_INDICATOR
+                                  ? DESCRIPTOR_PENDING
+                                  : constructor;
+                }
+                break;
+            default:
+                return false;
+        }
+
+        final int level = _depth + 1;
+        if(level == _ends.length)
+        {
+            grow();
+        }
+        _ends[level] = end;
+        _remaining[level] = count;
+        _elementCodes[level] = elementCode;
+        _containerTypes[level] = _type;
+        _containerCodes[level] = _code;
+        _containerStarts[level] = _valueStart;
+        _parentNexts[level] = _next;
+        _depth = level;
+
+        _next = start;
+        _type = null;
+        return true;
+    }
+
+    /**
+     * Moves back out to the value last entered, stepping over any of its children not yet read.
+     *
+     * @return false if at the top level
+     */
+    public boolean exit()
+    {
+        final int level = _depth;
+        if(level == 0)
+        {
+            return false;
+        }
+        _type = _containerTypes[level];
+        _code = _containerCodes[level];
+        _valueStart = _containerStarts[level];
+        _valueEnd = _ends[level];
+        _next = _parentNexts[level];
+        _depth = level - 1;
+        return true;
+    }
+
+    /**
+     * @return the type of the current value, or null if there is none
+     */
+    public Data.Type type()
+    {
+        return _type;
+    }
+
+    /**
+     * @return the number of elements in the current list, or zero if it is not a list
+     */
+    public int getList()
+    {
+        return _type == Data.Type.LIST ? count() : 0;
+    }
+
+    /**
+     * @return the number of keys and values in the current map, or zero if it is not a map
+     */
+    public int getMap()
+    {
+        return _type == Data.Type.MAP ? count() : 0;
+    }
+
+    /**
+     * @return the number of elements in the current array, or zero if it is not an array
+     */
+    public int getArray()
+    {
+        return _type == Data.Type.ARRAY ? count() : 0;
+    }
+
+    public boolean isArrayDescribed()
+    {
+        return _type == Data.Type.ARRAY
+               && _buffer.get(arrayConstructor()) == EncodingCodes.DESCRIBED_TYPE_INDICATOR;
+    }
+
+    /**
+     * @return the element type of the current array, or null if it is not an array
+     */
+    public Data.Type getArrayType()
+    {
+        if(_type != Data.Type.ARRAY)
+        {
+            return null;
+        }
+        int position = arrayConstructor();
+        if(_buffer.get(position) == EncodingCodes.DESCRIBED_TYPE_INDICATOR)
+        {
+            position = DecoderImpl.skipValue(_buffer, position + 1, _valueEnd);
+        }
+        checkAvailable(position, 1, _valueEnd);
+        final Data.Type type = TYPES[_buffer.get(position) & 0xFF];
+        if(type == null)
+        {
+            throw new DecodeException("Unknown constructor 0x" + Integer.toHexString(_buffer.get(position) & 0xFF));
+        }
+        return type;
+    }
+
+    public boolean isDescribed()
+    {
+        return _type == Data.Type.DESCRIPTOR;
+    }
+
+    public boolean isNull()
+    {
+        return _type == Data.Type.NULL;
+    }
+
+    public boolean getBool()
+    {
+        if(_type != Data.Type.BOOL)
+        {
+            return false;
+        }
+        switch(_code)
+        {
+            case EncodingCodes.BOOLEAN_TRUE:
+                return true;
+            case EncodingCodes.BOOLEAN_FALSE:
+                return false;
+            default:
+                return _buffer.get(_valueStart) != 0;
+        }
+    }
+
+    /**
+     * @return the unsigned value of the current ubyte
+     */
+    public short getUbyte()
+    {
+        return _type == Data.Type.UBYTE ? (short) (_buffer.get(_valueStart) & 0xFF) : 0;
+    }
+
+    public byte getByte()
+    {
+        return _type == Data.Type.BYTE ? _buffer.get(_valueStart) : 0;
+    }
+
+    /**
+     * @return the unsigned value of the current ushort
+     */
+    public int getUshort()
+    {
+        return _type == Data.Type.USHORT ? _buffer.getShort(_valueStart) & 0xFFFF : 0;
+    }
+
+    public short getShort()
+    {
+        return _type == Data.Type.SHORT ? _buffer.getShort(_valueStart) : 0;
+    }
+
+    /**
+     * @return the unsigned value of the current uint
+     */
+    public long getUint()
+    {
+        if(_type != Data.Type.UINT)
+        {
+            return 0L;
+        }
+        switch(_code)
+        {
+            case EncodingCodes.UINT:
+                return _buffer.getInt(_valueStart) & 0xFFFFFFFFL;
+            case EncodingCodes.SMALLUINT:
+                return _buffer.get(_valueStart) & 0xFFL;
+            default:
+                return 0L;
+        }
+    }
+
+    public int getInt()
+    {
+        if(_type != Data.Type.INT)
+        {
+            return 0;
+        }
+        return _code == EncodingCodes.INT ? _buffer.getInt(_valueStart) : _buffer.get(_valueStart);
+    }
+
+    public int getChar()
+    {
+        return _type == Data.Type.CHAR ? _buffer.getInt(_valueStart) : 0;
+    }
+
+    /**
+     * @return the bits of the current ulong, which is negative above Long.MAX_VALUE
+     */
+    public long getUlong()
+    {
+        if(_type != Data.Type.ULONG)
+        {
+            return 0L;
+        }
+        switch(_code)
+        {
+            case EncodingCodes.ULONG & 0xFF:
+                return _buffer.getLong(_valueStart);
+            case EncodingCodes.SMALLULONG:
+                return _buffer.get(_valueStart) & 0xFFL;
+            default:
+                return 0L;
+        }
+    }
+
+    public long getLong()
+    {
+        if(_type != Data.Type.LONG)
+        {
+            return 0L;
+        }
+        return _code == (EncodingCodes.LONG & 0xFF) ? _buffer.getLong(_valueStart) : _buffer.get(_valueStart);
+    }
+
+    public long getTimestamp()
+    {
+        return _type == Data.Type.TIMESTAMP ? _buffer.getLong(_valueStart) : 0L;
+    }
+
+    public float getFloat()
+    {
+        return _type == Data.Type.FLOAT ? _buffer.getFloat(_valueStart) : 0f;
+    }
+
+    public double getDouble()
+    {
+        return _type == Data.Type.DOUBLE ? _buffer.getDouble(_valueStart) : 0d;
+    }
+
+    public Decimal32 getDecimal32()
+    {
+        return _type == Data.Type.DECIMAL32 ? new Decimal32(_buffer.getInt(_valueStart)) : null;
+    }
+
+    public Decimal64 getDecimal64()
+    {
+        return _type == Data.Type.DECIMAL64 ? new Decimal64(_buffer.getLong(_valueStart)) : null;
+    }
+
+    public Decimal128 getDecimal128()
+    {
+        return _type == Data.Type.DECIMAL128
+               ? new Decimal128(_buffer.getLong(_valueStart), _buffer.getLong(_valueStart + 8))
+               : null;
+    }
+
+    public UUID getUUID()
+    {
+        return _type == Data.Type.UUID
+               ? new UUID(_buffer.getLong(_valueStart), _buffer.getLong(_valueStart + 8))
+               : null;
+    }
+
+    /**
+     * @return a copy of the current binary
+     */
+    public Binary getBinary()
+    {
+        if(_type != Data.Type.BINARY)
+        {
+            return null;
+        }
+        final int offset = variableDataStart();
+        final byte[] bytes = new byte[_valueEnd - offset];
+        final ByteBuffer source = _buffer.duplicate();
+        source.position(offset);
+        source.get(bytes);
+        return new Binary(bytes);
+    }
+
+    public String getString()
+    {
+        return _type == Data.Type.STRING ? decode(UTF_8) : null;
+    }
+
+    public Symbol getSymbol()
+    {
+        return _type == Data.Type.SYMBOL ? Symbol.valueOf(decode(US_ASCII)) : null;
+    }
+
+    /**
+     * Compares the current string or symbol with the given characters without decoding it, so a
+     * key can be looked for in a map without a string being made for every key passed over.
+     *
+     * @return whether the current value is a string or symbol equal to value
+     */
+    public boolean contentEquals(CharSequence value)
+    {
+        if(_type != Data.Type.STRING && _type != Data.Type.SYMBOL)
+        {
+            return false;
+        }
+        final int offset = variableDataStart();
+        final int length = _valueEnd - offset;
+        for(int i = 0; i < length; i++)
+        {
+            final byte b = _buffer.get(offset + i);
+            if(b < 0)
+            {
+                // not ASCII, so the characters cannot be compared byte for byte
+                return decode(UTF_8).contentEquals(value);
+            }
+            if(i == value.length() || value.charAt(i) != b)
+            {
+                return false;
+            }
+        }
+        return length == value.length();
+    }
+
+    private String decode(Charset charset)
+    {
+        final int offset = variableDataStart();
+        final int length = _valueEnd - offset;
+        if(_buffer.hasArray())
+        {
+            return new String(_buffer.array(), _buffer.arrayOffset() + offset, length, charset);
+        }
+        final byte[] bytes = new byte[length];
+        final ByteBuffer source = _buffer.duplicate();
+        source.position(offset);
+        source.get(bytes);
+        return new String(bytes, charset);
+    }
+
+    private static boolean isSmallCompound(int code)
+    {
+        return (code >> 4) == 0xc || (code >> 4) == 0xe;
+    }
+
+    private int count()
+    {
+        if(_code == (EncodingCodes.LIST0 & 0xFF))
+        {
+            return 0;
+        }
+        return isSmallCompound(_code) ? _buffer.get(_valueStart + 1) & 0xFF : _buffer.getInt(_valueStart + 4);
+    }
+
+    private int arrayConstructor()
+    {
+        return _valueStart + (isSmallCompound(_code) ? 2 : 8);
+    }
+
+    private int variableDataStart()
+    {
+        return _valueStart + ((_code >> 4) == 0xa ? 1 : 4);
+    }
+
+    private void grow()
+    {
+        final int length = _ends.length * 2;
+        _ends = copyOf(_ends, length);
+        _remaining = copyOf(_remaining, length);
+        _elementCodes = copyOf(_elementCodes, length);
+        _containerCodes = copyOf(_containerCodes, length);
+        _containerStarts = copyOf(_containerStarts, length);
+        _parentNexts = copyOf(_parentNexts, length);
+        final Data.Type[] containerTypes = new Data.Type[length];
+        System.arraycopy(_containerTypes, 0, containerTypes, 0, _containerTypes.length);
+        _containerTypes = containerTypes;
+    }
+
+    private static int[] copyOf(int[] array, int length)
+    {
+        final int[] copy = new int[length];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    /**
+     * @return the position just after the value with the given constructor, whose encoding
+     * (after the constructor) starts at position
+     */
+    private int valueEnd(int code, int position, int limit)
+    {
+        if(TYPES[code] == null)
+        {
+            throw new DecodeException("Unknown constructor 0x" + Integer.toHexString(code));
+        }
+        return DecoderImpl.valueEnd(_buffer, code, position, limit);
+    }
+
+    private static void checkAvailable(int position, int size, int limit)
+    {
+        if(size < 0 || size > limit - position)
+        {
+            throw new DecodeException("Encoded value is truncated");
+        }
+    }
+}
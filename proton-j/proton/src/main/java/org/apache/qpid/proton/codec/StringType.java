@@ -20,48 +20,38 @@
  */
 package org.apache.qpid.proton.codec;
 
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
-import java.nio.charset.CharacterCodingException;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
 import java.util.Arrays;
 import java.util.Collection;
 
 public class StringType extends AbstractPrimitiveType<String>
 {
     private static final Charset Charset_UTF8 = Charset.forName("UTF-8");
-    private static final DecoderImpl.TypeDecoder<String> _stringCreator =
-            new DecoderImpl.TypeDecoder<String>()
-            {
-
-                public String decode(final ByteBuffer buf)
-                {
-                    CharsetDecoder charsetDecoder = Charset_UTF8.newDecoder();
-                    try
-                    {
-                        CharBuffer charBuf = charsetDecoder.decode(buf);
-                        return charBuf.toString();
-                    }
-                    catch (CharacterCodingException e)
-                    {
-                        throw new IllegalArgumentException("Cannot parse String");
-                    }
 
-                }
-            };
+    /** Strings up to this many bytes are decoded into a reused array rather than a new one. */
+    private static final int MAX_REUSED_CHARS = 4096;
 
 
     public static interface StringEncoding extends PrimitiveTypeEncoding<String>
     {
-        void setValue(String val, int length);
     }
 
+    private final EncoderImpl _encoder;
     private final StringEncoding _stringEncoding;
     private final StringEncoding _shortStringEncoding;
 
+    // only used when reading, which the decoder does on one thread
+    private char[] _chars;
+    private CharsetDecoder _charsetDecoder;
+
     StringType(final EncoderImpl encoder, final DecoderImpl decoder)
     {
+        _encoder = encoder;
         _stringEncoding = new AllStringEncoding(encoder, decoder);
         _shortStringEncoding = new ShortStringEncoding(encoder, decoder);
         encoder.register(String.class, this);
@@ -79,37 +69,127 @@ public class StringType extends AbstractPrimitiveType<String>
         StringEncoding encoding = length <= 255
                 ? _shortStringEncoding
                 : _stringEncoding;
-        encoding.setValue(val, length);
         return encoding;
     }
 
-    private static int calculateUTF8Length(final String s)
+    /**
+     * Writes the string, measuring its UTF-8 length once for both the choice of encoding and
+     * the size written.
+     */
+    @Override
+    public void write(final String val)
+    {
+        final int length = calculateUTF8Length(val);
+        if(length <= 255)
+        {
+            _encoder.writeRaw(EncodingCodes.STR8);
+            _encoder.writeRaw((byte) length);
+        }
+        else
+        {
+            _encoder.writeRaw(EncodingCodes.STR32);
+            _encoder.writeRaw(length);
+        }
+        _encoder.writeRaw(val);
+    }
+
+    /**
+     * @return the number of bytes {@link EncoderImpl#writeRaw(String)} writes for the string
+     */
+    static int calculateUTF8Length(final String s)
     {
-        int len = s.length();
-        int i = 0;
         final int length = s.length();
-        while(i < length)
+        int i = 0;
+        while(i < length && s.charAt(i) < 0x80)
+        {
+            i++;
+        }
+
+        int len = i;
+        for(; i < length; i++)
         {
             char c = s.charAt(i);
-            if(c > 127)
+            if(c < 0x80)
+            {
+                len++;
+            }
+            else if(c < 0x800)
+            {
+                len += 2;
+            }
+            else if(c < 0xD800 || c > 0xDFFF)
+            {
+                len += 3;
+            }
+            else if(c <= 0xDBFF && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1)))
+            {
+                i++;
+                len += 4;
+            }
+            else
             {
                 len++;
-                if(c > 0x07ff)
-                {
-                    len++;
-                    if(c >= 0xD800 && c <= 0xDBFF)
-                    {
-                        i++;
-                        len++;
-                    }
-                }
             }
-            i++;
-
         }
         return len;
     }
 
+    /**
+     * Reads size bytes of UTF-8 from the decoder's buffer. ASCII is copied straight into the
+     * characters of the string, and the rest is decoded by a reused CharsetDecoder.
+     */
+    private String readString(final DecoderImpl decoder, final int size)
+    {
+        final ByteBuffer buf = decoder.getByteBuffer();
+        if(size < 0 || buf.remaining() < size)
+        {
+            throw new BufferUnderflowException();
+        }
+
+        char[] chars = _chars;
+        if(chars == null || chars.length < size)
+        {
+            chars = new char[Math.max(size, 64)];
+            if(size <= MAX_REUSED_CHARS)
+            {
+                _chars = chars;
+            }
+        }
+
+        final int start = buf.position();
+        final int end = start + size;
+        int position = start;
+        byte b;
+        while(position < end && (b = buf.get(position)) >= 0)
+        {
+            chars[position - start] = (char) b;
+            position++;
+        }
+
+        int count = position - start;
+        if(position < end)
+        {
+            CharsetDecoder charsetDecoder = _charsetDecoder;
+            if(charsetDecoder == null)
+            {
+                charsetDecoder = _charsetDecoder = Charset_UTF8.newDecoder();
+            }
+            ByteBuffer in = buf.duplicate();
+            in.position(position);
+            in.limit(end);
+            CharBuffer out = CharBuffer.wrap(chars, count, chars.length - count);
+            charsetDecoder.reset();
+            CoderResult result = charsetDecoder.decode(in, out, true);
+            if(!result.isUnderflow() || !(result = charsetDecoder.flush(out)).isUnderflow())
+            {
+                throw new IllegalArgumentException("Cannot parse String");
+            }
+            count = out.position();
+        }
+
+        buf.position(end);
+        return new String(chars, 0, count);
+    }
 
     public StringEncoding getCanonicalEncoding()
     {
@@ -126,10 +206,6 @@ public class StringType extends AbstractPrimitiveType<String>
             implements StringEncoding
     {
 
-        private String _value;
-        private int _length;
-
-
         public AllStringEncoding(final EncoderImpl encoder, final DecoderImpl decoder)
         {
             super(encoder, decoder);
@@ -144,7 +220,7 @@ public class StringType extends AbstractPrimitiveType<String>
         @Override
         protected int getEncodedValueSize(final String val)
         {
-            return (val == _value) ? _length : calculateUTF8Length(val);
+            return calculateUTF8Length(val);
         }
 
 
@@ -169,13 +245,7 @@ public class StringType extends AbstractPrimitiveType<String>
 
             DecoderImpl decoder = getDecoder();
             int size = decoder.readRawInt();
-            return decoder.readRaw(_stringCreator, size);
-        }
-
-        public void setValue(final String val, final int length)
-        {
-            _value = val;
-            _length = length;
+            return readString(decoder, size);
         }
 
     }
@@ -185,9 +255,6 @@ public class StringType extends AbstractPrimitiveType<String>
             implements StringEncoding
     {
 
-        private String _value;
-        private int _length;
-
         public ShortStringEncoding(final EncoderImpl encoder, final DecoderImpl decoder)
         {
             super(encoder, decoder);
@@ -203,7 +270,7 @@ public class StringType extends AbstractPrimitiveType<String>
         @Override
         protected int getEncodedValueSize(final String val)
         {
-            return (val == _value) ? _length : calculateUTF8Length(val);
+            return calculateUTF8Length(val);
         }
 
 
@@ -228,13 +295,7 @@ public class StringType extends AbstractPrimitiveType<String>
 
             DecoderImpl decoder = getDecoder();
             int size = ((int)decoder.readRawByte()) & 0xff;
-            return decoder.readRaw(_stringCreator, size);
-        }
-
-        public void setValue(final String val, final int length)
-        {
-            _value = val;
-            _length = length;
+            return readString(decoder, size);
         }
     }
 
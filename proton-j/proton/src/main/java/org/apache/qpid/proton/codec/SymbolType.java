@@ -22,41 +22,29 @@ package org.apache.qpid.proton.codec;
 
 import org.apache.qpid.proton.amqp.Symbol;
 
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
 
 public class SymbolType extends AbstractPrimitiveType<Symbol>
 {
     private static final Charset ASCII_CHARSET = Charset.forName("US-ASCII");
-    private final SymbolEncoding _symbolEncoding;
-    private final SymbolEncoding _shortSymbolEncoding;
-
-    private final Map<ByteBuffer, Symbol> _symbolCache = new HashMap<ByteBuffer, Symbol>();
-    private DecoderImpl.TypeDecoder<Symbol> _symbolCreator =
-            new DecoderImpl.TypeDecoder<Symbol>()
-            {
 
-                public Symbol decode(final ByteBuffer buf)
-                {
+    /** The number of symbols remembered, a power of two. */
+    private static final int CACHE_SIZE = 256;
 
-                    Symbol symbol = _symbolCache.get(buf);
-                    if(symbol == null)
-                    {
-                        byte[] bytes = new byte[buf.limit()];
-                        buf.get(bytes);
+    /** Longer symbols are not remembered, which bounds the memory the cache can hold. */
+    private static final int MAX_CACHED_LENGTH = 128;
 
-                        String str = new String(bytes, ASCII_CHARSET);
-                        symbol = Symbol.getSymbol(str);
+    private final SymbolEncoding _symbolEncoding;
+    private final SymbolEncoding _shortSymbolEncoding;
 
-                        _symbolCache.put(ByteBuffer.wrap(bytes), symbol);
-                    }
-                    return symbol;
-                }
-            };
+    // the symbols last decoded from each bucket of byte hashes, so that a symbol seen before is
+    // found from its bytes without making a String; only used by the decoder's thread
+    private final byte[][] _cachedBytes = new byte[CACHE_SIZE][];
+    private final Symbol[] _cachedSymbols = new Symbol[CACHE_SIZE];
 
     public static interface SymbolEncoding extends PrimitiveTypeEncoding<Symbol>
     {
@@ -82,6 +70,57 @@ public class SymbolType extends AbstractPrimitiveType<Symbol>
     }
 
 
+    /**
+     * Reads a symbol of size bytes from the decoder's buffer, looking it up in the cache by its
+     * bytes before making a new String for it.
+     */
+    private Symbol readSymbol(final DecoderImpl decoder, final int size)
+    {
+        final ByteBuffer buf = decoder.getByteBuffer();
+        if(size < 0 || buf.remaining() < size)
+        {
+            throw new BufferUnderflowException();
+        }
+
+        final int start = buf.position();
+        final int end = start + size;
+        if(size > MAX_CACHED_LENGTH)
+        {
+            byte[] bytes = new byte[size];
+            buf.get(bytes);
+            return Symbol.getSymbol(new String(bytes, ASCII_CHARSET));
+        }
+
+        int hash = size;
+        for(int i = start; i < end; i++)
+        {
+            hash = 31 * hash + buf.get(i);
+        }
+        final int index = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+
+        final byte[] cached = _cachedBytes[index];
+        if(cached != null && cached.length == size)
+        {
+            int i = 0;
+            while(i < size && cached[i] == buf.get(start + i))
+            {
+                i++;
+            }
+            if(i == size)
+            {
+                buf.position(end);
+                return _cachedSymbols[index];
+            }
+        }
+
+        byte[] bytes = new byte[size];
+        buf.get(bytes);
+        Symbol symbol = Symbol.getSymbol(new String(bytes, ASCII_CHARSET));
+        _cachedBytes[index] = bytes;
+        _cachedSymbols[index] = symbol;
+        return symbol;
+    }
+
     public SymbolEncoding getCanonicalEncoding()
     {
         return _symbolEncoding;
@@ -141,7 +180,7 @@ public class SymbolType extends AbstractPrimitiveType<Symbol>
         {
             DecoderImpl decoder = getDecoder();
             int size = decoder.readRawInt();
-            return decoder.readRaw(_symbolCreator, size);
+            return readSymbol(decoder, size);
         }
     }
     
@@ -195,7 +234,7 @@ public class SymbolType extends AbstractPrimitiveType<Symbol>
         {
             DecoderImpl decoder = getDecoder();
             int size = ((int)decoder.readRawByte()) & 0xff;
-            return decoder.readRaw(_symbolCreator, size);
+            return readSymbol(decoder, size);
         }
     }
 }
@@ -29,7 +29,9 @@ public class UnsignedIntegerType extends AbstractPrimitiveType<UnsignedInteger>
 {
     public static interface UnsignedIntegerEncoding extends PrimitiveTypeEncoding<UnsignedInteger>
     {
+        void write(int i);
 
+        int readPrimitiveValue();
     }
 
     private UnsignedIntegerEncoding _unsignedIntegerEncoding;
@@ -53,10 +55,19 @@ public class UnsignedIntegerType extends AbstractPrimitiveType<UnsignedInteger>
 
     public UnsignedIntegerEncoding getEncoding(final UnsignedInteger val)
     {
-        int i = val.intValue();
+        return getEncoding(val.intValue());
+    }
+
+    public UnsignedIntegerEncoding getEncoding(final int i)
+    {
         return i == 0
             ? _zeroUnsignedIntegerEncoding
-            : (i <= 255) ? _smallUnsignedIntegerEncoding : _unsignedIntegerEncoding;
+            : (i & 0xFFFFFF00) == 0 ? _smallUnsignedIntegerEncoding : _unsignedIntegerEncoding;
+    }
+
+    public void write(final int i)
+    {
+        getEncoding(i).write(i);
     }
 
 
@@ -119,6 +130,11 @@ public class UnsignedIntegerType extends AbstractPrimitiveType<UnsignedInteger>
         {
             return UnsignedInteger.valueOf(getDecoder().readRawInt());
         }
+
+        public int readPrimitiveValue()
+        {
+            return getDecoder().readRawInt();
+        }
     }
 
     private class SmallUnsignedIntegerEncoding
@@ -153,6 +169,12 @@ public class UnsignedIntegerType extends AbstractPrimitiveType<UnsignedInteger>
             getEncoder().writeRaw((byte)val.intValue());
         }
 
+        public void write(final int i)
+        {
+            writeConstructor();
+            getEncoder().writeRaw((byte)i);
+        }
+
         public boolean encodesSuperset(final TypeEncoding<UnsignedInteger> encoder)
         {
             return encoder == this  || encoder instanceof ZeroUnsignedIntegerEncoding;
@@ -160,7 +182,12 @@ public class UnsignedIntegerType extends AbstractPrimitiveType<UnsignedInteger>
 
         public UnsignedInteger readValue()
         {
-            return UnsignedInteger.valueOf(((int)getDecoder().readRawByte()) & 0xff);
+            return UnsignedInteger.valueOf(readPrimitiveValue());
+        }
+
+        public int readPrimitiveValue()
+        {
+            return ((int)getDecoder().readRawByte()) & 0xff;
         }
     }
 
@@ -201,9 +228,19 @@ public class UnsignedIntegerType extends AbstractPrimitiveType<UnsignedInteger>
             return encoder == this;
         }
 
+        public void write(final int i)
+        {
+            writeConstructor();
+        }
+
         public UnsignedInteger readValue()
         {
             return UnsignedInteger.ZERO;
         }
+
+        public int readPrimitiveValue()
+        {
+            return 0;
+        }
     }
 }
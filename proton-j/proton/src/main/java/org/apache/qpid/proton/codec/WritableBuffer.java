@@ -125,6 +125,11 @@ public interface WritableBuffer
             return _buf.limit();
         }
 
+        ByteBuffer byteBuffer()
+        {
+            return _buf;
+        }
+
         @Override
         public String toString()
         {
@@ -31,14 +31,15 @@ import org.apache.qpid.proton.amqp.UnsignedLong;
 import org.apache.qpid.proton.amqp.transport.DeliveryState;
 import org.apache.qpid.proton.amqp.transport.Disposition;
 import org.apache.qpid.proton.amqp.transport.Role;
-import org.apache.qpid.proton.codec.AbstractDescribedType;
+import org.apache.qpid.proton.codec.AbstractDescribedListType;
 import org.apache.qpid.proton.codec.DecodeException;
 import org.apache.qpid.proton.codec.Decoder;
-import org.apache.qpid.proton.codec.DescribedTypeConstructor;
+import org.apache.qpid.proton.codec.DecoderImpl;
 import org.apache.qpid.proton.codec.EncoderImpl;
+import org.apache.qpid.proton.codec.FieldListConstructor;
 
 
-public final class DispositionType extends AbstractDescribedType<Disposition,List> implements DescribedTypeConstructor<Disposition>
+public final class DispositionType extends AbstractDescribedListType<Disposition> implements FieldListConstructor<Disposition>
 {
     private static final Object[] DESCRIPTORS =
     {
@@ -47,6 +48,8 @@ public final class DispositionType extends AbstractDescribedType<Disposition,Lis
 
     private static final UnsignedLong DESCRIPTOR = UnsignedLong.valueOf(0x0000000000000015L);
 
+    private final Disposition _reusedDisposition = new Disposition();
+
     private DispositionType(EncoderImpl encoder)
     {
         super(encoder);
@@ -99,16 +102,121 @@ public final class DispositionType extends AbstractDescribedType<Disposition,Lis
 
         public int size()
         {
-            return _disposition.getBatchable()
-                      ? 6
-                      : _disposition.getState() != null
-                      ? 5
-                      : _disposition.getSettled()
-                      ? 4
-                      : _disposition.getLast() != null
-                      ? 3
-                      : 2;
+            return fieldCount(_disposition);
+        }
+    }
+
+    private static int fieldCount(Disposition disposition)
+    {
+        return disposition.getBatchable()
+                  ? 6
+                  : disposition.getState() != null
+                  ? 5
+                  : disposition.getSettled()
+                  ? 4
+                  : disposition.getLast() != null
+                  ? 3
+                  : 2;
+    }
+
+    @Override
+    protected int getFieldCount(Disposition val)
+    {
+        return fieldCount(val);
+    }
+
+    @Override
+    protected void writeFields(Disposition val, int count, EncoderImpl encoder)
+    {
+        for(int index = 0; index < count; index++)
+        {
+            switch(index)
+            {
+                case 0:
+                    encoder.writeBoolean(val.getRole().getValue());
+                    break;
+                case 1:
+                    writeUnsignedInteger(encoder, val.getFirstValue());
+                    break;
+                case 2:
+                    writeUnsignedInteger(encoder, val.getLastValue());
+                    break;
+                case 3:
+                    encoder.writeBoolean(val.getSettled());
+                    break;
+                case 4:
+                    encoder.writeObject(val.getState());
+                    break;
+                case 5:
+                    encoder.writeBoolean(val.getBatchable());
+                    break;
+            }
+        }
+    }
+
+    public Disposition readFields(DecoderImpl decoder, int count)
+    {
+        if(count <= 1)
+        {
+            throw new DecodeException("The first field cannot be omitted");
+        }
 
+        Disposition o;
+        if(decoder.isReusingInstances())
+        {
+            o = _reusedDisposition;
+            clearFields(o, count);
+        }
+        else
+        {
+            o = new Disposition();
+        }
+
+        for(int index = 0; index < count; index++)
+        {
+            switch(index)
+            {
+                case 0:
+                    o.setRole(Boolean.TRUE.equals(decoder.readBoolean()) ? Role.RECEIVER : Role.SENDER);
+                    break;
+                case 1:
+                    o.setFirstValue(decoder.readUnsignedInteger(-1L));
+                    break;
+                case 2:
+                    o.setLastValue(decoder.readUnsignedInteger(-1L));
+                    break;
+                case 3:
+                    o.setSettled(decoder.readBoolean(false));
+                    break;
+                case 4:
+                    o.setState((DeliveryState) decoder.readObject());
+                    break;
+                case 5:
+                    o.setBatchable(decoder.readBoolean(false));
+                    break;
+                default:
+                    decoder.readObject();
+            }
+        }
+
+        return o;
+    }
+
+    /**
+     * Resets the fields from index count on, which a reused instance will not have read.
+     */
+    private static void clearFields(Disposition o, int count)
+    {
+        switch(count)
+        {
+            case 2:
+                o.setLastValue(-1L);
+            case 3:
+                o.setSettled(false);
+            case 4:
+                o.setState(null);
+            case 5:
+                o.setBatchable(false);
         }
     }
 
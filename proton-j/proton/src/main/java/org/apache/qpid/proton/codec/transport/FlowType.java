@@ -30,14 +30,15 @@ import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.UnsignedInteger;
 import org.apache.qpid.proton.amqp.UnsignedLong;
 import org.apache.qpid.proton.amqp.transport.Flow;
-import org.apache.qpid.proton.codec.AbstractDescribedType;
+import org.apache.qpid.proton.codec.AbstractDescribedListType;
 import org.apache.qpid.proton.codec.DecodeException;
 import org.apache.qpid.proton.codec.Decoder;
-import org.apache.qpid.proton.codec.DescribedTypeConstructor;
+import org.apache.qpid.proton.codec.DecoderImpl;
 import org.apache.qpid.proton.codec.EncoderImpl;
+import org.apache.qpid.proton.codec.FieldListConstructor;
 
 
-public final class FlowType extends AbstractDescribedType<Flow,List> implements DescribedTypeConstructor<Flow>
+public final class FlowType extends AbstractDescribedListType<Flow> implements FieldListConstructor<Flow>
 {
     private static final Object[] DESCRIPTORS =
     {
@@ -46,6 +47,8 @@ public final class FlowType extends AbstractDescribedType<Flow,List> implements
 
     private static final UnsignedLong DESCRIPTOR = UnsignedLong.valueOf(0x0000000000000013L);
 
+    private final Flow _reusedFlow = new Flow();
+
     private FlowType(EncoderImpl encoder)
     {
         super(encoder);
@@ -108,22 +111,163 @@ public final class FlowType extends AbstractDescribedType<Flow,List> implements
 
         public int size()
         {
-            return _flow.getProperties() != null
-                      ? 11
-                      : _flow.getEcho()
-                      ? 10
-                      : _flow.getDrain()
-                      ? 9
-                      : _flow.getAvailable() != null
-                      ? 8
-                      : _flow.getLinkCredit() != null
-                      ? 7
-                      : _flow.getDeliveryCount() != null
-                      ? 6
-                      : _flow.getHandle() != null
-                      ? 5
-                      : 4;
+            return fieldCount(_flow);
+        }
+    }
+
+    private static int fieldCount(Flow flow)
+    {
+        return flow.getProperties() != null
+                  ? 11
+                  : flow.getEcho()
+                  ? 10
+                  : flow.getDrain()
+                  ? 9
+                  : flow.getAvailable() != null
+                  ? 8
+                  : flow.getLinkCredit() != null
+                  ? 7
+                  : flow.getDeliveryCount() != null
+                  ? 6
+                  : flow.getHandle() != null
+                  ? 5
+                  : 4;
+    }
+
+    @Override
+    protected int getFieldCount(Flow val)
+    {
+        return fieldCount(val);
+    }
+
+    @Override
+    protected void writeFields(Flow val, int count, EncoderImpl encoder)
+    {
+        for(int index = 0; index < count; index++)
+        {
+            switch(index)
+            {
+                case 0:
+                    writeUnsignedInteger(encoder, val.getNextIncomingIdValue());
+                    break;
+                case 1:
+                    writeUnsignedInteger(encoder, val.getIncomingWindowValue());
+                    break;
+                case 2:
+                    writeUnsignedInteger(encoder, val.getNextOutgoingIdValue());
+                    break;
+                case 3:
+                    writeUnsignedInteger(encoder, val.getOutgoingWindowValue());
+                    break;
+                case 4:
+                    writeUnsignedInteger(encoder, val.getHandleValue());
+                    break;
+                case 5:
+                    writeUnsignedInteger(encoder, val.getDeliveryCountValue());
+                    break;
+                case 6:
+                    writeUnsignedInteger(encoder, val.getLinkCreditValue());
+                    break;
+                case 7:
+                    writeUnsignedInteger(encoder, val.getAvailableValue());
+                    break;
+                case 8:
+                    encoder.writeBoolean(val.getDrain());
+                    break;
+                case 9:
+                    encoder.writeBoolean(val.getEcho());
+                    break;
+                case 10:
+                    encoder.writeMap(val.getProperties());
+                    break;
+            }
+        }
+    }
+
+    public Flow readFields(DecoderImpl decoder, int count)
+    {
+        if(count <= 3)
+        {
+            throw new DecodeException("The outgoing-window field cannot be omitted");
+        }
 
+        Flow o;
+        if(decoder.isReusingInstances())
+        {
+            o = _reusedFlow;
+            clearFields(o, count);
+        }
+        else
+        {
+            o = new Flow();
+        }
+
+        for(int index = 0; index < count; index++)
+        {
+            switch(index)
+            {
+                case 0:
+                    o.setNextIncomingIdValue(decoder.readUnsignedInteger(-1L));
+                    break;
+                case 1:
+                    o.setIncomingWindowValue(decoder.readUnsignedInteger(-1L));
+                    break;
+                case 2:
+                    o.setNextOutgoingIdValue(decoder.readUnsignedInteger(-1L));
+                    break;
+                case 3:
+                    o.setOutgoingWindowValue(decoder.readUnsignedInteger(-1L));
+                    break;
+                case 4:
+                    o.setHandleValue(decoder.readUnsignedInteger(-1L));
+                    break;
+                case 5:
+                    o.setDeliveryCountValue(decoder.readUnsignedInteger(-1L));
+                    break;
+                case 6:
+                    o.setLinkCreditValue(decoder.readUnsignedInteger(-1L));
+                    break;
+                case 7:
+                    o.setAvailableValue(decoder.readUnsignedInteger(-1L));
+                    break;
+                case 8:
+                    o.setDrain(decoder.readBoolean(false));
+                    break;
+                case 9:
+                    o.setEcho(decoder.readBoolean(false));
+                    break;
+                case 10:
+                    o.setProperties(decoder.readMap());
+                    break;
+                default:
+                    decoder.readObject();
+            }
+        }
+
+        return o;
+    }
+
+    /**
+     * Resets the fields from index count on, which a reused instance will not have read.
+     */
+    private static void clearFields(Flow o, int count)
+    {
+        switch(count)
+        {
+            case 4:
+                o.setHandleValue(-1L);
+            case 5:
+                o.setDeliveryCountValue(-1L);
+            case 6:
+                o.setLinkCreditValue(-1L);
+            case 7:
+                o.setAvailableValue(-1L);
+            case 8:
+                o.setDrain(false);
+            case 9:
+                o.setEcho(false);
+            case 10:
+                o.setProperties(null);
         }
     }
 
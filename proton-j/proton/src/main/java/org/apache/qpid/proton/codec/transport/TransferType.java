@@ -33,14 +33,15 @@ import org.apache.qpid.proton.amqp.UnsignedLong;
 import org.apache.qpid.proton.amqp.transport.DeliveryState;
 import org.apache.qpid.proton.amqp.transport.ReceiverSettleMode;
 import org.apache.qpid.proton.amqp.transport.Transfer;
-import org.apache.qpid.proton.codec.AbstractDescribedType;
+import org.apache.qpid.proton.codec.AbstractDescribedListType;
 import org.apache.qpid.proton.codec.DecodeException;
 import org.apache.qpid.proton.codec.Decoder;
-import org.apache.qpid.proton.codec.DescribedTypeConstructor;
+import org.apache.qpid.proton.codec.DecoderImpl;
 import org.apache.qpid.proton.codec.EncoderImpl;
+import org.apache.qpid.proton.codec.FieldListConstructor;
 
 
-public final class TransferType extends AbstractDescribedType<Transfer,List> implements DescribedTypeConstructor<Transfer>
+public final class TransferType extends AbstractDescribedListType<Transfer> implements FieldListConstructor<Transfer>
 {
     private static final Object[] DESCRIPTORS =
     {
@@ -49,6 +50,8 @@ public final class TransferType extends AbstractDescribedType<Transfer,List> imp
 
     private static final UnsignedLong DESCRIPTOR = UnsignedLong.valueOf(0x0000000000000014L);
 
+    private final Transfer _reusedTransfer = new Transfer();
+
     private TransferType(EncoderImpl encoder)
     {
         super(encoder);
@@ -112,30 +115,180 @@ public final class TransferType extends AbstractDescribedType<Transfer,List> imp
 
         public int size()
         {
-            return _transfer.getBatchable()
-                      ? 11
-                      : _transfer.getAborted()
-                      ? 10
-                      : _transfer.getResume()
-                      ? 9
-                      : _transfer.getState() != null
-                      ? 8
-                      : _transfer.getRcvSettleMode() != null
-                      ? 7
-                      : _transfer.getMore()
-                      ? 6
-                      : _transfer.getSettled() != null
-                      ? 5
-                      : _transfer.getMessageFormat() != null
-                      ? 4
-                      : _transfer.getDeliveryTag() != null
-                      ? 3
-                      : _transfer.getDeliveryId() != null
-                      ? 2
-                      : 1;
+            return fieldCount(_transfer);
+        }
+
+    }
+
+    private static int fieldCount(Transfer transfer)
+    {
+        return transfer.getBatchable()
+                  ? 11
+                  : transfer.getAborted()
+                  ? 10
+                  : transfer.getResume()
+                  ? 9
+                  : transfer.getState() != null
+                  ? 8
+                  : transfer.getRcvSettleMode() != null
+                  ? 7
+                  : transfer.getMore()
+                  ? 6
+                  : transfer.getSettled() != null
+                  ? 5
+                  : transfer.getMessageFormat() != null
+                  ? 4
+                  : transfer.getDeliveryTag() != null
+                  ? 3
+                  : transfer.getDeliveryId() != null
+                  ? 2
+                  : 1;
+    }
+
+    @Override
+    protected int getFieldCount(Transfer val)
+    {
+        return fieldCount(val);
+    }
 
+    @Override
+    protected void writeFields(Transfer val, int count, EncoderImpl encoder)
+    {
+        for(int index = 0; index < count; index++)
+        {
+            switch(index)
+            {
+                case 0:
+                    writeUnsignedInteger(encoder, val.getHandleValue());
+                    break;
+                case 1:
+                    writeUnsignedInteger(encoder, val.getDeliveryIdValue());
+                    break;
+                case 2:
+                    encoder.writeBinary(val.getDeliveryTag());
+                    break;
+                case 3:
+                    writeUnsignedInteger(encoder, val.getMessageFormatValue());
+                    break;
+                case 4:
+                    encoder.writeBoolean(val.getSettled());
+                    break;
+                case 5:
+                    encoder.writeBoolean(val.getMore());
+                    break;
+                case 6:
+                    encoder.writeUnsignedByte(val.getRcvSettleMode() == null ? null : val.getRcvSettleMode().getValue());
+                    break;
+                case 7:
+                    encoder.writeObject(val.getState());
+                    break;
+                case 8:
+                    encoder.writeBoolean(val.getResume());
+                    break;
+                case 9:
+                    encoder.writeBoolean(val.getAborted());
+                    break;
+                case 10:
+                    encoder.writeBoolean(val.getBatchable());
+                    break;
+            }
         }
+    }
 
+    public Transfer readFields(DecoderImpl decoder, int count)
+    {
+        if(count == 0)
+        {
+            throw new DecodeException("The handle field cannot be omitted");
+        }
+
+        Transfer o;
+        if(decoder.isReusingInstances())
+        {
+            o = _reusedTransfer;
+            clearFields(o, count);
+        }
+        else
+        {
+            o = new Transfer();
+        }
+
+        for(int index = 0; index < count; index++)
+        {
+            switch(index)
+            {
+                case 0:
+                    o.setHandleValue(decoder.readUnsignedInteger(-1L));
+                    break;
+                case 1:
+                    o.setDeliveryIdValue(decoder.readUnsignedInteger(-1L));
+                    break;
+                case 2:
+                    // a reused transfer still holds the last frame's tag, which the next frame
+                    // of the same delivery repeats
+                    o.setDeliveryTag(decoder.readBinaryMatching(o.getDeliveryTag()));
+                    break;
+                case 3:
+                    o.setMessageFormatValue(decoder.readUnsignedInteger(-1L));
+                    break;
+                case 4:
+                    o.setSettled(decoder.readBoolean());
+                    break;
+                case 5:
+                    o.setMore(decoder.readBoolean(false));
+                    break;
+                case 6:
+                    UnsignedByte receiverSettleMode = decoder.readUnsignedByte();
+                    o.setRcvSettleMode(receiverSettleMode == null ? null : ReceiverSettleMode.values()[receiverSettleMode.intValue()]);
+                    break;
+                case 7:
+                    o.setState((DeliveryState) decoder.readObject());
+                    break;
+                case 8:
+                    o.setResume(decoder.readBoolean(false));
+                    break;
+                case 9:
+                    o.setAborted(decoder.readBoolean(false));
+                    break;
+                case 10:
+                    o.setBatchable(decoder.readBoolean(false));
+                    break;
+                default:
+                    decoder.readObject();
+            }
+        }
+
+        return o;
+    }
+
+    /**
+     * Resets the fields from index count on, which a reused instance will not have read.
+     */
+    private static void clearFields(Transfer o, int count)
+    {
+        switch(count)
+        {
+            case 1:
+                o.setDeliveryIdValue(-1L);
+            case 2:
+                o.setDeliveryTag(null);
+            case 3:
+                o.setMessageFormatValue(-1L);
+            case 4:
+                o.setSettled(null);
+            case 5:
+                o.setMore(false);
+            case 6:
+                o.setRcvSettleMode(null);
+            case 7:
+                o.setState(null);
+            case 8:
+                o.setResume(false);
+            case 9:
+                o.setAborted(false);
+            case 10:
+                o.setBatchable(false);
+        }
     }
 
         public Transfer newInstance(Object described)
@@ -0,0 +1,565 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.driver.impl;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.qpid.proton.driver.Connector;
+import org.apache.qpid.proton.driver.Listener;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Sasl;
+import org.apache.qpid.proton.engine.Transport;
+import org.apache.qpid.proton.engine.impl.ConnectionImpl;
+import org.apache.qpid.proton.engine.impl.TransportFactory;
+
+/**
+ * A connector whose thread connects its channel and then blocks reading it.
+ *
+ * The reading thread reads into a buffer that {@link #process()} hands it, which is the
+ * transport's input buffer, and waits for the next one. The transport is only consumed by
+ * {@link #process()}, so it is never used by two threads at once. Without a handler, the
+ * connector's thread is the reading thread. With a handler, reading is left to a second thread,
+ * and the connector's thread waits for input or for tasks and processes the connector, so that
+ * the application can get work onto it without waiting for input.
+ */
+class BlockingConnectorImpl<C> implements Connector<C>, Runnable
+{
+    private final BlockingDriverImpl _driver;
+    private final Listener<C> _listener;
+    private final SocketChannel _channel;
+    private final SocketAddress _address;
+    private final Logger _logger = Logger.getLogger("proton.driver");
+    private C _context;
+    private Connection _connection;
+    private Transport _transport;
+    private volatile boolean _closed;
+    private volatile boolean _connected;
+
+    private final Lock _lock = new ReentrantLock();
+    private final Condition _readWanted = _lock.newCondition();
+    // signalled when a handler's connector has something to process, or tasks to run
+    private final Condition _work = _lock.newCondition();
+    private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<Runnable>();
+    // guarded by _lock
+    private ByteBuffer _readBuffer;
+    private int _bytesRead;
+    private boolean _endOfStream;
+    private IOException _failure;
+    private boolean _pending;
+    private boolean _queued;
+    // handed out since the last process(), so the application deals with what the next one reads
+    private boolean _handedOut;
+
+    /**
+     * @param address the address for the connector's thread to connect to, or null if the
+     *        channel is already connected or connecting
+     */
+    BlockingConnectorImpl(BlockingDriverImpl driver, Listener<C> listener, SocketChannel c,
+                          SocketAddress address, C context)
+    {
+        _driver = driver;
+        _listener = listener;
+        _channel = c;
+        _address = address;
+        _context = context;
+    }
+
+    public void run()
+    {
+        BlockingDriverImpl.Handler handler = _driver.getHandler();
+        try
+        {
+            if(_address != null)
+            {
+                _channel.connect(_address);
+            }
+            else if(_channel.isConnectionPending())
+            {
+                _channel.finishConnect();
+            }
+            connected();
+            if(handler == null)
+            {
+                readForProcess();
+            }
+            else
+            {
+                _driver.newThread(new Runnable()
+                {
+                    public void run()
+                    {
+                        read();
+                    }
+                }).start();
+                handler.opened(this);
+                serve(handler);
+            }
+        }
+        catch (IOException e)
+        {
+            if(!_closed)
+            {
+                if(handler == null)
+                {
+                    failed(e);
+                }
+                else
+                {
+                    _logger.log(Level.SEVERE, "Exception when processing connector", e);
+                    destroy();
+                }
+            }
+        }
+        catch (RuntimeException e)
+        {
+            _logger.log(Level.SEVERE, "Exception when processing connector", e);
+            destroy();
+        }
+    }
+
+    private void read()
+    {
+        try
+        {
+            readForProcess();
+        }
+        catch (IOException e)
+        {
+            if(!_closed)
+            {
+                failed(e);
+            }
+        }
+    }
+
+    /**
+     * Reads into each buffer handed over by {@link #process()}, until the channel is closed.
+     */
+    private void readForProcess() throws IOException
+    {
+        int bytesRead = 0;
+        while(bytesRead >= 0)
+        {
+            ByteBuffer buffer;
+            _lock.lock();
+            try
+            {
+                while(_readBuffer == null && !_closed)
+                {
+                    _readWanted.await();
+                }
+                if(_closed)
+                {
+                    return;
+                }
+                buffer = _readBuffer;
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            finally
+            {
+                _lock.unlock();
+            }
+
+            bytesRead = _channel.read(buffer);
+
+            _lock.lock();
+            try
+            {
+                _readBuffer = null;
+                read(bytesRead);
+            }
+            finally
+            {
+                _lock.unlock();
+            }
+            signal();
+        }
+    }
+
+    /**
+     * Runs the tasks given to the connector and has the handler process it, whenever it has
+     * input or tasks, until the connector is closed.
+     */
+    private void serve(BlockingDriverImpl.Handler handler) throws IOException
+    {
+        while(true)
+        {
+            _lock.lock();
+            try
+            {
+                while(!_pending && _tasks.isEmpty() && !_closed)
+                {
+                    _work.await();
+                }
+                _pending = false;
+                _handedOut = true;
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                destroy();
+                return;
+            }
+            finally
+            {
+                _lock.unlock();
+            }
+            runTasks();
+            handler.process(this);
+            if(isClosed())
+            {
+                _driver.removeConnector(this);
+                return;
+            }
+        }
+    }
+
+    private void runTasks()
+    {
+        Runnable task;
+        while((task = _tasks.poll()) != null)
+        {
+            try
+            {
+                task.run();
+            }
+            catch (RuntimeException e)
+            {
+                _logger.log(Level.SEVERE, "Exception when running connector task", e);
+            }
+        }
+    }
+
+    /**
+     * Queues a task for the thread of a handler's connector, which runs it before next having
+     * the handler process the connector.
+     */
+    void execute(Runnable task)
+    {
+        _tasks.add(task);
+        _lock.lock();
+        try
+        {
+            _work.signal();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    // called with _lock held
+    private void read(int bytesRead)
+    {
+        if(bytesRead < 0)
+        {
+            _endOfStream = true;
+        }
+        else
+        {
+            _bytesRead += bytesRead;
+        }
+    }
+
+    private void connected()
+    {
+        boolean signal;
+        _lock.lock();
+        try
+        {
+            _connected = true;
+            signal = _transport != null;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+        if(signal)
+        {
+            signal();
+        }
+    }
+
+    private void failed(IOException e)
+    {
+        _lock.lock();
+        try
+        {
+            _failure = e;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+        signal();
+    }
+
+    /**
+     * Notes that the connector has something to process and either wakes the connector's thread,
+     * if it has a handler, or hands it to the driver if it is not already waiting to be processed.
+     */
+    private void signal()
+    {
+        boolean ready;
+        _lock.lock();
+        try
+        {
+            _pending = true;
+            if(_driver.getHandler() != null)
+            {
+                _work.signal();
+                return;
+            }
+            ready = !_queued;
+            _queued = true;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+        if(ready)
+        {
+            _driver.ready(this);
+        }
+    }
+
+    /**
+     * @return whether the connector still has anything to process, now that it has been taken
+     *         off the driver's queue
+     */
+    boolean dequeued()
+    {
+        _lock.lock();
+        try
+        {
+            _queued = false;
+            _handedOut = _pending;
+            return _pending;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    public void process() throws IOException
+    {
+        int bytesRead = 0;
+        boolean endOfStream = false;
+        IOException failure;
+        boolean connected;
+        boolean handedOut;
+        _lock.lock();
+        try
+        {
+            _pending = false;
+            handedOut = _handedOut;
+            _handedOut = false;
+            // input is only consumed while no read is in progress, as it shares the buffer
+            if(_readBuffer == null)
+            {
+                bytesRead = _bytesRead;
+                _bytesRead = 0;
+                endOfStream = _endOfStream;
+            }
+            failure = _failure;
+            _failure = null;
+            connected = _connected;
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+        if(failure != null)
+        {
+            close();
+            throw failure;
+        }
+        if(_closed || !connected || _transport == null)
+        {
+            return;
+        }
+        if(bytesRead > 0)
+        {
+            _transport.process();
+            if(!handedOut)
+            {
+                // the input arrived after the application looked at the connection, so it is
+                // handed the connector again to deal with the events
+                signal();
+            }
+        }
+        if(endOfStream)
+        {
+            close();
+            return;
+        }
+        write();
+        _lock.lock();
+        try
+        {
+            // a read that completed since the top of this method leaves its input for the next
+            // process(), which it has signalled for, rather than waiting behind another
+            if(_readBuffer == null && _bytesRead == 0 && !_endOfStream && _transport.capacity() > 0)
+            {
+                _readBuffer = _transport.tail();
+                _readWanted.signal();
+            }
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    private void write() throws IOException
+    {
+        int pending;
+        while((pending = _transport.pending()) > 0)
+        {
+            int wrote = _channel.write(_transport.head());
+            _transport.pop(wrote);
+            if (_logger.isLoggable(Level.FINE))
+            {
+                _logger.log(Level.FINE, "wrote " + wrote + " bytes, " + (pending - wrote) + " remaining");
+            }
+        }
+    }
+
+    public Listener<C> listener()
+    {
+        return _listener;
+    }
+
+    public Sasl sasl()
+    {
+        if (_transport != null)
+        {
+            return _transport.sasl();
+        }
+        else
+        {
+            return null;
+        }
+    }
+
+    public Connection getConnection()
+    {
+        return _connection;
+    }
+
+    /**
+     * Sets the connection and has the connector processed. Unless the connector processes
+     * itself, it is also queued again whenever the connection is given something to send.
+     */
+    public void setConnection(Connection connection)
+    {
+        _connection = connection;
+        _transport = TransportFactory.getDefaultTransportFactory().transport(_connection);
+        if (connection instanceof ConnectionImpl && _driver.getHandler() == null)
+        {
+            ((ConnectionImpl) connection).setTransportWorkListener(new Runnable()
+            {
+                public void run()
+                {
+                    signal();
+                }
+            });
+        }
+        signal();
+    }
+
+    public C getContext()
+    {
+        return _context;
+    }
+
+    public void setContext(C context)
+    {
+        _context = context;
+    }
+
+    /**
+     * Writes any output already produced and closes the channel, which also ends a read in
+     * progress, and wakes the connector's threads so that they finish.
+     */
+    public void close()
+    {
+        if (!isClosed())
+        {
+            _closed = true;
+            try
+            {
+                if (_connected && _transport != null)
+                {
+                    write();
+                }
+            }
+            catch (IOException e)
+            {
+                _logger.log(Level.SEVERE, "Exception when closing connection",e);
+            }
+            try
+            {
+                _channel.close();
+            }
+            catch (IOException e)
+            {
+                _logger.log(Level.SEVERE, "Exception when closing connection",e);
+            }
+            _lock.lock();
+            try
+            {
+                _readWanted.signal();
+                _work.signal();
+            }
+            finally
+            {
+                _lock.unlock();
+            }
+        }
+    }
+
+    public boolean isClosed()
+    {
+        return _closed || !_channel.isOpen();
+    }
+
+    public void destroy()
+    {
+        close(); // close if not closed already
+        _driver.removeConnector(this);
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.driver.impl;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.qpid.proton.driver.Connector;
+import org.apache.qpid.proton.driver.Driver;
+import org.apache.qpid.proton.driver.Listener;
+
+/**
+ * A driver with no selector, which gives each listener and connector a thread of its own that
+ * blocks on its socket.
+ *
+ * The threads come from the given factory, so they can be as cheap as the platform allows: a
+ * factory of virtual threads lets one JVM hold tens of thousands of connections this way. All
+ * waiting is done on {@link Condition}s rather than monitors, so that a virtual thread can give
+ * up its carrier while it waits.
+ *
+ * Without a {@link Handler}, the driver is used like any other: a connector's thread only reads
+ * into the transport's input buffer, and the connector is then returned by {@link #connector()}
+ * for the application to process, which writes its output before returning. With a handler,
+ * each connector's thread processes it while a second thread reads, so the connection is only
+ * ever used by the connector's thread. Other threads hand work to it with
+ * {@link #execute(Connector, Runnable)}.
+ */
+public class BlockingDriverImpl implements Driver
+{
+    /**
+     * The application's side of a driver whose connector threads process their own connectors.
+     * Both methods are called on the connector's thread.
+     */
+    public interface Handler
+    {
+        /**
+         * Called once the connector is connected and before it is first processed, which is
+         * where its connection should be set.
+         */
+        void opened(Connector connector);
+
+        /**
+         * Called each time input has been read, and after tasks given to
+         * {@link BlockingDriverImpl#execute(Connector, Runnable)} have run. The handler should
+         * deal with the events on the connection and then call {@link Connector#process()}.
+         */
+        void process(Connector connector) throws IOException;
+    }
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private final ThreadFactory _threads;
+    private final Handler _handler;
+    private final Queue<Listener> _readyListeners = new ConcurrentLinkedQueue<Listener>();
+    private final Queue<BlockingConnectorImpl> _readyConnectors = new ConcurrentLinkedQueue<BlockingConnectorImpl>();
+    private final Set<Listener> _listeners = Collections.newSetFromMap(new ConcurrentHashMap<Listener, Boolean>());
+    private final Set<Connector> _connectors = Collections.newSetFromMap(new ConcurrentHashMap<Connector, Boolean>());
+    private final Logger _logger = Logger.getLogger("proton.driver");
+    private final Lock _lock = new ReentrantLock();
+    private final Condition _ready = _lock.newCondition();
+    private boolean _woken;
+
+    /**
+     * Creates a driver whose connectors run on daemon platform threads and are handed out by
+     * {@link #connector()}.
+     */
+    public BlockingDriverImpl()
+    {
+        this(new ThreadFactory()
+        {
+            public Thread newThread(Runnable r)
+            {
+                Thread thread = new Thread(r, "proton-connector-" + THREAD_COUNT.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, null);
+    }
+
+    /**
+     * @param threads the factory for the threads of listeners and connectors
+     * @param handler the handler to have each connector processed on its own thread, or null to
+     *        have connectors handed out by {@link #connector()} instead
+     */
+    public BlockingDriverImpl(ThreadFactory threads, Handler handler)
+    {
+        _threads = threads;
+        _handler = handler;
+    }
+
+    /**
+     * Runs the task on the thread of a connector serviced by the handler, before the handler
+     * next processes it. Tasks given to a closed connector are not run.
+     *
+     * @throws IllegalStateException if the driver has no handler, in which case the application
+     *         processes its connectors on threads of its own
+     */
+    public void execute(Connector connector, Runnable task)
+    {
+        if(_handler == null)
+        {
+            throw new IllegalStateException("Only the connectors of a driver with a handler run tasks");
+        }
+        ((BlockingConnectorImpl) connector).execute(task);
+    }
+
+    public void wakeup()
+    {
+        _lock.lock();
+        try
+        {
+            _woken = true;
+            _ready.signalAll();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    /**
+     * Waits until a listener or connector is ready, the timeout passes or {@link #wakeup()} is
+     * called. A timeout of zero waits indefinitely.
+     */
+    public void doWait(long timeout)
+    {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeout);
+        _lock.lock();
+        try
+        {
+            while(!_woken && _readyListeners.isEmpty() && _readyConnectors.isEmpty())
+            {
+                if(timeout == 0)
+                {
+                    _ready.await();
+                }
+                else if(remaining > 0)
+                {
+                    remaining = _ready.awaitNanos(remaining);
+                }
+                else
+                {
+                    break;
+                }
+            }
+            _woken = false;
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        finally
+        {
+            _lock.unlock();
+        }
+    }
+
+    @SuppressWarnings("rawtypes")
+    public Listener listener()
+    {
+        return _readyListeners.poll();
+    }
+
+    @SuppressWarnings("rawtypes")
+    public Connector connector()
+    {
+        BlockingConnectorImpl connector;
+        while((connector = _readyConnectors.poll()) != null)
+        {
+            if(connector.dequeued())
+            {
+                return connector;
+            }
+        }
+        return null;
+    }
+
+    public void destroy()
+    {
+        for(Listener l : _listeners)
+        {
+            try
+            {
+                l.close();
+            }
+            catch (IOException e)
+            {
+                _logger.log(Level.SEVERE, "Exception when closing listener", e);
+            }
+        }
+        _listeners.clear();
+        for(final Connector c : _connectors)
+        {
+            if(_handler == null)
+            {
+                c.close();
+            }
+            else
+            {
+                // the connector's thread may be processing it, so the close is left to that thread
+                execute(c, new Runnable()
+                {
+                    public void run()
+                    {
+                        c.close();
+                    }
+                });
+            }
+        }
+        _connectors.clear();
+        _readyListeners.clear();
+        _readyConnectors.clear();
+    }
+
+    public <C> Listener<C> createListener(String host, int port, C context)
+    {
+        try
+        {
+            ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+            serverSocketChannel.socket().bind(new InetSocketAddress(host, port));
+            return createListener(serverSocketChannel, context);
+        }
+        catch (IOException e)
+        {
+            _logger.log(Level.SEVERE, "Exception when creating listener", e);
+        }
+        return null;
+    }
+
+    public <C> Listener<C> createListener(ServerSocketChannel c, C context)
+    {
+        try
+        {
+            c.configureBlocking(true);
+        }
+        catch (IOException e)
+        {
+            _logger.log(Level.SEVERE, "Exception when creating listener", e);
+            return null;
+        }
+        BlockingListenerImpl<C> listener = new BlockingListenerImpl<C>(this, c, context);
+        _listeners.add(listener);
+        newThread(listener).start();
+        return listener;
+    }
+
+    public <C> Connector<C> createConnector(String host, int port, C context)
+    {
+        try
+        {
+            return start(new BlockingConnectorImpl<C>(this, null, SocketChannel.open(),
+                                                      new InetSocketAddress(host, port), context));
+        }
+        catch (IOException e)
+        {
+            _logger.log(Level.SEVERE, "Exception when creating connector", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    public <C> Connector<C> createConnector(SelectableChannel c, C context)
+    {
+        try
+        {
+            c.configureBlocking(true);
+        }
+        catch (IOException e)
+        {
+            _logger.log(Level.SEVERE, "Exception when creating connector", e);
+            throw new RuntimeException(e);
+        }
+        return start(new BlockingConnectorImpl<C>(this, null, (SocketChannel) c, null, context));
+    }
+
+    public Iterable<Listener> listeners()
+    {
+        return _listeners;
+    }
+
+    public Iterable<Connector> connectors()
+    {
+        return _connectors;
+    }
+
+    Handler getHandler()
+    {
+        return _handler;
+    }
+
+    Thread newThread(Runnable runnable)
+    {
+        return _threads.newThread(runnable);
+    }
+
+    /**
+     * Called on the listener's thread when it has accepted a connection.
+     */
+    <C> void accepted(BlockingListenerImpl<C> listener)
+    {
+        if(_handler == null)
+        {
+            _readyListeners.add(listener);
+            wakeup();
+        }
+        else
+        {
+            while(listener.accept() != null)
+            {
+                // each connector is serviced by its own thread
+            }
+        }
+    }
+
+    <C> Connector<C> createServerConnector(SocketChannel c, C context, Listener<C> l)
+    {
+        return start(new BlockingConnectorImpl<C>(this, l, c, null, context));
+    }
+
+    private <C> Connector<C> start(BlockingConnectorImpl<C> connector)
+    {
+        _connectors.add(connector);
+        newThread(connector).start();
+        return connector;
+    }
+
+    /**
+     * Called when the connector has something to process and is not already waiting to be.
+     */
+    void ready(BlockingConnectorImpl connector)
+    {
+        _readyConnectors.add(connector);
+        wakeup();
+    }
+
+    void removeListener(Listener listener)
+    {
+        _listeners.remove(listener);
+    }
+
+    void removeConnector(Connector connector)
+    {
+        _connectors.remove(connector);
+        _readyConnectors.remove(connector);
+    }
+}
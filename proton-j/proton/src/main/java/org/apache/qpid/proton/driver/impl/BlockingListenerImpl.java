@@ -0,0 +1,114 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.driver.impl;
+
+import java.io.IOException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.qpid.proton.driver.Connector;
+import org.apache.qpid.proton.driver.Listener;
+
+/**
+ * Accepts connections on a thread of its own, queueing each until {@link #accept()} takes it.
+ */
+class BlockingListenerImpl<C> implements Listener<C>, Runnable
+{
+    private static final long MIN_BACK_OFF = 10;
+    private static final long MAX_BACK_OFF = 1000;
+
+    private final C _context;
+    private final ServerSocketChannel _channel;
+    private final BlockingDriverImpl _driver;
+    private final Queue<SocketChannel> _accepted = new ConcurrentLinkedQueue<SocketChannel>();
+    private final Logger _logger = Logger.getLogger("proton.driver");
+
+    BlockingListenerImpl(BlockingDriverImpl driver, ServerSocketChannel c, C context)
+    {
+        _driver = driver;
+        _channel = c;
+        _context = context;
+    }
+
+    public void run()
+    {
+        long backOff = 0;
+        while(_channel.isOpen())
+        {
+            try
+            {
+                _accepted.add(_channel.accept());
+                _driver.accepted(this);
+                backOff = 0;
+            }
+            catch (IOException e)
+            {
+                if(_channel.isOpen())
+                {
+                    // accept keeps failing while, say, the process is out of file descriptors,
+                    // so wait longer after each failure rather than spin
+                    backOff = Math.min(backOff == 0 ? MIN_BACK_OFF : backOff * 2, MAX_BACK_OFF);
+                    _logger.log(Level.SEVERE, "Exception when accepting connection, retrying in "
+                                              + backOff + "ms", e);
+                    try
+                    {
+                        Thread.sleep(backOff);
+                    }
+                    catch (InterruptedException ie)
+                    {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    public Connector<C> accept()
+    {
+        SocketChannel c = _accepted.poll();
+        if(c == null)
+        {
+            return null;
+        }
+        return _driver.createServerConnector(c, _context, this);
+    }
+
+    public C getContext()
+    {
+        return _context;
+    }
+
+    public void close() throws IOException
+    {
+        _driver.removeListener(this);
+        _channel.close();
+        SocketChannel c;
+        while((c = _accepted.poll()) != null)
+        {
+            c.close();
+        }
+    }
+}
@@ -19,7 +19,6 @@ package org.apache.qpid.proton.driver.impl;
 import static org.apache.qpid.proton.driver.impl.ConnectorImpl.ConnectorState.UNINITIALIZED;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.SocketChannel;
 import java.util.logging.Level;
@@ -30,16 +29,11 @@ import org.apache.qpid.proton.driver.Listener;
 import org.apache.qpid.proton.engine.Connection;
 import org.apache.qpid.proton.engine.Sasl;
 import org.apache.qpid.proton.engine.Transport;
+import org.apache.qpid.proton.engine.impl.ConnectionImpl;
 import org.apache.qpid.proton.engine.impl.TransportFactory;
 
 class ConnectorImpl<C> implements Connector<C>
 {
-    private static int DEFAULT_BUFFER_SIZE = 64 * 1024;
-    private static int readBufferSize = Integer.getInteger
-        ("pn.receive_buffer_size", DEFAULT_BUFFER_SIZE);
-    private static int writeBufferSize = Integer.getInteger
-        ("pn.send_buffer_size", DEFAULT_BUFFER_SIZE);
-
     enum ConnectorState {UNINITIALIZED, OPENED, EOS, CLOSED};
 
     private final DriverImpl _driver;
@@ -53,52 +47,121 @@ class ConnectorImpl<C> implements Connector<C>
     private SelectionKey _key;
     private ConnectorState _state = UNINITIALIZED;
 
-    private ByteBuffer _readBuffer = ByteBuffer.allocate(readBufferSize);
-    private ByteBuffer _writeBuffer = ByteBuffer.allocate(writeBufferSize);
     private boolean _readPending;
+    private boolean _writePending;
+    private boolean _queued;
+    private boolean _processing;
+    // input has been read since the connector was last handed out, as when it is processed
+    // without being taken from the driver, so its events are still to be dealt with
+    private boolean _readSinceHandedOut;
+    // whether the connection reports when it has output, so write() can be skipped when not
+    private boolean _tracksOutput;
 
-    ConnectorImpl(DriverImpl driver, Listener<C> listener, SocketChannel c, C context, SelectionKey key)
+    ConnectorImpl(DriverImpl driver, Listener<C> listener, SocketChannel c, C context)
     {
         _driver = driver;
         _listener = listener;
         _channel = c;
         _context = context;
+    }
+
+    DriverImpl getDriver()
+    {
+        return _driver;
+    }
+
+    SocketChannel getChannel()
+    {
+        return _channel;
+    }
+
+    void setKey(SelectionKey key)
+    {
         _key = key;
     }
 
-    void selected()
+    void selected(boolean readable, boolean writable)
     {
-        _readPending = true;
+        _readPending |= readable;
+        _writePending |= writable;
+        enqueue();
+    }
+
+    /**
+     * Notes that the connection has been given something to send. Changes made while the
+     * connector is being processed are written before it returns, so it is not queued again.
+     */
+    void outputPending()
+    {
+        _writePending = true;
+        if (!_processing)
+        {
+            enqueue();
+        }
+    }
+
+    private void enqueue()
+    {
+        if (!_queued)
+        {
+            _queued = true;
+            _driver.ready(this);
+        }
+    }
+
+    /**
+     * @return whether the connector still has anything to process, now that it has been taken
+     *         off the driver's queue
+     */
+    boolean dequeued()
+    {
+        _queued = false;
+        boolean ready = _readPending || _writePending || _readSinceHandedOut;
+        _readSinceHandedOut = false;
+        return ready;
     }
 
     public void process() throws IOException
     {
-        if (_channel.isOpen() && _channel.finishConnect())
+        if (_tracksOutput && !_readPending && !_writePending)
         {
-            if (_readPending)
+            return;
+        }
+        _processing = true;
+        try
+        {
+            if (_channel.isOpen() && _channel.finishConnect())
             {
-                read();
-                _readPending = false;
-                if (isClosed()) return;
+                if (_readPending)
+                {
+                    read();
+                    _readPending = false;
+                    _readSinceHandedOut = true;
+                    if (isClosed()) return;
+                }
+                write();
             }
-            write();
+        }
+        finally
+        {
+            _processing = false;
         }
     }
 
     void read() throws IOException
     {
         int bytesRead = 0;
-        while ((bytesRead = _channel.read(_readBuffer)) > 0)
+        do
         {
-            _readBuffer.flip();
-            int consumed = _transport.input(_readBuffer.array(), _readBuffer.position(), _readBuffer.limit());
-            _readBuffer.position(consumed == Transport.END_OF_STREAM ? _readBuffer.limit() : consumed);
-            if (_logger.isLoggable(Level.FINE))
+            // processing even after an empty read lets the transport give back its buffer
+            bytesRead = _channel.read(_transport.tail());
+            _transport.process();
+            if (bytesRead > 0 && _logger.isLoggable(Level.FINE))
             {
-                _logger.log(Level.FINE, "consumed " + consumed + " bytes, " + _readBuffer.remaining() + " available");
+                _logger.log(Level.FINE, "read " + bytesRead + " bytes");
             }
-            _readBuffer.compact();
         }
+        while (bytesRead > 0);
         if (bytesRead == -1) {
             close();
         }
@@ -106,32 +169,32 @@ class ConnectorImpl<C> implements Connector<C>
 
     void write() throws IOException
     {
+        _writePending = false;
         int interest = _key.interestOps();
-        int start = _writeBuffer.position();
         boolean done = false;
         while (!done)
         {
-            int produced = _transport.output(_writeBuffer.array(), _writeBuffer.position(), _writeBuffer.remaining());
-            _writeBuffer.position(_writeBuffer.position() + produced);
-            _writeBuffer.flip();
-            int wrote = _channel.write(_writeBuffer);
-            if (_logger.isLoggable(Level.FINE))
-            {
-                _logger.log(Level.FINE, "wrote " + wrote + " bytes, " + _writeBuffer.remaining() + " remaining");
-            }
-            _writeBuffer.compact();
-            if (_writeBuffer.position() > 0)
+            int pending = _transport.pending();
+            if (pending == 0)
             {
-                //weren't able to write all available data, ask to be notfied when we can write again
-                interest |= SelectionKey.OP_WRITE;
+                //nothing left to send
+                interest &= ~SelectionKey.OP_WRITE;
                 done = true;
             }
             else
             {
-                //we are done if buffer was empty to begin with and we did not produce enough to fill it
-                interest &= ~SelectionKey.OP_WRITE;
-                done = start == 0 && produced < _writeBuffer.capacity();
-                start = 0;
+                int wrote = _channel.write(_transport.head());
+                _transport.pop(wrote);
+                if (_logger.isLoggable(Level.FINE))
+                {
+                    _logger.log(Level.FINE, "wrote " + wrote + " bytes, " + (pending - wrote) + " remaining");
+                }
+                if (wrote < pending)
+                {
+                    //weren't able to write all available data, ask to be notfied when we can write again
+                    interest |= SelectionKey.OP_WRITE;
+                    done = true;
+                }
             }
         }
         _key.interestOps(interest);
@@ -163,6 +226,18 @@ class ConnectorImpl<C> implements Connector<C>
     {
         _connection = connection;
         _transport = TransportFactory.getDefaultTransportFactory().transport(_connection);
+        _tracksOutput = connection instanceof ConnectionImpl;
+        if (_tracksOutput)
+        {
+            ((ConnectionImpl) connection).setTransportWorkListener(new Runnable()
+            {
+                public void run()
+                {
+                    outputPending();
+                }
+            });
+        }
+        outputPending();
     }
 
     public C getContext()
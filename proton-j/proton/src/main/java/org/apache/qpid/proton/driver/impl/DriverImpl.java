@@ -29,10 +29,10 @@ import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
 import java.util.Collection;
-import java.util.Collections;
-import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Queue;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -41,10 +41,19 @@ import org.apache.qpid.proton.driver.Connector;
 import org.apache.qpid.proton.driver.Driver;
 import org.apache.qpid.proton.driver.Listener;
 
+/**
+ * A driver with a single selector, whose connectors are serviced by whichever thread calls it.
+ *
+ * Each select moves the ready keys into queues of listeners and connectors in one pass, so
+ * handing them out costs nothing per idle connector. A connector is also queued, without a
+ * select, when the application gives its connection something to send, so connectors need
+ * only be processed when {@link #connector()} returns them rather than all after every change.
+ */
 public class DriverImpl implements Driver
 {
     private Selector _selector;
-    private Set<SelectionKey> _selectedKeys = Collections.emptySet();
+    private final Queue<Listener> _readyListeners = new ArrayDeque<Listener>();
+    private final Queue<ConnectorImpl> _readyConnectors = new ArrayDeque<ConnectorImpl>();
     private Collection<Listener> _listeners = new LinkedList();
     private Collection<Connector> _connectors = new LinkedList();
     private Logger _logger = Logger.getLogger("proton.driver");
@@ -59,12 +68,23 @@ public class DriverImpl implements Driver
         _selector.wakeup();
     }
 
+    /**
+     * Waits for I/O, unless a connector already has output to process, in which case this
+     * only picks up whatever I/O is ready.
+     */
     public void doWait(long timeout)
     {
         try
         {
-            _selector.select(timeout);
-            _selectedKeys = _selector.selectedKeys();
+            if(_readyConnectors.isEmpty())
+            {
+                _selector.select(timeout);
+            }
+            else
+            {
+                _selector.selectNow();
+            }
+            takeSelectedKeys();
         }
         catch (IOException e)
         {
@@ -76,88 +96,84 @@ public class DriverImpl implements Driver
     @SuppressWarnings("rawtypes")
     public Listener listener()
     {
-        Listener listener = null;
-        listener = getFirstListener();
-        if(listener == null)
+        if(_readyListeners.isEmpty())
         {
-            try
-            {
-                selectNow();
-            }
-            catch (IOException e)
-            {
-                _logger.log(Level.SEVERE, "Exception when selecting",e);
-                throw new RuntimeException(e);
-            }
-            listener = getFirstListener();
+            selectNow();
         }
-        return listener;
+        return _readyListeners.poll();
     }
 
-    private void selectNow() throws IOException
+    private void selectNow()
     {
-        _selector.selectNow();
-        _selectedKeys = _selector.selectedKeys();
+        try
+        {
+            _selector.selectNow();
+            takeSelectedKeys();
+        }
+        catch (IOException e)
+        {
+            _logger.log(Level.SEVERE, "Exception when selecting",e);
+            throw new RuntimeException(e);
+        }
     }
 
-    @SuppressWarnings("rawtypes")
-    private Listener getFirstListener()
+    private void takeSelectedKeys()
     {
-        Iterator<SelectionKey> selectedIter = _selectedKeys.iterator();
-
-        while(selectedIter.hasNext())
+        Set<SelectionKey> selectedKeys = _selector.selectedKeys();
+        if(!selectedKeys.isEmpty())
         {
-            SelectionKey key = selectedIter.next();
-            selectedIter.remove();
-            if(key.isAcceptable())
+            for(SelectionKey key : selectedKeys)
             {
-                return (Listener) key.attachment();
+                if(!key.isValid())
+                {
+                    continue;
+                }
+                if(key.isAcceptable())
+                {
+                    _readyListeners.add((Listener) key.attachment());
+                }
+                else
+                {
+                    ((ConnectorImpl) key.attachment()).selected(key.isReadable(), key.isWritable());
+                }
             }
+            selectedKeys.clear();
         }
-        return null;
+    }
+
+    /**
+     * Queues the connector to be returned by {@link #connector()}, if it is not queued already.
+     */
+    void ready(ConnectorImpl connector)
+    {
+        _readyConnectors.add(connector);
     }
 
     @SuppressWarnings("rawtypes")
     public Connector connector()
     {
-        Connector connector = null;
-        connector = getFirstConnector();
+        ConnectorImpl connector = nextReadyConnector();
         if(connector == null)
         {
-            try
-            {
-                selectNow();
-            }
-            catch (IOException e)
-            {
-                _logger.log(Level.SEVERE, "Exception when selecting",e);
-                throw new RuntimeException(e);
-            }
-            connector = getFirstConnector();
+            selectNow();
+            connector = nextReadyConnector();
         }
         return connector;
     }
 
-    @SuppressWarnings("rawtypes")
-    private Connector getFirstConnector()
+    private ConnectorImpl nextReadyConnector()
     {
-        Iterator<SelectionKey> selectedIter = _selectedKeys.iterator();
-
-        while(selectedIter.hasNext())
+        ConnectorImpl connector;
+        while((connector = _readyConnectors.poll()) != null)
         {
-            SelectionKey key = selectedIter.next();
-            selectedIter.remove();
-            if(key.isReadable() || key.isWritable())
+            if(connector.dequeued())
             {
-                ConnectorImpl c = (ConnectorImpl) key.attachment();
-                c.selected();
-                return c;
+                return connector;
             }
         }
         return null;
     }
 
-
     public void destroy()
     {
         try
@@ -196,8 +212,12 @@ public class DriverImpl implements Driver
 
     public <C> Listener<C> createListener(ServerSocketChannel c, C context)
     {
-        Listener<C> l = new ListenerImpl<C>(this, c, context);
-        SelectionKey key = registerInterest(c,SelectionKey.OP_ACCEPT);
+        return addListener(new ListenerImpl<C>(this, c, context));
+    }
+
+    <C> Listener<C> addListener(ListenerImpl<C> l)
+    {
+        SelectionKey key = registerInterest(l.getChannel(), SelectionKey.OP_ACCEPT);
         key.attach(l);
         _listeners.add(l);
         return l;
@@ -222,16 +242,13 @@ public class DriverImpl implements Driver
 
     public <C> Connector<C> createConnector(SelectableChannel c, C context)
     {
-        SelectionKey key = registerInterest(c, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
-        Connector<C> co = new ConnectorImpl<C>(this, null, (SocketChannel)c, context, key);
-        key.attach(co);
-        _connectors.add(co);
-        return co;
+        return addConnector(new ConnectorImpl<C>(this, null, (SocketChannel)c, context));
     }
 
     public <C> void removeConnector(Connector<C> c)
     {
         _connectors.remove(c);
+        _readyConnectors.remove(c);
     }
 
     public Iterable<Listener> listeners()
@@ -246,8 +263,13 @@ public class DriverImpl implements Driver
 
     protected <C> Connector<C> createServerConnector(SelectableChannel c, C context, Listener<C> l)
     {
-        SelectionKey key = registerInterest(c, SelectionKey.OP_READ | SelectionKey.OP_WRITE);
-        Connector<C> co = new ConnectorImpl<C>(this, l, (SocketChannel)c, context, key);
+        return addConnector(new ConnectorImpl<C>(this, l, (SocketChannel)c, context));
+    }
+
+    <C> Connector<C> addConnector(ConnectorImpl<C> co)
+    {
+        SelectionKey key = registerInterest(co.getChannel(), SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        co.setKey(key);
         key.attach(co);
         _connectors.add(co);
         return co;
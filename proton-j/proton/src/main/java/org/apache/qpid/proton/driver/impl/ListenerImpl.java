@@ -43,6 +43,11 @@ class ListenerImpl<C> implements Listener<C>
         _context = context;
     }
 
+    ServerSocketChannel getChannel()
+    {
+        return _channel;
+    }
+
     public Connector<C> accept()
     {
         try
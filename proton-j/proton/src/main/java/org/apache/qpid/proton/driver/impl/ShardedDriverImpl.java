@@ -0,0 +1,417 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.driver.impl;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.qpid.proton.driver.Connector;
+import org.apache.qpid.proton.driver.Driver;
+import org.apache.qpid.proton.driver.Listener;
+
+/**
+ * A driver that spreads its connectors over several selector loops, each with a thread of its
+ * own, so that many connections are serviced by as many cores.
+ *
+ * Each connector belongs to one loop for its whole life, and its connection and transport must
+ * only be used from that loop's thread: the {@link Handler} is called there, and other threads
+ * hand work to it with {@link #execute(Connector, Runnable)}. New connectors, whether accepted
+ * or created, go to the loop with the fewest connectors, so that an even load is dealt out
+ * round-robin.
+ *
+ * Listeners and connectors are serviced by the loops rather than handed out, so
+ * {@link #listener()} and {@link #connector()} always return null.
+ */
+public class ShardedDriverImpl implements Driver
+{
+    private static final int LOOP_COUNT = Integer.getInteger("pn.driver_loops",
+                                                             Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The application's side of a sharded driver. Both methods are called on the thread of the
+     * connector's loop.
+     */
+    public interface Handler
+    {
+        /**
+         * Called once for each new connector before it is first processed, which is where its
+         * connection should be set.
+         */
+        void opened(Connector connector);
+
+        /**
+         * Called when the connector has I/O pending, and once it has been opened or has run a
+         * task given to {@link ShardedDriverImpl#execute}, so that what they produced is sent.
+         * The handler should deal with the events on its connection and then call
+         * {@link Connector#process()}.
+         */
+        void process(Connector connector) throws IOException;
+    }
+
+    private final Handler _handler;
+    private final Loop[] _loops;
+    private final Set<Listener> _listeners = Collections.newSetFromMap(new ConcurrentHashMap<Listener, Boolean>());
+    private final Set<Connector> _connectors = Collections.newSetFromMap(new ConcurrentHashMap<Connector, Boolean>());
+    private final Logger _logger = Logger.getLogger("proton.driver");
+    private final AtomicInteger _nextListenerLoop = new AtomicInteger();
+    private volatile boolean _stopped;
+    private boolean _woken;
+
+    /**
+     * Creates a driver with one loop per core, or as many as the pn.driver_loops property gives.
+     */
+    public ShardedDriverImpl(Handler handler) throws IOException
+    {
+        this(LOOP_COUNT, handler);
+    }
+
+    public ShardedDriverImpl(int loopCount, Handler handler) throws IOException
+    {
+        if(loopCount < 1)
+        {
+            throw new IllegalArgumentException("A driver needs at least one loop, not " + loopCount);
+        }
+        _handler = handler;
+        _loops = new Loop[loopCount];
+        for(int i = 0; i < loopCount; i++)
+        {
+            _loops[i] = new Loop(i);
+        }
+        for(Loop loop : _loops)
+        {
+            loop._thread.start();
+        }
+    }
+
+    /**
+     * Runs the task on the thread of the connector's loop, after any I/O already pending, and
+     * then has the handler process the connector.
+     */
+    public void execute(final Connector connector, final Runnable task)
+    {
+        final Loop loop = (Loop) ((ConnectorImpl) connector).getDriver();
+        loop.execute(new Runnable()
+        {
+            public void run()
+            {
+                task.run();
+                loop.service(connector);
+            }
+        });
+    }
+
+    public void wakeup()
+    {
+        synchronized(this)
+        {
+            _woken = true;
+            notifyAll();
+        }
+        for(Loop loop : _loops)
+        {
+            loop.wakeup();
+        }
+    }
+
+    /**
+     * The loops do their own waiting, so this only waits for the timeout to pass or for
+     * {@link #wakeup()}.
+     */
+    public synchronized void doWait(long timeout)
+    {
+        final long deadline = System.currentTimeMillis() + timeout;
+        try
+        {
+            while(!_woken && !_stopped)
+            {
+                long remaining = timeout == 0 ? 0 : deadline - System.currentTimeMillis();
+                if(timeout != 0 && remaining <= 0)
+                {
+                    break;
+                }
+                wait(remaining);
+            }
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        _woken = false;
+    }
+
+    @SuppressWarnings("rawtypes")
+    public Listener listener()
+    {
+        return null;
+    }
+
+    @SuppressWarnings("rawtypes")
+    public Connector connector()
+    {
+        return null;
+    }
+
+    /**
+     * Stops the loops, waiting for them to finish unless called from one of them, and closes
+     * their selectors.
+     */
+    public void destroy()
+    {
+        _stopped = true;
+        wakeup();
+        for(Loop loop : _loops)
+        {
+            if(loop._thread != Thread.currentThread())
+            {
+                try
+                {
+                    loop._thread.join();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+        _listeners.clear();
+        _connectors.clear();
+    }
+
+    public <C> Listener<C> createListener(String host, int port, C context)
+    {
+        try
+        {
+            ServerSocketChannel serverSocketChannel = ServerSocketChannel.open();
+            serverSocketChannel.configureBlocking(false);
+            serverSocketChannel.socket().bind(new InetSocketAddress(host, port));
+            return createListener(serverSocketChannel, context);
+        }
+        catch (IOException e)
+        {
+            _logger.log(Level.SEVERE, "Exception when creating listener", e);
+        }
+        return null;
+    }
+
+    /**
+     * Adds the listener to the loops in turn. Connections it accepts are dealt out to all of
+     * the loops, whichever loop accepts them.
+     */
+    public <C> Listener<C> createListener(ServerSocketChannel c, C context)
+    {
+        final Loop loop = _loops[(_nextListenerLoop.getAndIncrement() & Integer.MAX_VALUE) % _loops.length];
+        final ListenerImpl<C> listener = new ListenerImpl<C>(loop, c, context);
+        _listeners.add(listener);
+        loop.execute(new Runnable()
+        {
+            public void run()
+            {
+                loop.addListener(listener);
+            }
+        });
+        return listener;
+    }
+
+    public <C> Connector<C> createConnector(String host, int port, C context)
+    {
+        try
+        {
+            SocketChannel channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            channel.connect(new InetSocketAddress(host, port));
+            return createConnector(channel, context);
+        }
+        catch (IOException e)
+        {
+            _logger.log(Level.SEVERE, "Exception when creating connector", e);
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Creates a connector on the least loaded loop. Its connection should be set by
+     * {@link Handler#opened(Connector)} rather than by the caller.
+     */
+    public <C> Connector<C> createConnector(SelectableChannel c, C context)
+    {
+        Loop loop = leastLoaded();
+        return loop.open(new ConnectorImpl<C>(loop, null, (SocketChannel) c, context));
+    }
+
+    public Iterable<Listener> listeners()
+    {
+        return _listeners;
+    }
+
+    public Iterable<Connector> connectors()
+    {
+        return _connectors;
+    }
+
+    private Loop leastLoaded()
+    {
+        Loop least = _loops[0];
+        for(int i = 1; i < _loops.length; i++)
+        {
+            if(_loops[i]._load.get() < least._load.get())
+            {
+                least = _loops[i];
+            }
+        }
+        return least;
+    }
+
+    /**
+     * A selector and the thread that services it. Everything registered with the selector is
+     * only touched on that thread; other threads queue tasks for it.
+     */
+    private final class Loop extends DriverImpl implements Runnable
+    {
+        private final Thread _thread;
+        private final Queue<Runnable> _tasks = new ConcurrentLinkedQueue<Runnable>();
+        private final AtomicInteger _load = new AtomicInteger();
+
+        private Loop(int index) throws IOException
+        {
+            _thread = new Thread(this, "proton-driver-" + index);
+        }
+
+        private void execute(Runnable task)
+        {
+            _tasks.add(task);
+            wakeup();
+        }
+
+        private <C> Connector<C> open(final ConnectorImpl<C> connector)
+        {
+            _load.incrementAndGet();
+            _connectors.add(connector);
+            execute(new Runnable()
+            {
+                public void run()
+                {
+                    addConnector(connector);
+                    _handler.opened(connector);
+                    // nothing else would process the connector until its peer sends something
+                    service(connector);
+                }
+            });
+            return connector;
+        }
+
+        /**
+         * Hands an accepted connection to the least loaded loop, which may be this one.
+         */
+        @Override
+        protected <C> Connector<C> createServerConnector(SelectableChannel c, C context, Listener<C> l)
+        {
+            Loop loop = leastLoaded();
+            return loop.open(new ConnectorImpl<C>(loop, l, (SocketChannel) c, context));
+        }
+
+        @Override
+        public <C> void removeConnector(Connector<C> c)
+        {
+            super.removeConnector(c);
+            if(_connectors.remove(c))
+            {
+                _load.decrementAndGet();
+            }
+        }
+
+        public void run()
+        {
+            try
+            {
+                while(!_stopped)
+                {
+                    runTasks();
+                    doWait(0);
+                    runTasks();
+                    for(Listener l = listener(); l != null; l = listener())
+                    {
+                        while(l.accept() != null)
+                        {
+                            // each connector is opened by the loop it was dealt to
+                        }
+                    }
+                    for(Connector c = connector(); c != null; c = connector())
+                    {
+                        service(c);
+                    }
+                }
+            }
+            catch (RuntimeException e)
+            {
+                _logger.log(Level.SEVERE, "Driver loop failed", e);
+            }
+            finally
+            {
+                super.destroy();
+            }
+        }
+
+        private void runTasks()
+        {
+            Runnable task;
+            while((task = _tasks.poll()) != null)
+            {
+                try
+                {
+                    task.run();
+                }
+                catch (RuntimeException e)
+                {
+                    _logger.log(Level.SEVERE, "Exception when running driver task", e);
+                }
+            }
+        }
+
+        private void service(Connector c)
+        {
+            try
+            {
+                _handler.process(c);
+            }
+            catch (IOException e)
+            {
+                _logger.log(Level.SEVERE, "Exception when processing connector", e);
+                c.destroy();
+            }
+            catch (RuntimeException e)
+            {
+                _logger.log(Level.SEVERE, "Exception when processing connector", e);
+                c.destroy();
+            }
+        }
+    }
+}
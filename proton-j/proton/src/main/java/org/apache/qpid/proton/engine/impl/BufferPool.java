@@ -0,0 +1,75 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Direct buffers of one size, kept per thread so that the transports serviced by a thread share
+ * them rather than each holding its own while idle.
+ *
+ * A thread keeps at most pn.pooled_buffers free buffers; any more are left to the garbage
+ * collector. Buffers may be released on a different thread from the one they were acquired on.
+ */
+final class BufferPool
+{
+    private static final int MAX_POOLED = Integer.getInteger("pn.pooled_buffers", 16);
+
+    private final int _bufferSize;
+    private final ThreadLocal<ArrayDeque<ByteBuffer>> _free = new ThreadLocal<ArrayDeque<ByteBuffer>>()
+    {
+        @Override
+        protected ArrayDeque<ByteBuffer> initialValue()
+        {
+            return new ArrayDeque<ByteBuffer>();
+        }
+    };
+
+    BufferPool(int bufferSize)
+    {
+        _bufferSize = bufferSize;
+    }
+
+    /**
+     * @return a cleared buffer of at least the given size, which is only pooled if it is no
+     *         larger than the pool's buffer size
+     */
+    ByteBuffer acquire(int minimumSize)
+    {
+        if(minimumSize > _bufferSize)
+        {
+            return ByteBuffer.allocateDirect(minimumSize);
+        }
+        ByteBuffer buffer = _free.get().poll();
+        return buffer == null ? ByteBuffer.allocateDirect(_bufferSize) : buffer;
+    }
+
+    void release(ByteBuffer buffer)
+    {
+        ArrayDeque<ByteBuffer> free = _free.get();
+        if(buffer.capacity() == _bufferSize && free.size() < MAX_POOLED)
+        {
+            buffer.clear();
+            free.push(buffer);
+        }
+    }
+}
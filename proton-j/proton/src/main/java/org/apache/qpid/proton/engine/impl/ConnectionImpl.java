@@ -54,11 +54,26 @@ public class ConnectionImpl extends EndpointImpl implements Connection
     private boolean _bound;
     private String _remoteContainer;
     private String _remoteHostname;
+    private Runnable _transportWorkListener;
 
     public ConnectionImpl()
     {
     }
 
+    @Override
+    public void open()
+    {
+        super.open();
+        transportWorkAdded();
+    }
+
+    @Override
+    public void close()
+    {
+        super.close();
+        transportWorkAdded();
+    }
+
     public SessionImpl session()
     {
         SessionImpl session = new SessionImpl(this);
@@ -414,6 +429,26 @@ public class ConnectionImpl extends EndpointImpl implements Connection
         }
     }
 
+    /**
+     * Sets a callback to be run whenever something is given to the transport to send, such as a
+     * changed endpoint, a delivery with new data or state, or a SASL frame, so that whatever
+     * drives the transport can tell which connections need their output processed without
+     * asking each of them. It is run on the thread making the change, possibly more than once
+     * for the same unsent work.
+     */
+    public void setTransportWorkListener(Runnable listener)
+    {
+        _transportWorkListener = listener;
+    }
+
+    void transportWorkAdded()
+    {
+        if(_transportWorkListener != null)
+        {
+            _transportWorkListener.run();
+        }
+    }
+
     void workUpdate(DeliveryImpl delivery)
     {
         if(delivery != null)
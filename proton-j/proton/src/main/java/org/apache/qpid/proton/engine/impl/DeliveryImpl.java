@@ -50,12 +50,10 @@ public class DeliveryImpl implements Delivery
     private int _flags = (byte) 0;
     private int _transportFlags = (byte) 0;
     private TransportDelivery _transportDelivery;
-    private byte[] _data;
-    private int _dataSize;
+    private final PayloadChain _data = new PayloadChain();
     private boolean _complete;
     private boolean _updated;
     private boolean _done;
-    private int _offset;
 
     public DeliveryImpl(final byte[] tag, final LinkImpl link, DeliveryImpl previous)
     {
@@ -175,22 +173,8 @@ public class DeliveryImpl implements Delivery
 
     int recv(byte[] bytes, int offset, int size)
     {
-
-        final int consumed;
-        if(_data != null)
-        {
-            //TODO - should only be if no bytes left
-            consumed = Math.min(size, _dataSize);
-
-            System.arraycopy(_data, _offset, bytes, offset, consumed);
-            _offset += consumed;
-            _dataSize -= consumed;
-        }
-        else
-        {
-            _dataSize =  consumed = 0;
-        }
-        if(_dataSize == 0)
+        final int consumed = _data.read(bytes, offset, size);
+        if(_data.size() == 0)
         {
             clearFlag(IO_WORK);
         }
@@ -286,6 +270,7 @@ public class DeliveryImpl implements Delivery
         {
             getLink().getConnectionImpl().addTransportWork(this);
         }
+        getLink().getConnectionImpl().transportWorkAdded();
     }
 
 
@@ -297,6 +282,10 @@ public class DeliveryImpl implements Delivery
         {
             addToTransportWorkList();
         }
+        else
+        {
+            getLink().getConnectionImpl().transportWorkAdded();
+        }
     }
 
     DeliveryImpl getTransportWorkNext()
@@ -342,51 +331,35 @@ public class DeliveryImpl implements Delivery
 
     int send(byte[] bytes, int offset, int length)
     {
-        if(_data == null)
-        {
-            _data = new byte[length];
-        }
-        else if(_data.length - _dataSize < length)
-        {
-            byte[] oldData = _data;
-            _data = new byte[oldData.length + _dataSize];
-            System.arraycopy(oldData,_offset,_data,0,_dataSize);
-            _offset = 0;
-        }
-        System.arraycopy(bytes,offset,_data,_dataSize+_offset,length);
-        _dataSize+=length;
+        _data.append(bytes, offset, length);
         addToTransportWorkList();
         return length;  //TODO - Implement.
     }
 
-    byte[] getData()
-    {
-        return _data;
-    }
-
-    int getDataOffset()
+    /**
+     * Adds a received frame's payload to the delivery without copying it.
+     */
+    void receive(byte[] bytes, int offset, int length)
     {
-        return _offset;
+        _data.appendShared(bytes, offset, length);
     }
 
-    int getDataLength()
-    {
-        return _dataSize;  //TODO - Implement.
-    }
-
-    void setData(byte[] data)
+    /**
+     * Copies any unread received bytes held in the given array, which is about to be reused.
+     */
+    void unshare(byte[] array)
     {
-        _data = data;
+        _data.unshare(array);
     }
 
-    void setDataLength(int length)
+    PayloadChain getData()
     {
-        _dataSize = length;
+        return _data;
     }
 
-    public void setDataOffset(int arrayOffset)
+    int getDataLength()
     {
-        _offset = arrayOffset;
+        return _data.size();
     }
 
     public boolean isWritable()
@@ -400,7 +373,7 @@ public class DeliveryImpl implements Delivery
     {
         return getLink() instanceof ReceiverImpl
                 && getLink().current() == this
-                && _dataSize > 0;
+                && _data.size() > 0;
     }
 
     void setComplete()
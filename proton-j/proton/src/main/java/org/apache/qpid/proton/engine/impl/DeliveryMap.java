@@ -0,0 +1,155 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+/**
+ * Unsettled deliveries keyed by their 32-bit delivery-id, without boxing the ids.
+ *
+ * Open addressing with linear probing, with the slot taken straight from the low bits of the id.
+ * Delivery-ids are handed out in sequence, so a window of unsettled deliveries fills consecutive
+ * slots and behaves like a ring buffer: lookups land on the first probe and nothing is hashed.
+ */
+final class DeliveryMap
+{
+    private static final int INITIAL_CAPACITY = 64;
+
+    private int[] _ids = new int[INITIAL_CAPACITY];
+    private DeliveryImpl[] _deliveries = new DeliveryImpl[INITIAL_CAPACITY];
+    private int _mask = INITIAL_CAPACITY - 1;
+    private int _size;
+
+    int size()
+    {
+        return _size;
+    }
+
+    /**
+     * @return the number of slots to visit with {@link #getAt(int)} to see every delivery
+     */
+    int capacity()
+    {
+        return _deliveries.length;
+    }
+
+    /**
+     * @return the delivery in the slot, or null if the slot is empty
+     */
+    DeliveryImpl getAt(int slot)
+    {
+        return _deliveries[slot];
+    }
+
+    int idAt(int slot)
+    {
+        return _ids[slot];
+    }
+
+    DeliveryImpl get(int id)
+    {
+        for(int slot = id & _mask; _deliveries[slot] != null; slot = (slot + 1) & _mask)
+        {
+            if(_ids[slot] == id)
+            {
+                return _deliveries[slot];
+            }
+        }
+        return null;
+    }
+
+    void put(int id, DeliveryImpl delivery)
+    {
+        int slot = id & _mask;
+        for(; _deliveries[slot] != null; slot = (slot + 1) & _mask)
+        {
+            if(_ids[slot] == id)
+            {
+                _deliveries[slot] = delivery;
+                return;
+            }
+        }
+        _ids[slot] = id;
+        _deliveries[slot] = delivery;
+        if(++_size > (_mask >> 1))
+        {
+            grow();
+        }
+    }
+
+    DeliveryImpl remove(int id)
+    {
+        int slot = id & _mask;
+        for(; _deliveries[slot] != null; slot = (slot + 1) & _mask)
+        {
+            if(_ids[slot] == id)
+            {
+                DeliveryImpl removed = _deliveries[slot];
+                closeGap(slot);
+                _size--;
+                return removed;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Empties the slot, moving back any later entry of the same probe run that would otherwise
+     * become unreachable.
+     */
+    private void closeGap(int gap)
+    {
+        int slot = (gap + 1) & _mask;
+        for(; _deliveries[slot] != null; slot = (slot + 1) & _mask)
+        {
+            int home = _ids[slot] & _mask;
+            // move the entry if its home slot is not cyclically within (gap, slot]
+            if(((slot - home) & _mask) >= ((slot - gap) & _mask))
+            {
+                _ids[gap] = _ids[slot];
+                _deliveries[gap] = _deliveries[slot];
+                gap = slot;
+            }
+        }
+        _deliveries[gap] = null;
+    }
+
+    private void grow()
+    {
+        int[] ids = _ids;
+        DeliveryImpl[] deliveries = _deliveries;
+        int capacity = deliveries.length * 2;
+        _ids = new int[capacity];
+        _deliveries = new DeliveryImpl[capacity];
+        _mask = capacity - 1;
+        for(int i = 0; i < deliveries.length; i++)
+        {
+            if(deliveries[i] != null)
+            {
+                int slot = ids[i] & _mask;
+                while(_deliveries[slot] != null)
+                {
+                    slot = (slot + 1) & _mask;
+                }
+                _ids[slot] = ids[i];
+                _deliveries[slot] = deliveries[i];
+            }
+        }
+    }
+}
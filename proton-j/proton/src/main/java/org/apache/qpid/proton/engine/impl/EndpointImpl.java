@@ -111,6 +111,7 @@ public abstract class EndpointImpl implements Endpoint
             _modified = true;
             getConnectionImpl().addModified(this);
         }
+        getConnectionImpl().transportWorkAdded();
     }
 
     protected abstract ConnectionImpl getConnectionImpl();
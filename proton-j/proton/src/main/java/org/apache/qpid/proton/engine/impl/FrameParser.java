@@ -34,6 +34,7 @@ import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.transport.FrameBody;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Formatter;
 
 class FrameParser implements TransportInput
@@ -79,14 +80,23 @@ class FrameParser implements TransportInput
         ERROR
     }
 
+    /** Frames up to this size reuse the same buffer when split across reads. */
+    private static final int MAX_REUSED_FRAME_BUFFER = 64 * 1024;
+
     private State _state = State.HEADER0;
     private int _size;
 
     private ByteBuffer _buffer;
+    private ByteBuffer _frameBuffer;
+    // whether payloads may be slices of the buffer being parsed
+    private boolean _lending;
 
     private DecoderImpl _decoder = new DecoderImpl();
     private EncoderImpl _encoder = new EncoderImpl(_decoder);
 
+    private boolean _reuseFrames;
+    private TransportFrame _reusedFrame;
+
     {
         AMQPDefinedTypes.registerAllTypes(_decoder, _encoder);
     }
@@ -98,8 +108,38 @@ class FrameParser implements TransportInput
         _frameTransport = frameTransport;
     }
 
+    /**
+     * Sets whether the same frame, and the same transfer, flow and disposition bodies, are
+     * passed to the transport for every frame parsed. The transport must then not keep them
+     * beyond its input call.
+     */
+    void setReuseFrames(boolean reuseFrames)
+    {
+        _reuseFrames = reuseFrames;
+        _decoder.setReuseInstances(reuseFrames);
+    }
+
     public int input(byte[] bytes, int offset, final int length)
     {
+        return input(ByteBuffer.wrap(bytes, offset, length), false);
+    }
+
+    /**
+     * Parses frames directly from the given buffer, advancing its position past the bytes consumed.
+     * Transfer payloads are handed to the transport as slices of a heap buffer, so the caller
+     * must not overwrite consumed bytes while a delivery may still hold them.
+     *
+     * @return the number of bytes consumed
+     */
+    int input(final ByteBuffer buffer)
+    {
+        return input(buffer, true);
+    }
+
+    private int input(final ByteBuffer buffer, boolean lending)
+    {
+        _lending = lending;
+        final int length = buffer.remaining();
         if(_heldFrame != null)
         {
             if(_frameTransport.input(_heldFrame))
@@ -111,13 +151,12 @@ class FrameParser implements TransportInput
                 return 0;
             }
         }
-        int unconsumed = length;
         EndpointError frameParsingError = null;
         int size = _size;
         State state = _state;
         ByteBuffer oldIn = null;
 
-        ByteBuffer in = ByteBuffer.wrap(bytes, offset, unconsumed);
+        ByteBuffer in = buffer;
 
         boolean transportAccepting = true;
 
@@ -304,7 +343,7 @@ class FrameParser implements TransportInput
 
                     if(in.remaining() < size-4)
                     {
-                        _buffer = ByteBuffer.allocate(size-4);
+                        _buffer = getFrameBuffer(size-4);
                         _buffer.put(in);
                         state = State.BUFFERING;
                         break;
@@ -386,9 +425,7 @@ class FrameParser implements TransportInput
 
                         if(in.hasRemaining())
                         {
-                            byte[] payloadBytes = new byte[in.remaining()];
-                            in.get(payloadBytes);
-                            payload = new Binary(payloadBytes);
+                            payload = readPayload(in);
                         }
                         else
                         {
@@ -402,11 +439,31 @@ class FrameParser implements TransportInput
                             {
                                 _traceLogger.log(Level.FINE, "IN: CH["+channel+"] : " + frameBody + (payload == null ? "" : "[" + payload + "]"));
                             }
-                            TransportFrame frame = new TransportFrame(channel, frameBody, payload);
+                            TransportFrame frame;
+                            if(_reuseFrames)
+                            {
+                                if(_reusedFrame == null)
+                                {
+                                    _reusedFrame = new TransportFrame(channel, frameBody, payload);
+                                }
+                                else
+                                {
+                                    _reusedFrame.set(channel, frameBody, payload);
+                                }
+                                frame = _reusedFrame;
+                            }
+                            else
+                            {
+                                frame = new TransportFrame(channel, frameBody, payload);
+                            }
                             if(!_frameTransport.input(frame))
                             {
                                 transportAccepting = false;
-                                _heldFrame = frame;
+                                // the frame is given to the transport again on the next input,
+                                // by which time the bytes a payload slice points at may be gone
+                                _heldFrame = payload != null && buffer.hasArray() && payload.getArray() == buffer.array()
+                                             ? new TransportFrame(channel, frameBody, copy(payload))
+                                             : frame;
                             }
 
                         }
@@ -440,7 +497,47 @@ class FrameParser implements TransportInput
         {
             throw new TransportException(frameParsingError.getDescription());
         }
-        return _state == State.ERROR ? -1 : length - in.remaining();
+        return _state == State.ERROR ? -1 : length - buffer.remaining();
+    }
+
+    private ByteBuffer getFrameBuffer(int size)
+    {
+        if(size > MAX_REUSED_FRAME_BUFFER)
+        {
+            return ByteBuffer.allocate(size);
+        }
+        if(_frameBuffer == null || _frameBuffer.capacity() < size)
+        {
+            _frameBuffer = ByteBuffer.allocate(Math.max(size, 1024));
+        }
+        _frameBuffer.clear();
+        _frameBuffer.limit(size);
+        return _frameBuffer;
+    }
+
+    /**
+     * Returns the remaining bytes of in, as a slice of it where that is allowed. A frame that was
+     * split across reads is only sliced if it has a buffer of its own, as the reused frame buffer
+     * is overwritten by the next one.
+     */
+    private Binary readPayload(ByteBuffer in)
+    {
+        final int size = in.remaining();
+        if(in.hasArray() && (in == _buffer ? in != _frameBuffer : _lending))
+        {
+            Binary payload = new Binary(in.array(), in.arrayOffset() + in.position(), size);
+            in.position(in.limit());
+            return payload;
+        }
+        byte[] payloadBytes = new byte[size];
+        in.get(payloadBytes);
+        return new Binary(payloadBytes);
+    }
+
+    private static Binary copy(Binary payload)
+    {
+        int offset = payload.getArrayOffset();
+        return new Binary(Arrays.copyOfRange(payload.getArray(), offset, offset + payload.getLength()));
     }
 
     private void reset()
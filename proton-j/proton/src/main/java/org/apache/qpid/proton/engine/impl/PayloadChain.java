@@ -0,0 +1,217 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The payload bytes of a delivery, held as a queue of array segments.
+ *
+ * Appending never copies bytes that are already held, so a large message built up from many
+ * sends, or received over many transfer frames, costs one copy per byte rather than one per
+ * append. Segments are dropped as soon as they have been read, so shared receive buffers are
+ * not kept alive by a partially read delivery.
+ */
+final class PayloadChain
+{
+    private static final int MAX_SEGMENT_SIZE = 1024 * 1024;
+
+    private static final class Segment
+    {
+        private byte[] _array;
+        private boolean _shared;
+        private int _position;
+        private int _limit;
+        private Segment _next;
+
+        private Segment(byte[] array, int position, int limit, boolean shared)
+        {
+            _array = array;
+            _position = position;
+            _limit = limit;
+            _shared = shared;
+        }
+
+        private int remaining()
+        {
+            return _limit - _position;
+        }
+    }
+
+    private Segment _head;
+    private Segment _tail;
+    private int _size;
+
+    int size()
+    {
+        return _size;
+    }
+
+    /**
+     * Copies the bytes onto the end of the chain, filling any spare capacity in the last
+     * segment before allocating a new one at least as large as what is already held.
+     */
+    void append(byte[] bytes, int offset, int length)
+    {
+        if(_tail != null && !_tail._shared)
+        {
+            int copied = Math.min(length, _tail._array.length - _tail._limit);
+            System.arraycopy(bytes, offset, _tail._array, _tail._limit, copied);
+            _tail._limit += copied;
+            _size += copied;
+            offset += copied;
+            length -= copied;
+        }
+        if(length > 0)
+        {
+            byte[] array = new byte[Math.max(length, Math.min(_size, MAX_SEGMENT_SIZE))];
+            System.arraycopy(bytes, offset, array, 0, length);
+            addSegment(new Segment(array, 0, length, false));
+        }
+    }
+
+    /**
+     * Adds the bytes onto the end of the chain without copying them. The caller must not
+     * modify them afterwards.
+     */
+    void appendShared(byte[] bytes, int offset, int length)
+    {
+        if(length > 0)
+        {
+            addSegment(new Segment(bytes, offset, offset + length, true));
+        }
+    }
+
+    /**
+     * Gives the segments that share the given array their own copies of its bytes.
+     */
+    void unshare(byte[] array)
+    {
+        for(Segment segment = _head; segment != null; segment = segment._next)
+        {
+            if(segment._array == array)
+            {
+                segment._array = Arrays.copyOfRange(array, segment._position, segment._limit);
+                segment._limit = segment.remaining();
+                segment._position = 0;
+                segment._shared = false;
+            }
+        }
+    }
+
+    private void addSegment(Segment segment)
+    {
+        if(_tail == null)
+        {
+            _head = segment;
+        }
+        else
+        {
+            _tail._next = segment;
+        }
+        _tail = segment;
+        _size += segment.remaining();
+    }
+
+    /**
+     * Copies up to length bytes from the front of the chain, dropping the segments drained.
+     *
+     * @return the number of bytes copied
+     */
+    int read(byte[] bytes, int offset, int length)
+    {
+        int read = 0;
+        while(_head != null && read < length)
+        {
+            int count = Math.min(length - read, _head.remaining());
+            System.arraycopy(_head._array, _head._position, bytes, offset + read, count);
+            read += count;
+            skip(count);
+        }
+        return read;
+    }
+
+    /**
+     * Returns a view of the bytes at the front of the chain, for writing into a frame. If the
+     * first segment holds fewer than wanted bytes and more follow, the leading segments are
+     * first merged into one of up to wanted bytes, so that small sends do not each take a
+     * frame of their own.
+     *
+     * @return a buffer over the leading bytes, or null if the chain is empty; {@link #skip(int)}
+     * must be called with the number of bytes taken from it
+     */
+    ByteBuffer head(int wanted)
+    {
+        if(_head == null)
+        {
+            return null;
+        }
+        if(_head.remaining() < wanted && _head._next != null)
+        {
+            byte[] merged = new byte[Math.min(wanted, _size)];
+            Segment next = _head;
+            int merging = 0;
+            while(merging < merged.length)
+            {
+                int count = Math.min(merged.length - merging, next.remaining());
+                System.arraycopy(next._array, next._position, merged, merging, count);
+                merging += count;
+                if(count < next.remaining())
+                {
+                    next._position += count;
+                    break;
+                }
+                next = next._next;
+            }
+            Segment segment = new Segment(merged, 0, merged.length, false);
+            segment._next = next;
+            _head = segment;
+            if(next == null)
+            {
+                _tail = segment;
+            }
+        }
+        return ByteBuffer.wrap(_head._array, _head._position, _head.remaining());
+    }
+
+    /**
+     * Discards count bytes from the front of the chain.
+     */
+    void skip(int count)
+    {
+        _size -= count;
+        while(count > 0)
+        {
+            int skipped = Math.min(count, _head.remaining());
+            _head._position += skipped;
+            count -= skipped;
+            if(_head.remaining() == 0)
+            {
+                _head = _head._next;
+                if(_head == null)
+                {
+                    _tail = null;
+                }
+            }
+        }
+    }
+}
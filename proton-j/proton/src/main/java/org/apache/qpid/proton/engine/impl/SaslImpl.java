@@ -74,6 +74,7 @@ public class SaslImpl implements Sasl, SaslFrameBody.SaslFrameBodyHandler<Void>
 
 
     private Role _role;
+    private Runnable _outputListener;
 
     public SaslImpl()
     {
@@ -82,6 +83,23 @@ public class SaslImpl implements Sasl, SaslFrameBody.SaslFrameBodyHandler<Void>
         _overflowBuffer.flip();
     }
 
+    /**
+     * Sets a callback to be run whenever a call made by the application leaves a frame to be
+     * sent, such as the outcome once {@link #done(SaslOutcome)} is called.
+     */
+    void setOutputListener(Runnable listener)
+    {
+        _outputListener = listener;
+    }
+
+    private void outputAdded()
+    {
+        if(_outputListener != null)
+        {
+            _outputListener.run();
+        }
+    }
+
     boolean isDone()
     {
         return _done && (_role==Role.CLIENT || _initReceived);
@@ -213,6 +231,7 @@ public class SaslImpl implements Sasl, SaslFrameBody.SaslFrameBodyHandler<Void>
         byte[] data = new byte[size];
         System.arraycopy(bytes, offset, data, 0, size);
         setChallengeResponse(new Binary(data));
+        outputAdded();
         return size;
     }
 
@@ -288,6 +307,7 @@ public class SaslImpl implements Sasl, SaslFrameBody.SaslFrameBodyHandler<Void>
 
             _chosenMechanism = Symbol.valueOf(mechanisms[0]);
         }
+        outputAdded();
     }
 
     public String[] getRemoteMechanisms()
@@ -321,6 +341,7 @@ public class SaslImpl implements Sasl, SaslFrameBody.SaslFrameBodyHandler<Void>
     public void setMechanism(Symbol mechanism)
     {
         _chosenMechanism = mechanism;
+        outputAdded();
     }
 
     public Symbol getChosenMechanism()
@@ -365,6 +386,7 @@ public class SaslImpl implements Sasl, SaslFrameBody.SaslFrameBodyHandler<Void>
         _outcome = outcome;
         _done = true;
         _state = outcome == SaslOutcome.PN_SASL_OK ? SaslState.PN_SASL_PASS : SaslState.PN_SASL_FAIL;
+        outputAdded();
     }
 
     private void checkRole(Role role)
@@ -442,7 +464,7 @@ public class SaslImpl implements Sasl, SaslFrameBody.SaslFrameBodyHandler<Void>
         System.arraycopy(passwordBytes, 0, data, 2+usernameBytes.length, passwordBytes.length);
 
         setChallengeResponse(new Binary(data));
-
+        outputAdded();
     }
 
     public SaslOutcome getOutcome()
@@ -459,11 +481,13 @@ public class SaslImpl implements Sasl, SaslFrameBody.SaslFrameBodyHandler<Void>
 
             _chosenMechanism = _mechanisms[0];
         }
+        outputAdded();
     }
 
     public void server()
     {
         _role = Role.SERVER;
+        outputAdded();
     }
 
 
@@ -21,27 +21,43 @@
 
 package org.apache.qpid.proton.engine.impl;
 
-import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.amqp.Binary;
 
 public class TransportDelivery
 {
-    private UnsignedInteger _deliveryId;
+    private final int _deliveryId;
     private DeliveryImpl _delivery;
     private TransportLink _transportLink;
     private int _sessionSize = 1;
+    private Binary _deliveryTag;
 
-    public TransportDelivery(UnsignedInteger currentDeliveryId, DeliveryImpl delivery, TransportLink transportLink)
+    public TransportDelivery(int currentDeliveryId, DeliveryImpl delivery, TransportLink transportLink)
     {
         _deliveryId = currentDeliveryId;
         _delivery = delivery;
         _transportLink = transportLink;
     }
 
-    public UnsignedInteger getDeliveryId()
+    /**
+     * @return the delivery-id, an unsigned int
+     */
+    public int getDeliveryId()
     {
         return _deliveryId;
     }
 
+    /**
+     * @return the delivery's tag, made once for all the transfer frames that carry it
+     */
+    Binary getDeliveryTag()
+    {
+        if(_deliveryTag == null)
+        {
+            _deliveryTag = new Binary(_delivery.getTag());
+        }
+        return _deliveryTag;
+    }
+
     public TransportLink getTransportLink()
     {
         return _transportLink;
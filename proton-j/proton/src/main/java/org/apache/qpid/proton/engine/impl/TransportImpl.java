@@ -18,12 +18,17 @@
 package org.apache.qpid.proton.engine.impl;
 
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import org.apache.qpid.proton.amqp.Binary;
 import org.apache.qpid.proton.amqp.Symbol;
 import org.apache.qpid.proton.amqp.UnsignedInteger;
 import org.apache.qpid.proton.amqp.UnsignedShort;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Released;
 import org.apache.qpid.proton.codec.AMQPDefinedTypes;
 import org.apache.qpid.proton.codec.CompositeWritableBuffer;
 import org.apache.qpid.proton.codec.DecoderImpl;
@@ -44,6 +49,7 @@ import org.apache.qpid.proton.framing.TransportFrame;
 import org.apache.qpid.proton.amqp.transport.Attach;
 import org.apache.qpid.proton.amqp.transport.Begin;
 import org.apache.qpid.proton.amqp.transport.Close;
+import org.apache.qpid.proton.amqp.transport.DeliveryState;
 import org.apache.qpid.proton.amqp.transport.Detach;
 import org.apache.qpid.proton.amqp.transport.Disposition;
 import org.apache.qpid.proton.amqp.transport.End;
@@ -93,6 +99,13 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
     private DecoderImpl _decoder = new DecoderImpl();
     private EncoderImpl _encoder = new EncoderImpl(_decoder);
 
+    private static final int INPUT_BUFFER_SIZE = Integer.getInteger("pn.receive_buffer_size", 64 * 1024);
+    private static final int OUTPUT_BUFFER_SIZE = Integer.getInteger("pn.send_buffer_size", 64 * 1024);
+    private static final boolean USE_DIRECT_BUFFERS = Boolean.getBoolean("pn.direct_buffers");
+    private static final BufferPool INPUT_BUFFERS = new BufferPool(INPUT_BUFFER_SIZE);
+    private static final BufferPool OUTPUT_BUFFERS = new BufferPool(OUTPUT_BUFFER_SIZE);
+    private static final boolean REUSE_FRAME_BODIES = Boolean.getBoolean("pn.reuse_frame_bodies");
+
     private int _maxFrameSize = 16 * 1024;
 
     private final ByteBuffer _overflowBuffer = ByteBuffer.wrap(new byte[_maxFrameSize]);
@@ -104,6 +117,30 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
     private TransportException _inputException;
     private ProtocolTracer _protocolTracer = null;
 
+    private final FrameParser _frameParser;
+    private final TransportOutput _frameOutput;
+
+    // the input buffer holds unconsumed bytes from _inputStart up to its position, and the
+    // output buffer holds unsent bytes from _outputStart up to its position, so that consuming
+    // or sending part of either does not move the rest
+    private ByteBuffer _inputBuffer;
+    private int _inputStart;
+    // deliveries given transfer payloads that are slices of the input buffer, whose unread bytes
+    // are copied out before consumed input is overwritten
+    private final List<DeliveryImpl> _inputBorrowers = new ArrayList<DeliveryImpl>();
+    private ByteBuffer _outputBuffer;
+    private int _outputStart;
+    private ByteBuffer _outputHead;
+    private byte[] _scratch;
+    private boolean _tailClosed;
+
+    private Disposition _pendingDisposition;
+    private int _pendingDispositionChannel;
+
+    private boolean _reuseFrameBodies;
+    private final Transfer _reusedTransfer = new Transfer();
+    private final PartialTransfer _reusedPartialTransfer = new PartialTransfer(_reusedTransfer);
+
 
     {
         AMQPDefinedTypes.registerAllTypes(_decoder, _encoder);
@@ -112,17 +149,19 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
 
     public TransportImpl()
     {
-        FrameParser frameParser = new FrameParser(this);
+        _frameParser = new FrameParser(this);
+        setReuseFrameBodies(REUSE_FRAME_BODIES);
 
-        _inputProcessor = frameParser;
-        _outputProcessor = new TransportOutput()
+        _inputProcessor = _frameParser;
+        _frameOutput = new TransportOutput()
                     {
                         @Override
                         public int output(byte[] bytes, int offset, int size)
                         {
-                            return transportOutput(bytes, offset, size);
+                            return transportOutput(ByteBuffer.wrap(bytes, offset, size));
                         }
                     };
+        _outputProcessor = _frameOutput;
     }
 
     public void bind(Connection conn)
@@ -171,6 +210,96 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
         }
     }
 
+    public int capacity()
+    {
+        if(_tailClosed)
+        {
+            return END_OF_STREAM;
+        }
+        return getInputBuffer().remaining();
+    }
+
+    public ByteBuffer tail()
+    {
+        return getInputBuffer();
+    }
+
+    public void process()
+    {
+        ByteBuffer inputBuffer = getInputBuffer();
+        int end = inputBuffer.position();
+        inputBuffer.limit(end);
+        inputBuffer.position(_inputStart);
+        try
+        {
+            if(inputBuffer.hasRemaining())
+            {
+                input(inputBuffer);
+            }
+        }
+        finally
+        {
+            _inputStart = inputBuffer.position();
+            inputBuffer.limit(inputBuffer.capacity());
+            inputBuffer.position(end);
+            if(_inputStart == end && _inputBorrowers.isEmpty())
+            {
+                releaseInputBuffer();
+            }
+        }
+    }
+
+    public void closeTail()
+    {
+        if(!_tailClosed)
+        {
+            process();
+            _tailClosed = true;
+            input(new byte[0], 0, 0);
+        }
+    }
+
+    private void input(ByteBuffer buffer)
+    {
+        if(_inputException != null)
+        {
+            throw _inputException;
+        }
+        try
+        {
+            int consumed;
+            if(_inputProcessor == _frameParser)
+            {
+                // no sasl or ssl layer - parse frames straight out of the buffer
+                consumed = _frameParser.input(buffer);
+            }
+            else if(buffer.hasArray())
+            {
+                consumed = _inputProcessor.input(buffer.array(),
+                                                 buffer.arrayOffset() + buffer.position(),
+                                                 buffer.remaining());
+                buffer.position(buffer.position() + Math.max(consumed, 0));
+            }
+            else
+            {
+                int size = buffer.remaining();
+                byte[] scratch = getScratch(size);
+                buffer.duplicate().get(scratch, 0, size);
+                consumed = _inputProcessor.input(scratch, 0, size);
+                buffer.position(buffer.position() + Math.max(consumed, 0));
+            }
+            if(consumed == END_OF_STREAM)
+            {
+                buffer.position(buffer.limit());
+            }
+        }
+        catch (TransportException e)
+        {
+            _inputException = e;
+            throw e;
+        }
+    }
+
     //==================================================================================================================
     // Process model state to generate output
 
@@ -188,14 +317,191 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
         }
     }
 
-    private int transportOutput(byte[] bytes, int offset, int size)
+    public int pending()
+    {
+        ByteBuffer outputBuffer = getOutputBuffer();
+        if(_outputStart > 0 && outputBuffer.remaining() < _maxFrameSize)
+        {
+            // only move unsent output up when there is too little room behind it for a frame
+            outputBuffer.flip();
+            outputBuffer.position(_outputStart);
+            outputBuffer.compact();
+            _outputStart = 0;
+        }
+        if(outputBuffer.hasRemaining())
+        {
+            if(_outputProcessor == _frameOutput)
+            {
+                // no sasl or ssl layer - encode frames straight into the buffer
+                transportOutput(outputBuffer);
+            }
+            else if(outputBuffer.hasArray())
+            {
+                int produced = output(outputBuffer.array(),
+                                      outputBuffer.arrayOffset() + outputBuffer.position(),
+                                      outputBuffer.remaining());
+                outputBuffer.position(outputBuffer.position() + produced);
+            }
+            else
+            {
+                int size = outputBuffer.remaining();
+                byte[] scratch = getScratch(size);
+                int produced = output(scratch, 0, size);
+                outputBuffer.put(scratch, 0, produced);
+            }
+        }
+        int pending = outputBuffer.position() - _outputStart;
+        if(pending == 0)
+        {
+            releaseOutputBuffer();
+        }
+        return pending;
+    }
+
+    public ByteBuffer head()
+    {
+        ByteBuffer outputBuffer = getOutputBuffer();
+        if(_outputHead == null)
+        {
+            _outputHead = outputBuffer.asReadOnlyBuffer();
+        }
+        _outputHead.limit(outputBuffer.position());
+        _outputHead.position(_outputStart);
+        return _outputHead;
+    }
+
+    public void pop(int bytes)
+    {
+        ByteBuffer outputBuffer = getOutputBuffer();
+        if(bytes > outputBuffer.position() - _outputStart)
+        {
+            throw new IllegalArgumentException("Cannot pop " + bytes + " bytes, only "
+                                               + (outputBuffer.position() - _outputStart) + " pending");
+        }
+        _outputStart += bytes;
+        if(_outputStart == outputBuffer.position())
+        {
+            releaseOutputBuffer();
+        }
+    }
+
+    /**
+     * Returns the input buffer, moving any unconsumed input to its start if there is too little
+     * room behind it for a frame. Payloads lent out of the consumed input are copied first.
+     */
+    private ByteBuffer getInputBuffer()
+    {
+        if(_inputBuffer == null)
+        {
+            int size = Math.max(INPUT_BUFFER_SIZE, _maxFrameSize);
+            _inputBuffer = USE_DIRECT_BUFFERS ? INPUT_BUFFERS.acquire(size) : ByteBuffer.allocate(size);
+        }
+        else if(_inputStart > 0 && _inputBuffer.remaining() < _maxFrameSize)
+        {
+            reclaimInputBuffer();
+            _inputBuffer.flip();
+            _inputBuffer.position(_inputStart);
+            _inputBuffer.compact();
+            _inputStart = 0;
+        }
+        return _inputBuffer;
+    }
+
+    private ByteBuffer getOutputBuffer()
+    {
+        if(_outputBuffer == null)
+        {
+            int size = Math.max(OUTPUT_BUFFER_SIZE, _maxFrameSize);
+            _outputBuffer = USE_DIRECT_BUFFERS ? OUTPUT_BUFFERS.acquire(size) : ByteBuffer.allocate(size);
+        }
+        return _outputBuffer;
+    }
+
+    /**
+     * Empties the input buffer once all of it has been consumed. Direct buffers go back to the
+     * pool, so that transports with nothing buffered do not hold one.
+     */
+    private void releaseInputBuffer()
+    {
+        _inputStart = 0;
+        if(USE_DIRECT_BUFFERS)
+        {
+            INPUT_BUFFERS.release(_inputBuffer);
+            _inputBuffer = null;
+        }
+        else
+        {
+            _inputBuffer.clear();
+        }
+    }
+
+    /**
+     * Gives the deliveries still holding unread slices of the input buffer their own copies, so
+     * that the buffer can be written over. Deliveries read before this happens are never copied.
+     */
+    private void reclaimInputBuffer()
+    {
+        if(!_inputBorrowers.isEmpty())
+        {
+            byte[] array = _inputBuffer.array();
+            for(DeliveryImpl delivery : _inputBorrowers)
+            {
+                delivery.unshare(array);
+            }
+            _inputBorrowers.clear();
+        }
+    }
+
+    /**
+     * @return whether the payload is a slice of the input buffer rather than a copy
+     */
+    private boolean isLentInput(Binary payload)
+    {
+        return payload != null && _inputBuffer != null && _inputBuffer.hasArray()
+               && payload.getArray() == _inputBuffer.array();
+    }
+
+    private void releaseOutputBuffer()
+    {
+        _outputStart = 0;
+        if(USE_DIRECT_BUFFERS)
+        {
+            OUTPUT_BUFFERS.release(_outputBuffer);
+            _outputBuffer = null;
+            _outputHead = null;
+        }
+        else
+        {
+            _outputBuffer.clear();
+        }
+    }
+
+    private byte[] getScratch(int size)
+    {
+        if(_scratch == null || _scratch.length < size)
+        {
+            _scratch = new byte[size];
+        }
+        return _scratch;
+    }
+
+    /**
+     * Writes as much pending output as fits between the position and limit of dest,
+     * advancing its position.
+     *
+     * @return the number of bytes written
+     */
+    private int transportOutput(ByteBuffer dest)
     {
         int written = 0;
 
         if(_overflowBuffer.hasRemaining())
         {
-            final int overflowWritten = Math.min(size, _overflowBuffer.remaining());
-            _overflowBuffer.get(bytes, offset, overflowWritten);
+            final int overflowWritten = Math.min(dest.remaining(), _overflowBuffer.remaining());
+            int overflowLimit = _overflowBuffer.limit();
+            _overflowBuffer.limit(_overflowBuffer.position() + overflowWritten);
+            dest.put(_overflowBuffer);
+            _overflowBuffer.limit(overflowLimit);
             written+=overflowWritten;
         }
         if(!_overflowBuffer.hasRemaining())
@@ -204,7 +510,7 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
 
             CompositeWritableBuffer outputBuffer =
                     new CompositeWritableBuffer(
-                       new WritableBuffer.ByteBufferWrapper(ByteBuffer.wrap(bytes, offset + written, size - written)),
+                       new WritableBuffer.ByteBufferWrapper(dest),
                        new WritableBuffer.ByteBufferWrapper(_overflowBuffer));
 
             if( outputBuffer.remaining() >= _maxFrameSize ) { written += processHeader(outputBuffer);
@@ -233,6 +539,16 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
         if(_sasl == null)
         {
             _sasl = new SaslImpl();
+            _sasl.setOutputListener(new Runnable()
+            {
+                public void run()
+                {
+                    if(_connectionEndpoint != null)
+                    {
+                        _connectionEndpoint.transportWorkAdded();
+                    }
+                }
+            });
             TransportWrapper transportWrapper = _sasl.wrap(_inputProcessor, _outputProcessor);
             _inputProcessor = transportWrapper;
             _outputProcessor = transportWrapper;
@@ -353,20 +669,19 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
                     {
                         TransportSender transportLink = sender.getTransportLink();
                         TransportSession transportSession = sender.getSession().getTransportSession();
-                        UnsignedInteger credits = transportLink.getLinkCredit();
-                        transportLink.setLinkCredit(UnsignedInteger.valueOf(0));
-                        transportLink.setDeliveryCount(transportLink.getDeliveryCount().add(credits));
-                        transportLink.setLinkCredit(UnsignedInteger.ZERO);
+                        long credits = transportLink.getLinkCredit();
+                        transportLink.setDeliveryCount((transportLink.getDeliveryCount() + credits) & 0xffffffffL);
+                        transportLink.setLinkCredit(0);
 
                         Flow flow = new Flow();
                         flow.setHandle(transportLink.getLocalHandle());
-                        flow.setNextIncomingId(transportSession.getNextIncomingId());
-                        flow.setIncomingWindow(transportSession.getIncomingWindowSize());
-                        flow.setOutgoingWindow(transportSession.getOutgoingWindowSize());
-                        flow.setDeliveryCount(transportLink.getDeliveryCount());
-                        flow.setLinkCredit(transportLink.getLinkCredit());
+                        flow.setNextIncomingIdValue(transportSession.getNextIncomingId());
+                        flow.setIncomingWindowValue(transportSession.getIncomingWindowSize());
+                        flow.setOutgoingWindowValue(transportSession.getOutgoingWindowSize());
+                        flow.setDeliveryCountValue(transportLink.getDeliveryCount());
+                        flow.setLinkCreditValue(transportLink.getLinkCredit());
                         flow.setDrain(sender.getDrain());
-                        flow.setNextOutgoingId(transportSession.getNextOutgoingId());
+                        flow.setNextOutgoingIdValue(transportSession.getNextOutgoingId());
                         int frameBytes = writeFrame(buffer, transportSession.getLocalChannel(), flow, null, null);
                         written += frameBytes;
                         endpoint.clearModified();
@@ -390,21 +705,20 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
             {
                 if((delivery.getLink() instanceof SenderImpl) && delivery.isLocalStateChange() && delivery.getTransportDelivery() != null)
                 {
+                    if(!extendPendingDisposition(delivery))
+                    {
+                        written += writePendingDisposition(buffer);
+                        if(buffer.remaining() < _maxFrameSize)
+                        {
+                            break;
+                        }
+                        startPendingDisposition(delivery, Role.SENDER);
+                    }
                     TransportDelivery transportDelivery = delivery.getTransportDelivery();
-                    Disposition disposition = new Disposition();
-                    disposition.setFirst(transportDelivery.getDeliveryId());
-                    disposition.setLast(transportDelivery.getDeliveryId());
-                    disposition.setRole(Role.SENDER);
-                    disposition.setSettled(delivery.isSettled());
                     if(delivery.isSettled())
                     {
                         transportDelivery.settled();
                     }
-                    disposition.setState(delivery.getLocalState());
-                    int frameBytes = writeFrame(buffer, delivery.getLink().getSession()
-                                                                      .getTransportSession().getLocalChannel(),
-                                       disposition, null, null);
-                    written += frameBytes;
                     delivery = delivery.clearTransportWork();
                 }
                 else
@@ -412,6 +726,7 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
                     delivery = delivery.getTransportWorkNext();
                 }
             }
+            written += writePendingDisposition(buffer);
         }
         return written;
 
@@ -426,76 +741,69 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
 
             while(delivery != null && buffer.remaining() >= _maxFrameSize)
             {
-                if((delivery.getLink() instanceof SenderImpl) && !(delivery.isDone() && delivery.getDataLength() == 0)
+                if((delivery.getLink() instanceof SenderImpl) && !delivery.isDone()
+                   && (delivery.getDataLength() != 0 || delivery.getLink().current() != delivery)
                    && delivery.getLink().getSession().getTransportSession().hasOutgoingCredit())
                 {
                     SenderImpl sender = (SenderImpl) delivery.getLink();
-
-                    sender.decrementQueued();
-
-
+                    TransportSession transportSession = sender.getSession().getTransportSession();
                     TransportLink transportLink = sender.getTransportLink();
 
-                    UnsignedInteger deliveryId = transportLink.getDeliveryCount();
-                    TransportDelivery transportDelivery = new TransportDelivery(deliveryId, delivery, transportLink);
-                    delivery.setTransportDelivery(transportDelivery);
-
-                    final Transfer transfer = new Transfer();
-                    transfer.setDeliveryId(deliveryId);
-                    transfer.setDeliveryTag(new Binary(delivery.getTag()));
-                    transfer.setHandle(transportLink.getLocalHandle());
-
-                    if(delivery.isSettled())
-                    {
-                        transfer.setSettled(Boolean.TRUE);
-                    }
-                    else
+                    // a delivery spanning several frames keeps the id it was given by its first
+                    // frame, and takes one more unit of the session window for each later frame
+                    TransportDelivery transportDelivery = delivery.getTransportDelivery();
+                    if(transportDelivery == null)
                     {
-                        sender.getSession().getTransportSession().addUnsettledOutgoing(deliveryId, delivery);
+                        sender.decrementQueued();
+                        transportDelivery = new TransportDelivery((int) transportLink.getDeliveryCount(), delivery, transportLink);
+                        delivery.setTransportDelivery(transportDelivery);
+                        if(!delivery.isSettled())
+                        {
+                            transportSession.addUnsettledOutgoing(transportDelivery.getDeliveryId(), delivery);
+                        }
                     }
-
-                    if(delivery.getLink().current() == delivery)
+                    else if(!delivery.isSettled())
                     {
-                        transfer.setMore(true);
+                        transportDelivery.incrementSessionSize();
+                        transportSession.decrementOutgoingWindow();
                     }
+                    // every field is set, as the transfer may be a reused one
+                    final Transfer transfer = _reuseFrameBodies ? _reusedTransfer : new Transfer();
+                    transfer.setDeliveryIdValue(transportDelivery.getDeliveryId() & 0xffffffffL);
+                    transfer.setDeliveryTag(transportDelivery.getDeliveryTag());
+                    transfer.setHandle(transportLink.getLocalHandle());
+                    transfer.setSettled(delivery.isSettled() ? Boolean.TRUE : null);
+                    transfer.setMessageFormatValue(0);
 
-                    transfer.setMessageFormat(UnsignedInteger.ZERO);
-
-                    // TODO - large frames
-                    ByteBuffer payload = delivery.getData() ==  null ? null : ByteBuffer.wrap(delivery.getData(), delivery.getDataOffset(), delivery.getDataLength());
+                    PayloadChain data = delivery.getData();
+                    ByteBuffer payload = data.head(_maxFrameSize);
+                    int payloadSize = payload == null ? 0 : payload.remaining();
+                    transfer.setMore(delivery.getLink().current() == delivery || data.size() > payloadSize);
 
                     int frameBytes = writeFrame(buffer,
-                                                sender.getSession().getTransportSession().getLocalChannel(),
-                                                transfer, payload, new PartialTransfer(transfer));
-                    sender.getSession().getTransportSession().incrementOutgoingId();
+                                                transportSession.getLocalChannel(),
+                                                transfer, payload,
+                                                _reuseFrameBodies ? _reusedPartialTransfer : new PartialTransfer(transfer));
+                    transportSession.incrementOutgoingId();
 
                     written += frameBytes;
 
-                    if(payload == null || !payload.hasRemaining())
+                    if(payload != null)
                     {
-                        delivery.setData(null);
-                        delivery.setDataLength(0);
-                        delivery.setDone();
+                        data.skip(payloadSize - payload.remaining());
+                    }
 
-                        if(delivery.getLink().current() != delivery)
+                    if(data.size() == 0)
+                    {
+                        if(!transfer.getMore())
                         {
-                            transportLink.setDeliveryCount(transportLink.getDeliveryCount().add(UnsignedInteger.ONE));
-                            transportLink.setLinkCredit(transportLink.getLinkCredit().subtract(UnsignedInteger.ONE));
+                            delivery.setDone();
+                            transportLink.incrementDeliveryCount();
+                            transportLink.decrementLinkCredit();
                         }
 
                         delivery = delivery.clearTransportWork();
-
-                    }
-                    else
-                    {
-                        delivery.setDataOffset(delivery.getDataOffset()+delivery.getDataLength()-payload.remaining());
-                        delivery.setDataLength(payload.remaining());
                     }
-
-
-
-
-
                 }
                 else
                 {
@@ -514,25 +822,20 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
             DeliveryImpl delivery = _connectionEndpoint.getTransportWorkHead();
             while(delivery != null && buffer.remaining() >= _maxFrameSize)
             {
-                boolean remove = false;
                 if((delivery.getLink() instanceof ReceiverImpl) && delivery.isLocalStateChange())
                 {
-                    remove = true;
-                    TransportDelivery transportDelivery = delivery.getTransportDelivery();
-                    Disposition disposition = new Disposition();
-                    disposition.setFirst(transportDelivery.getDeliveryId());
-                    disposition.setLast(transportDelivery.getDeliveryId());
-                    disposition.setRole(Role.RECEIVER);
-                    disposition.setSettled(delivery.isSettled());
-
-                    disposition.setState(delivery.getLocalState());
-                    int frameBytes = writeFrame(buffer, delivery.getLink().getSession()
-                                                                      .getTransportSession().getLocalChannel(),
-                                       disposition, null, null);
-                    written += frameBytes;
+                    if(!extendPendingDisposition(delivery))
+                    {
+                        written += writePendingDisposition(buffer);
+                        if(buffer.remaining() < _maxFrameSize)
+                        {
+                            break;
+                        }
+                        startPendingDisposition(delivery, Role.RECEIVER);
+                    }
                     if(delivery.isSettled())
                     {
-                        transportDelivery.settled();
+                        delivery.getTransportDelivery().settled();
                     }
                     delivery = delivery.clearTransportWork();
 
@@ -542,10 +845,65 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
                     delivery = delivery.getTransportWorkNext();
                 }
             }
+            written += writePendingDisposition(buffer);
+        }
+        return written;
+    }
+
+    /**
+     * Extends the pending disposition to cover the delivery if the delivery continues its range,
+     * on the same channel and with the same outcome.
+     */
+    private boolean extendPendingDisposition(DeliveryImpl delivery)
+    {
+        Disposition pending = _pendingDisposition;
+        if(pending != null
+           && _pendingDispositionChannel == delivery.getLink().getSession().getTransportSession().getLocalChannel()
+           && pending.getSettled() == delivery.isSettled()
+           && isSameOutcome(pending.getState(), delivery.getLocalState()))
+        {
+            int deliveryId = delivery.getTransportDelivery().getDeliveryId();
+            if((int) pending.getLastValue() + 1 == deliveryId)
+            {
+                pending.setLastValue(deliveryId & 0xffffffffL);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void startPendingDisposition(DeliveryImpl delivery, Role role)
+    {
+        long deliveryId = delivery.getTransportDelivery().getDeliveryId() & 0xffffffffL;
+        Disposition disposition = new Disposition();
+        disposition.setRole(role);
+        disposition.setFirstValue(deliveryId);
+        disposition.setLastValue(deliveryId);
+        disposition.setSettled(delivery.isSettled());
+        disposition.setState(delivery.getLocalState());
+        _pendingDisposition = disposition;
+        _pendingDispositionChannel = delivery.getLink().getSession().getTransportSession().getLocalChannel();
+    }
+
+    private int writePendingDisposition(WritableBuffer buffer)
+    {
+        int written = 0;
+        if(_pendingDisposition != null)
+        {
+            written = writeFrame(buffer, _pendingDispositionChannel, _pendingDisposition, null, null);
+            _pendingDisposition = null;
         }
         return written;
     }
 
+    private static boolean isSameOutcome(DeliveryState state, DeliveryState other)
+    {
+        // accepted and released carry no fields, so any two instances are equivalent
+        return state == other
+               || (state instanceof Accepted && other instanceof Accepted)
+               || (state instanceof Released && other instanceof Released);
+    }
+
     private int processReceiverFlow(WritableBuffer buffer)
     {
         int written = 0;
@@ -571,13 +929,13 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
                             transportLink.addCredit(credits);
                             Flow flow = new Flow();
                             flow.setHandle(transportLink.getLocalHandle());
-                            flow.setNextIncomingId(transportSession.getNextIncomingId());
-                            flow.setIncomingWindow(transportSession.getIncomingWindowSize());
-                            flow.setOutgoingWindow(transportSession.getOutgoingWindowSize());
-                            flow.setDeliveryCount(transportLink.getDeliveryCount());
-                            flow.setLinkCredit(transportLink.getLinkCredit());
+                            flow.setNextIncomingIdValue(transportSession.getNextIncomingId());
+                            flow.setIncomingWindowValue(transportSession.getIncomingWindowSize());
+                            flow.setOutgoingWindowValue(transportSession.getOutgoingWindowSize());
+                            flow.setDeliveryCountValue(transportLink.getDeliveryCount());
+                            flow.setLinkCreditValue(transportLink.getLinkCredit());
                             flow.setDrain(receiver.getDrain());
-                            flow.setNextOutgoingId(transportSession.getNextOutgoingId());
+                            flow.setNextOutgoingIdValue(transportSession.getNextOutgoingId());
                             int frameBytes = writeFrame(buffer, transportSession.getLocalChannel(), flow, null, null);
                             written += frameBytes;
                             if(receiver.getLocalState() == EndpointState.ACTIVE)
@@ -606,10 +964,10 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
                         if(windowResized)
                         {
                             Flow flow = new Flow();
-                            flow.setIncomingWindow(transportSession.getIncomingWindowSize());
-                            flow.setOutgoingWindow(transportSession.getOutgoingWindowSize());
-                            flow.setNextOutgoingId(transportSession.getNextOutgoingId());
-                            flow.setNextIncomingId(transportSession.getNextIncomingId());
+                            flow.setIncomingWindowValue(transportSession.getIncomingWindowSize());
+                            flow.setOutgoingWindowValue(transportSession.getOutgoingWindowSize());
+                            flow.setNextOutgoingIdValue(transportSession.getNextOutgoingId());
+                            flow.setNextIncomingIdValue(transportSession.getNextIncomingId());
                             int frameBytes = writeFrame(buffer, transportSession.getLocalChannel(), flow, null, null);
                             written += frameBytes;
                         }
@@ -764,9 +1122,9 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
                             begin.setRemoteChannel(UnsignedShort.valueOf((short) transportSession.getRemoteChannel()));
                         }
                         begin.setHandleMax(transportSession.getHandleMax());
-                        begin.setIncomingWindow(transportSession.getIncomingWindowSize());
-                        begin.setOutgoingWindow(transportSession.getOutgoingWindowSize());
-                        begin.setNextOutgoingId(transportSession.getNextOutgoingId());
+                        begin.setIncomingWindow(UnsignedInteger.valueOf(transportSession.getIncomingWindowSize()));
+                        begin.setOutgoingWindow(UnsignedInteger.valueOf(transportSession.getOutgoingWindowSize()));
+                        begin.setNextOutgoingId(UnsignedInteger.valueOf(transportSession.getNextOutgoingId()));
 
                         written += writeFrame(buffer, channelId, begin, null, null);
                         transportSession.sentBegin();
@@ -929,7 +1287,8 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
             {
                 originalPayload = payload.duplicate();
             }
-            _protocolTracer.sentFrame(new TransportFrame(channel, (FrameBody) frameBody, Binary.create(originalPayload)));
+            FrameBody tracedBody = frameBody == _reusedTransfer ? new Transfer(_reusedTransfer) : frameBody;
+            _protocolTracer.sentFrame(new TransportFrame(channel, tracedBody, Binary.create(originalPayload)));
         }
 
         int payloadSize = Math.min(payload == null ? 0 : payload.remaining(), _maxFrameSize - (buffer.position() - oldPosition));
@@ -1012,7 +1371,7 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
             }
             transportSession.setRemoteChannel(channel);
             session.setRemoteState(EndpointState.ACTIVE);
-            transportSession.setNextIncomingId(begin.getNextOutgoingId());
+            transportSession.setNextIncomingId(begin.getNextOutgoingId().longValue());
             _remoteSessions[channel] = transportSession;
 
 
@@ -1054,7 +1413,9 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
                 }
                 if(attach.getRole() == Role.SENDER)
                 {
-                    transportLink.setDeliveryCount(attach.getInitialDeliveryCount());
+                    transportLink.setDeliveryCount(attach.getInitialDeliveryCount() == null
+                                                   ? -1
+                                                   : attach.getInitialDeliveryCount().longValue());
                 }
 
                 link.setRemoteState(EndpointState.ACTIVE);
@@ -1092,7 +1453,11 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
         TransportSession transportSession = _remoteSessions[channel];
         if(transportSession != null)
         {
-            transportSession.handleTransfer(transfer, payload);
+            DeliveryImpl delivery = transportSession.handleTransfer(transfer, payload);
+            if(isLentInput(payload))
+            {
+                _inputBorrowers.add(delivery);
+            }
         }
         else
         {
@@ -1170,7 +1535,7 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
     {
         if( _protocolTracer!=null )
         {
-            _protocolTracer.receivedFrame(frame);
+            _protocolTracer.receivedFrame(copyOf(frame));
         }
         if(_connectionEndpoint != null || getRemoteState() == EndpointState.UNINITIALIZED)
         {
@@ -1183,6 +1548,38 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
         }
     }
 
+    /**
+     * @return a frame the tracer can keep, holding its own copy of a body the parser may reuse
+     * and of a payload lent out of the input buffer
+     */
+    private TransportFrame copyOf(TransportFrame frame)
+    {
+        Binary payload = frame.getPayload();
+        if(isLentInput(payload))
+        {
+            int offset = payload.getArrayOffset();
+            payload = new Binary(Arrays.copyOfRange(payload.getArray(), offset, offset + payload.getLength()));
+        }
+        FrameBody body = frame.getBody();
+        if(!_reuseFrameBodies)
+        {
+            return payload == frame.getPayload() ? frame : new TransportFrame(frame.getChannel(), body, payload);
+        }
+        if(body instanceof Transfer)
+        {
+            body = new Transfer((Transfer) body);
+        }
+        else if(body instanceof Flow)
+        {
+            body = new Flow((Flow) body);
+        }
+        else if(body instanceof Disposition)
+        {
+            body = new Disposition((Disposition) body);
+        }
+        return new TransportFrame(frame.getChannel(), body, payload);
+    }
+
     private static class PartialTransfer implements Runnable
     {
         private final Transfer _transfer;
@@ -1208,4 +1605,21 @@ public class TransportImpl extends EndpointImpl implements Transport, FrameBody.
         this._protocolTracer = protocolTracer;
     }
 
+    /**
+     * Sets whether the transport reuses one instance each of the transfer, flow and disposition
+     * performatives it reads, and of the transfer it writes, rather than allocating them for
+     * every frame. A {@link ProtocolTracer} is given copies. Defaults to the pn.reuse_frame_bodies
+     * system property.
+     */
+    public void setReuseFrameBodies(boolean reuseFrameBodies)
+    {
+        _reuseFrameBodies = reuseFrameBodies;
+        _frameParser.setReuseFrames(reuseFrameBodies);
+    }
+
+    public boolean isReusingFrameBodies()
+    {
+        return _reuseFrameBodies;
+    }
+
 }
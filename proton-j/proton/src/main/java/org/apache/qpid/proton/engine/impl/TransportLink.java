@@ -29,11 +29,12 @@ class TransportLink<T extends LinkImpl>
     private UnsignedInteger _localHandle;
     private String _name;
     private UnsignedInteger _remoteHandle;
-    private UnsignedInteger _deliveryCount;
-    private UnsignedInteger _linkCredit = UnsignedInteger.ZERO;
+    // the counts and credits are unsigned ints, held in longs with -1 for one not yet known
+    private long _deliveryCount = -1;
+    private long _linkCredit = 0;
     private T _link;
-    private UnsignedInteger _remoteDeliveryCount;
-    private UnsignedInteger _remoteLinkCredit;
+    private long _remoteDeliveryCount = -1;
+    private long _remoteLinkCredit = -1;
     private boolean _detachReceived;
     private boolean _attachSent;
 
@@ -90,19 +91,19 @@ class TransportLink<T extends LinkImpl>
         _remoteHandle = remoteHandle;
     }
 
-    public UnsignedInteger getDeliveryCount()
+    public long getDeliveryCount()
     {
         return _deliveryCount;
     }
 
-    public UnsignedInteger getLinkCredit()
+    public long getLinkCredit()
     {
         return _linkCredit;
     }
 
     public void addCredit(int credits)
     {
-        _linkCredit = UnsignedInteger.valueOf(_linkCredit.intValue() + credits);
+        _linkCredit = (_linkCredit + credits) & 0xffffffffL;
     }
 
     public T getLink()
@@ -112,18 +113,18 @@ class TransportLink<T extends LinkImpl>
 
     void handleFlow(Flow flow)
     {
-        _remoteDeliveryCount = flow.getDeliveryCount();
-        _remoteLinkCredit = flow.getLinkCredit();
+        _remoteDeliveryCount = flow.getDeliveryCountValue();
+        _remoteLinkCredit = flow.getLinkCreditValue();
 
 
     }
 
-    void setLinkCredit(UnsignedInteger linkCredit)
+    void setLinkCredit(long linkCredit)
     {
         _linkCredit = linkCredit;
     }
 
-    public void setDeliveryCount(UnsignedInteger deliveryCount)
+    public void setDeliveryCount(long deliveryCount)
     {
         _deliveryCount = deliveryCount;
     }
@@ -134,29 +135,29 @@ class TransportLink<T extends LinkImpl>
     }
 
 
-    UnsignedInteger getRemoteDeliveryCount()
+    long getRemoteDeliveryCount()
     {
         return _remoteDeliveryCount;
     }
 
-    UnsignedInteger getRemoteLinkCredit()
+    long getRemoteLinkCredit()
     {
         return _remoteLinkCredit;
     }
 
-    public void setRemoteLinkCredit(UnsignedInteger remoteLinkCredit)
+    public void setRemoteLinkCredit(long remoteLinkCredit)
     {
         _remoteLinkCredit = remoteLinkCredit;
     }
 
     void decrementLinkCredit()
     {
-        _linkCredit = _linkCredit.subtract(UnsignedInteger.ONE);
+        _linkCredit = (_linkCredit - 1) & 0xffffffffL;
     }
 
     void incrementDeliveryCount()
     {
-        _deliveryCount = _deliveryCount.add(UnsignedInteger.ONE);
+        _deliveryCount = (_deliveryCount + 1) & 0xffffffffL;
     }
 
     public void receivedDetach()
@@ -179,7 +180,7 @@ class TransportLink<T extends LinkImpl>
         _attachSent = true;
     }
 
-    public void setRemoteDeliveryCount(UnsignedInteger remoteDeliveryCount)
+    public void setRemoteDeliveryCount(long remoteDeliveryCount)
     {
         _remoteDeliveryCount = remoteDeliveryCount;
     }
@@ -42,7 +42,7 @@ class TransportReceiver extends TransportLink<ReceiverImpl>
     void handleFlow(Flow flow)
     {
         super.handleFlow(flow);
-        if(getRemoteDeliveryCount().compareTo(getDeliveryCount())>=0)
+        if(getRemoteDeliveryCount() >= getDeliveryCount())
         {
             getLink().setCredit(getLink().getQueued());
             setLinkCredit(getRemoteLinkCredit());
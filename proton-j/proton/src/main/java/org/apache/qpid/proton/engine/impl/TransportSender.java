@@ -21,13 +21,12 @@
 
 package org.apache.qpid.proton.engine.impl;
 
-import org.apache.qpid.proton.amqp.UnsignedInteger;
 import org.apache.qpid.proton.amqp.transport.Flow;
 
 class TransportSender extends TransportLink<SenderImpl>
 {
     private boolean _drain;
-    private static final UnsignedInteger ORIGINAL_DELIVERY_COUNT = UnsignedInteger.ZERO;
+    private static final long ORIGINAL_DELIVERY_COUNT = 0;
 
     TransportSender(SenderImpl link)
     {
@@ -43,14 +42,14 @@ class TransportSender extends TransportLink<SenderImpl>
         _drain = flow.getDrain();
         getLink().setDrain(flow.getDrain());
         int oldCredit = getLink().getCredit();
-        UnsignedInteger oldLimit = getLinkCredit().add(getDeliveryCount());
-        UnsignedInteger transferLimit = flow.getLinkCredit().add(flow.getDeliveryCount() == null
-                                                                         ? ORIGINAL_DELIVERY_COUNT
-                                                                         : flow.getDeliveryCount());
-        UnsignedInteger linkCredit = transferLimit.subtract(getDeliveryCount());
+        long oldLimit = (getLinkCredit() + getDeliveryCount()) & 0xffffffffL;
+        long transferLimit = (flow.getLinkCreditValue() + (flow.getDeliveryCountValue() == -1
+                                                                   ? ORIGINAL_DELIVERY_COUNT
+                                                                   : flow.getDeliveryCountValue())) & 0xffffffffL;
+        long linkCredit = (transferLimit - getDeliveryCount()) & 0xffffffffL;
 
         setLinkCredit(linkCredit);
-        getLink().setCredit(transferLimit.subtract(oldLimit).intValue() + oldCredit);
+        getLink().setCredit((int) (transferLimit - oldLimit) + oldCredit);
 
         DeliveryImpl current = getLink().current();
         getLink().getConnectionImpl().workUpdate(current);
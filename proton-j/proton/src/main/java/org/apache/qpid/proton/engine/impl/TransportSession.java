@@ -21,6 +21,7 @@
 
 package org.apache.qpid.proton.engine.impl;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 import org.apache.qpid.proton.amqp.Binary;
@@ -37,25 +38,25 @@ class TransportSession
     private int _remoteChannel = -1;
     private boolean _openSent;
     private UnsignedInteger       _handleMax = UnsignedInteger.valueOf(1024);
-    private UnsignedInteger _incomingWindowSize = UnsignedInteger.valueOf(TransportImpl.SESSION_WINDOW);
-    private UnsignedInteger _outgoingWindowSize = UnsignedInteger.valueOf(TransportImpl.SESSION_WINDOW);
-    private UnsignedInteger _nextOutgoingId = UnsignedInteger.ONE;
-    private UnsignedInteger _nextIncomingId = null;
+    // the windows and ids are unsigned ints, held in longs with -1 for one not yet known
+    private long _incomingWindowSize = TransportImpl.SESSION_WINDOW;
+    private long _outgoingWindowSize = TransportImpl.SESSION_WINDOW;
+    private long _nextOutgoingId = 1;
+    private long _nextIncomingId = -1;
 
     private TransportLink[] _remoteHandleMap = new TransportLink[1024];
     private TransportLink[] _localHandleMap = new TransportLink[1024];
     private Map<String, TransportLink> _halfOpenLinks = new HashMap<String, TransportLink>();
 
 
-    private UnsignedInteger _currentDeliveryId;
-    private UnsignedInteger _remoteIncomingWindow;
-    private UnsignedInteger _remoteOutgoingWindow;
-    private UnsignedInteger _remoteNextIncomingId = _nextOutgoingId;
-    private UnsignedInteger _remoteNextOutgoingId;
-    private Map<UnsignedInteger, DeliveryImpl>
-            _unsettledIncomingDeliveriesById = new HashMap<UnsignedInteger, DeliveryImpl>();
-    private Map<UnsignedInteger, DeliveryImpl>
-            _unsettledOutgoingDeliveriesById = new HashMap<UnsignedInteger, DeliveryImpl>();
+    private long _currentDeliveryId = -1;
+    private long _remoteIncomingWindow = -1;
+    private long _remoteOutgoingWindow = -1;
+    private long _remoteNextIncomingId = _nextOutgoingId;
+    private long _remoteNextOutgoingId = -1;
+    private final DeliveryMap _unsettledIncomingDeliveriesById = new DeliveryMap();
+    private final DeliveryMap _unsettledOutgoingDeliveriesById = new DeliveryMap();
+    private int[] _dispositionIds = new int[64];
     private int _unsettledIncomingSize;
     private boolean _incomingWindowSizeChange;
     private boolean _outgoingWindowSizeChange;
@@ -128,36 +129,41 @@ class TransportSession
         return _handleMax;
     }
 
-    public UnsignedInteger getIncomingWindowSize()
+    public long getIncomingWindowSize()
     {
         return _incomingWindowSize;
     }
 
-    public UnsignedInteger getOutgoingWindowSize()
+    public long getOutgoingWindowSize()
     {
         return _outgoingWindowSize;
     }
 
     public void incrementOutgoingWindow()
     {
-        _outgoingWindowSize = _outgoingWindowSize.add(UnsignedInteger.ONE);
+        _outgoingWindowSize = (_outgoingWindowSize + 1) & 0xffffffffL;
     }
 
     public void decrementOutgoingWindow()
     {
-        _outgoingWindowSize = _outgoingWindowSize.subtract(UnsignedInteger.ONE);
+        _outgoingWindowSize = (_outgoingWindowSize - 1) & 0xffffffffL;
     }
 
 
 
-    public UnsignedInteger getNextOutgoingId()
+    public long getNextOutgoingId()
     {
         return _nextOutgoingId;
     }
 
     public TransportLink getLinkFromRemoteHandle(UnsignedInteger handle)
     {
-        return _remoteHandleMap[handle.intValue()];
+        return getLinkFromRemoteHandle(handle.intValue());
+    }
+
+    TransportLink getLinkFromRemoteHandle(long handle)
+    {
+        return _remoteHandleMap[(int) handle];
     }
 
     public UnsignedInteger allocateLocalHandle(TransportLink transportLink)
@@ -206,56 +212,48 @@ class TransportSession
         _halfOpenLinks.put(link.getName(), link);
     }
 
-    public void handleTransfer(Transfer transfer, Binary payload)
+    /**
+     * @return the delivery the transfer is part of
+     */
+    public DeliveryImpl handleTransfer(Transfer transfer, Binary payload)
     {
         DeliveryImpl delivery;
         incrementNextIncomingId();
-        if(transfer.getDeliveryId() == null || transfer.getDeliveryId().equals(_currentDeliveryId))
+        final long deliveryId = transfer.getDeliveryIdValue();
+        if(deliveryId == -1 || deliveryId == _currentDeliveryId)
         {
-            TransportReceiver transportReceiver = (TransportReceiver) getLinkFromRemoteHandle(transfer.getHandle());
+            TransportReceiver transportReceiver = (TransportReceiver) getLinkFromRemoteHandle(transfer.getHandleValue());
             ReceiverImpl receiver = transportReceiver.getReceiver();
             Binary deliveryTag = transfer.getDeliveryTag();
-            delivery = _unsettledIncomingDeliveriesById.get(_currentDeliveryId);
+            delivery = _unsettledIncomingDeliveriesById.get((int) _currentDeliveryId);
             delivery.getTransportDelivery().incrementSessionSize();
 
         }
         else
         {
             // TODO - check deliveryId has been incremented by one
-            _currentDeliveryId = transfer.getDeliveryId();
+            _currentDeliveryId = deliveryId;
             // TODO - check link handle valid and a receiver
-            TransportReceiver transportReceiver = (TransportReceiver) getLinkFromRemoteHandle(transfer.getHandle());
+            TransportReceiver transportReceiver = (TransportReceiver) getLinkFromRemoteHandle(transfer.getHandleValue());
             ReceiverImpl receiver = transportReceiver.getReceiver();
             Binary deliveryTag = transfer.getDeliveryTag();
             delivery = receiver.delivery(deliveryTag.getArray(), deliveryTag.getArrayOffset(),
                                                       deliveryTag.getLength());
-            TransportDelivery transportDelivery = new TransportDelivery(_currentDeliveryId, delivery, transportReceiver);
+            TransportDelivery transportDelivery = new TransportDelivery((int) _currentDeliveryId, delivery, transportReceiver);
             delivery.setTransportDelivery(transportDelivery);
-            _unsettledIncomingDeliveriesById.put(_currentDeliveryId, delivery);
+            _unsettledIncomingDeliveriesById.put((int) _currentDeliveryId, delivery);
         }
         if( transfer.getState()!=null ) 
         {
             delivery.setRemoteDeliveryState(transfer.getState());
         }
         _unsettledIncomingSize++;
-        // TODO - should this be a copy?
+        // the delivery takes the payload without copying it, so a multi-frame delivery is
+        // readable frame by frame as it arrives; the transport copies out whatever is unread
+        // before a payload lent from its input buffer is overwritten
         if(payload != null)
         {
-            if(delivery.getDataLength() == 0)
-            {
-                delivery.setData(payload.getArray());
-                delivery.setDataLength(payload.getLength());
-                delivery.setDataOffset(payload.getArrayOffset());
-            }
-            else
-            {
-                byte[] data = new byte[delivery.getDataLength() + payload.getLength()];
-                System.arraycopy(delivery.getData(), delivery.getDataOffset(), data, 0, delivery.getDataLength());
-                System.arraycopy(payload.getArray(), payload.getArrayOffset(), data, delivery.getDataLength(), payload.getLength());
-                delivery.setData(data);
-                delivery.setDataOffset(0);
-                delivery.setDataLength(data.length);
-            }
+            delivery.receive(payload.getArray(), payload.getArrayOffset(), payload.getLength());
         }
         delivery.addIOWork();
 
@@ -263,7 +261,7 @@ class TransportSession
         if(!(transfer.getMore() || transfer.getAborted()))
         {
             delivery.setComplete();
-            _incomingWindowSize = _incomingWindowSize.subtract(UnsignedInteger.ONE);
+            _incomingWindowSize = (_incomingWindowSize - 1) & 0xffffffffL;
             delivery.getLink().getTransportLink().decrementLinkCredit();
             delivery.getLink().getTransportLink().incrementDeliveryCount();
         }
@@ -271,7 +269,7 @@ class TransportSession
         {
             delivery.setRemoteSettled(true);
         }
-
+        return delivery;
     }
 
     public void freeLocalChannel()
@@ -279,29 +277,29 @@ class TransportSession
         _localChannel = -1;
     }
 
-    private void setRemoteIncomingWindow(UnsignedInteger incomingWindow)
+    private void setRemoteIncomingWindow(long incomingWindow)
     {
         _remoteIncomingWindow = incomingWindow;
     }
 
-    private void setRemoteOutgoingWindow(UnsignedInteger outgoingWindow)
+    private void setRemoteOutgoingWindow(long outgoingWindow)
     {
         _remoteOutgoingWindow = outgoingWindow;
     }
 
     void handleFlow(Flow flow)
     {
-        setRemoteIncomingWindow(flow.getIncomingWindow());
-        setRemoteOutgoingWindow(flow.getOutgoingWindow());
-        if(flow.getNextIncomingId() != null)
+        setRemoteIncomingWindow(flow.getIncomingWindowValue());
+        setRemoteOutgoingWindow(flow.getOutgoingWindowValue());
+        if(flow.getNextIncomingIdValue() != -1)
         {
-            setRemoteNextIncomingId(flow.getNextIncomingId());
+            setRemoteNextIncomingId(flow.getNextIncomingIdValue());
         }
-        setRemoteNextOutgoingId(flow.getNextOutgoingId());
+        setRemoteNextOutgoingId(flow.getNextOutgoingIdValue());
 
-        if(flow.getHandle() != null)
+        if(flow.getHandleValue() != -1)
         {
-            TransportLink transportLink = getLinkFromRemoteHandle(flow.getHandle());
+            TransportLink transportLink = getLinkFromRemoteHandle(flow.getHandleValue());
             transportLink.handleFlow(flow);
 
 
@@ -309,63 +307,100 @@ class TransportSession
 
     }
 
-    private void setRemoteNextOutgoingId(UnsignedInteger nextOutgoingId)
+    private void setRemoteNextOutgoingId(long nextOutgoingId)
     {
         _remoteNextOutgoingId = nextOutgoingId;
     }
 
-    private void setRemoteNextIncomingId(UnsignedInteger remoteNextIncomingId)
+    private void setRemoteNextIncomingId(long remoteNextIncomingId)
     {
         _remoteNextIncomingId = remoteNextIncomingId;
     }
 
     void handleDisposition(Disposition disposition)
     {
-        UnsignedInteger id = disposition.getFirst();
-        UnsignedInteger last = disposition.getLast() == null ? id : disposition.getLast();
-        final Map<UnsignedInteger, DeliveryImpl> unsettledDeliveries =
+        final int first = (int) disposition.getFirstValue();
+        final int last = disposition.getLastValue() == -1 ? first : (int) disposition.getLastValue();
+        // delivery-ids are serial numbers, so first..last may wrap past 2^32-1
+        final long span = (last - first) & 0xffffffffL;
+        if(span > Integer.MAX_VALUE)
+        {
+            // last precedes first
+            return;
+        }
+        final DeliveryMap unsettledDeliveries =
                 disposition.getRole() == Role.RECEIVER ? _unsettledOutgoingDeliveriesById
                         : _unsettledIncomingDeliveriesById;
 
-        while(id.compareTo(last)<=0)
+        if(span < unsettledDeliveries.capacity())
         {
-            DeliveryImpl delivery = unsettledDeliveries.get(id);
-            if(delivery != null)
+            int id = first;
+            for(long i = 0; i <= span; i++, id++)
             {
-                if(disposition.getState() != null)
+                DeliveryImpl delivery = unsettledDeliveries.get(id);
+                if(delivery != null)
                 {
-                    delivery.setRemoteDeliveryState(disposition.getState());
+                    applyDisposition(disposition, unsettledDeliveries, id, delivery);
                 }
-                if(Boolean.TRUE.equals(disposition.getSettled()))
+            }
+        }
+        else
+        {
+            // the range is wider than the map, so look at each unsettled delivery instead of each id
+            int count = 0;
+            for(int slot = 0; slot < unsettledDeliveries.capacity(); slot++)
+            {
+                int id = unsettledDeliveries.idAt(slot);
+                if(unsettledDeliveries.getAt(slot) != null && ((id - first) & 0xffffffffL) <= span)
                 {
-                    delivery.setRemoteSettled(true);
-                    unsettledDeliveries.remove(id);
+                    if(count == _dispositionIds.length)
+                    {
+                        _dispositionIds = Arrays.copyOf(_dispositionIds, count * 2);
+                    }
+                    _dispositionIds[count++] = id;
                 }
-                delivery.addToWorkList();
             }
-            id = id.add(UnsignedInteger.ONE);
+            for(int i = 0; i < count; i++)
+            {
+                int id = _dispositionIds[i];
+                applyDisposition(disposition, unsettledDeliveries, id, unsettledDeliveries.get(id));
+            }
+        }
+    }
+
+    private void applyDisposition(Disposition disposition, DeliveryMap unsettledDeliveries,
+                                  int id, DeliveryImpl delivery)
+    {
+        if(disposition.getState() != null)
+        {
+            delivery.setRemoteDeliveryState(disposition.getState());
+        }
+        if(Boolean.TRUE.equals(disposition.getSettled()))
+        {
+            delivery.setRemoteSettled(true);
+            unsettledDeliveries.remove(id);
         }
-        //TODO - Implement.
+        delivery.addToWorkList();
     }
 
-    void addUnsettledOutgoing(UnsignedInteger deliveryId, DeliveryImpl delivery)
+    void addUnsettledOutgoing(int deliveryId, DeliveryImpl delivery)
     {
         _unsettledOutgoingDeliveriesById.put(deliveryId, delivery);
-        _outgoingWindowSize = _outgoingWindowSize.subtract(UnsignedInteger.valueOf(delivery.getTransportDelivery().getSessionSize()));
+        _outgoingWindowSize = (_outgoingWindowSize - delivery.getTransportDelivery().getSessionSize()) & 0xffffffffL;
     }
 
     public boolean hasOutgoingCredit()
     {
-        return _remoteIncomingWindow == null
+        return _remoteIncomingWindow == -1
                    ? false
-                   : _remoteIncomingWindow.add(_remoteNextIncomingId).compareTo(_nextOutgoingId)>0
-                     && _outgoingWindowSize.compareTo(UnsignedInteger.ZERO)>0;
+                   : ((_remoteIncomingWindow + _remoteNextIncomingId) & 0xffffffffL) > _nextOutgoingId
+                     && _outgoingWindowSize > 0;
 
     }
 
     void incrementOutgoingId()
     {
-        _nextOutgoingId = _nextOutgoingId.add(UnsignedInteger.ONE);
+        _nextOutgoingId = (_nextOutgoingId + 1) & 0xffffffffL;
     }
 
     public void settled(TransportDelivery transportDelivery)
@@ -373,14 +408,14 @@ class TransportSession
         if(transportDelivery.getTransportLink().getLink() instanceof ReceiverImpl)
         {
             _unsettledIncomingDeliveriesById.remove(transportDelivery.getDeliveryId());
-            _incomingWindowSize = _incomingWindowSize.add( UnsignedInteger.valueOf(transportDelivery.getSessionSize()));
+            _incomingWindowSize = (_incomingWindowSize + transportDelivery.getSessionSize()) & 0xffffffffL;
             _incomingWindowSizeChange = true;
             getSession().modified();
         }
         else
         {
             _unsettledOutgoingDeliveriesById.remove(transportDelivery.getDeliveryId());
-            _outgoingWindowSize = _outgoingWindowSize.add(UnsignedInteger.valueOf(transportDelivery.getSessionSize()));
+            _outgoingWindowSize = (_outgoingWindowSize + transportDelivery.getSessionSize()) & 0xffffffffL;
             _outgoingWindowSizeChange = true;
             getSession().modified();
         }
@@ -407,19 +442,19 @@ class TransportSession
     }
 
 
-    public UnsignedInteger getNextIncomingId()
+    public long getNextIncomingId()
     {
         return _nextIncomingId;
     }
 
-    public void setNextIncomingId(UnsignedInteger nextIncomingId)
+    public void setNextIncomingId(long nextIncomingId)
     {
         _nextIncomingId = nextIncomingId;
     }
 
     public void incrementNextIncomingId()
     {
-        _nextIncomingId = _nextIncomingId.add(UnsignedInteger.ONE);
+        _nextIncomingId = (_nextIncomingId + 1) & 0xffffffffL;
     }
 
     public boolean endReceived()
@@ -25,9 +25,9 @@ import org.apache.qpid.proton.amqp.transport.FrameBody;
 
 public class TransportFrame
 {
-    private final int _channel;
-    private final FrameBody _body;
-    private final Binary _payload;
+    private int _channel;
+    private FrameBody _body;
+    private Binary _payload;
 
 
     public TransportFrame(final int channel,
@@ -53,4 +53,17 @@ public class TransportFrame
     {
         return _payload;
     }
+
+    /**
+     * Replaces the contents of the frame, for a parser that passes on the same instance for
+     * each frame it reads.
+     */
+    public void set(final int channel,
+                    final FrameBody body,
+                    final Binary payload)
+    {
+        _payload = payload;
+        _body = body;
+        _channel = channel;
+    }
 }
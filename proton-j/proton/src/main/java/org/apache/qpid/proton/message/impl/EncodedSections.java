@@ -0,0 +1,266 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+package org.apache.qpid.proton.message.impl;
+
+import java.nio.ByteBuffer;
+
+import org.apache.qpid.proton.amqp.messaging.Section;
+import org.apache.qpid.proton.codec.DecodeException;
+import org.apache.qpid.proton.codec.DecoderImpl;
+import org.apache.qpid.proton.codec.EncodingCodes;
+import org.apache.qpid.proton.codec.WritableBuffer;
+
+/**
+ * The still-encoded sections of a lazily decoded {@link MessageImpl}.
+ *
+ * The encoded message is scanned once to find where each section starts and ends, using only the
+ * constructors and size prefixes, so no section is decoded until it is asked for. Sections that
+ * are never decoded can be written back out by copying their original bytes.
+ *
+ * The array passed to {@link #scan(byte[], int, int)} is referenced, not copied.
+ */
+final class EncodedSections
+{
+    static final int HEADER = 0;
+    static final int DELIVERY_ANNOTATIONS = 1;
+    static final int MESSAGE_ANNOTATIONS = 2;
+    static final int PROPERTIES = 3;
+    static final int APPLICATION_PROPERTIES = 4;
+    static final int BODY = 5;
+    static final int FOOTER = 6;
+
+    private static final int SECTION_COUNT = 7;
+
+    private static final long FIRST_SECTION_CODE = 0x70L;
+
+    /** Section slot for each descriptor code from 0x70 (header) to 0x78 (footer). */
+    private static final int[] SECTION_BY_CODE =
+    {
+        HEADER, DELIVERY_ANNOTATIONS, MESSAGE_ANNOTATIONS, PROPERTIES, APPLICATION_PROPERTIES,
+        BODY, BODY, BODY, FOOTER
+    };
+
+    /** Symbolic descriptors, in the same order as the numeric codes. */
+    private static final String[] SECTION_NAMES =
+    {
+        "amqp:header:list", "amqp:delivery-annotations:map", "amqp:message-annotations:map",
+        "amqp:properties:list", "amqp:application-properties:map", "amqp:data:binary",
+        "amqp:amqp-sequence:list", "amqp:amqp-value:*", "amqp:footer:map"
+    };
+
+    private final byte[] _data;
+    private final int[] _offsets = new int[SECTION_COUNT];
+    private final int[] _lengths = new int[SECTION_COUNT];
+    private int _pending;
+    private int _consumed;
+
+    private EncodedSections(byte[] data)
+    {
+        _data = data;
+    }
+
+    /**
+     * Locates the sections of the message encoded in the given range of data. Sections must
+     * appear in the order the specification gives them; as with
+     * {@link MessageImpl#decode(byte[], int, int)}, only the first body section is kept.
+     */
+    static EncodedSections scan(byte[] data, int offset, int length)
+    {
+        EncodedSections sections = new EncodedSections(data);
+        final int limit = offset + length;
+        int position = offset;
+        int next = -1;
+
+        if(position < limit)
+        {
+            next = sectionAt(data, position, limit);
+        }
+        int slot = HEADER;
+        while(next != -1 && slot <= FOOTER)
+        {
+            if(next >= slot)
+            {
+                int end = skipValue(data, position, limit);
+                sections.add(next, position, end - position);
+                position = end;
+                slot = next + 1;
+                next = (position < limit) ? sectionAt(data, position, limit) : -1;
+            }
+            else
+            {
+                // out of order (e.g. a second body section); consumed but ignored, as decode does
+                position = skipValue(data, position, limit);
+                break;
+            }
+        }
+        if(next == -1 && position < limit && slot <= FOOTER)
+        {
+            throw new DecodeException("Encoded value is not a message section");
+        }
+        sections._consumed = position - offset;
+        return sections;
+    }
+
+    /**
+     * @return the number of bytes taken up by the sections found by the scan
+     */
+    int getConsumed()
+    {
+        return _consumed;
+    }
+
+    boolean isPending(int section)
+    {
+        return (_pending & (1 << section)) != 0;
+    }
+
+    boolean isEmpty()
+    {
+        return _pending == 0;
+    }
+
+    /**
+     * Decodes the given section, which must be pending, after which it is no longer pending.
+     * A section that fails to decode stays pending, so it keeps failing rather than vanishing.
+     */
+    Section decode(int section, DecoderImpl decoder)
+    {
+        decoder.setByteBuffer(ByteBuffer.wrap(_data, _offsets[section], _lengths[section]));
+        try
+        {
+            Section decoded = (Section) decoder.readObject();
+            discard(section);
+            return decoded;
+        }
+        finally
+        {
+            decoder.setByteBuffer(null);
+        }
+    }
+
+    /**
+     * Forgets the encoded form of a section, e.g. because it has been replaced.
+     */
+    void discard(int section)
+    {
+        _pending &= ~(1 << section);
+    }
+
+    /**
+     * Copies the original bytes of a pending section to the buffer.
+     */
+    void write(int section, WritableBuffer buffer)
+    {
+        buffer.put(_data, _offsets[section], _lengths[section]);
+    }
+
+    private void add(int section, int offset, int length)
+    {
+        _offsets[section] = offset;
+        _lengths[section] = length;
+        _pending |= 1 << section;
+    }
+
+    /**
+     * @return the section slot of the described value at position, or -1 if it is not a section
+     */
+    private static int sectionAt(byte[] data, int position, int limit)
+    {
+        if(data[position] != EncodingCodes.DESCRIBED_TYPE_INDICATOR)
+        {
+            return -1;
+        }
+        position++;
+        checkAvailable(position, 1, limit);
+        final byte code = data[position++];
+        long descriptor = -1L;
+        switch(code)
+        {
+            case EncodingCodes.SMALLULONG:
+                checkAvailable(position, 1, limit);
+                descriptor = data[position] & 0xFF;
+                break;
+            case EncodingCodes.ULONG:
+                checkAvailable(position, 8, limit);
+                descriptor = ByteBuffer.wrap(data, position, 8).getLong();
+                break;
+            case EncodingCodes.SYM8:
+            case EncodingCodes.SYM32:
+                descriptor = sectionCode(data, position, limit, code == EncodingCodes.SYM8);
+                break;
+        }
+        if(descriptor < FIRST_SECTION_CODE || descriptor >= FIRST_SECTION_CODE + SECTION_BY_CODE.length)
+        {
+            return -1;
+        }
+        return SECTION_BY_CODE[(int) (descriptor - FIRST_SECTION_CODE)];
+    }
+
+    private static long sectionCode(byte[] data, int position, int limit, boolean small)
+    {
+        final int length;
+        if(small)
+        {
+            checkAvailable(position, 1, limit);
+            length = data[position++] & 0xFF;
+        }
+        else
+        {
+            checkAvailable(position, 4, limit);
+            length = ByteBuffer.wrap(data, position, 4).getInt();
+            position += 4;
+        }
+        checkAvailable(position, length, limit);
+        for(int i = 0; i < SECTION_NAMES.length; i++)
+        {
+            String name = SECTION_NAMES[i];
+            if(name.length() == length)
+            {
+                int j = 0;
+                while(j < length && data[position + j] == (byte) name.charAt(j))
+                {
+                    j++;
+                }
+                if(j == length)
+                {
+                    return FIRST_SECTION_CODE + i;
+                }
+            }
+        }
+        return -1L;
+    }
+
+    /**
+     * @return the position just after the encoded value starting at position
+     */
+    static int skipValue(byte[] data, int position, int limit)
+    {
+        return DecoderImpl.skipValue(ByteBuffer.wrap(data), position, limit);
+    }
+
+    private static void checkAvailable(int position, int size, int limit)
+    {
+        if(size < 0 || size > limit - position)
+        {
+            throw new DecodeException("Encoded message is truncated");
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ *
+*/
+package org.apache.qpid.proton.message.impl;
+
+import org.apache.qpid.proton.codec.AMQPDefinedTypes;
+import org.apache.qpid.proton.codec.DecoderImpl;
+import org.apache.qpid.proton.codec.EncoderImpl;
+
+/**
+ * A decoder/encoder pair with all the AMQP defined types registered, for encoding and decoding
+ * {@link MessageImpl}s.
+ *
+ * Building the type registry is expensive, so a codec should be created once and reused. A codec
+ * holds per-call state and must only be used by one thread at a time; {@link #getThreadCodec()}
+ * returns one confined to the calling thread.
+ */
+public final class MessageCodec
+{
+    private static final ThreadLocal<MessageCodec> THREAD_CODEC = new ThreadLocal<MessageCodec>()
+    {
+        @Override
+        protected MessageCodec initialValue()
+        {
+            return new MessageCodec();
+        }
+    };
+
+    private final DecoderImpl _decoder = new DecoderImpl();
+    private final EncoderImpl _encoder = new EncoderImpl(_decoder);
+
+    public MessageCodec()
+    {
+        AMQPDefinedTypes.registerAllTypes(_decoder, _encoder);
+    }
+
+    /**
+     * @return the codec used by {@link MessageImpl} when none is passed in explicitly
+     */
+    public static MessageCodec getThreadCodec()
+    {
+        return THREAD_CODEC.get();
+    }
+
+    DecoderImpl getDecoder()
+    {
+        return _decoder;
+    }
+
+    EncoderImpl getEncoder()
+    {
+        return _encoder;
+    }
+}
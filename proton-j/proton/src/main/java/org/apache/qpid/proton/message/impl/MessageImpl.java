@@ -46,6 +46,7 @@ public class MessageImpl implements Message
     private Section _body;
     private Footer _footer;
     private MessageFormat _format = MessageFormat.DATA;
+    private EncodedSections _encodedSections;
 
     public MessageImpl()
     {
@@ -66,41 +67,41 @@ public class MessageImpl implements Message
     @Override
     public boolean isDurable()
     {
-        return (_header == null || _header.getDurable() == null) ? false : _header.getDurable();
+        return (getHeader() == null || getHeader().getDurable() == null) ? false : getHeader().getDurable();
     }
 
 
     @Override
     public long getDeliveryCount()
     {
-        return (_header == null || _header.getDeliveryCount() == null) ? 0l : _header.getDeliveryCount().longValue();
+        return (getHeader() == null || getHeader().getDeliveryCount() == null) ? 0l : getHeader().getDeliveryCount().longValue();
     }
 
 
     @Override
     public short getPriority()
     {
-        return (_header == null || _header.getPriority() == null)
+        return (getHeader() == null || getHeader().getPriority() == null)
                        ? DEFAULT_PRIORITY
-                       : _header.getPriority().shortValue();
+                       : getHeader().getPriority().shortValue();
     }
 
     @Override
     public boolean isFirstAcquirer()
     {
-        return (_header == null || _header.getFirstAcquirer() == null) ? false : _header.getFirstAcquirer();
+        return (getHeader() == null || getHeader().getFirstAcquirer() == null) ? false : getHeader().getFirstAcquirer();
     }
 
     @Override
     public long getTtl()
     {
-        return (_header == null || _header.getTtl() == null) ? 0l : _header.getTtl().longValue();
+        return (getHeader() == null || getHeader().getTtl() == null) ? 0l : getHeader().getTtl().longValue();
     }
 
     @Override
     public void setDurable(boolean durable)
     {
-        if (_header == null)
+        if (getHeader() == null)
         {
             if (durable)
             {
@@ -111,14 +112,14 @@ public class MessageImpl implements Message
                 return;
             }
         }
-        _header.setDurable(durable);
+        getHeader().setDurable(durable);
     }
 
     @Override
     public void setTtl(long ttl)
     {
 
-        if (_header == null)
+        if (getHeader() == null)
         {
             if (ttl != 0l)
             {
@@ -129,13 +130,13 @@ public class MessageImpl implements Message
                 return;
             }
         }
-        _header.setTtl(UnsignedInteger.valueOf(ttl));
+        getHeader().setTtl(UnsignedInteger.valueOf(ttl));
     }
 
     @Override
     public void setDeliveryCount(long deliveryCount)
     {
-        if (_header == null)
+        if (getHeader() == null)
         {
             if (deliveryCount == 0l)
             {
@@ -143,7 +144,7 @@ public class MessageImpl implements Message
             }
             _header = new Header();
         }
-        _header.setDeliveryCount(UnsignedInteger.valueOf(deliveryCount));
+        getHeader().setDeliveryCount(UnsignedInteger.valueOf(deliveryCount));
     }
 
 
@@ -151,7 +152,7 @@ public class MessageImpl implements Message
     public void setFirstAcquirer(boolean firstAcquirer)
     {
 
-        if (_header == null)
+        if (getHeader() == null)
         {
             if (!firstAcquirer)
             {
@@ -159,14 +160,14 @@ public class MessageImpl implements Message
             }
             _header = new Header();
         }
-        _header.setFirstAcquirer(firstAcquirer);
+        getHeader().setFirstAcquirer(firstAcquirer);
     }
 
     @Override
     public void setPriority(short priority)
     {
 
-        if (_header == null)
+        if (getHeader() == null)
         {
             if (priority == DEFAULT_PRIORITY)
             {
@@ -174,49 +175,49 @@ public class MessageImpl implements Message
             }
             _header = new Header();
         }
-        _header.setPriority(UnsignedByte.valueOf((byte) priority));
+        getHeader().setPriority(UnsignedByte.valueOf((byte) priority));
     }
 
     @Override
     public Object getMessageId()
     {
-        return _properties == null ? null : _properties.getMessageId();
+        return getProperties() == null ? null : getProperties().getMessageId();
     }
 
     @Override
     public long getGroupSequence()
     {
-        return (_properties == null || _properties.getGroupSequence() == null) ? 0l : _properties.getGroupSequence().intValue();
+        return (getProperties() == null || getProperties().getGroupSequence() == null) ? 0l : getProperties().getGroupSequence().intValue();
     }
 
     @Override
     public String getReplyToGroupId()
     {
-        return _properties == null ? null : _properties.getReplyToGroupId();
+        return getProperties() == null ? null : getProperties().getReplyToGroupId();
     }
 
     @Override
     public long getCreationTime()
     {
-        return (_properties == null || _properties.getCreationTime() == null) ? 0l : _properties.getCreationTime().getTime();
+        return (getProperties() == null || getProperties().getCreationTime() == null) ? 0l : getProperties().getCreationTime().getTime();
     }
 
     @Override
     public String getAddress()
     {
-        return _properties == null ? null : _properties.getTo();
+        return getProperties() == null ? null : getProperties().getTo();
     }
 
     @Override
     public byte[] getUserId()
     {
-        if(_properties == null || _properties.getUserId() == null)
+        if(getProperties() == null || getProperties().getUserId() == null)
         {
             return null;
         }
         else
         {
-            final Binary userId = _properties.getUserId();
+            final Binary userId = getProperties().getUserId();
             byte[] id = new byte[userId.getLength()];
             System.arraycopy(userId.getArray(),userId.getArrayOffset(),id,0,userId.getLength());
             return id;
@@ -227,49 +228,49 @@ public class MessageImpl implements Message
     @Override
     public String getReplyTo()
     {
-        return _properties == null ? null : _properties.getReplyTo();
+        return getProperties() == null ? null : getProperties().getReplyTo();
     }
 
     @Override
     public String getGroupId()
     {
-        return _properties == null ? null : _properties.getGroupId();
+        return getProperties() == null ? null : getProperties().getGroupId();
     }
 
     @Override
     public String getContentType()
     {
-        return (_properties == null || _properties.getContentType() == null) ? null : _properties.getContentType().toString();
+        return (getProperties() == null || getProperties().getContentType() == null) ? null : getProperties().getContentType().toString();
     }
 
     @Override
     public long getExpiryTime()
     {
-        return (_properties == null || _properties.getAbsoluteExpiryTime() == null) ? 0l : _properties.getAbsoluteExpiryTime().getTime();
+        return (getProperties() == null || getProperties().getAbsoluteExpiryTime() == null) ? 0l : getProperties().getAbsoluteExpiryTime().getTime();
     }
 
     @Override
     public Object getCorrelationId()
     {
-        return (_properties == null) ? null : _properties.getCorrelationId();
+        return (getProperties() == null) ? null : getProperties().getCorrelationId();
     }
 
     @Override
     public String getContentEncoding()
     {
-        return (_properties == null || _properties.getContentEncoding() == null) ? null : _properties.getContentEncoding().toString();
+        return (getProperties() == null || getProperties().getContentEncoding() == null) ? null : getProperties().getContentEncoding().toString();
     }
 
     @Override
     public String getSubject()
     {
-        return _properties == null ? null : _properties.getSubject();
+        return getProperties() == null ? null : getProperties().getSubject();
     }
 
     @Override
     public void setGroupSequence(long groupSequence)
     {
-        if(_properties == null)
+        if(getProperties() == null)
         {
             if(groupSequence == 0l)
             {
@@ -280,7 +281,7 @@ public class MessageImpl implements Message
                 _properties = new Properties();
             }
         }
-        _properties.setGroupSequence(UnsignedInteger.valueOf((int) groupSequence));
+        getProperties().setGroupSequence(UnsignedInteger.valueOf((int) groupSequence));
     }
 
     @Override
@@ -288,28 +289,28 @@ public class MessageImpl implements Message
     {
         if(userId == null)
         {
-            if(_properties != null)
+            if(getProperties() != null)
             {
-                _properties.setUserId(null);
+                getProperties().setUserId(null);
             }
 
         }
         else
         {
-            if(_properties == null)
+            if(getProperties() == null)
             {
                 _properties = new Properties();
             }
             byte[] id = new byte[userId.length];
             System.arraycopy(userId, 0, id,0, userId.length);
-            _properties.setUserId(new Binary(id));
+            getProperties().setUserId(new Binary(id));
         }
     }
 
     @Override
     public void setCreationTime(long creationTime)
     {
-        if(_properties == null)
+        if(getProperties() == null)
         {
             if(creationTime == 0l)
             {
@@ -318,13 +319,13 @@ public class MessageImpl implements Message
             _properties = new Properties();
 
         }
-        _properties.setCreationTime(new Date(creationTime));
+        getProperties().setCreationTime(new Date(creationTime));
     }
 
     @Override
     public void setSubject(String subject)
     {
-        if(_properties == null)
+        if(getProperties() == null)
         {
             if(subject == null)
             {
@@ -332,13 +333,13 @@ public class MessageImpl implements Message
             }
             _properties = new Properties();
         }
-        _properties.setSubject(subject);
+        getProperties().setSubject(subject);
     }
 
     @Override
     public void setGroupId(String groupId)
     {
-        if(_properties == null)
+        if(getProperties() == null)
         {
             if(groupId == null)
             {
@@ -346,13 +347,13 @@ public class MessageImpl implements Message
             }
             _properties = new Properties();
         }
-        _properties.setGroupId(groupId);
+        getProperties().setGroupId(groupId);
     }
 
     @Override
     public void setAddress(String to)
     {
-        if(_properties == null)
+        if(getProperties() == null)
         {
             if(to == null)
             {
@@ -360,13 +361,13 @@ public class MessageImpl implements Message
             }
             _properties = new Properties();
         }
-        _properties.setTo(to);
+        getProperties().setTo(to);
     }
 
     @Override
     public void setExpiryTime(long absoluteExpiryTime)
     {
-        if(_properties == null)
+        if(getProperties() == null)
         {
             if(absoluteExpiryTime == 0l)
             {
@@ -375,13 +376,13 @@ public class MessageImpl implements Message
             _properties = new Properties();
 
         }
-        _properties.setAbsoluteExpiryTime(new Date(absoluteExpiryTime));
+        getProperties().setAbsoluteExpiryTime(new Date(absoluteExpiryTime));
     }
 
     @Override
     public void setReplyToGroupId(String replyToGroupId)
     {
-        if(_properties == null)
+        if(getProperties() == null)
         {
             if(replyToGroupId == null)
             {
@@ -389,13 +390,13 @@ public class MessageImpl implements Message
             }
             _properties = new Properties();
         }
-        _properties.setReplyToGroupId(replyToGroupId);
+        getProperties().setReplyToGroupId(replyToGroupId);
     }
 
     @Override
     public void setContentEncoding(String contentEncoding)
     {
-        if(_properties == null)
+        if(getProperties() == null)
         {
             if(contentEncoding == null)
             {
@@ -403,13 +404,13 @@ public class MessageImpl implements Message
             }
             _properties = new Properties();
         }
-        _properties.setContentEncoding(Symbol.valueOf(contentEncoding));
+        getProperties().setContentEncoding(Symbol.valueOf(contentEncoding));
     }
 
     @Override
     public void setContentType(String contentType)
     {
-        if(_properties == null)
+        if(getProperties() == null)
         {
             if(contentType == null)
             {
@@ -417,14 +418,14 @@ public class MessageImpl implements Message
             }
             _properties = new Properties();
         }
-        _properties.setContentType(Symbol.valueOf(contentType));
+        getProperties().setContentType(Symbol.valueOf(contentType));
     }
 
     @Override
     public void setReplyTo(String replyTo)
     {
 
-        if(_properties == null)
+        if(getProperties() == null)
         {
             if(replyTo == null)
             {
@@ -432,14 +433,14 @@ public class MessageImpl implements Message
             }
             _properties = new Properties();
         }
-        _properties.setReplyTo(replyTo);
+        getProperties().setReplyTo(replyTo);
     }
 
     @Override
     public void setCorrelationId(Object correlationId)
     {
 
-        if(_properties == null)
+        if(getProperties() == null)
         {
             if(correlationId == null)
             {
@@ -447,14 +448,14 @@ public class MessageImpl implements Message
             }
             _properties = new Properties();
         }
-        _properties.setCorrelationId(correlationId);
+        getProperties().setCorrelationId(correlationId);
     }
 
     @Override
     public void setMessageId(Object messageId)
     {
 
-        if(_properties == null)
+        if(getProperties() == null)
         {
             if(messageId == null)
             {
@@ -462,104 +463,173 @@ public class MessageImpl implements Message
             }
             _properties = new Properties();
         }
-        _properties.setMessageId(messageId);
+        getProperties().setMessageId(messageId);
     }
 
 
     @Override
     public Header getHeader()
     {
+        if(isEncoded(EncodedSections.HEADER))
+        {
+            _header = (Header) decodeSection(EncodedSections.HEADER);
+        }
         return _header;
     }
 
     @Override
     public DeliveryAnnotations getDeliveryAnnotations()
     {
+        if(isEncoded(EncodedSections.DELIVERY_ANNOTATIONS))
+        {
+            _deliveryAnnotations = (DeliveryAnnotations) decodeSection(EncodedSections.DELIVERY_ANNOTATIONS);
+        }
         return _deliveryAnnotations;
     }
 
     @Override
     public MessageAnnotations getMessageAnnotations()
     {
+        if(isEncoded(EncodedSections.MESSAGE_ANNOTATIONS))
+        {
+            _messageAnnotations = (MessageAnnotations) decodeSection(EncodedSections.MESSAGE_ANNOTATIONS);
+        }
         return _messageAnnotations;
     }
 
     @Override
     public Properties getProperties()
     {
+        if(isEncoded(EncodedSections.PROPERTIES))
+        {
+            _properties = (Properties) decodeSection(EncodedSections.PROPERTIES);
+        }
         return _properties;
     }
 
     @Override
     public ApplicationProperties getApplicationProperties()
     {
+        if(isEncoded(EncodedSections.APPLICATION_PROPERTIES))
+        {
+            _applicationProperties = (ApplicationProperties) decodeSection(EncodedSections.APPLICATION_PROPERTIES);
+        }
         return _applicationProperties;
     }
 
     @Override
     public Section getBody()
     {
+        if(isEncoded(EncodedSections.BODY))
+        {
+            _body = decodeSection(EncodedSections.BODY);
+        }
         return _body;
     }
 
     @Override
     public Footer getFooter()
     {
+        if(isEncoded(EncodedSections.FOOTER))
+        {
+            _footer = (Footer) decodeSection(EncodedSections.FOOTER);
+        }
         return _footer;
     }
 
     @Override
     public void setHeader(Header header)
     {
+        discardEncoded(EncodedSections.HEADER);
         _header = header;
     }
 
     @Override
     public void setDeliveryAnnotations(DeliveryAnnotations deliveryAnnotations)
     {
+        discardEncoded(EncodedSections.DELIVERY_ANNOTATIONS);
         _deliveryAnnotations = deliveryAnnotations;
     }
 
     @Override
     public void setMessageAnnotations(MessageAnnotations messageAnnotations)
     {
+        discardEncoded(EncodedSections.MESSAGE_ANNOTATIONS);
         _messageAnnotations = messageAnnotations;
     }
 
     @Override
     public void setProperties(Properties properties)
     {
+        discardEncoded(EncodedSections.PROPERTIES);
         _properties = properties;
     }
 
     @Override
     public void setApplicationProperties(ApplicationProperties applicationProperties)
     {
+        discardEncoded(EncodedSections.APPLICATION_PROPERTIES);
         _applicationProperties = applicationProperties;
     }
 
     @Override
     public void setBody(Section body)
     {
+        discardEncoded(EncodedSections.BODY);
         _body = body;
     }
 
     @Override
     public void setFooter(Footer footer)
     {
+        discardEncoded(EncodedSections.FOOTER);
         _footer = footer;
     }
 
     @Override
     public int decode(byte[] data, int offset, int length)
     {
-        DecoderImpl decoder = new DecoderImpl();
-        EncoderImpl encoder = new EncoderImpl(decoder);
+        return decode(data, offset, length, MessageCodec.getThreadCodec());
+    }
 
-        AMQPDefinedTypes.registerAllTypes(decoder, encoder);
+    public int decode(byte[] data, int offset, int length, MessageCodec codec)
+    {
         final ByteBuffer buffer = ByteBuffer.wrap(data, offset, length);
+        DecoderImpl decoder = codec.getDecoder();
         decoder.setByteBuffer(buffer);
+        try
+        {
+            decodeSections(decoder, buffer);
+        }
+        finally
+        {
+            // don't let the (possibly thread-local) codec keep the caller's data reachable
+            decoder.setByteBuffer(null);
+        }
+        return length-buffer.remaining();
+    }
 
+    /**
+     * Decodes the message lazily: the encoded sections are located but each is only decoded
+     * when first accessed. Sections which are never accessed or replaced are re-encoded by
+     * copying their original bytes.
+     *
+     * The data array is referenced rather than copied, so it must not be modified while this
+     * message may still decode or encode from it.
+     *
+     * @return the number of bytes consumed
+     */
+    public int decodeLazily(byte[] data, int offset, int length)
+    {
+        EncodedSections sections = EncodedSections.scan(data, offset, length);
+        clearSections();
+        _encodedSections = sections.isEmpty() ? null : sections;
+        return sections.getConsumed();
+    }
+
+    private void clearSections()
+    {
+        _encodedSections = null;
         _header = null;
         _deliveryAnnotations = null;
         _messageAnnotations = null;
@@ -567,6 +637,39 @@ public class MessageImpl implements Message
         _applicationProperties = null;
         _body = null;
         _footer = null;
+    }
+
+    private boolean isEncoded(int section)
+    {
+        return _encodedSections != null && _encodedSections.isPending(section);
+    }
+
+    private Section decodeSection(int section)
+    {
+        Section decoded = _encodedSections.decode(section, MessageCodec.getThreadCodec().getDecoder());
+        if(_encodedSections.isEmpty())
+        {
+            _encodedSections = null;
+        }
+        return decoded;
+    }
+
+    private void discardEncoded(int section)
+    {
+        if(_encodedSections != null)
+        {
+            _encodedSections.discard(section);
+            if(_encodedSections.isEmpty())
+            {
+                _encodedSections = null;
+            }
+        }
+    }
+
+    private void decodeSections(DecoderImpl decoder, ByteBuffer buffer)
+    {
+
+        clearSections();
         Section section = null;
 
         if(buffer.hasRemaining())
@@ -661,9 +764,6 @@ public class MessageImpl implements Message
             _footer = (Footer) section;
 
         }
-
-        return length-buffer.remaining();
-
     }
 
     @Override
@@ -684,49 +784,70 @@ public class MessageImpl implements Message
         return composite.position() - start;
     }
 
+    /**
+     * Encodes the message into a new array of exactly the encoded size.
+     *
+     * After {@link #decodeLazily(byte[], int, int)} this is the cheap way to forward a message with
+     * only some sections changed (e.g. the header's delivery count): sections that were neither
+     * accessed nor replaced are spliced through from the original bytes, and only the others are
+     * encoded, first to size them and then into the array.
+     */
+    public byte[] encodeToArray()
+    {
+        final MessageCodec codec = MessageCodec.getThreadCodec();
+        byte[] data = new byte[encode(new DroppingWritableBuffer(), codec)];
+        encode(new WritableBuffer.ByteBufferWrapper(ByteBuffer.wrap(data)), codec);
+        return data;
+    }
+
     public int encode(WritableBuffer buffer)
+    {
+        return encode(buffer, MessageCodec.getThreadCodec());
+    }
+
+    public int encode(WritableBuffer buffer, MessageCodec codec)
     {
         int length = buffer.remaining();
-        DecoderImpl decoder = new DecoderImpl();
-        EncoderImpl encoder = new EncoderImpl(decoder);
-        AMQPDefinedTypes.registerAllTypes(decoder, encoder);
+        EncoderImpl encoder = codec.getEncoder();
         encoder.setByteBuffer(buffer);
-
-        if(getHeader() != null)
+        try
         {
-            encoder.writeObject(getHeader());
+            encodeSections(encoder, buffer);
         }
-        if(getDeliveryAnnotations() != null)
+        finally
         {
-            encoder.writeObject(getDeliveryAnnotations());
+            encoder.setByteBuffer((WritableBuffer) null);
         }
-        if(getMessageAnnotations() != null)
-        {
-            encoder.writeObject(getMessageAnnotations());
-        }
-        if(getProperties() != null)
-        {
-            encoder.writeObject(getProperties());
-        }
-        if(getApplicationProperties() != null)
-        {
-            encoder.writeObject(getApplicationProperties());
-        }
-        if(getBody() != null)
+        return length - buffer.remaining();
+    }
+
+    private void encodeSections(EncoderImpl encoder, WritableBuffer buffer)
+    {
+        encodeSection(encoder, buffer, EncodedSections.HEADER, _header);
+        encodeSection(encoder, buffer, EncodedSections.DELIVERY_ANNOTATIONS, _deliveryAnnotations);
+        encodeSection(encoder, buffer, EncodedSections.MESSAGE_ANNOTATIONS, _messageAnnotations);
+        encodeSection(encoder, buffer, EncodedSections.PROPERTIES, _properties);
+        encodeSection(encoder, buffer, EncodedSections.APPLICATION_PROPERTIES, _applicationProperties);
+        encodeSection(encoder, buffer, EncodedSections.BODY, _body);
+        encodeSection(encoder, buffer, EncodedSections.FOOTER, _footer);
+    }
+
+    private void encodeSection(EncoderImpl encoder, WritableBuffer buffer, int section, Section value)
+    {
+        if(isEncoded(section))
         {
-            encoder.writeObject(getBody());
+            _encodedSections.write(section, buffer);
         }
-        if(getFooter() != null)
+        else if(value != null)
         {
-            encoder.writeObject(getFooter());
+            encoder.writeObject(value);
         }
-
-        return length - buffer.remaining();
     }
 
     @Override
     public void load(Object data)
     {
+        discardEncoded(EncodedSections.BODY);
         switch (_format)
         {
             case DATA:
@@ -768,27 +889,28 @@ public class MessageImpl implements Message
     @Override
     public Object save()
     {
+        final Section body = getBody();
         switch (_format)
         {
             case DATA:
-                if(_body instanceof Data)
+                if(body instanceof Data)
                 {
-                    return ((Data)_body).getValue().getArray();
+                    return ((Data)body).getValue().getArray();
                 }
                 else return null;
             case AMQP:
-                if(_body instanceof AmqpValue)
+                if(body instanceof AmqpValue)
                 {
-                    return toAMQPFormat(((AmqpValue) _body).getValue());
+                    return toAMQPFormat(((AmqpValue) body).getValue());
                 }
                 else
                 {
                     return null;
                 }
             case TEXT:
-                if(_body instanceof AmqpValue)
+                if(body instanceof AmqpValue)
                 {
-                    final Object value = ((AmqpValue) _body).getValue();
+                    final Object value = ((AmqpValue) body).getValue();
                     return value == null ? "" : value.toString();
                 }
                 return null;
@@ -826,6 +948,7 @@ public class MessageImpl implements Message
     @Override
     public void clear()
     {
+        discardEncoded(EncodedSections.BODY);
         _body = null;
     }
 
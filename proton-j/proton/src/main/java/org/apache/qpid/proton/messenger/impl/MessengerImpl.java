@@ -25,6 +25,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.EnumSet;
 import java.util.Iterator;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -39,6 +40,7 @@ import org.apache.qpid.proton.engine.Receiver;
 import org.apache.qpid.proton.engine.Sasl;
 import org.apache.qpid.proton.engine.Sender;
 import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.driver.impl.BlockingDriverImpl;
 import org.apache.qpid.proton.driver.impl.DriverImpl;
 import org.apache.qpid.proton.engine.impl.ConnectionImpl;
 import org.apache.qpid.proton.message.Message;
@@ -56,11 +58,13 @@ public class MessengerImpl implements Messenger
     private static final EnumSet<EndpointState> UNINIT = EnumSet.of(EndpointState.UNINITIALIZED);
     private static final EnumSet<EndpointState> ACTIVE = EnumSet.of(EndpointState.ACTIVE);
     private static final EnumSet<EndpointState> CLOSED = EnumSet.of(EndpointState.CLOSED);
+    private static final EnumSet<EndpointState> NOT_CLOSED = EnumSet.of(EndpointState.UNINITIALIZED, EndpointState.ACTIVE);
     private static final EnumSet<EndpointState> ANY = EnumSet.allOf(EndpointState.class);
     private static final Accepted ACCEPTED = new Accepted();
 
     private final Logger _logger = Logger.getLogger("proton.messenger");
     private final String _name;
+    private final ThreadFactory _connectorThreads;
     private long _timeout = -1;
     private long _nextTag = 1;
     private byte[] _buffer = new byte[5*1024];
@@ -76,8 +80,22 @@ public class MessengerImpl implements Messenger
     }
 
     public MessengerImpl(String name)
+    {
+        this(name, null);
+    }
+
+    /**
+     * Creates a messenger whose connections each block on a thread of their own from the given
+     * factory, rather than sharing a selector, so that the messenger waits on a condition until
+     * one of them has read something. A factory of virtual threads makes this cheap enough for
+     * many messengers per process.
+     *
+     * @param connectorThreads the factory for connection threads, or null to use a selector
+     */
+    public MessengerImpl(String name, ThreadFactory connectorThreads)
     {
         _name = name;
+        _connectorThreads = connectorThreads;
     }
 
     public void setTimeout(long timeInMillis)
@@ -92,7 +110,8 @@ public class MessengerImpl implements Messenger
 
     public void start() throws IOException
     {
-        _driver = new DriverImpl();
+        _driver = _connectorThreads == null ? new DriverImpl()
+                                            : new BlockingDriverImpl(_connectorThreads, null);
     }
 
     public void stop()
@@ -552,7 +571,8 @@ public class MessengerImpl implements Messenger
             for (Connector c : _driver.connectors())
             {
                 Connection connection = c.getConnection();
-                for (Link link : new Links(connection, ACTIVE, ACTIVE))
+                //a link the peer has yet to attach still has its messages to send
+                for (Link link : new Links(connection, ACTIVE, NOT_CLOSED))
                 {
                     if (link instanceof Sender)
                     {
@@ -16,6 +16,7 @@
 # under the License.
 #
 
+import struct, uuid
 from uuid import UUID
 
 from org.apache.qpid.proton.engine import EndpointState, TransportException, Sasl, SslDomain
@@ -27,8 +28,10 @@ from org.apache.qpid.proton.message.impl import MessageImpl
 from org.apache.qpid.proton.messenger import MessengerException, Status
 from org.apache.qpid.proton.messenger.impl import MessengerImpl
 from org.apache.qpid.proton.amqp.messaging import Source, Target, Accepted, AmqpValue
-from org.apache.qpid.proton.amqp import UnsignedInteger
+from org.apache.qpid.proton.amqp import UnsignedInteger, Decimal32, Decimal64, Decimal128
+from org.apache.qpid.proton.codec import Data as JData, DataImpl, DecodeException
 from jarray import zeros
+from java.nio import ByteBuffer
 from java.util import EnumSet, UUID as JUUID
 
 LANGUAGE = "Java"
@@ -493,12 +496,468 @@ class symbol(unicode):
   def __repr__(self):
     return "symbol(%s)" % unicode.__repr__(self)
 
+class DataException(Exception):
+  pass
+
+class UnmappedType:
+
+  def __init__(self, msg):
+    self.msg = msg
+
+  def __repr__(self):
+    return "UnmappedType(%s)" % self.msg
+
+class ulong(long):
+
+  def __repr__(self):
+    return "ulong(%s)" % long.__repr__(self)
+
+class timestamp(long):
+
+  def __repr__(self):
+    return "timestamp(%s)" % long.__repr__(self)
+
+class char(unicode):
+
+  def __repr__(self):
+    return "char(%s)" % unicode.__repr__(self)
+
+class Described(object):
+
+  def __init__(self, descriptor, value):
+    self.descriptor = descriptor
+    self.value = value
+
+  def __repr__(self):
+    return "Described(%r, %r)" % (self.descriptor, self.value)
+
+  def __eq__(self, o):
+    if isinstance(o, Described):
+      return self.descriptor == o.descriptor and self.value == o.value
+    else:
+      return False
+
+class Constant(object):
+
+  def __init__(self, name):
+    self.name = name
+
+  def __repr__(self):
+    return self.name
+
+UNDESCRIBED = Constant("UNDESCRIBED")
+
+class Array(object):
+
+  def __init__(self, descriptor, type, *elements):
+    self.descriptor = descriptor
+    self.type = type
+    self.elements = elements
+
+  def __repr__(self):
+    if self.elements:
+      els = ", %s"  % (", ".join(map(repr, self.elements)))
+    else:
+      els = ""
+    return "Array(%r, %r%s)" % (self.descriptor, self.type, els)
+
+  def __eq__(self, o):
+    if isinstance(o, Array):
+      return self.descriptor == o.descriptor and \
+          self.type == o.type and self.elements == o.elements
+    else:
+      return False
+
 class Data(object):
 
-  SYMBOL = None
+  NULL = JData.NULL
+  BOOL = JData.BOOL
+  UBYTE = JData.UBYTE
+  BYTE = JData.BYTE
+  USHORT = JData.USHORT
+  SHORT = JData.SHORT
+  UINT = JData.UINT
+  INT = JData.INT
+  CHAR = JData.CHAR
+  ULONG = JData.ULONG
+  LONG = JData.LONG
+  TIMESTAMP = JData.TIMESTAMP
+  FLOAT = JData.FLOAT
+  DOUBLE = JData.DOUBLE
+  DECIMAL32 = JData.DECIMAL32
+  DECIMAL64 = JData.DECIMAL64
+  DECIMAL128 = JData.DECIMAL128
+  UUID = JData.UUID
+  BINARY = JData.BINARY
+  STRING = JData.STRING
+  SYMBOL = JData.SYMBOL
+  DESCRIBED = JData.DESCRIPTOR
+  ARRAY = JData.ARRAY
+  LIST = JData.LIST
+  MAP = JData.MAP
+
+  def __init__(self, capacity=16):
+    self.impl = DataImpl(capacity)
 
-  def __init__(self, *args, **kwargs):
-    raise Skipped()
+  def clear(self):
+    self.impl.clear()
+
+  def rewind(self):
+    self.impl.rewind()
+
+  def next(self):
+    return self.impl.next()
+
+  def prev(self):
+    return self.impl.prev()
+
+  def enter(self):
+    return self.impl.enter()
+
+  def exit(self):
+    return self.impl.exit()
+
+  def type(self):
+    return self.impl.type()
+
+  def encode(self):
+    return _binary(self.impl.encode())
+
+  def decode(self, encoded):
+    try:
+      return self.impl.decode(ByteBuffer.wrap(encoded))
+    except DecodeException, e:
+      raise DataException(e.getMessage())
+
+  def put_list(self):
+    self.impl.putList()
+
+  def put_map(self):
+    self.impl.putMap()
+
+  def put_array(self, described, element_type):
+    self.impl.putArray(described, element_type)
+
+  def put_described(self):
+    self.impl.putDescriptor()
+
+  def put_null(self):
+    self.impl.putNull()
+
+  def put_bool(self, b):
+    self.impl.putBool(b)
+
+  def put_ubyte(self, ub):
+    self.impl.putUbyte(ub)
+
+  def put_byte(self, b):
+    self.impl.putByte(b)
+
+  def put_ushort(self, us):
+    self.impl.putUshort(us)
+
+  def put_short(self, s):
+    self.impl.putShort(s)
+
+  def put_uint(self, ui):
+    self.impl.putUint(ui)
+
+  def put_int(self, i):
+    self.impl.putInt(i)
+
+  def put_char(self, c):
+    self.impl.putChar(ord(c))
+
+  def put_ulong(self, ul):
+    if ul >= 2**63:
+      ul -= 2**64
+    self.impl.putUlong(ul)
+
+  def put_long(self, l):
+    self.impl.putLong(l)
+
+  def put_timestamp(self, t):
+    self.impl.putTimestamp(t)
+
+  def put_float(self, f):
+    self.impl.putFloat(float(f))
+
+  def put_double(self, d):
+    self.impl.putDouble(float(d))
+
+  def put_decimal32(self, d):
+    self.impl.putDecimal32(Decimal32(d))
+
+  def put_decimal64(self, d):
+    self.impl.putDecimal64(Decimal64(d))
+
+  def put_decimal128(self, d):
+    msb, lsb = struct.unpack(">qq", d)
+    self.impl.putDecimal128(Decimal128(msb, lsb))
+
+  def put_uuid(self, u):
+    self.impl.putUUID(JUUID.fromString(str(u)))
+
+  def put_binary(self, b):
+    self.impl.putBinary(b)
+
+  def put_string(self, s):
+    self.impl.putString(s)
+
+  def put_symbol(self, s):
+    self.impl.putSymbol(s)
+
+  def get_list(self):
+    return self.impl.getList()
+
+  def get_map(self):
+    return self.impl.getMap()
+
+  def get_array(self):
+    return self.impl.getArray(), self.impl.isArrayDescribed(), self.impl.getArrayType()
+
+  def is_described(self):
+    return self.impl.isDescribed()
+
+  def is_null(self):
+    return self.impl.isNull()
+
+  def get_bool(self):
+    return self.impl.getBool()
+
+  def get_ubyte(self):
+    return self.impl.getUbyte()
+
+  def get_byte(self):
+    return self.impl.getByte()
+
+  def get_ushort(self):
+    return self.impl.getUshort()
+
+  def get_short(self):
+    return self.impl.getShort()
+
+  def get_uint(self):
+    return self.impl.getUint()
+
+  def get_int(self):
+    return self.impl.getInt()
+
+  def get_char(self):
+    return char(unichr(self.impl.getChar()))
+
+  def get_ulong(self):
+    ul = self.impl.getUlong()
+    if ul < 0:
+      ul += 2**64
+    return ulong(ul)
+
+  def get_long(self):
+    return self.impl.getLong()
+
+  def get_timestamp(self):
+    return timestamp(self.impl.getTimestamp())
+
+  def get_float(self):
+    return self.impl.getFloat()
+
+  def get_double(self):
+    return self.impl.getDouble()
+
+  def get_decimal32(self):
+    d = self.impl.getDecimal32()
+    if d is None: return 0
+    return d.getBits()
+
+  def get_decimal64(self):
+    d = self.impl.getDecimal64()
+    if d is None: return 0
+    return d.getBits()
+
+  def get_decimal128(self):
+    d = self.impl.getDecimal128()
+    if d is None: return None
+    return struct.pack(">qq", d.getMostSignificantBits(), d.getLeastSignificantBits())
+
+  def get_uuid(self):
+    u = self.impl.getUUID()
+    if u is None: return None
+    return UUID(u.toString())
+
+  def get_binary(self):
+    b = self.impl.getBinary()
+    if b is None: return ""
+    return _binary(b)
+
+  def get_string(self):
+    s = self.impl.getString()
+    if s is None: return u""
+    return s
+
+  def get_symbol(self):
+    s = self.impl.getSymbol()
+    if s is None: return symbol("")
+    return symbol(s.toString())
+
+  def copy(self, src):
+    self.impl.copy(src.impl)
+
+  def format(self):
+    return self.impl.format()
+
+  def put_dict(self, d):
+    self.put_map()
+    self.enter()
+    try:
+      for k, v in d.items():
+        self.put_object(k)
+        self.put_object(v)
+    finally:
+      self.exit()
+
+  def get_dict(self):
+    if self.enter():
+      try:
+        result = {}
+        while self.next():
+          k = self.get_object()
+          if self.next():
+            v = self.get_object()
+          else:
+            v = None
+          result[k] = v
+      finally:
+        self.exit()
+      return result
+
+  def put_sequence(self, s):
+    self.put_list()
+    self.enter()
+    try:
+      for o in s:
+        self.put_object(o)
+    finally:
+      self.exit()
+
+  def get_sequence(self):
+    if self.enter():
+      try:
+        result = []
+        while self.next():
+          result.append(self.get_object())
+      finally:
+        self.exit()
+      return result
+
+  def get_py_described(self):
+    if self.enter():
+      try:
+        self.next()
+        descriptor = self.get_object()
+        self.next()
+        value = self.get_object()
+      finally:
+        self.exit()
+      return Described(descriptor, value)
+
+  def put_py_described(self, d):
+    self.put_described()
+    self.enter()
+    try:
+      self.put_object(d.descriptor)
+      self.put_object(d.value)
+    finally:
+      self.exit()
+
+  def get_py_array(self):
+    count, described, type = self.get_array()
+    if self.enter():
+      try:
+        if described:
+          self.next()
+          descriptor = self.get_object()
+        else:
+          descriptor = UNDESCRIBED
+        elements = []
+        while self.next():
+          elements.append(self.get_object())
+      finally:
+        self.exit()
+      return Array(descriptor, type, *elements)
+
+  def put_py_array(self, a):
+    self.put_array(a.descriptor != UNDESCRIBED, a.type)
+    self.enter()
+    try:
+      if a.descriptor != UNDESCRIBED:
+        self.put_object(a.descriptor)
+      for e in a.elements:
+        self.put_object(e)
+    finally:
+      self.exit()
+
+  put_mappings = {
+    None.__class__: lambda s, _: s.put_null(),
+    bool: put_bool,
+    dict: put_dict,
+    list: put_sequence,
+    tuple: put_sequence,
+    unicode: put_string,
+    str: put_binary,
+    symbol: put_symbol,
+    int: put_long,
+    char: put_char,
+    long: put_long,
+    ulong: put_ulong,
+    timestamp: put_timestamp,
+    float: put_double,
+    uuid.UUID: put_uuid,
+    Described: put_py_described,
+    Array: put_py_array
+    }
+  get_mappings = {
+    NULL: lambda s: None,
+    BOOL: get_bool,
+    BYTE: get_byte,
+    UBYTE: get_ubyte,
+    SHORT: get_short,
+    USHORT: get_ushort,
+    INT: get_int,
+    UINT: get_uint,
+    CHAR: get_char,
+    LONG: get_long,
+    ULONG: get_ulong,
+    TIMESTAMP: get_timestamp,
+    FLOAT: get_float,
+    DOUBLE: get_double,
+    DECIMAL32: get_decimal32,
+    DECIMAL64: get_decimal64,
+    DECIMAL128: get_decimal128,
+    UUID: get_uuid,
+    BINARY: get_binary,
+    STRING: get_string,
+    SYMBOL: get_symbol,
+    DESCRIBED: get_py_described,
+    ARRAY: get_py_array,
+    LIST: get_sequence,
+    MAP: get_dict
+    }
+
+  def put_object(self, obj):
+    putter = self.put_mappings[obj.__class__]
+    putter(self, obj)
+
+  def get_object(self):
+    type = self.type()
+    if type is None: return None
+    getter = self.get_mappings.get(type)
+    if getter:
+      return getter(self)
+    else:
+      return UnmappedType(str(type))
+
+def _binary(b):
+  return b.getArray()[b.getArrayOffset():b.getArrayOffset() + b.getLength()].tostring()
 
 class Timeout(Exception):
   pass
@@ -885,10 +1344,14 @@ __all__ = [
            "PENDING",
            "REJECTED",
            "PN_SESSION_WINDOW",
+           "UNDESCRIBED",
+           "Array",
            "Condition",
            "Connection",
            "Data",
+           "DataException",
            "Delivery",
+           "Described",
            "Endpoint",
            "Link",
            "Message",
@@ -905,8 +1368,12 @@ __all__ = [
            "SSLException",
            "SSLSessionDetails",
            "SSLUnavailable",
+           "char",
            "symbol",
            "Terminus",
            "Timeout",
+           "timestamp",
            "Transport",
-           "TransportException"]
+           "TransportException",
+           "ulong",
+           "UnmappedType"]
@@ -0,0 +1,247 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.DescribedType;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.UnsignedByte;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.amqp.UnsignedLong;
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Modified;
+import org.apache.qpid.proton.amqp.transport.Disposition;
+import org.apache.qpid.proton.amqp.transport.Flow;
+import org.apache.qpid.proton.amqp.transport.ReceiverSettleMode;
+import org.apache.qpid.proton.amqp.transport.Role;
+import org.apache.qpid.proton.amqp.transport.Transfer;
+import org.junit.Test;
+
+public class AbstractDescribedListTypeTest
+{
+    private final DecoderImpl _decoder = new DecoderImpl();
+    private final EncoderImpl _encoder = new EncoderImpl(_decoder);
+
+    public AbstractDescribedListTypeTest()
+    {
+        AMQPDefinedTypes.registerAllTypes(_decoder, _encoder);
+    }
+
+    private static class ListView implements DescribedType
+    {
+        private final long _descriptor;
+        private final List _fields;
+
+        private ListView(long descriptor, Object... fields)
+        {
+            _descriptor = descriptor;
+            _fields = Arrays.asList(fields);
+        }
+
+        public Object getDescriptor()
+        {
+            return UnsignedLong.valueOf(_descriptor);
+        }
+
+        public Object getDescribed()
+        {
+            return _fields;
+        }
+    }
+
+    private ByteBuffer encode(Object value)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        _encoder.setByteBuffer(buffer);
+        _encoder.writeObject(value);
+        buffer.flip();
+        return buffer;
+    }
+
+    private void assertEncodedAsList(Object value, ListView expected)
+    {
+        ByteBuffer encoded = encode(value);
+        assertEquals(encode(expected), encoded);
+
+        _decoder.setByteBuffer(encoded.duplicate());
+        Object decoded = _decoder.readObject();
+        assertEquals(value.getClass(), decoded.getClass());
+        assertEquals(encoded, encode(decoded));
+    }
+
+    @Test
+    public void testTransfer()
+    {
+        Transfer transfer = new Transfer();
+        transfer.setHandle(UnsignedInteger.valueOf(3));
+        transfer.setDeliveryId(UnsignedInteger.valueOf(70000));
+        transfer.setDeliveryTag(new Binary(new byte[] { 1, 2, 3 }));
+        transfer.setMessageFormat(UnsignedInteger.ZERO);
+        transfer.setSettled(Boolean.FALSE);
+        transfer.setRcvSettleMode(ReceiverSettleMode.SECOND);
+        assertEncodedAsList(transfer, new ListView(0x14L, UnsignedInteger.valueOf(3), UnsignedInteger.valueOf(70000),
+                                                   new Binary(new byte[] { 1, 2, 3 }), UnsignedInteger.ZERO,
+                                                   false, false, UnsignedByte.valueOf((byte) 1)));
+
+        transfer.setState(Accepted.getInstance());
+        transfer.setBatchable(true);
+        assertEncodedAsList(transfer, new ListView(0x14L, UnsignedInteger.valueOf(3), UnsignedInteger.valueOf(70000),
+                                                   new Binary(new byte[] { 1, 2, 3 }), UnsignedInteger.ZERO,
+                                                   false, false, UnsignedByte.valueOf((byte) 1),
+                                                   Accepted.getInstance(), false, false, true));
+    }
+
+    @Test
+    public void testFieldsTooLargeForOneByteSize()
+    {
+        Map annotations = new HashMap();
+        annotations.put(Symbol.valueOf("padding"), new String(new char[300]).replace((char) 0, (char) 32));
+        Modified modified = new Modified();
+        modified.setMessageAnnotations(annotations);
+
+        Disposition disposition = new Disposition();
+        disposition.setRole(Role.RECEIVER);
+        disposition.setFirst(UnsignedInteger.valueOf(5));
+        disposition.setState(modified);
+        ByteBuffer encoded = encode(disposition);
+        assertEquals(EncodingCodes.LIST32, encoded.get(3));
+        assertEncodedAsList(disposition, new ListView(0x15L, true, UnsignedInteger.valueOf(5), null, false, modified));
+
+        Flow flow = new Flow();
+        flow.setIncomingWindow(UnsignedInteger.valueOf(2048));
+        flow.setNextOutgoingId(UnsignedInteger.ONE);
+        flow.setOutgoingWindow(UnsignedInteger.MAX_VALUE);
+        flow.setProperties(annotations);
+        assertEncodedAsList(flow, new ListView(0x13L, null, UnsignedInteger.valueOf(2048), UnsignedInteger.ONE,
+                                               UnsignedInteger.MAX_VALUE, null, null, null, null, false, false,
+                                               annotations));
+    }
+
+    @Test
+    public void testUnsignedFieldValues()
+    {
+        Flow flow = new Flow();
+        flow.setIncomingWindowValue(0);
+        flow.setNextOutgoingIdValue(0x80000000L);
+        flow.setOutgoingWindowValue(0xFFFFFFFFL);
+        assertEquals(-1L, flow.getDeliveryCountValue());
+        assertEquals(null, flow.getDeliveryCount());
+        assertEquals(UnsignedInteger.valueOf(0x80000000L), flow.getNextOutgoingId());
+
+        ByteBuffer encoded = encode(flow);
+        assertEquals(EncodingCodes.UINT, encoded.get(8));
+        assertEncodedAsList(flow, new ListView(0x13L, null, UnsignedInteger.ZERO, UnsignedInteger.valueOf(0x80000000L),
+                                               UnsignedInteger.MAX_VALUE));
+
+        _decoder.setByteBuffer(encoded);
+        Flow decoded = (Flow) _decoder.readObject();
+        assertEquals(-1L, decoded.getNextIncomingIdValue());
+        assertEquals(0L, decoded.getIncomingWindowValue());
+        assertEquals(0x80000000L, decoded.getNextOutgoingIdValue());
+        assertEquals(0xFFFFFFFFL, decoded.getOutgoingWindowValue());
+    }
+
+    @Test
+    public void testReusedInstanceIsCleared()
+    {
+        Transfer full = new Transfer();
+        full.setHandle(UnsignedInteger.ONE);
+        full.setDeliveryId(UnsignedInteger.valueOf(7));
+        full.setDeliveryTag(new Binary(new byte[] { 7 }));
+        full.setMore(true);
+        full.setState(Accepted.getInstance());
+        Transfer bare = new Transfer();
+        bare.setHandle(UnsignedInteger.valueOf(2));
+
+        _decoder.setReuseInstances(true);
+        _decoder.setByteBuffer(encode(full));
+        Transfer first = (Transfer) _decoder.readObject();
+        assertEquals(Accepted.getInstance(), first.getState());
+        assertEquals(encode(full), encode(new Transfer(first)));
+
+        _decoder.setByteBuffer(encode(bare));
+        Transfer second = (Transfer) _decoder.readObject();
+        assertSame(first, second);
+        assertEquals(2L, second.getHandleValue());
+        assertEquals(-1L, second.getDeliveryIdValue());
+        assertNull(second.getDeliveryTag());
+        assertFalse(second.getMore());
+        assertNull(second.getState());
+    }
+
+    @Test
+    public void testReusedTransferKeepsARepeatedDeliveryTag()
+    {
+        Transfer transfer = new Transfer();
+        transfer.setHandle(UnsignedInteger.ONE);
+        transfer.setDeliveryId(UnsignedInteger.valueOf(7));
+        transfer.setDeliveryTag(new Binary(new byte[] { 1, 2, 3 }));
+        transfer.setMore(true);
+
+        _decoder.setReuseInstances(true);
+        _decoder.setByteBuffer(encode(transfer));
+        Binary first = ((Transfer) _decoder.readObject()).getDeliveryTag();
+
+        // the next frame of the delivery repeats the tag in an array of its own
+        transfer.setDeliveryTag(new Binary(new byte[] { 0, 1, 2, 3 }, 1, 3));
+        _decoder.setByteBuffer(encode(transfer));
+        assertSame(first, ((Transfer) _decoder.readObject()).getDeliveryTag());
+
+        transfer.setDeliveryTag(new Binary(new byte[] { 1, 2, 4 }));
+        _decoder.setByteBuffer(encode(transfer));
+        Binary other = ((Transfer) _decoder.readObject()).getDeliveryTag();
+        assertEquals(new Binary(new byte[] { 1, 2, 4 }), other);
+        assertEquals(new Binary(new byte[] { 1, 2, 3 }), first);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsignedFieldValueOutOfRange()
+    {
+        new Transfer().setDeliveryIdValue(0x100000000L);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMandatoryTransferHandleCannotBeUnset()
+    {
+        new Transfer().setHandleValue(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMandatoryFlowWindowCannotBeUnset()
+    {
+        new Flow().setIncomingWindowValue(-1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMandatoryDispositionFirstCannotBeUnset()
+    {
+        new Disposition().setFirstValue(-1);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.codec;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Array;
+
+import org.junit.Test;
+
+public class ClassTypeTableTest
+{
+    private final EncoderImpl _encoder = new EncoderImpl(new DecoderImpl());
+
+    private static Class[] classes(int count)
+    {
+        Class[] classes = new Class[count];
+        Class clazz = Object.class;
+        for(int i = 0; i < count; i++)
+        {
+            clazz = Array.newInstance(clazz, 0).getClass();
+            classes[i] = clazz;
+        }
+        return classes;
+    }
+
+    @Test
+    public void testMissIsRemembered()
+    {
+        ClassTypeTable table = new ClassTypeTable();
+        assertFalse(table.contains(String.class));
+        table.put(String.class, null);
+        assertTrue(table.contains(String.class));
+        assertNull(table.get(String.class));
+    }
+
+    @Test
+    public void testEntriesSurviveGrowthAndRemoval()
+    {
+        AMQPType stringType = _encoder.getType("");
+        AMQPType longType = _encoder.getType(1L);
+        ClassTypeTable table = new ClassTypeTable();
+        Class[] classes = classes(200);
+        for(int i = 0; i < classes.length; i++)
+        {
+            table.put(classes[i], i % 2 == 0 ? stringType : longType);
+        }
+        // removing every third class leaves holes in the runs of the ones probed past them
+        for(int i = 0; i < classes.length; i += 3)
+        {
+            table.remove(classes[i]);
+        }
+        for(int i = 0; i < classes.length; i++)
+        {
+            if(i % 3 == 0)
+            {
+                assertFalse(table.contains(classes[i]));
+            }
+            else
+            {
+                assertSame(i % 2 == 0 ? stringType : longType, table.get(classes[i]));
+            }
+        }
+    }
+
+    @Test
+    public void testPutReplacesAMiss()
+    {
+        AMQPType registered = _encoder.getType("");
+        ClassTypeTable table = new ClassTypeTable();
+        table.put(String.class, null);
+        table.put(String.class, registered);
+        assertSame(registered, table.get(String.class));
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.qpid.proton.amqp.DescribedType;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.amqp.transport.Attach;
+import org.apache.qpid.proton.amqp.transport.Role;
+import org.junit.Test;
+
+public class EncoderImplTest
+{
+    private final DecoderImpl _decoder = new DecoderImpl();
+    private final EncoderImpl _encoder = new EncoderImpl(_decoder);
+
+    public EncoderImplTest()
+    {
+        AMQPDefinedTypes.registerAllTypes(_decoder, _encoder);
+    }
+
+    private ByteBuffer encode(Object value)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        _encoder.setByteBuffer(buffer);
+        _encoder.writeObject(value);
+        buffer.flip();
+        return buffer;
+    }
+
+    private Object decode(ByteBuffer buffer)
+    {
+        _decoder.setByteBuffer(buffer.duplicate());
+        return _decoder.readObject();
+    }
+
+    private void assertSizeMatchesSizingPath(Object value, ByteBuffer encoded)
+    {
+        TypeEncoding encoding = _encoder.getType(value).getEncoding(value);
+        assertEquals(encoding.getConstructorSize() + encoding.getValueSize(value), encoded.remaining());
+    }
+
+    @Test
+    public void testSmallListUsesOneByteSize()
+    {
+        List list = Arrays.asList("a", Symbol.valueOf("b"), 1);
+        ByteBuffer encoded = encode(list);
+        assertEquals(EncodingCodes.LIST8, encoded.get(0));
+        assertEquals(encoded.remaining() - 2, encoded.get(1));
+        assertEquals(list, decode(encoded));
+        assertSizeMatchesSizingPath(list, encoded);
+    }
+
+    @Test
+    public void testNestedLargeListAndMapSizesAreBackPatched()
+    {
+        Map map = new LinkedHashMap();
+        List inner = new ArrayList();
+        for(int i = 0; i < 100; i++)
+        {
+            inner.add("element " + i);
+            map.put(Symbol.valueOf("key" + i), Arrays.asList(i, "value " + i));
+        }
+        List outer = Arrays.asList(inner, map, Arrays.asList(Arrays.asList(inner)));
+
+        ByteBuffer encoded = encode(outer);
+        assertEquals(EncodingCodes.LIST32, encoded.get(0));
+        assertEquals(encoded.remaining() - 5, encoded.getInt(1));
+        assertEquals(3, encoded.getInt(5));
+        assertEquals(outer, decode(encoded));
+        assertSizeMatchesSizingPath(outer, encoded);
+    }
+
+    private static class Described implements DescribedType
+    {
+        public Object getDescriptor()
+        {
+            return Symbol.valueOf("test:described");
+        }
+
+        public Object getDescribed()
+        {
+            return "described";
+        }
+    }
+
+    @Test
+    public void testTypesFoundByClassAreRemembered()
+    {
+        assertSame(_encoder.getTypeFromClass(List.class), _encoder.getTypeFromClass(LinkedList.class));
+        assertSame(_encoder.getTypeFromClass(Map.class), _encoder.getTypeFromClass(TreeMap.class));
+        assertNull(_encoder.getTypeFromClass(Described.class));
+        assertNull(_encoder.getTypeFromClass(Described.class));
+
+        Described described = new Described();
+        ByteBuffer unregistered = encode(described);
+
+        _encoder.registerDescribedType(Described.class, described.getDescriptor());
+        assertSame(_encoder.getType(described), _encoder.getTypeFromClass(Described.class));
+        assertEquals(unregistered, encode(described));
+    }
+
+    @Test
+    public void testEncodingWritesTheValueAsItIsWhenWritten()
+    {
+        // an encoding keeps nothing from getEncoding, so a list that changes before it is
+        // written is written with its new size
+        List list = new ArrayList(Arrays.asList("a"));
+        TypeEncoding encoding = _encoder.getType(list).getEncoding(list);
+        list.add("b");
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 10);
+        _encoder.setByteBuffer(buffer);
+        encoding.writeConstructor();
+        encoding.writeValue(list);
+        buffer.flip();
+
+        assertEquals(EncodingCodes.LIST8, buffer.get(0));
+        assertEquals(buffer.remaining() - 2, buffer.get(1));
+        assertEquals(list, decode(buffer));
+    }
+
+    @Test
+    public void testStringsAreWrittenAsUtf8() throws Exception
+    {
+        String[] strings = { "plain", "nul\u0000", "caf\u00e9", "\u20ac", "clef \ud834\udd1e",
+                             "unpaired \ud834 and \udd1e", new String(new char[300]).replace('\u0000', '\u00e9') };
+        for(String string : strings)
+        {
+            ByteBuffer encoded = encode(string);
+            assertSizeMatchesSizingPath(string, encoded);
+            byte[] utf8 = string.getBytes("UTF-8");
+            encoded.position(encoded.remaining() - utf8.length);
+            assertEquals(ByteBuffer.wrap(utf8), encoded);
+            encoded.rewind();
+            assertEquals(new String(utf8, "UTF-8"), decode(encoded));
+        }
+    }
+
+    @Test
+    public void testSymbolsAreDecodedFromTheirBytes()
+    {
+        Symbol accepted = Symbol.valueOf("amqp:accepted:list");
+        ByteBuffer encoded = encode(Arrays.asList(accepted, Symbol.valueOf("x-opt-a"), accepted));
+        List decoded = (List) decode(encoded);
+        assertSame(accepted, decoded.get(0));
+        assertSame(accepted, decoded.get(2));
+        assertSame(Symbol.valueOf("x-opt-a"), decoded.get(1));
+
+        for(int i = 0; i < 1000; i++)
+        {
+            Symbol symbol = Symbol.valueOf("symbol-" + i);
+            assertSame(symbol, decode(encode(symbol)));
+        }
+        Symbol longSymbol = Symbol.valueOf(new String(new char[200]).replace('\u0000', 's'));
+        assertSame(longSymbol, decode(encode(longSymbol)));
+    }
+
+    @Test
+    public void testPrimitiveArraysRoundTrip()
+    {
+        int[] ints = new int[1000];
+        long[] longs = new long[1000];
+        short[] shorts = new short[1000];
+        float[] floats = new float[1000];
+        double[] doubles = new double[1000];
+        char[] chars = new char[1000];
+        for(int i = 0; i < 1000; i++)
+        {
+            ints[i] = i * 100003;
+            longs[i] = i * 10000000019L;
+            shorts[i] = (short) (i * 31);
+            floats[i] = i / 3f;
+            doubles[i] = i / 7d;
+            chars[i] = (char) ('a' + i);
+        }
+        byte[] bytes = new byte[] { 1, -2, 3 };
+        int[] smallInts = new int[] { 1, -2, 3 };
+        long[] smallLongs = new long[] { 4, -5, 6 };
+
+        for(Object array : new Object[] { ints, longs, shorts, floats, doubles, chars, bytes, smallInts, smallLongs })
+        {
+            ByteBuffer encoded = encode(array);
+
+            ByteBuffer copy = ByteBuffer.allocate(encoded.remaining() + 1);
+            _encoder.setByteBuffer(new CompositeWritableBuffer(new WritableBuffer.ByteBufferWrapper(copy),
+                                                               new DroppingWritableBuffer()));
+            _encoder.writeObject(array);
+            copy.flip();
+            assertEquals(encoded, copy);
+
+            Object decoded = decode(encoded);
+            assertEquals(array.getClass(), decoded.getClass());
+            assertEquals(encoded, encode(decoded));
+        }
+    }
+
+    @Test(expected = DecodeException.class)
+    public void testArrayCountBeyondBufferIsRejected()
+    {
+        ByteBuffer encoded = encode(new long[] { Long.MAX_VALUE });
+        encoded.put(2, (byte) 200);
+        decode(encoded);
+    }
+
+    @Test
+    public void testSkipValueStepsOverValuesWithoutDecodingThem()
+    {
+        List large = new ArrayList();
+        for(int i = 0; i < 1000; i++)
+        {
+            large.add(Symbol.valueOf("s" + i));
+        }
+        Attach attach = new Attach();
+        attach.setName("link");
+        attach.setHandle(UnsignedInteger.ONE);
+        attach.setRole(Role.SENDER);
+
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        _encoder.setByteBuffer(buffer);
+        _encoder.writeObject(attach);
+        _encoder.writeObject(large);
+        _encoder.writeObject(new int[] { 1, 2, 3 });
+        _encoder.writeObject(null);
+        _encoder.writeObject("last");
+        buffer.flip();
+
+        _decoder.setByteBuffer(buffer);
+        for(int i = 0; i < 4; i++)
+        {
+            _decoder.skipValue();
+        }
+        assertEquals("last", _decoder.readObject());
+        assertEquals(0, buffer.remaining());
+    }
+
+    @Test(expected = DecodeException.class)
+    public void testSkipValuePastEndIsRejected()
+    {
+        ByteBuffer encoded = encode(Arrays.asList(1, 2, 3));
+        encoded.limit(encoded.limit() - 1);
+        _decoder.setByteBuffer(encoded);
+        _decoder.skipValue();
+    }
+}
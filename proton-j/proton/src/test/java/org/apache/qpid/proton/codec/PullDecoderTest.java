@@ -0,0 +1,180 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.codec;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.amqp.transport.Transfer;
+import org.junit.Test;
+
+public class PullDecoderTest
+{
+    private final DecoderImpl _decoder = new DecoderImpl();
+    private final EncoderImpl _encoder = new EncoderImpl(_decoder);
+
+    public PullDecoderTest()
+    {
+        AMQPDefinedTypes.registerAllTypes(_decoder, _encoder);
+    }
+
+    private ByteBuffer encode(Object... values)
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        _encoder.setByteBuffer(buffer);
+        for(Object value : values)
+        {
+            _encoder.writeObject(value);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void testFieldIsFoundInMapWithoutDecodingOtherEntries()
+    {
+        List big = new ArrayList();
+        for(int i = 0; i < 1000; i++)
+        {
+            big.add("element " + i);
+        }
+        Map map = new LinkedHashMap();
+        map.put(Symbol.valueOf("big"), big);
+        map.put(Symbol.valueOf("nested"), new LinkedHashMap());
+        map.put(Symbol.valueOf("wanted"), UnsignedInteger.valueOf(0x80000001L));
+        map.put("after", "caf\u00e9");
+
+        ByteBuffer encoded = encode(map, 7);
+        PullDecoder pull = new PullDecoder(encoded);
+        assertEquals(Data.Type.MAP, pull.next());
+        assertEquals(8, pull.getMap());
+        assertTrue(pull.enter());
+
+        while(pull.next() != null && !pull.contentEquals("wanted"))
+        {
+            pull.next();
+        }
+        assertEquals(Data.Type.SYMBOL, pull.type());
+        assertEquals(Symbol.valueOf("wanted"), pull.getSymbol());
+        assertEquals(Data.Type.UINT, pull.next());
+        assertEquals(0x80000001L, pull.getUint());
+        assertEquals(0, pull.getInt());
+
+        assertEquals(Data.Type.STRING, pull.next());
+        assertTrue(pull.contentEquals("after"));
+        assertFalse(pull.contentEquals("afte"));
+        assertEquals(Data.Type.STRING, pull.next());
+        assertTrue(pull.contentEquals("caf\u00e9"));
+        assertEquals("caf\u00e9", pull.getString());
+        assertNull(pull.next());
+
+        assertTrue(pull.exit());
+        assertEquals(Data.Type.MAP, pull.type());
+        assertEquals(Data.Type.INT, pull.next());
+        assertEquals(7, pull.getInt());
+        assertNull(pull.next());
+        assertFalse(pull.exit());
+        assertEquals(0, encoded.position());
+    }
+
+    @Test
+    public void testDescribedValuesAndArrays()
+    {
+        Transfer transfer = new Transfer();
+        transfer.setHandle(UnsignedInteger.valueOf(3));
+        transfer.setDeliveryTag(new Binary(new byte[] { 1, 2 }));
+
+        Data data = new DataImpl();
+        data.putArray(true, Data.Type.LONG);
+        data.enter();
+        data.putSymbol("descriptor");
+        data.putLong(-1L);
+        data.putLong(1L << 40);
+        data.exit();
+        ByteBuffer describedArray = data.encode().asByteBuffer();
+
+        ByteBuffer encoded = ByteBuffer.allocate(1024);
+        encoded.put(encode(transfer, new int[] { 1, 2, 3 }));
+        encoded.put(describedArray);
+        encoded.flip();
+
+        PullDecoder pull = new PullDecoder(encoded);
+        assertEquals(Data.Type.DESCRIPTOR, pull.next());
+        assertTrue(pull.enter());
+        assertEquals(Data.Type.ULONG, pull.next());
+        assertEquals(0x14L, pull.getUlong());
+        assertEquals(Data.Type.LIST, pull.next());
+        assertTrue(pull.enter());
+        assertEquals(Data.Type.UINT, pull.next());
+        assertEquals(3L, pull.getUint());
+        assertEquals(Data.Type.NULL, pull.next());
+        assertEquals(Data.Type.BINARY, pull.next());
+        assertEquals(new Binary(new byte[] { 1, 2 }), pull.getBinary());
+        assertTrue(pull.exit());
+        assertTrue(pull.exit());
+        assertEquals(Data.Type.DESCRIPTOR, pull.type());
+
+        assertEquals(Data.Type.ARRAY, pull.next());
+        assertEquals(3, pull.getArray());
+        assertEquals(Data.Type.INT, pull.getArrayType());
+        assertFalse(pull.isArrayDescribed());
+        assertTrue(pull.enter());
+        int sum = 0;
+        while(pull.next() != null)
+        {
+            sum += pull.getInt();
+        }
+        assertEquals(6, sum);
+        assertTrue(pull.exit());
+
+        assertEquals(Data.Type.ARRAY, pull.next());
+        assertEquals(2, pull.getArray());
+        assertTrue(pull.isArrayDescribed());
+        assertEquals(Data.Type.LONG, pull.getArrayType());
+        assertTrue(pull.enter());
+        assertEquals(Data.Type.SYMBOL, pull.next());
+        assertTrue(pull.contentEquals("descriptor"));
+        assertEquals(Data.Type.LONG, pull.next());
+        assertEquals(-1L, pull.getLong());
+        assertEquals(Data.Type.LONG, pull.next());
+        assertEquals(1L << 40, pull.getLong());
+        assertNull(pull.next());
+        assertTrue(pull.exit());
+        assertNull(pull.next());
+    }
+
+    @Test(expected = DecodeException.class)
+    public void testTruncatedValueIsRejected()
+    {
+        ByteBuffer encoded = encode("truncated");
+        encoded.limit(encoded.limit() - 1);
+        new PullDecoder(encoded).next();
+    }
+}
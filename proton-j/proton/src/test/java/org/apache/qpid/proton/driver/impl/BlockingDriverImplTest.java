@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.driver.impl;
+
+import static org.apache.qpid.proton.driver.impl.LoopbackPeer.HOST;
+import static org.apache.qpid.proton.driver.impl.LoopbackPeer.MESSAGE;
+import static org.apache.qpid.proton.driver.impl.LoopbackPeer.TIMEOUT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.qpid.proton.driver.Connector;
+import org.apache.qpid.proton.engine.Connection;
+import org.junit.After;
+import org.junit.Test;
+
+public class BlockingDriverImplTest
+{
+    private static final ThreadFactory DAEMONS = new ThreadFactory()
+    {
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private final LoopbackPeer.Server _server = new LoopbackPeer.Server();
+    private BlockingDriverImpl _serverDriver;
+    private LoopbackPeer.Loop _serverLoop;
+    private BlockingDriverImpl _clientDriver;
+    private LoopbackPeer.Loop _clientLoop;
+
+    @After
+    public void tearDown() throws Exception
+    {
+        if(_clientLoop != null)
+        {
+            assertNull(_clientLoop.stopLoop());
+        }
+        if(_serverLoop != null)
+        {
+            assertNull(_serverLoop.stopLoop());
+        }
+        if(_clientDriver != null)
+        {
+            _clientDriver.destroy();
+        }
+        _serverDriver.destroy();
+    }
+
+    @Test
+    public void testHandedOutConnectorsExchangeATransfer() throws Exception
+    {
+        int port = LoopbackPeer.freePort();
+        _serverDriver = new BlockingDriverImpl();
+        _serverDriver.createListener(HOST, port, null);
+        _serverLoop = new LoopbackPeer.Loop(_serverDriver, _server);
+        _serverLoop.start();
+
+        LoopbackPeer.Client client = new LoopbackPeer.Client(true);
+        _clientDriver = new BlockingDriverImpl();
+        client.opened(_clientDriver.createConnector(HOST, port, null));
+        _clientLoop = new LoopbackPeer.Loop(_clientDriver, client);
+        _clientLoop.start();
+
+        client.awaitSettled();
+        client.awaitClosed();
+        _server.awaitClosed();
+        assertEquals(Collections.singletonList(MESSAGE), _server.received());
+    }
+
+    @Test
+    public void testHandlersExchangeATransfer() throws Exception
+    {
+        int port = LoopbackPeer.freePort();
+        _serverDriver = new BlockingDriverImpl(DAEMONS, _server);
+        _serverDriver.createListener(HOST, port, null);
+
+        LoopbackPeer.Client client = new LoopbackPeer.Client(true);
+        _clientDriver = new BlockingDriverImpl(DAEMONS, client);
+        _clientDriver.createConnector(HOST, port, null);
+
+        client.awaitSettled();
+        client.awaitClosed();
+        _server.awaitClosed();
+        assertEquals(Collections.singletonList(MESSAGE), _server.received());
+    }
+
+    @Test
+    public void testExecuteRunsTaskOnTheConnectorsThread() throws Exception
+    {
+        int port = LoopbackPeer.freePort();
+        _serverDriver = new BlockingDriverImpl(DAEMONS, _server);
+        _serverDriver.createListener(HOST, port, null);
+
+        final LoopbackPeer.Client client = new LoopbackPeer.Client(false);
+        _clientDriver = new BlockingDriverImpl(DAEMONS, client);
+        Connector connector = _clientDriver.createConnector(HOST, port, null);
+        client.awaitCredit();
+        assertEquals(0, _server.received().size());
+
+        // nothing more arrives from the server, so only the task gets the message written
+        _clientDriver.execute(connector, new Runnable()
+        {
+            public void run()
+            {
+                client.send();
+            }
+        });
+        client.awaitSettled();
+        client.awaitClosed();
+        _server.awaitClosed();
+        assertEquals(Collections.singletonList(MESSAGE), _server.received());
+    }
+
+    @Test
+    public void testDestroyLeavesTheCloseToTheConnectorsThread() throws Exception
+    {
+        final CountDownLatch processing = new CountDownLatch(1);
+        final CountDownLatch resume = new CountDownLatch(1);
+        final CountDownLatch closed = new CountDownLatch(1);
+        final AtomicReference<Connector> serverConnector = new AtomicReference<Connector>();
+        LoopbackPeer.Server server = new LoopbackPeer.Server()
+        {
+            @Override
+            public void process(Connector connector) throws IOException
+            {
+                serverConnector.set(connector);
+                super.process(connector);
+                if(connector.isClosed())
+                {
+                    closed.countDown();
+                }
+            }
+
+            @Override
+            void processEvents(Connection connection)
+            {
+                super.processEvents(connection);
+                if(!received().isEmpty() && processing.getCount() > 0)
+                {
+                    // holds the connector's thread in the handler with the disposition unsent
+                    processing.countDown();
+                    try
+                    {
+                        resume.await(TIMEOUT, TimeUnit.SECONDS);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        int port = LoopbackPeer.freePort();
+        _serverDriver = new BlockingDriverImpl(DAEMONS, server);
+        _serverDriver.createListener(HOST, port, null);
+
+        LoopbackPeer.Client client = new LoopbackPeer.Client(true);
+        _clientDriver = new BlockingDriverImpl(DAEMONS, client);
+        _clientDriver.createConnector(HOST, port, null);
+        assertTrue("message was not received", processing.await(TIMEOUT, TimeUnit.SECONDS));
+
+        _serverDriver.destroy();
+        assertFalse("connector was closed while its handler was processing it",
+                    serverConnector.get().isClosed());
+        resume.countDown();
+        assertTrue("connector was not closed", closed.await(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testExecuteNeedsAHandler() throws Exception
+    {
+        _serverDriver = new BlockingDriverImpl();
+        Connector connector = _serverDriver.createConnector(HOST, LoopbackPeer.freePort(), null);
+        _serverDriver.execute(connector, new Runnable()
+        {
+            public void run()
+            {
+            }
+        });
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.driver.impl;
+
+import static org.apache.qpid.proton.driver.impl.LoopbackPeer.HOST;
+import static org.apache.qpid.proton.driver.impl.LoopbackPeer.MESSAGE;
+import static org.apache.qpid.proton.driver.impl.LoopbackPeer.TIMEOUT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.qpid.proton.driver.Connector;
+import org.apache.qpid.proton.engine.Sasl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DriverImplTest
+{
+    private static final String[] ANONYMOUS = { "ANONYMOUS" };
+
+    // whether the server authenticates the connections it accepts
+    private volatile boolean _sasl;
+    private final LoopbackPeer.Server _server = new LoopbackPeer.Server()
+    {
+        @Override
+        public void opened(Connector connector)
+        {
+            super.opened(connector);
+            if(_sasl)
+            {
+                Sasl sasl = connector.sasl();
+                sasl.server();
+                sasl.setMechanisms(ANONYMOUS);
+            }
+        }
+
+        @Override
+        public void process(Connector connector) throws IOException
+        {
+            connector.process();
+            // the outcome is decided between reads, so nothing but the connection's
+            // notification gets it written
+            Sasl sasl = _sasl ? connector.sasl() : null;
+            if(sasl != null && sasl.getRemoteMechanisms().length > 0
+               && sasl.getOutcome() == Sasl.SaslOutcome.PN_SASL_NONE)
+            {
+                sasl.done(Sasl.SaslOutcome.PN_SASL_OK);
+            }
+            super.process(connector);
+        }
+    };
+    private DriverImpl _serverDriver;
+    private LoopbackPeer.Loop _serverLoop;
+    private DriverImpl _clientDriver;
+    private int _port;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        _port = LoopbackPeer.freePort();
+        _serverDriver = new DriverImpl();
+        _serverDriver.createListener(HOST, _port, null);
+        _serverLoop = new LoopbackPeer.Loop(_serverDriver, _server);
+        _serverLoop.start();
+        _clientDriver = new DriverImpl();
+    }
+
+    @After
+    public void tearDown() throws Exception
+    {
+        assertNull(_serverLoop.stopLoop());
+        _serverDriver.destroy();
+        _clientDriver.destroy();
+    }
+
+    /**
+     * Processes whatever connectors the client's driver hands out until the latch is released.
+     */
+    @SuppressWarnings("rawtypes")
+    private void pump(LoopbackPeer.Client client, CountDownLatch until) throws Exception
+    {
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT);
+        while(until.getCount() > 0 && System.currentTimeMillis() < deadline)
+        {
+            _clientDriver.doWait(50);
+            for(Connector c = _clientDriver.connector(); c != null; c = _clientDriver.connector())
+            {
+                client.process(c);
+            }
+        }
+        assertEquals(0, until.getCount());
+    }
+
+    @Test
+    public void testHandedOutConnectorsExchangeATransfer() throws Exception
+    {
+        LoopbackPeer.Client client = new LoopbackPeer.Client(true);
+        client.opened(_clientDriver.createConnector(HOST, _port, null));
+        LoopbackPeer.Loop clientLoop = new LoopbackPeer.Loop(_clientDriver, client);
+        clientLoop.start();
+
+        client.awaitSettled();
+        client.awaitClosed();
+        _server.awaitClosed();
+        assertNull(clientLoop.stopLoop());
+        assertEquals(Collections.singletonList(MESSAGE), _server.received());
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void testSaslOutputIsWrittenWithoutIO() throws Exception
+    {
+        _sasl = true;
+        LoopbackPeer.Client client = new LoopbackPeer.Client(true);
+        Connector connector = _clientDriver.createConnector(HOST, _port, null);
+        client.opened(connector);
+        Sasl sasl = connector.sasl();
+        sasl.client();
+        sasl.setMechanisms(ANONYMOUS);
+        LoopbackPeer.Loop clientLoop = new LoopbackPeer.Loop(_clientDriver, client);
+        clientLoop.start();
+
+        client.awaitSettled();
+        client.awaitClosed();
+        _server.awaitClosed();
+        assertNull(clientLoop.stopLoop());
+        assertEquals(Sasl.SaslOutcome.PN_SASL_OK, sasl.getOutcome());
+        assertEquals(Collections.singletonList(MESSAGE), _server.received());
+    }
+
+    @Test
+    @SuppressWarnings("rawtypes")
+    public void testOnlyConnectorsWithWorkAreHandedOut() throws Exception
+    {
+        LoopbackPeer.Client client = new LoopbackPeer.Client(false);
+        Connector connector = _clientDriver.createConnector(HOST, _port, null);
+        client.opened(connector);
+        pump(client, client._credited);
+
+        // the rest of the handshake may still be arriving, after which nothing comes until the
+        // client sends
+        for(int i = 0; i < 20; i++)
+        {
+            _clientDriver.doWait(100);
+            Connector c = _clientDriver.connector();
+            if(c == null)
+            {
+                break;
+            }
+            client.process(c);
+        }
+        _clientDriver.doWait(100);
+        assertNull("an idle connector was handed out", _clientDriver.connector());
+
+        // a change made to the connection outside of processing queues its connector
+        client.send();
+        assertSame(connector, _clientDriver.connector());
+        connector.process();
+
+        // input taken by processing the connector outside of connector() still gets it handed
+        // out, so that the application sees what was read
+        _clientDriver.doWait(TimeUnit.SECONDS.toMillis(TIMEOUT));
+        connector.process();
+        assertSame(connector, _clientDriver.connector());
+        client.process(connector);
+
+        pump(client, client._settled);
+        pump(client, client._closed);
+        _server.awaitClosed();
+        assertEquals(Collections.singletonList(MESSAGE), _server.received());
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.driver.impl;
+
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.driver.Connector;
+import org.apache.qpid.proton.driver.Driver;
+import org.apache.qpid.proton.driver.Listener;
+import org.apache.qpid.proton.engine.Connection;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+import org.apache.qpid.proton.engine.impl.ConnectionImpl;
+import org.apache.qpid.proton.engine.impl.TransportImpl;
+
+/**
+ * One end of a loopback exchange, driven either by a driver's handler or by a thread taking
+ * listeners and connectors from a driver. The client opens a link, sends one message and closes
+ * the connection once the server has settled it. The server accepts whatever it is sent.
+ * Other modules' driver tests share it through this module's test jar, adapting it to their
+ * own handler interfaces.
+ */
+public abstract class LoopbackPeer implements ShardedDriverImpl.Handler, BlockingDriverImpl.Handler
+{
+    public static final String HOST = "127.0.0.1";
+    public static final String MESSAGE = "hello";
+    public static final long TIMEOUT = 10;
+
+    final CountDownLatch _closed = new CountDownLatch(1);
+
+    public void opened(Connector connector)
+    {
+        Connection connection = new ConnectionImpl();
+        connector.setConnection(connection);
+        connection.open();
+    }
+
+    public void process(Connector connector) throws IOException
+    {
+        connector.process();
+        Connection connection = connector.getConnection();
+        processEvents(connection);
+        if(connection.getRemoteState() == EndpointState.CLOSED)
+        {
+            if(connection.getLocalState() == EndpointState.ACTIVE)
+            {
+                connection.close();
+            }
+            // writes whatever is left, the close included, before closing the socket
+            connector.close();
+            _closed.countDown();
+        }
+        if(connector.isClosed())
+        {
+            connector.destroy();
+        }
+        else
+        {
+            connector.process();
+        }
+    }
+
+    abstract void processEvents(Connection connection);
+
+    public void awaitClosed() throws InterruptedException
+    {
+        assertTrue("connection was not closed", _closed.await(TIMEOUT, TimeUnit.SECONDS));
+    }
+
+    public static int freePort() throws IOException
+    {
+        ServerSocket socket = new ServerSocket(0);
+        try
+        {
+            return socket.getLocalPort();
+        }
+        finally
+        {
+            socket.close();
+        }
+    }
+
+    public static class Server extends LoopbackPeer
+    {
+        private final List<String> _received = new CopyOnWriteArrayList<String>();
+
+        /**
+         * @return the messages received so far
+         */
+        public List<String> received()
+        {
+            return _received;
+        }
+
+        void processEvents(Connection connection)
+        {
+            EnumSet<EndpointState> uninitialized = EnumSet.of(EndpointState.UNINITIALIZED);
+            EnumSet<EndpointState> any = EnumSet.allOf(EndpointState.class);
+            for(Session s = connection.sessionHead(uninitialized, any); s != null; s = connection.sessionHead(uninitialized, any))
+            {
+                s.open();
+            }
+            for(Link l = connection.linkHead(uninitialized, any); l != null; l = connection.linkHead(uninitialized, any))
+            {
+                l.setSource(l.getRemoteSource());
+                l.setTarget(l.getRemoteTarget());
+                l.open();
+                if(l instanceof Receiver)
+                {
+                    ((Receiver) l).flow(10);
+                }
+            }
+            Delivery delivery = connection.getWorkHead();
+            while(delivery != null)
+            {
+                Delivery next = delivery.getWorkNext();
+                if(delivery.isReadable())
+                {
+                    receive(delivery);
+                }
+                delivery = next;
+            }
+        }
+
+        private void receive(Delivery delivery)
+        {
+            Receiver receiver = (Receiver) delivery.getLink();
+            StringBuilder message = (StringBuilder) delivery.getContext();
+            if(message == null)
+            {
+                message = new StringBuilder();
+                delivery.setContext(message);
+            }
+            byte[] buffer = new byte[256];
+            int count;
+            while((count = receiver.recv(buffer, 0, buffer.length)) > 0)
+            {
+                message.append(new String(buffer, 0, count));
+            }
+            if(count == TransportImpl.END_OF_STREAM)
+            {
+                _received.add(message.toString());
+                delivery.disposition(Accepted.getInstance());
+                delivery.settle();
+            }
+        }
+    }
+
+    public static final class Client extends LoopbackPeer
+    {
+        final CountDownLatch _credited = new CountDownLatch(1);
+        final CountDownLatch _settled = new CountDownLatch(1);
+        // whether the message goes out as soon as there is credit, or waits for send()
+        private final boolean _sendOnCredit;
+        private Sender _sender;
+        private Delivery _delivery;
+
+        public Client(boolean sendOnCredit)
+        {
+            _sendOnCredit = sendOnCredit;
+        }
+
+        @Override
+        public void opened(Connector connector)
+        {
+            super.opened(connector);
+            Session session = connector.getConnection().session();
+            session.open();
+            _sender = session.sender("loopback");
+            _sender.open();
+        }
+
+        void processEvents(Connection connection)
+        {
+            if(_sender.getCredit() > 0)
+            {
+                _credited.countDown();
+                if(_sendOnCredit)
+                {
+                    send();
+                }
+            }
+            if(_delivery != null && _delivery.getRemoteState() != null && !_delivery.isSettled())
+            {
+                _delivery.settle();
+                connection.close();
+                _settled.countDown();
+            }
+        }
+
+        /**
+         * Sends the message, which must happen on the thread that processes the connector.
+         */
+        public void send()
+        {
+            if(_delivery == null)
+            {
+                _delivery = _sender.delivery(new byte[] { 1 });
+                byte[] message = MESSAGE.getBytes();
+                _sender.send(message, 0, message.length);
+                _sender.advance();
+            }
+        }
+
+        public void awaitCredit() throws InterruptedException
+        {
+            assertTrue("no credit was granted", _credited.await(TIMEOUT, TimeUnit.SECONDS));
+        }
+
+        public void awaitSettled() throws InterruptedException
+        {
+            assertTrue("message was not settled", _settled.await(TIMEOUT, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * A thread that services a driver which hands out its listeners and connectors, as an
+     * application without a handler would.
+     */
+    public static final class Loop extends Thread
+    {
+        private final Driver _driver;
+        private final LoopbackPeer _peer;
+        private final AtomicReference<Throwable> _failure = new AtomicReference<Throwable>();
+        private volatile boolean _stopped;
+
+        public Loop(Driver driver, LoopbackPeer peer)
+        {
+            _driver = driver;
+            _peer = peer;
+            setDaemon(true);
+        }
+
+        @SuppressWarnings("rawtypes")
+        public void run()
+        {
+            try
+            {
+                while(!_stopped)
+                {
+                    _driver.doWait(50);
+                    for(Listener l = _driver.listener(); l != null; l = _driver.listener())
+                    {
+                        for(Connector c = l.accept(); c != null; c = l.accept())
+                        {
+                            _peer.opened(c);
+                        }
+                    }
+                    for(Connector c = _driver.connector(); c != null; c = _driver.connector())
+                    {
+                        _peer.process(c);
+                    }
+                }
+            }
+            catch(Throwable e)
+            {
+                _failure.set(e);
+            }
+        }
+
+        public Throwable stopLoop() throws InterruptedException
+        {
+            _stopped = true;
+            _driver.wakeup();
+            join(TimeUnit.SECONDS.toMillis(TIMEOUT));
+            return _failure.get();
+        }
+    }
+}
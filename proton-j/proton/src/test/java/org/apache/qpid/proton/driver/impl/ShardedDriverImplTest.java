@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.driver.impl;
+
+import static org.apache.qpid.proton.driver.impl.LoopbackPeer.HOST;
+import static org.apache.qpid.proton.driver.impl.LoopbackPeer.MESSAGE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.Collections;
+
+import org.apache.qpid.proton.driver.Connector;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ShardedDriverImplTest
+{
+    private final LoopbackPeer.Server _server = new LoopbackPeer.Server();
+    private ShardedDriverImpl _serverDriver;
+    private ShardedDriverImpl _clientDriver;
+    private int _port;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        _port = LoopbackPeer.freePort();
+        _serverDriver = new ShardedDriverImpl(2, _server);
+        _serverDriver.createListener(HOST, _port, null);
+    }
+
+    @After
+    public void tearDown()
+    {
+        if(_clientDriver != null)
+        {
+            _clientDriver.destroy();
+        }
+        _serverDriver.destroy();
+    }
+
+    @Test
+    public void testLoopsExchangeATransfer() throws Exception
+    {
+        LoopbackPeer.Client client = new LoopbackPeer.Client(true);
+        _clientDriver = new ShardedDriverImpl(2, client);
+        _clientDriver.createConnector(HOST, _port, null);
+
+        client.awaitSettled();
+        client.awaitClosed();
+        _server.awaitClosed();
+        assertEquals(Collections.singletonList(MESSAGE), _server.received());
+    }
+
+    @Test
+    public void testExecuteRunsTaskOnTheConnectorsLoop() throws Exception
+    {
+        final LoopbackPeer.Client client = new LoopbackPeer.Client(false);
+        _clientDriver = new ShardedDriverImpl(2, client);
+        Connector connector = _clientDriver.createConnector(HOST, _port, null);
+        client.awaitCredit();
+        assertEquals(0, _server.received().size());
+
+        // nothing more arrives from the server, so only the task's output gets the loop going
+        _clientDriver.execute(connector, new Runnable()
+        {
+            public void run()
+            {
+                client.send();
+            }
+        });
+        client.awaitSettled();
+        client.awaitClosed();
+        _server.awaitClosed();
+        assertEquals(Collections.singletonList(MESSAGE), _server.received());
+    }
+
+    @Test
+    public void testDriverHandsOutNothing() throws Exception
+    {
+        _serverDriver.doWait(10);
+        assertNull(_serverDriver.listener());
+        assertNull(_serverDriver.connector());
+    }
+}
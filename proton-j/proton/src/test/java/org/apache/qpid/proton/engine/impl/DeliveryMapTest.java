@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class DeliveryMapTest
+{
+    private final SenderImpl _sender = new ConnectionImpl().session().sender("sender");
+    private int _tag;
+
+    private DeliveryImpl createDelivery()
+    {
+        return _sender.delivery(new byte[] { (byte) (_tag >> 8), (byte) _tag++ });
+    }
+
+    @Test
+    public void testSequentialIdsWrappingPastMaxValue()
+    {
+        DeliveryMap map = new DeliveryMap();
+        DeliveryImpl[] deliveries = new DeliveryImpl[1000];
+        int first = -500;
+        for(int i = 0; i < deliveries.length; i++)
+        {
+            deliveries[i] = createDelivery();
+            map.put(first + i, deliveries[i]);
+        }
+        assertEquals(deliveries.length, map.size());
+        for(int i = 0; i < deliveries.length; i++)
+        {
+            assertSame(deliveries[i], map.get(first + i));
+        }
+        assertNull(map.get(first - 1));
+        assertNull(map.get(first + deliveries.length));
+
+        for(int i = 0; i < deliveries.length; i += 2)
+        {
+            assertSame(deliveries[i], map.remove(first + i));
+        }
+        assertEquals(deliveries.length / 2, map.size());
+        for(int i = 0; i < deliveries.length; i++)
+        {
+            assertSame(i % 2 == 0 ? null : deliveries[i], map.get(first + i));
+        }
+    }
+
+    @Test
+    public void testMatchesHashMapUnderRandomOperations()
+    {
+        Random random = new Random(0);
+        DeliveryMap map = new DeliveryMap();
+        Map<Integer, DeliveryImpl> expected = new HashMap<Integer, DeliveryImpl>();
+        DeliveryImpl[] deliveries = new DeliveryImpl[16];
+        for(int i = 0; i < deliveries.length; i++)
+        {
+            deliveries[i] = createDelivery();
+        }
+
+        for(int i = 0; i < 100000; i++)
+        {
+            // keys colliding in the low bits exercise the probing and gap closing
+            int id = random.nextInt(512) << (random.nextBoolean() ? 0 : 20);
+            if(random.nextInt(3) == 0)
+            {
+                assertSame(expected.remove(id), map.remove(id));
+            }
+            else
+            {
+                DeliveryImpl delivery = deliveries[random.nextInt(deliveries.length)];
+                expected.put(id, delivery);
+                map.put(id, delivery);
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for(int id = 0; id < 512; id++)
+        {
+            assertSame(expected.get(id), map.get(id));
+            assertSame(expected.get(id << 20), map.get(id << 20));
+        }
+
+        int found = 0;
+        for(int slot = 0; slot < map.capacity(); slot++)
+        {
+            if(map.getAt(slot) != null)
+            {
+                assertSame(expected.get(map.idAt(slot)), map.getAt(slot));
+                found++;
+            }
+        }
+        assertEquals(expected.size(), found);
+    }
+}
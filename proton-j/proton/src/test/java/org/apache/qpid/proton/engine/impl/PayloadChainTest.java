@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class PayloadChainTest
+{
+    private static byte[] bytes(int offset, int length)
+    {
+        byte[] bytes = new byte[length];
+        for(int i = 0; i < length; i++)
+        {
+            bytes[i] = (byte) (offset + i);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testAppendedBytesAreReadBackInOrderAcrossSegments()
+    {
+        PayloadChain chain = new PayloadChain();
+        int total = 0;
+        for(int length = 1; length < 2000; length *= 3)
+        {
+            chain.append(bytes(total, length), 0, length);
+            total += length;
+        }
+        assertEquals(total, chain.size());
+
+        byte[] read = new byte[total];
+        int offset = 0;
+        while(offset < total)
+        {
+            offset += chain.read(read, offset, Math.min(100, total - offset));
+        }
+        assertArrayEquals(bytes(0, total), read);
+        assertEquals(0, chain.size());
+        assertEquals(0, chain.read(read, 0, total));
+    }
+
+    @Test
+    public void testAppendCopiesButAppendSharedDoesNot()
+    {
+        PayloadChain chain = new PayloadChain();
+        byte[] copied = bytes(0, 10);
+        byte[] shared = bytes(10, 10);
+        chain.append(copied, 0, copied.length);
+        chain.appendShared(shared, 0, shared.length);
+        Arrays.fill(copied, (byte) 0);
+        shared[0] = 99;
+
+        byte[] read = new byte[20];
+        assertEquals(20, chain.read(read, 0, read.length));
+        byte[] expected = bytes(0, 20);
+        expected[10] = 99;
+        assertArrayEquals(expected, read);
+    }
+
+    @Test
+    public void testUnshareCopiesTheUnreadBytesOfAnArray()
+    {
+        PayloadChain chain = new PayloadChain();
+        byte[] buffer = bytes(0, 100);
+        byte[] other = bytes(100, 10);
+        chain.appendShared(buffer, 10, 20);
+        chain.appendShared(other, 0, other.length);
+        chain.appendShared(buffer, 50, 20);
+        byte[] read = new byte[5];
+        chain.read(read, 0, read.length);
+
+        chain.unshare(buffer);
+        Arrays.fill(buffer, (byte) 0);
+        other[0] = 99;
+
+        read = new byte[45];
+        assertEquals(45, chain.read(read, 0, read.length));
+        byte[] expected = new byte[45];
+        System.arraycopy(bytes(15, 15), 0, expected, 0, 15);
+        System.arraycopy(other, 0, expected, 15, 10);
+        System.arraycopy(bytes(50, 20), 0, expected, 25, 20);
+        assertArrayEquals(expected, read);
+    }
+
+    @Test
+    public void testHeadMergesLeadingSegmentsUpToWanted()
+    {
+        PayloadChain chain = new PayloadChain();
+        assertNull(chain.head(100));
+        for(int i = 0; i < 10; i++)
+        {
+            chain.appendShared(bytes(i * 30, 30), 0, 30);
+        }
+
+        ByteBuffer head = chain.head(100);
+        assertEquals(100, head.remaining());
+        byte[] first = new byte[100];
+        head.get(first, 0, 60);
+        chain.skip(60);
+        assertEquals(240, chain.size());
+
+        head = chain.head(1000);
+        assertEquals(240, head.remaining());
+        byte[] rest = new byte[240];
+        head.get(rest);
+        chain.skip(240);
+        assertArrayEquals(bytes(60, 240), rest);
+        assertEquals(0, chain.size());
+        assertNull(chain.head(100));
+    }
+}
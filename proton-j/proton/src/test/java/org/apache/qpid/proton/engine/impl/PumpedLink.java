@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import java.util.EnumSet;
+
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Link;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.engine.Session;
+
+/**
+ * A client and a server connection whose transports are joined by a {@link TransportPump}, with
+ * a link from a sender on the client to a receiver on the server.
+ */
+final class PumpedLink
+{
+    private final ConnectionImpl _client = new ConnectionImpl();
+    private final TransportImpl _clientTransport = new TransportImpl();
+    private final ConnectionImpl _server = new ConnectionImpl();
+    private final TransportImpl _serverTransport = new TransportImpl();
+    private final int _maxRead;
+    private Sender _sender;
+    private Receiver _receiver;
+
+    /**
+     * @param maxRead the most bytes the pump moves into a transport at a time
+     */
+    PumpedLink(int maxRead)
+    {
+        _maxRead = maxRead;
+        _clientTransport.bind(_client);
+        _serverTransport.bind(_server);
+    }
+
+    PumpedLink()
+    {
+        this(Integer.MAX_VALUE);
+    }
+
+    /**
+     * Opens the link from the client, has the server attach it as the client asked, and grants
+     * the sender the given credit.
+     */
+    void open(int credit)
+    {
+        _client.open();
+        Session session = _client.session();
+        session.open();
+        _sender = session.sender("link");
+        _sender.open();
+        pump();
+
+        _server.open();
+        _server.sessionHead(EnumSet.of(EndpointState.UNINITIALIZED), EnumSet.allOf(EndpointState.class)).open();
+        Link link = _server.linkHead(EnumSet.of(EndpointState.UNINITIALIZED), EnumSet.allOf(EndpointState.class));
+        link.setSource(link.getRemoteSource());
+        link.setTarget(link.getRemoteTarget());
+        link.open();
+        _receiver = (Receiver) link;
+        _receiver.flow(credit);
+        pump();
+    }
+
+    void pump()
+    {
+        TransportPump.pump(_clientTransport, _serverTransport, _maxRead);
+    }
+
+    TransportImpl getServerTransport()
+    {
+        return _serverTransport;
+    }
+
+    Sender getSender()
+    {
+        return _sender;
+    }
+
+    Receiver getReceiver()
+    {
+        return _receiver;
+    }
+}
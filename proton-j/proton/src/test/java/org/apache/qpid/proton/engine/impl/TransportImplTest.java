@@ -0,0 +1,251 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.qpid.proton.amqp.messaging.Accepted;
+import org.apache.qpid.proton.amqp.messaging.Released;
+import org.apache.qpid.proton.amqp.transport.Disposition;
+import org.apache.qpid.proton.amqp.transport.Role;
+import org.apache.qpid.proton.engine.Delivery;
+import org.apache.qpid.proton.engine.EndpointState;
+import org.apache.qpid.proton.engine.Receiver;
+import org.apache.qpid.proton.engine.Sender;
+import org.apache.qpid.proton.framing.TransportFrame;
+import org.junit.Test;
+
+public class TransportImplTest
+{
+    private static byte[] drain(TransportImpl transport, int chunk)
+    {
+        ByteBuffer all = ByteBuffer.allocate(1 << 16);
+        int pending;
+        while((pending = transport.pending()) > 0)
+        {
+            ByteBuffer head = transport.head();
+            assertEquals(pending, head.remaining());
+            int count = Math.min(chunk, pending);
+            head.limit(head.position() + count);
+            all.put(head);
+            transport.pop(count);
+        }
+        all.flip();
+        byte[] bytes = new byte[all.remaining()];
+        all.get(bytes);
+        return bytes;
+    }
+
+    private static byte[] bytes(int seed, int length)
+    {
+        byte[] bytes = new byte[length];
+        for(int i = 0; i < length; i++)
+        {
+            bytes[i] = (byte) (seed * 31 + i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Sends deliveries of the given sizes, all of which arrive before any is read, so that
+     * payloads lent out of the receiving transport's input buffer outlive it being reused.
+     */
+    private static void assertPayloadsDecoded(int[] sizes, int maxRead, boolean reuseFrameBodies)
+    {
+        PumpedLink link = new PumpedLink(maxRead);
+        link.getServerTransport().setReuseFrameBodies(reuseFrameBodies);
+        link.open(sizes.length);
+        Sender sender = link.getSender();
+        Receiver receiver = link.getReceiver();
+
+        for(int i = 0; i < sizes.length; i++)
+        {
+            sender.delivery(new byte[] {(byte) i});
+            sender.send(bytes(i, sizes[i]), 0, sizes[i]);
+            sender.advance();
+        }
+        link.pump();
+
+        byte[] buffer = new byte[1000];
+        for(int i = 0; i < sizes.length; i++)
+        {
+            Delivery delivery = receiver.current();
+            assertNotNull(delivery);
+            assertArrayEquals(new byte[] {(byte) i}, delivery.getTag());
+            ByteArrayOutputStream received = new ByteArrayOutputStream();
+            int count;
+            while((count = receiver.recv(buffer, 0, buffer.length)) != TransportImpl.END_OF_STREAM)
+            {
+                received.write(buffer, 0, count);
+            }
+            assertArrayEquals(bytes(i, sizes[i]), received.toByteArray());
+            receiver.advance();
+        }
+        assertEquals(0, receiver.getQueued());
+    }
+
+    private static int[] repeat(int size, int count)
+    {
+        int[] sizes = new int[count];
+        Arrays.fill(sizes, size);
+        return sizes;
+    }
+
+    @Test
+    public void testOutputPoppedInPiecesMatchesOutputPoppedAtOnce()
+    {
+        ConnectionImpl whole = new ConnectionImpl();
+        TransportImpl wholeTransport = new TransportImpl();
+        wholeTransport.bind(whole);
+        whole.open();
+
+        ConnectionImpl pieces = new ConnectionImpl();
+        TransportImpl piecesTransport = new TransportImpl();
+        piecesTransport.bind(pieces);
+        pieces.open();
+
+        byte[] expected = drain(wholeTransport, Integer.MAX_VALUE);
+        assertArrayEquals(expected, drain(piecesTransport, 3));
+        assertEquals(0, piecesTransport.pending());
+    }
+
+    @Test
+    public void testInputFedInPiecesIsConsumed()
+    {
+        ConnectionImpl client = new ConnectionImpl();
+        TransportImpl clientTransport = new TransportImpl();
+        clientTransport.bind(client);
+        client.open();
+        byte[] output = drain(clientTransport, Integer.MAX_VALUE);
+
+        ConnectionImpl server = new ConnectionImpl();
+        TransportImpl serverTransport = new TransportImpl();
+        serverTransport.bind(server);
+        int capacity = serverTransport.capacity();
+        for(int offset = 0; offset < output.length; offset += 5)
+        {
+            serverTransport.tail().put(output, offset, Math.min(5, output.length - offset));
+            serverTransport.process();
+        }
+        assertEquals(EndpointState.ACTIVE, server.getRemoteState());
+        assertEquals(capacity, serverTransport.capacity());
+    }
+
+    @Test
+    public void testLentPayloadsSurviveInputBufferReuse()
+    {
+        // several buffers' worth of whole frames, each read as soon as it arrives
+        assertPayloadsDecoded(repeat(500, 400), Integer.MAX_VALUE, false);
+    }
+
+    @Test
+    public void testLentPayloadsSurviveCompactionOfPartialFrames()
+    {
+        // reads that split frames leave part of one behind whenever the buffer is compacted
+        assertPayloadsDecoded(repeat(500, 400), 777, false);
+    }
+
+    @Test
+    public void testMultiFramePayloadsDecode()
+    {
+        // the larger payloads span several frames, and some are bigger than the frame buffer
+        // that frames split across reads are assembled in
+        assertPayloadsDecoded(new int[] {10, 40000, 300, 70000, 1, 16000}, Integer.MAX_VALUE, false);
+        assertPayloadsDecoded(new int[] {10, 40000, 300, 70000, 1, 16000}, 5000, false);
+    }
+
+    @Test
+    public void testMultiFramePayloadsDecodeWithReusedFrameBodies()
+    {
+        // each frame of a delivery repeats its tag, which the reused transfer keeps
+        assertPayloadsDecoded(new int[] {10, 40000, 300, 70000, 1, 16000}, Integer.MAX_VALUE, true);
+    }
+
+    @Test
+    public void testSettledRunsOfDeliveriesAreCoalescedIntoRangedDispositions()
+    {
+        PumpedLink link = new PumpedLink();
+        final List<Disposition> dispositions = new ArrayList<Disposition>();
+        link.getServerTransport().setProtocolTracer(new ProtocolTracer()
+        {
+            public void receivedFrame(TransportFrame transportFrame)
+            {
+            }
+
+            public void sentFrame(TransportFrame transportFrame)
+            {
+                if(transportFrame.getBody() instanceof Disposition)
+                {
+                    dispositions.add((Disposition) transportFrame.getBody());
+                }
+            }
+        });
+
+        link.open(600);
+        Sender sender = link.getSender();
+        Receiver receiver = link.getReceiver();
+
+        byte[] body = new byte[10];
+        for(int i = 0; i < 600; i++)
+        {
+            sender.delivery(String.valueOf(i).getBytes());
+            sender.send(body, 0, body.length);
+            sender.advance();
+        }
+        link.pump();
+
+        // the outcome changes for a run in the middle, which must break the range twice
+        long first = -1;
+        for(int i = 0; i < 600; i++)
+        {
+            Delivery delivery = receiver.current();
+            if(first == -1)
+            {
+                first = ((DeliveryImpl) delivery).getTransportDelivery().getDeliveryId() & 0xffffffffL;
+            }
+            delivery.disposition(i >= 300 && i < 350 ? Released.getInstance() : Accepted.getInstance());
+            // settling the current delivery advances the link
+            delivery.settle();
+        }
+        link.pump();
+
+        assertEquals(3, dispositions.size());
+        assertDisposition(dispositions.get(0), first, first + 299, Accepted.class);
+        assertDisposition(dispositions.get(1), first + 300, first + 349, Released.class);
+        assertDisposition(dispositions.get(2), first + 350, first + 599, Accepted.class);
+    }
+
+    private static void assertDisposition(Disposition disposition, long first, long last, Class<?> outcome)
+    {
+        assertEquals(Role.RECEIVER, disposition.getRole());
+        assertEquals(first, disposition.getFirstValue());
+        assertEquals(last, disposition.getLastValue());
+        assertTrue(disposition.getSettled());
+        assertTrue(outcome.isInstance(disposition.getState()));
+    }
+}
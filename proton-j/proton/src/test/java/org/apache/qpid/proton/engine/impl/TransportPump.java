@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.engine.impl;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Moves bytes between two transports through their head and tail buffers, as the engine tests
+ * in this package do in place of a socket.
+ */
+final class TransportPump
+{
+    private TransportPump()
+    {
+    }
+
+    /**
+     * Moves everything the first transport has pending into the second, at most maxRead bytes at
+     * a time, processing the second transport after each move.
+     */
+    static void transfer(TransportImpl from, TransportImpl to, int maxRead)
+    {
+        int pending;
+        while((pending = from.pending()) > 0)
+        {
+            ByteBuffer head = from.head();
+            ByteBuffer tail = to.tail();
+            int count = Math.min(Math.min(pending, tail.remaining()), maxRead);
+            head.limit(head.position() + count);
+            tail.put(head);
+            from.pop(count);
+            to.process();
+        }
+    }
+
+    /**
+     * Transfers in both directions until neither transport has output pending.
+     */
+    static void pump(TransportImpl client, TransportImpl server, int maxRead)
+    {
+        while(client.pending() > 0 || server.pending() > 0)
+        {
+            transfer(client, server, maxRead);
+            transfer(server, client, maxRead);
+        }
+    }
+
+    static void pump(TransportImpl client, TransportImpl server)
+    {
+        pump(client, server, Integer.MAX_VALUE);
+    }
+}
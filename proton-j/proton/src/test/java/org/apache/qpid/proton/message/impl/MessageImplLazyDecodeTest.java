@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.message.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.qpid.proton.amqp.Binary;
+import org.apache.qpid.proton.amqp.Symbol;
+import org.apache.qpid.proton.amqp.UnsignedInteger;
+import org.apache.qpid.proton.amqp.messaging.ApplicationProperties;
+import org.apache.qpid.proton.amqp.messaging.Data;
+import org.apache.qpid.proton.amqp.messaging.Footer;
+import org.apache.qpid.proton.amqp.messaging.Header;
+import org.apache.qpid.proton.amqp.messaging.MessageAnnotations;
+import org.apache.qpid.proton.amqp.messaging.Properties;
+import org.apache.qpid.proton.codec.DecodeException;
+import org.junit.Test;
+
+public class MessageImplLazyDecodeTest
+{
+    private static final int BUFFER_SIZE = 4096;
+
+    @Test
+    public void testLazilyDecodedSectionsMatchEagerDecode()
+    {
+        byte[] encoded = encode(createMessage());
+
+        MessageImpl eager = new MessageImpl();
+        int eagerConsumed = eager.decode(encoded, 0, encoded.length);
+        MessageImpl lazy = new MessageImpl();
+        int lazyConsumed = lazy.decodeLazily(encoded, 0, encoded.length);
+
+        assertEquals(eagerConsumed, lazyConsumed);
+        assertEquals(eager.getAddress(), lazy.getAddress());
+        assertEquals(eager.getDeliveryCount(), lazy.getDeliveryCount());
+        assertEquals(eager.getMessageAnnotations().getValue(), lazy.getMessageAnnotations().getValue());
+        assertEquals(eager.getApplicationProperties().getValue(), lazy.getApplicationProperties().getValue());
+        assertEquals(((Data) eager.getBody()).getValue(), ((Data) lazy.getBody()).getValue());
+        assertEquals(eager.getFooter().getValue(), lazy.getFooter().getValue());
+        assertNull(lazy.getDeliveryAnnotations());
+    }
+
+    @Test
+    public void testUntouchedMessageReencodesToOriginalBytes()
+    {
+        byte[] encoded = encode(createMessage());
+
+        MessageImpl lazy = new MessageImpl();
+        lazy.decodeLazily(encoded, 0, encoded.length);
+        lazy.getAddress();
+
+        assertArrayEquals(encoded, encode(lazy));
+    }
+
+    @Test
+    public void testModifiedSectionIsReencoded()
+    {
+        MessageImpl original = createMessage();
+        byte[] encoded = encode(original);
+
+        MessageImpl lazy = new MessageImpl();
+        lazy.decodeLazily(encoded, 0, encoded.length);
+        lazy.setDeliveryCount(7);
+        lazy.setBody(new Data(new Binary(new byte[] { 1, 2, 3 })));
+
+        MessageImpl decoded = new MessageImpl();
+        byte[] reencoded = encode(lazy);
+        decoded.decode(reencoded, 0, reencoded.length);
+
+        assertEquals(7, decoded.getDeliveryCount());
+        assertEquals(original.getAddress(), decoded.getAddress());
+        assertEquals(original.getApplicationProperties().getValue(), decoded.getApplicationProperties().getValue());
+        assertEquals(new Binary(new byte[] { 1, 2, 3 }), ((Data) decoded.getBody()).getValue());
+        assertEquals(original.getFooter().getValue(), decoded.getFooter().getValue());
+    }
+
+    @Test
+    public void testEncodeToArraySplicesUntouchedSectionsAfterPatchedHeader()
+    {
+        MessageImpl original = createMessage();
+        byte[] encoded = encode(original);
+        int originalHeaderLength = encodedLength(new MessageImpl(original.getHeader(), null, null, null, null, null, null));
+
+        MessageImpl lazy = new MessageImpl();
+        lazy.decodeLazily(encoded, 0, encoded.length);
+        lazy.setDeliveryCount(300);
+        byte[] patched = lazy.encodeToArray();
+        int patchedHeaderLength = encodedLength(new MessageImpl(lazy.getHeader(), null, null, null, null, null, null));
+
+        assertEquals(patchedHeaderLength + encoded.length - originalHeaderLength, patched.length);
+        assertArrayEquals(Arrays.copyOfRange(encoded, originalHeaderLength, encoded.length),
+                          Arrays.copyOfRange(patched, patchedHeaderLength, patched.length));
+
+        MessageImpl decoded = new MessageImpl();
+        decoded.decode(patched, 0, patched.length);
+        assertEquals(300, decoded.getDeliveryCount());
+        assertEquals(original.getAddress(), decoded.getAddress());
+    }
+
+    @Test
+    public void testSectionThatFailsToDecodeIsKept()
+    {
+        byte[] header = encode(new MessageImpl(createMessage().getHeader(), null, null, null, null, null, null));
+        // a properties list whose only field has the unknown constructor 0x01
+        byte[] properties = { 0x00, 0x53, 0x73, (byte) 0xc0, 0x02, 0x01, 0x01 };
+        byte[] encoded = Arrays.copyOf(header, header.length + properties.length);
+        System.arraycopy(properties, 0, encoded, header.length, properties.length);
+
+        MessageImpl lazy = new MessageImpl();
+        lazy.decodeLazily(encoded, 0, encoded.length);
+        for(int attempt = 0; attempt < 2; attempt++)
+        {
+            try
+            {
+                lazy.getSubject();
+                fail("Corrupt properties section should not decode");
+            }
+            catch(DecodeException e)
+            {
+                // expected, every time
+            }
+        }
+
+        assertArrayEquals(encoded, lazy.encodeToArray());
+    }
+
+    private static int encodedLength(MessageImpl message)
+    {
+        return encode(message).length;
+    }
+
+    private static byte[] encode(MessageImpl message)
+    {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int length = message.encode(buffer, 0, buffer.length);
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private static MessageImpl createMessage()
+    {
+        Header header = new Header();
+        header.setDurable(true);
+        header.setDeliveryCount(UnsignedInteger.valueOf(2));
+
+        Map<Symbol, Object> annotations = new HashMap<Symbol, Object>();
+        annotations.put(Symbol.valueOf("x-opt-to-type"), "queue");
+
+        Properties properties = new Properties();
+        properties.setMessageId("message-1");
+        properties.setTo("queue://orders");
+
+        Map<String, Object> applicationProperties = new HashMap<String, Object>();
+        applicationProperties.put("region", "emea");
+        applicationProperties.put("amount", 42L);
+
+        Map<Symbol, Object> footer = new HashMap<Symbol, Object>();
+        footer.put(Symbol.valueOf("x-opt-checksum"), 12345L);
+
+        return new MessageImpl(header, null, new MessageAnnotations(annotations), properties,
+                               new ApplicationProperties(applicationProperties),
+                               new Data(new Binary(new byte[1000])), new Footer(footer));
+    }
+}
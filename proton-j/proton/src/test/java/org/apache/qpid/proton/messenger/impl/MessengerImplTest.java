@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.qpid.proton.messenger.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.qpid.proton.amqp.messaging.AmqpValue;
+import org.apache.qpid.proton.driver.impl.LoopbackPeer;
+import org.apache.qpid.proton.message.Message;
+import org.apache.qpid.proton.message.impl.MessageImpl;
+import org.apache.qpid.proton.messenger.Messenger;
+import org.junit.After;
+import org.junit.Test;
+
+public class MessengerImplTest
+{
+    private static final ThreadFactory DAEMONS = new ThreadFactory()
+    {
+        public Thread newThread(Runnable r)
+        {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            return thread;
+        }
+    };
+
+    private static final int COUNT = 3;
+    private static final long TIMEOUT = 10000;
+
+    private Messenger _receiver;
+    private Messenger _sender;
+
+    @After
+    public void tearDown()
+    {
+        if(_sender != null)
+        {
+            _sender.stop();
+        }
+        if(_receiver != null)
+        {
+            _receiver.stop();
+        }
+    }
+
+    @Test
+    public void testSelectorMessengersExchangeMessages() throws Exception
+    {
+        exchange(new MessengerImpl("receiver"), new MessengerImpl("sender"));
+    }
+
+    @Test
+    public void testBlockingMessengersExchangeMessages() throws Exception
+    {
+        exchange(new MessengerImpl("receiver", DAEMONS), new MessengerImpl("sender", DAEMONS));
+    }
+
+    /**
+     * Puts and sends messages from one messenger, and checks that the other, which has been
+     * waiting in recv() all along, receives every one of them before the sender stops.
+     */
+    private void exchange(Messenger receiver, Messenger sender) throws Exception
+    {
+        final String address = "amqp://" + LoopbackPeer.HOST + ":" + LoopbackPeer.freePort();
+        _receiver = receiver;
+        _receiver.setTimeout(TIMEOUT);
+        _receiver.start();
+        _receiver.subscribe(address.replace("//", "//~"));
+
+        final List<Object> received = new ArrayList<Object>();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        Thread receiving = new Thread()
+        {
+            public void run()
+            {
+                try
+                {
+                    while(received.size() < COUNT)
+                    {
+                        _receiver.recv(COUNT - received.size());
+                        for(Message message = _receiver.get(); message != null; message = _receiver.get())
+                        {
+                            received.add(((AmqpValue) message.getBody()).getValue());
+                        }
+                    }
+                }
+                catch(Throwable e)
+                {
+                    failure.set(e);
+                }
+            }
+        };
+        receiving.start();
+
+        _sender = sender;
+        _sender.setTimeout(TIMEOUT);
+        _sender.start();
+        List<Object> sent = new ArrayList<Object>();
+        for(int i = 0; i < COUNT; i++)
+        {
+            Message message = new MessageImpl();
+            message.setAddress(address + "/queue");
+            message.setBody(new AmqpValue("message " + i));
+            _sender.put(message);
+            sent.add("message " + i);
+        }
+        _sender.send();
+
+        receiving.join(TIMEOUT);
+        assertNull(failure.get());
+        assertEquals(sent, received);
+    }
+}